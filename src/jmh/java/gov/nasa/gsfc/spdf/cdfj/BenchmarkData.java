@@ -0,0 +1,124 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Writes the synthetic CDFs used by the benchmarks, so that they run
+ * without any external data.
+ */
+final class BenchmarkData {
+
+    static final long TT_2010 = TimeUtil.TT_JANUARY_1_1970 +
+        1000000L*1262304000000L;
+
+    private BenchmarkData() {
+    }
+
+    static File tempFile(String prefix) throws IOException {
+        final File file = File.createTempFile(prefix, ".cdf");
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Returns a writer holding variables v0, v1, ... of records doubles
+     * each, all depending on Epoch.
+     */
+    static GenericWriter manyVariables(int variables, int records)
+        throws Throwable {
+        final GenericWriter writer = new GenericWriter(true);
+        writer.defineTimeVariable("Epoch", CDFTimeType.TT2000);
+        writer.addData("Epoch", times(records, 1000000000L));
+        final double[] values = new double[records];
+        for (int i = 0; i < records; i++) values[i] = i;
+        for (int v = 0; v < variables; v++) {
+            final String name = "v" + v;
+            writer.defineVariable(name, CDFDataType.DOUBLE, new int[0]);
+            writer.addVariableAttributeEntry(name, "DEPEND_0",
+                CDFDataType.CHAR, "Epoch");
+            writer.addVariableAttributeEntry(name, "FIELDNAM",
+                CDFDataType.CHAR, name);
+            writer.addData(name, values);
+        }
+        return writer;
+    }
+
+    /**
+     * Returns a writer holding Epoch and a variable named data of the given
+     * type with records records of dimension {dim}, filled with random
+     * values of limited range so that compression has something to find.
+     */
+    static GenericWriter series(String type, boolean compressed,
+        int records, int dim) throws Throwable {
+        final GenericWriter writer = new GenericWriter(true);
+        writer.defineTimeVariable("Epoch", CDFTimeType.TT2000);
+        writer.addData("Epoch", times(records, 100000000L));
+        final CDFDataType dataType = dataType(type);
+        if (compressed) {
+            writer.defineCompressedVariable("data", dataType,
+                new int[] {dim});
+        } else {
+            writer.defineVariable("data", dataType, new int[] {dim});
+        }
+        writer.addVariableAttributeEntry("data", "DEPEND_0",
+            CDFDataType.CHAR, "Epoch");
+        writer.addData("data", values(type, records, dim));
+        return writer;
+    }
+
+    static CDFDataType dataType(String type) {
+        if ("DOUBLE".equals(type)) return CDFDataType.DOUBLE;
+        if ("FLOAT".equals(type)) return CDFDataType.FLOAT;
+        if ("INT8".equals(type)) return CDFDataType.INT8;
+        if ("INT4".equals(type)) return CDFDataType.INT4;
+        if ("INT2".equals(type)) return CDFDataType.INT2;
+        throw new IllegalArgumentException("Unsupported type " + type);
+    }
+
+    static long[] times(int records, long step) {
+        final long[] times = new long[records];
+        for (int i = 0; i < records; i++) times[i] = TT_2010 + step*i;
+        return times;
+    }
+
+    static Object values(String type, int records, int dim) {
+        final Random random = new Random(41);
+        if ("DOUBLE".equals(type)) {
+            final double[][] values = new double[records][dim];
+            for (int i = 0; i < records; i++) {
+                for (int j = 0; j < dim; j++) values[i][j] = random.nextInt(1000);
+            }
+            return values;
+        }
+        if ("FLOAT".equals(type)) {
+            final float[][] values = new float[records][dim];
+            for (int i = 0; i < records; i++) {
+                for (int j = 0; j < dim; j++) values[i][j] = random.nextInt(1000);
+            }
+            return values;
+        }
+        if ("INT8".equals(type)) {
+            final long[][] values = new long[records][dim];
+            for (int i = 0; i < records; i++) {
+                for (int j = 0; j < dim; j++) values[i][j] = random.nextInt(1000);
+            }
+            return values;
+        }
+        if ("INT4".equals(type)) {
+            final int[][] values = new int[records][dim];
+            for (int i = 0; i < records; i++) {
+                for (int j = 0; j < dim; j++) values[i][j] = random.nextInt(1000);
+            }
+            return values;
+        }
+        final short[][] values = new short[records][dim];
+        for (int i = 0; i < records; i++) {
+            for (int j = 0; j < dim; j++) {
+                values[i][j] = (short)random.nextInt(1000);
+            }
+        }
+        return values;
+    }
+}
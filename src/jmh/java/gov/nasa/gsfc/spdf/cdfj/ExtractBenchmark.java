@@ -0,0 +1,56 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures extraction of all values of a variable by getOneDArray and
+ * getBuffer for each numeric type, with and without compression.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ExtractBenchmark {
+
+    static final int RECORDS = 100000;
+
+    static final int DIM = 3;
+
+    @Param({"DOUBLE", "FLOAT", "INT8", "INT4", "INT2"})
+    String type;
+
+    @Param({"false", "true"})
+    boolean compressed;
+
+    CDFReader reader;
+
+    @Setup
+    public void setup() throws Throwable {
+        final File file = BenchmarkData.tempFile("extract");
+        BenchmarkData.series(type, compressed, RECORDS, DIM).write(
+            file.getPath(), true);
+        reader = ReaderFactory.getReader(file.getPath());
+    }
+
+    @Benchmark
+    public Object oneDArray() throws Throwable {
+        final String target = "INT8".equals(type)? "long" : "double";
+        return reader.getOneDArray("data", target, null, true, false);
+    }
+
+    @Benchmark
+    public ByteBuffer buffer() throws Throwable {
+        final String target = "INT8".equals(type)? "long" : "double";
+        return reader.getBuffer("data", target, null, true, true);
+    }
+}
@@ -0,0 +1,64 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the latency of opening, and closing, a CDF for a CDF with a
+ * few variables and for one with thousands. The file is either mapped
+ * (CDFReader), read into memory (ReaderFactory.getReader(fname, true)),
+ * or read through its channel as needed (ReaderFactory.getReader(fname)).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OpenBenchmark {
+
+    @Param({"10", "3000"})
+    int variables;
+
+    @Param({"mapped", "read", "channel"})
+    String mode;
+
+    String fname;
+
+    @Setup
+    public void setup() throws Throwable {
+        final File file = BenchmarkData.tempFile("open");
+        BenchmarkData.manyVariables(variables, 100).write(file.getPath(),
+            true);
+        fname = file.getPath();
+    }
+
+    CDFReader reader() throws Throwable {
+        if ("mapped".equals(mode)) return new CDFReader(fname);
+        if ("read".equals(mode)) return ReaderFactory.getReader(fname, true);
+        return ReaderFactory.getReader(fname);
+    }
+
+    @Benchmark
+    public CDFReader open() throws Throwable {
+        final CDFReader rdr = reader();
+        rdr.thisCDF.close();
+        return rdr;
+    }
+
+    @Benchmark
+    public String[] openAndListVariables() throws Throwable {
+        final CDFReader rdr = reader();
+        try {
+            return rdr.getVariableNames();
+        } finally {
+            rdr.thisCDF.close();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import java.nio.LongBuffer;
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares conversion of broken-down times to milliseconds and TT2000
+ * using java.util.Calendar and using TimeUtil, and measures bulk
+ * conversion of TT2000 values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TimeConversionBenchmark {
+
+    static final int COUNT = 10000;
+
+    int[][] times;
+
+    long[] result;
+
+    long[] tt;
+
+    Calendar cal;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(28);
+        times = new int[COUNT][];
+        for (int i = 0; i < COUNT; i++) {
+            times[i] = new int[] {1972 + random.nextInt(50),
+                1 + random.nextInt(12), 1 + random.nextInt(28),
+                random.nextInt(24), random.nextInt(60), random.nextInt(60),
+                random.nextInt(1000)};
+        }
+        result = new long[COUNT];
+        tt = new long[COUNT];
+        long t = TimeUtil.TT_JANUARY_1_1970 + 1000000L*1262304000000L;
+        for (int i = 0; i < COUNT; i++) {
+            t += 1000000000L*random.nextInt(86400);
+            tt[i] = t;
+        }
+        cal = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+    }
+
+    @Benchmark
+    public long[] calendar() {
+        for (int i = 0; i < COUNT; i++) {
+            final int[] t = times[i];
+            cal.clear();
+            cal.set(t[0], t[1] - 1, t[2], t[3], t[4], t[5]);
+            cal.set(Calendar.MILLISECOND, t[6]);
+            result[i] = cal.getTimeInMillis();
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long[] milliSecondSince1970() throws Throwable {
+        return TimeUtil.milliSecondSince1970(times, result);
+    }
+
+    @Benchmark
+    public long[] tt2000() throws Throwable {
+        return TimeUtil.tt2000(times, result);
+    }
+
+    @Benchmark
+    public long[] utcMilliSecondSince1970() throws Throwable {
+        return TimeUtil.utcMilliSecondSince1970(tt, result);
+    }
+
+    @Benchmark
+    public double[] offsets() {
+        return TimeUtil.offsets(LongBuffer.wrap(tt), 0, COUNT,
+            TimeUtil.TT_JANUARY_1_1970, 1000000, null);
+    }
+}
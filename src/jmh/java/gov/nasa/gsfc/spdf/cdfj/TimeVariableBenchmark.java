@@ -0,0 +1,61 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures creation of the time variable of a variable and the lookup
+ * of the records within a time range.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TimeVariableBenchmark {
+
+    @Param({"1000", "1000000"})
+    int records;
+
+    CDFReader reader;
+
+    TimeVariableFactory.CDFTimeVariable timeVariable;
+
+    double[] range;
+
+    @Setup
+    public void setup() throws Throwable {
+        final File file = BenchmarkData.tempFile("time");
+        BenchmarkData.series("FLOAT", false, records, 1).write(file.getPath(),
+            true);
+        reader = ReaderFactory.getReader(file.getPath());
+        timeVariable = TimeVariableFactory.getTimeVariable(reader, "data");
+        // middle half of the records, in milliseconds since 1970
+        final double start = 1262304000000.0 + 100.0*records/4;
+        range = new double[] {start, start + 100.0*records/2};
+    }
+
+    @Benchmark
+    public TimeVariableFactory.CDFTimeVariable getTimeVariable()
+        throws Throwable {
+        return TimeVariableFactory.getTimeVariable(reader, "data");
+    }
+
+    @Benchmark
+    public int[] getRecordRange() throws Throwable {
+        return timeVariable.getRecordRange(range);
+    }
+
+    @Benchmark
+    public int[] getTimeVariableAndRecordRange() throws Throwable {
+        return TimeVariableFactory.getTimeVariable(reader, "data")
+            .getRecordRange(range);
+    }
+}
@@ -0,0 +1,53 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures GenericWriter.write of a CDF holding one variable, with and
+ * without compression. The writer is rebuilt before each invocation,
+ * outside the measurement, since writing fixes its layout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WriteBenchmark {
+
+    static final int RECORDS = 100000;
+
+    @Param({"DOUBLE", "INT2"})
+    String type;
+
+    @Param({"false", "true"})
+    boolean compressed;
+
+    GenericWriter writer;
+
+    String fname;
+
+    @Setup(Level.Trial)
+    public void createFile() throws Throwable {
+        final File file = BenchmarkData.tempFile("write");
+        fname = file.getPath();
+    }
+
+    @Setup(Level.Invocation)
+    public void createWriter() throws Throwable {
+        writer = BenchmarkData.series(type, compressed, RECORDS, 3);
+    }
+
+    @Benchmark
+    public boolean write() throws Throwable {
+        return writer.write(fname, true);
+    }
+}
@@ -0,0 +1,623 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.*;
+import java.lang.reflect.Array;
+/**
+ * AggregateCDFReader presents an ordered collection of CDF files, typically
+ * daily files of one dataset, as a single time ordered source of time
+ * series.
+ * <p>
+ * Files that overlap a requested time range are identified using only the
+ * first and last records of the time variable. The time extent of each file
+ * is cached, so that files outside a requested range are not read again.
+ * Extents are scanned in parallel. Selected files are opened once per
+ * request and read in parallel, each into its place in a single
+ * preallocated output. Files are closed as soon as they have been read.
+ * </p>
+ * Metadata requests are answered by the first file of the collection,
+ * which is kept open until the reader is closed.
+ */
+public class AggregateCDFReader implements AutoCloseable {
+    final String[] files;
+    final ConcurrentHashMap<String, double[]> extents =
+        new ConcurrentHashMap<>();
+    final ExecutorService executor;
+    CDFReader metaData;
+
+    /**
+     * Constructs an AggregateCDFReader for an ordered list of files.
+     * @param files names of CDF files, in time order
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     */
+    public AggregateCDFReader(List<String> files) throws
+        CDFException.ReaderError {
+        this(files, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an AggregateCDFReader for an ordered list of files, using
+     * the given number of threads to read files.
+     * @param files names of CDF files, in time order
+     * @param nthreads number of threads
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     */
+    public AggregateCDFReader(List<String> files, int nthreads) throws
+        CDFException.ReaderError {
+        if ((files == null) || (files.size() == 0)) {
+            throw new CDFException.ReaderError("No files specified.");
+        }
+        this.files = files.toArray(new String[files.size()]);
+        executor = Executors.newFixedThreadPool((nthreads < 1)?1:nthreads,
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "cdfj-aggregate");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+    }
+
+    /**
+     * Constructs an AggregateCDFReader for files in a directory whose names
+     * match the given regular expression. Files are ordered by name.
+     * @param dir directory
+     * @param pattern regular expression for file names
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     */
+    public AggregateCDFReader(String dir, String pattern) throws
+        CDFException.ReaderError {
+        this(listFiles(dir, pattern));
+    }
+
+    static List<String> listFiles(String dir, String pattern) throws
+        CDFException.ReaderError {
+        File _dir = new File(dir);
+        if (!_dir.isDirectory()) {
+            throw new CDFException.ReaderError(dir + " is not a directory.");
+        }
+        final Pattern p = Pattern.compile(pattern);
+        File[] list = _dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File f) {
+                return f.isFile() && p.matcher(f.getName()).matches();
+            }
+        });
+        if ((list == null) || (list.length == 0)) {
+            throw new CDFException.ReaderError("No files in " + dir +
+            " match " + pattern);
+        }
+        Arrays.sort(list);
+        Vector<String> names = new Vector<>();
+        for (int i = 0; i < list.length; i++) {
+            names.add(list[i].getPath());
+        }
+        return names;
+    }
+
+    /**
+     * Returns the names of files in this collection.
+     * @return
+     */
+    public String[] getFiles() {
+        return files.clone();
+    }
+
+    /**
+     * Returns a reader for the first file of the collection, which serves
+     * as the source of metadata for the collection. The reader is opened
+     * on first use, and closed by {@link #close() close}.
+     * @return
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     */
+    public synchronized CDFReader getMetaData() throws
+        CDFException.ReaderError {
+        if (metaData == null) metaData = open(files[0]);
+        return metaData;
+    }
+
+
+    /**
+     * Returns the names of files which contain data for the variable in
+     * the given time range.
+     * @param varName variable name
+     * @param startTime a 3 to 7 element int[], containing year,
+     * month (January is 1), day, hour, minute, second and millisecond.
+     * May be null, in which case the range is open at the start.
+     * @param stopTime a 3 to 7 element int[], containing year,
+     * month (January is 1), day, hour, minute, second and millisecond.
+     * May be null, in which case the range is open at the end.
+     * @return
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     */
+    public String[] getFiles(String varName, int[] startTime, int[] stopTime)
+        throws CDFException.ReaderError {
+        double[][] all = getExtents(varName);
+        Vector<String> selected = new Vector<>();
+        for (int i = 0; i < files.length; i++) {
+            if (overlaps(all[i], startTime, stopTime)) selected.add(files[i]);
+        }
+        return selected.toArray(new String[selected.size()]);
+    }
+
+    /**
+     * Returns available time range for a variable over the collection
+     * using default {@link TimeInstantModel time instant model}.
+     * @param varName variable name
+     * @return double[2] containing first and last available offset time, or
+     * null if no file contains data for the variable.
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     */
+    public double[] getAvailableTimeRange(String varName) throws
+        CDFException.ReaderError {
+        double[] range = null;
+        for (double[] extent : getExtents(varName)) {
+            if (extent == null) continue;
+            if (range == null) {
+                range = new double[] {extent[0], extent[1]};
+                continue;
+            }
+            if (extent[0] < range[0]) range[0] = extent[0];
+            if (extent[1] > range[1]) range[1] = extent[1];
+        }
+        return range;
+    }
+
+    /**
+     * Returns {@link TimeSeries TimeSeries} of the specified variable
+     * in the specified time range, assembled from all files that overlap
+     * the range, using the given {@link TimeInstantModel time instant model}.
+     * Values are organized as those returned by
+     * {@link CDFReader#getTimeSeries(String, int[], int[], TimeInstantModel)
+     * CDFReader}, i.e. one array element per record.
+     * @param varName variable name
+     * @param startTime a 3 to 7 element int[], containing year,
+     * month (January is 1), day, hour, minute, second and millisecond.
+     * May be null.
+     * @param stopTime a 3 to 7 element int[], containing year,
+     * month (January is 1), day, hour, minute, second and millisecond.
+     * May be null.
+     * @param tspec {@link TimeInstantModel time instant model}, May be
+     * null, in which case the default model is used.
+     * @return
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     */
+    public TimeSeries getTimeSeries(final String varName,
+        final int[] startTime, final int[] stopTime,
+        final TimeInstantModel tspec) throws CDFException.ReaderError {
+        final TimeInstantModel _tspec =
+            (tspec == null)?CDFReader.timeModelInstance():tspec;
+        Object[] series = collect(varName, startTime, stopTime, _tspec,
+            new Part() {
+                @Override
+                public Object read(CDFImpl cdf, int[] range) throws
+                    Throwable {
+                    return cdf.getRange(varName, range[0], range[1]);
+                }
+            });
+        return new AggregateTimeSeries((double[])series[0], series[1],
+            _tspec);
+    }
+
+    /**
+     * Returns {@link TimeSeriesOneD time series} of the specified variable
+     * in the specified time range, assembled from all files that overlap
+     * the range, using the given {@link TimeInstantModel time instant model}.
+     * @param varName variable name
+     * @param startTime a 3 to 7 element int[], containing year,
+     * month (January is 1), day, hour, minute, second and millisecond.
+     * May be null.
+     * @param stopTime a 3 to 7 element int[], containing year,
+     * month (January is 1), day, hour, minute, second and millisecond.
+     * May be null.
+     * @param tspec {@link TimeInstantModel time instant model}, May be
+     * null, in which case the default model is used.
+     * @param columnMajor specifies whether the first index of the
+     * variable dimension varies the fastest, i.e. IDL like.
+     * @return
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     */
+    public TimeSeriesOneD getTimeSeriesOneD(final String varName,
+        final int[] startTime, final int[] stopTime,
+        final TimeInstantModel tspec, final boolean columnMajor) throws
+        CDFException.ReaderError {
+        final TimeInstantModel _tspec =
+            (tspec == null)?CDFReader.timeModelInstance():tspec;
+        Object[] series = collect(varName, startTime, stopTime, _tspec,
+            new Part() {
+                @Override
+                public Object read(CDFImpl cdf, int[] range) throws
+                    Throwable {
+                    return cdf.getRangeOneD(varName, range[0], range[1],
+                        columnMajor);
+                }
+            });
+        return new AggregateTimeSeriesOneD((double[])series[0],
+            (double[])series[1], _tspec, columnMajor);
+    }
+
+    /**
+     * Shuts down the threads used by this reader, and closes the file
+     * of the metadata reader.
+     */
+    @Override
+    public synchronized void close() {
+        executor.shutdown();
+        if (metaData != null) {
+            close(metaData);
+            metaData = null;
+        }
+    }
+
+    interface Part {
+        Object read(CDFImpl cdf, int[] recordRange) throws Throwable;
+    }
+
+    /**
+     * Records of one file that fall in a requested time range, and the
+     * open reader to read them with.
+     */
+    static final class Piece {
+        final CDFReader rdr;
+        final double[] times;
+        final int[] recordRange;
+        int offset;
+        boolean closed;
+        Piece(CDFReader rdr, double[] times, int[] recordRange) {
+            this.rdr = rdr;
+            this.times = times;
+            this.recordRange = recordRange;
+        }
+
+        /**
+         * Closes the file of rdr, unless already closed.
+         */
+        synchronized void close() {
+            if (closed) return;
+            closed = true;
+            AggregateCDFReader.close(rdr);
+        }
+    }
+
+    /**
+     * Returns {times, values} for the requested range.
+     * Each file is opened once. Its extent, unless already cached, and the
+     * record range to be read are determined first, for all files in
+     * parallel. The output arrays are then allocated at their final size,
+     * and each file's records are placed at their offset as soon as they
+     * are read.
+     */
+    Object[] collect(final String varName, final int[] startTime,
+        final int[] stopTime, final TimeInstantModel tspec, final Part part)
+        throws CDFException.ReaderError {
+        Vector<String> candidates = new Vector<>();
+        for (int i = 0; i < files.length; i++) {
+            double[] extent = extents.get(key(files[i], varName));
+            if ((extent != null) &&
+                !overlaps((extent.length == 0)?null:extent, startTime,
+                stopTime)) continue;
+            candidates.add(files[i]);
+        }
+        Vector<Future<Piece>> located = new Vector<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            final String fname = candidates.get(i);
+            located.add(executor.submit(new Callable<Piece>() {
+                @Override
+                public Piece call() throws CDFException.ReaderError {
+                    return locate(fname, varName, startTime, stopTime,
+                        tspec);
+                }
+            }));
+        }
+        final Vector<Piece> pieces = new Vector<>();
+        try {
+            for (int i = 0; i < located.size(); i++) {
+                Piece piece = await(located, i, candidates.get(i));
+                if (piece != null) pieces.add(piece);
+            }
+        } catch (CDFException.ReaderError ex) {
+            for (Piece piece : drain(located)) piece.close();
+            throw ex;
+        }
+        if (pieces.size() == 0) {
+            throw new CDFException.ReaderError("No data for " + varName +
+            " in the requested time range.");
+        }
+        int count = 0;
+        for (Piece piece : pieces) {
+            piece.offset = count;
+            count += piece.times.length;
+        }
+        final double[] times = new double[count];
+        final Object[] values = new Object[1];
+        final int total = count;
+        Vector<Future<Object>> filled = new Vector<>();
+        for (int i = 0; i < pieces.size(); i++) {
+            final Piece piece = pieces.get(i);
+            filled.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws CDFException.ReaderError {
+                    try {
+                        int n = piece.times.length;
+                        System.arraycopy(piece.times, 0, times, piece.offset,
+                            n);
+                        place(values, part.read(piece.rdr.thisCDF,
+                            piece.recordRange), piece.offset, n, total);
+                        return null;
+                    } catch (Throwable th) {
+                        throw new CDFException.ReaderError(th.getMessage());
+                    } finally {
+                        piece.close();
+                    }
+                }
+            }));
+        }
+        try {
+            for (int i = 0; i < filled.size(); i++) {
+                await(filled, i, pieces.get(i).rdr.getSource());
+            }
+        } finally {
+            drain(filled);
+            for (Piece piece : pieces) piece.close();
+        }
+        return new Object[] {times, values[0]};
+    }
+
+    /**
+     * Returns the records of fname in the requested range, or null if it
+     * has none. The reader is left open only if a Piece is returned.
+     */
+    Piece locate(String fname, String varName, int[] startTime,
+        int[] stopTime, TimeInstantModel tspec) throws
+        CDFException.ReaderError {
+        CDFReader rdr = open(fname);
+        try {
+            if (!overlaps(extent(fname, rdr, varName), startTime, stopTime)) {
+                return null;
+            }
+            TimeVariableX tv = (TimeVariableX)
+                TimeVariableFactory.getTimeVariable(rdr, varName);
+            if (!tv.canSupportPrecision(tspec.getOffsetUnits())) {
+                throw new Throwable(varName +
+                " has lower time precision than " + "requested.");
+            }
+            double[] tr = TSExtractor.getOverlap(rdr,
+                rdr.getAvailableTimeRange(varName), varName, startTime,
+                stopTime);
+            int[] range = tv.getRecordRange(tr);
+            if (range == null) return null;
+            double[] times = tv.getTimes(tr, tspec);
+            if (times.length != range[1] - range[0] + 1) {
+                throw new Throwable("Time range of " + varName +
+                " does not match its record range.");
+            }
+            Piece piece = new Piece(rdr, times, range);
+            rdr = null;
+            return piece;
+        } catch (CDFException.ReaderError ex) {
+            throw ex;
+        } catch (Throwable th) {
+            throw new CDFException.ReaderError(th.getMessage());
+        } finally {
+            if (rdr != null) close(rdr);
+        }
+    }
+
+    /**
+     * Copies the values of n records to out[0] at record offset, allocating
+     * out[0] for total records on first use.
+     */
+    static void place(Object[] out, Object part, int offset, int n,
+        int total) {
+        int size = (n == 0)?0:Array.getLength(part)/n;
+        Object dst;
+        synchronized (out) {
+            if (out[0] == null) {
+                out[0] = Array.newInstance(
+                    part.getClass().getComponentType(), total*size);
+            }
+            dst = out[0];
+        }
+        System.arraycopy(part, 0, dst, offset*size, n*size);
+    }
+
+    static <T> T await(Vector<Future<T>> futures, int i, String fname)
+        throws CDFException.ReaderError {
+        try {
+            return futures.get(i).get();
+        } catch (ExecutionException ex) {
+            throw new CDFException.ReaderError(fname + ": " +
+                ex.getCause().getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CDFException.ReaderError("Interrupted.");
+        }
+    }
+
+    /**
+     * Cancels tasks that have not started, waits for the others, and
+     * returns their results.
+     */
+    static <T> Vector<T> drain(Vector<Future<T>> futures) {
+        for (Future<T> future : futures) future.cancel(false);
+        Vector<T> results = new Vector<>();
+        boolean interrupted = false;
+        for (Future<T> future : futures) {
+            while (true) {
+                try {
+                    T result = future.get();
+                    if (result != null) results.add(result);
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException | CancellationException ex) {
+                    break;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        return results;
+    }
+
+    CDFReader open(String fname) throws CDFException.ReaderError {
+        return ReaderFactory.getReader(fname);
+    }
+
+    static void close(CDFReader rdr) {
+        try {
+            rdr.thisCDF.close();
+        } catch (IOException ex) {
+        }
+    }
+
+    static String key(String fname, String varName) {
+        return fname + '\u0000' + varName;
+    }
+
+    /**
+     * Returns the extents of varName in all files, scanning the files not
+     * already cached in parallel.
+     */
+    double[][] getExtents(final String varName) throws
+        CDFException.ReaderError {
+        double[][] all = new double[files.length][];
+        Vector<Future<double[]>> futures = new Vector<>();
+        for (int i = 0; i < files.length; i++) {
+            final String fname = files[i];
+            double[] extent = extents.get(key(fname, varName));
+            if (extent != null) {
+                all[i] = (extent.length == 0)?null:extent;
+                futures.add(null);
+                continue;
+            }
+            futures.add(executor.submit(new Callable<double[]>() {
+                @Override
+                public double[] call() throws CDFException.ReaderError {
+                    CDFReader rdr = open(fname);
+                    try {
+                        return extent(fname, rdr, varName);
+                    } finally {
+                        close(rdr);
+                    }
+                }
+            }));
+        }
+        try {
+            for (int i = 0; i < files.length; i++) {
+                if (futures.get(i) != null) {
+                    all[i] = await(futures, i, files[i]);
+                }
+            }
+        } finally {
+            futures.removeAll(Collections.singleton(null));
+            drain(futures);
+        }
+        return all;
+    }
+
+    /**
+     * Returns {first, last, isTT2000} for the time variable of varName in
+     * the given file, in the units used by getOverlap, or null if the file
+     * has no records for the variable.
+     */
+    double[] extent(String fname, CDFReader rdr, String varName) throws
+        CDFException.ReaderError {
+        String key = key(fname, varName);
+        double[] extent = extents.get(key);
+        if (extent != null) return (extent.length == 0)?null:extent;
+        if (!rdr.existsVariable(varName)) {
+            extents.put(key, new double[0]);
+            return null;
+        }
+        try {
+            extent = readExtent(rdr, varName);
+        } catch (Throwable th) {
+            throw new CDFException.ReaderError(fname + ": " + th.getMessage());
+        }
+        extents.put(key, (extent == null)?new double[0]:extent);
+        return extent;
+    }
+
+    static double[] readExtent(CDFReader rdr, String varName) throws
+        Throwable {
+        CDFImpl cdf = rdr.thisCDF;
+        String tname = rdr.getTimeVariableName(varName);
+        Variable tvar = cdf.getVariable(tname);
+        if ((tvar == null) || (tvar.getNumberOfValues() == 0)) {
+            double[] tr = rdr.getAvailableTimeRange(varName);
+            return new double[] {tr[0], tr[1], 0};
+        }
+        double[] tr = TimeVariableFactory.getValidTimeRange(cdf, tvar, false,
+            tvar.getNumberOfValues() - 1);
+        if (tr == null) return null;
+        boolean tt2000 = (tvar.getType() == DataTypes.CDF_TIME_TT2000);
+        return new double[] {tr[0], tr[1], tt2000?1:0};
+    }
+
+    /**
+     * Returns whether extent, which may be null, overlaps the given range.
+     */
+    static boolean overlaps(double[] extent, int[] startTime, int[] stopTime)
+        throws CDFException.ReaderError {
+        if (extent == null) return false;
+        boolean tt2000 = (extent[2] != 0);
+        try {
+            if ((startTime != null) &&
+                (extent[1] < toMilliSecond(startTime, tt2000))) return false;
+            if ((stopTime != null) &&
+                (extent[0] >= toMilliSecond(stopTime, tt2000))) return false;
+        } catch (Throwable th) {
+            throw new CDFException.ReaderError(th.getMessage());
+        }
+        return true;
+    }
+
+    static double toMilliSecond(int[] time, boolean tt2000) throws Throwable {
+        if (time.length < 3) throw new Throwable("incomplete time " +
+            "definition.");
+        long t = TSExtractor.getTime(time);
+        return (tt2000)?TimeUtil.milliSecondSince1970(t):(double)t;
+    }
+
+    static class AggregateTimeSeries implements TimeSeries {
+        final double[] times;
+        final Object values;
+        final TimeInstantModel tspec;
+        AggregateTimeSeries(double[] times, Object values,
+            TimeInstantModel tspec) {
+            this.times = times;
+            this.values = values;
+            this.tspec = tspec;
+        }
+        @Override
+        public double[] getTimes() {return times;}
+        @Override
+        public Object getValues() {return values;}
+        @Override
+        public TimeInstantModel getTimeInstantModel() {return tspec;}
+    }
+
+    static class AggregateTimeSeriesOneD implements TimeSeriesOneD {
+        final double[] times;
+        final double[] values;
+        final TimeInstantModel tspec;
+        final boolean columnMajor;
+        AggregateTimeSeriesOneD(double[] times, double[] values,
+            TimeInstantModel tspec, boolean columnMajor) {
+            this.times = times;
+            this.values = values;
+            this.tspec = tspec;
+            this.columnMajor = columnMajor;
+        }
+        @Override
+        public double[] getTimes() {return times;}
+        @Override
+        public double[] getValues() {return values;}
+        @Override
+        public TimeInstantModel getTimeInstantModel() {return tspec;}
+        @Override
+        public boolean isColumnMajor() {return columnMajor;}
+    }
+}
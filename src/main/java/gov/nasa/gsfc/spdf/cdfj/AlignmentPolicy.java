@@ -0,0 +1,53 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import java.util.*;
+/**
+ * Policies for choosing the value of a variable at a time of the merged
+ * time line of a {@link TimeAligner TimeAligner}.
+ */
+public final class AlignmentPolicy {
+
+    /**
+     * PREVIOUS - value of the latest valid sample at or before the time
+     * ("as of" the time), if it is no more than the tolerance earlier.
+     */
+    public static final AlignmentPolicy PREVIOUS = new AlignmentPolicy(0);
+
+    /**
+     * NEAREST - value of the valid sample nearest to the time, if it is
+     * no farther than the tolerance. The earlier sample is used when two
+     * are equally near.
+     */
+    public static final AlignmentPolicy NEAREST = new AlignmentPolicy(1);
+
+    /**
+     * EXACT - value of the valid sample at the time, if there is one.
+     */
+    public static final AlignmentPolicy EXACT = new AlignmentPolicy(2);
+
+    static Hashtable<String, AlignmentPolicy> ht =
+        new Hashtable<String, AlignmentPolicy>();
+    static {
+        ht.put("previous", PREVIOUS);
+        ht.put("nearest", NEAREST);
+        ht.put("exact", EXACT);
+    }
+    int policy;
+    private AlignmentPolicy(int policy) {
+        this.policy = policy;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public int getValue() {return policy;}
+
+    /**
+     * Returns AlignmentPolicy object for the named policy.
+     * @param s
+     * @return
+     */
+    public static AlignmentPolicy getPolicy(String s) {
+        return ht.get(s.toLowerCase());
+    }
+}
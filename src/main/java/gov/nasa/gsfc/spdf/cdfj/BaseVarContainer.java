@@ -25,6 +25,8 @@ public abstract class BaseVarContainer implements Runnable {
     final int fillCount;
     final boolean singlePoint;
     Boolean allocationMode;
+    BufferPool pool;
+    ByteBuffer pooled;
 
     /**
      *
@@ -48,6 +50,7 @@ public abstract class BaseVarContainer implements Runnable {
         } 
         this.thisCDF = (CDFImpl)thisCDF;
         this.var = var;
+        pool = this.thisCDF.bufferPool;
         order = bo;
         _class = cl;
         itemSize = var.getDataItemSize();
@@ -145,6 +148,47 @@ public abstract class BaseVarContainer implements Runnable {
         if (allocationMode == null) allocationMode = direct;
     }
 
+    /**
+     * Sets the pool from which the buffer of this container is drawn,
+     * unless a user buffer, or heap allocation, has been requested.
+     * A null pool disables pooling.
+     * @param pool
+     */
+    public void setBufferPool(BufferPool pool) {
+        if (buffers.size() == 0) this.pool = pool;
+    }
+
+    /**
+     * Returns the buffer of this container to its pool, if it was drawn
+     * from one. Buffers and arrays previously obtained from this container
+     * by {@link #getBuffer() getBuffer()} or {@link #asNDArray() asNDArray()}
+     * must not be used afterwards.
+     */
+    public void close() {
+        if (pooled == null) return;
+        buffers.clear();
+        ByteBuffer buf = pooled;
+        pooled = null;
+        pool.release(buf);
+    }
+
+    /**
+     * Hands the buffer of this container over to the caller: it is no
+     * longer counted by its pool, nor returned to it by close.
+     */
+    void detach() {
+        if (pooled == null) return;
+        ByteBuffer buf = pooled;
+        pooled = null;
+        pool.forget(buf);
+    }
+
+    ByteBuffer directBuffer(int size) {
+        if (pool == null) return ByteBuffer.allocateDirect(size);
+        pooled = pool.acquire(size);
+        return pooled;
+    }
+
     ByteBuffer userBuffer;
 
     /**
@@ -181,19 +225,39 @@ public abstract class BaseVarContainer implements Runnable {
     @Override
     public void run() {
         if (buffers.size() > 0) return;
+        long start = System.nanoTime();
+        Object event = CDFEvents.beginFill();
+        padded = 0;
+        fill();
+        int records = pt[1] - pt[0] + 1;
+        long bytes = (long)records*elements*getLength();
+        CDFMetrics.getInstance().containerFilled(var.getName(), records,
+            padded, bytes, System.nanoTime() - start);
+        CDFEvents.endFill(event, thisCDF, var.getName(), pt[0], pt[1], padded,
+            bytes);
+    }
+
+    int padded;
+
+    void missing(int records, ByteBuffer _buf, Object data, int rec) {
+        padded += records;
+        doMissing(records, _buf, data, rec);
+    }
+
+    void fill() {
         int numberOfValues = pt[1] - pt[0] + 1;
         int words = elements*numberOfValues;
         ByteBuffer _buf;
         int _words = words*getLength();
         if (allocationMode == null) {
             if (userBuffer == null) {
-                _buf = ByteBuffer.allocateDirect(_words);
+                _buf = directBuffer(_words);
             } else {
                  _buf = userBuffer;
             }
         } else {
             if (allocationMode) {
-                _buf = ByteBuffer.allocateDirect(_words);
+                _buf = directBuffer(_words);
              } else {
                 _buf = ByteBuffer.allocate(_words);
              }
@@ -202,7 +266,7 @@ public abstract class BaseVarContainer implements Runnable {
         Object data = null;
         if (overlap == null) {
             data = allocateDataArray(words);
-            doMissing(fillCount, _buf, data, -1);
+            missing(fillCount, _buf, data, -1);
             if (buffers.size() == 0) {
                 buffers.add(new ContentDescriptor(_buf, pt[0], pt[1]));
             }
@@ -214,7 +278,7 @@ public abstract class BaseVarContainer implements Runnable {
             data = allocateDataArray((words < csize)?words:csize);
         }
         if (fillCount > 0) {
-            doMissing(fillCount, _buf, data, -1);
+            missing(fillCount, _buf, data, -1);
         }
         Vector locations = ((CDFImpl.DataLocator)var.getLocator()).locations;
         ByteBuffer bv;
@@ -242,9 +306,9 @@ public abstract class BaseVarContainer implements Runnable {
             }
             if (tofill > 0) {
                 if (var.missingRecordValueIsPrevious()) {
-                    doMissing(tofill, _buf, data, (blk == 0)?-1:prev);
+                    missing(tofill, _buf, data, (blk == 0)?-1:prev);
                 } else {
-                    doMissing(tofill, _buf, data,  -1);
+                    missing(tofill, _buf, data,  -1);
                 }
                 next += tofill;
                 if (next > end) {
@@ -293,9 +357,9 @@ public abstract class BaseVarContainer implements Runnable {
                     if (var.missingRecordValueIsPrevious()) {
                         int rec = (int)
                             ((long [])locations.elementAt(blk - 1))[1];
-                        doMissing(n, _buf, data, rec);
+                        missing(n, _buf, data, rec);
                     } else {
-                        doMissing(n, _buf, data,  -1);
+                        missing(n, _buf, data,  -1);
                     }
                     if (target > end) break;
                     next = first;
@@ -323,9 +387,9 @@ public abstract class BaseVarContainer implements Runnable {
         }
         if (next <= end) {
             if (var.missingRecordValueIsPrevious()) {
-                doMissing(end - next + 1, _buf, data, (next - 1));
+                missing(end - next + 1, _buf, data, (next - 1));
             } else {
-                doMissing(end - next + 1, _buf, data,  -1);
+                missing(end - next + 1, _buf, data,  -1);
             }
         }
         if (buffers.size() == 0) {
@@ -609,6 +673,25 @@ public abstract class BaseVarContainer implements Runnable {
         b.get(ba);
         return ba;
     }
+    /**
+     * Returns the values as an {@link NDArray NDArray} whose dimension 0 is
+     * the record, viewing the buffer of this container without copying.
+     * Values within a record remain in the order given by
+     * {@link Variable#rowMajority() rowMajority()} of the variable.
+     * @return
+     * @throws Throwable
+     */
+    public NDArray asNDArray() throws Throwable {
+        ByteBuffer b = getBuffer();
+        if (b == null) return null;
+        if (DataTypes.isStringType(type)) {
+            throw new Throwable("Function not supported for string variables");
+        }
+        NDArray a = NDArray.ofRecords(b, _class, var.getEffectiveDimensions(),
+            var.rowMajority());
+        return (singlePoint)?a.slice(0, 0):a;
+    }
+
     Class componentType(Object o) {
         if (!o.getClass().isArray()) return null;
         Class _cl = o.getClass();
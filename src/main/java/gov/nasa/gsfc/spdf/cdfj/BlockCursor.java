@@ -0,0 +1,149 @@
+package gov.nasa.gsfc.spdf.cdfj;
+/**
+ * Reads a variable and its time variable forward a chunk of records at a
+ * time, following the blocks of the variable. A chunk is a located block,
+ * or at most CHUNK records of an uncompressed one, so records missing from
+ * the variable are not read, unless asked for. Values of a chunk are
+ * decoded only when asked for, so chunks may be skipped by their times
+ * alone.
+ */
+final class BlockCursor {
+    /**
+     * Largest number of records of an uncompressed block read at once.
+     */
+    static final int CHUNK = 16384;
+    final CDFImpl cdf;
+    final Variable var;
+    final Variable tvar;
+    final boolean themisLike;
+    final boolean utc;
+    final boolean previous;
+    final int elements;
+    final boolean fillDefined;
+    final double fillValue;
+    final long[][] locations;
+    final int lastRecord;
+    int blk;
+    int record;
+    /**
+     * Times of the records of the current chunk, NaN where not valid.
+     */
+    double[] times;
+    /**
+     * Indices in times of the first and the last valid time.
+     */
+    int lo;
+    int hi;
+    int first;
+    double[] data;
+    boolean decoded;
+
+    /**
+     * @param utc whether TT2000 times are to be converted to milliseconds
+     * since 1970 with leap seconds removed, as for EPOCH, rather than
+     * returned in the default time instant model.
+     * @param previous whether records missing between blocks are to be
+     * read too, as chunks of at most CHUNK records taking the value of the
+     * record before them.
+     */
+    BlockCursor(CDFImpl cdf, Variable var, Variable tvar, boolean themisLike,
+        boolean utc, boolean previous) throws Throwable {
+        this.cdf = cdf;
+        this.var = var;
+        this.tvar = tvar;
+        this.themisLike = themisLike;
+        this.utc = utc && (tvar.getType() == DataTypes.CDF_TIME_TT2000);
+        this.previous = previous;
+        elements = var.getDataItemSize()/DataTypes.size[var.getType()];
+        double[] fill = (double[])Extractor.getFillValue(cdf, var);
+        fillDefined = (fill[0] == 0);
+        fillValue = fill[1];
+        VariableDataLocator locator = var.getLocator();
+        locations = (locator == null)?new long[0][]:locator.getLocations();
+        lastRecord = var.getNumberOfValues() - 1;
+        record = (locations.length == 0)?0:(int)locations[0][0];
+    }
+
+    /**
+     * Moves to the next chunk having a valid time, the last of which is
+     * not earlier than from. Returns false if there is none.
+     */
+    boolean next(double from) throws Throwable {
+        while (blk < locations.length) {
+            if (locations[blk][0] > lastRecord) break;
+            int end = (int)Math.min(locations[blk][1], lastRecord);
+            if (record > end) {
+                if ((++blk < locations.length) && !previous) {
+                    record = (int)locations[blk][0];
+                }
+                continue;
+            }
+            boolean missing = (record < locations[blk][0]);
+            if (missing) end = (int)locations[blk][0] - 1;
+            int step = (var.isCompressed() && !missing)?(end - record + 1):
+                CHUNK;
+            first = record;
+            int last = (int)Math.min((long)end, (long)record + step - 1);
+            record = last + 1;
+            times = readTimes(first, last);
+            decoded = false;
+            lo = 0;
+            while ((lo < times.length) && Double.isNaN(times[lo])) lo++;
+            if (lo == times.length) continue;
+            hi = times.length - 1;
+            while (Double.isNaN(times[hi])) hi--;
+            if (times[hi] < from) continue;
+            return true;
+        }
+        times = null;
+        return false;
+    }
+
+    double[] readTimes(int first, int last) throws Throwable {
+        if (!utc) {
+            return TimeVariableFactory.getBlockTimes(cdf, tvar, themisLike,
+                new long[] {first, last}, last);
+        }
+        VDataContainer container = TimeVariableFactory.container(cdf, tvar,
+            new int[] {first, last});
+        long[] tt = new long[last - first + 1];
+        try {
+            container.getBuffer().asLongBuffer().get(tt);
+        } finally {
+            container.close();
+        }
+        TimeUtil.utcNanoSecondSince1970(tt, tt);
+        double[] t = new double[tt.length];
+        for (int i = 0; i < tt.length; i++) {
+            t[i] = (tt[i] <= Long.MIN_VALUE + 1)?Double.NaN:tt[i]/1.0e6;
+        }
+        return t;
+    }
+
+    /**
+     * Returns the values of the current chunk, record i of the chunk
+     * starting at element i*elements.
+     */
+    double[] data() throws Throwable {
+        if (decoded) return data;
+        int n = times.length*elements;
+        if ((data == null) || (data.length < n)) data = new double[n];
+        DoubleVarContainer dc = new DoubleVarContainer(cdf, var,
+            new int[] {first, first + times.length - 1}, true);
+        try {
+            dc.run();
+            dc.getBuffer().asDoubleBuffer().get(data, 0, n);
+        } finally {
+            dc.close();
+        }
+        decoded = true;
+        return data;
+    }
+
+    /**
+     * Returns whether v is a value, rather than fill.
+     */
+    boolean isValid(double v) {
+        return !Double.isNaN(v) && !(fillDefined && (v == fillValue));
+    }
+}
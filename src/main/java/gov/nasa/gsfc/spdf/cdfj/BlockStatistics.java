@@ -0,0 +1,289 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+/**
+ * Minimum, maximum and number of fill values of each block of records of
+ * a variable, as located in the file, over all values of the records.
+ * Statistics let {@link GenericReader#findRecords(String, ValuePredicate)
+ * findRecords} skip blocks that cannot contain a matching record.
+ * <p>
+ * Statistics of a block are computed once, on first use, and are kept by
+ * the reader. They may be saved to a sidecar file with
+ * {@link GenericReader#saveBlockStatistics(String) saveBlockStatistics}
+ * and read back by another reader of the same file with
+ * {@link GenericReader#loadBlockStatistics(String) loadBlockStatistics}.
+ * A block is identified by its first and last record and its offset in
+ * the file, so statistics of blocks already in the file remain in use when
+ * records are appended to it.
+ * </p>
+ */
+public final class BlockStatistics {
+    static final int MAGIC = 0xcdf5b1c5;
+    static final int VERSION = 1;
+    final String name;
+    final int elements;
+    final boolean fillDefined;
+    final double fillValue;
+    final long[][] blocks;
+    final double[] min;
+    final double[] max;
+    final int[] fillCount;
+
+    BlockStatistics(String name, int elements, boolean fillDefined,
+        double fillValue, long[][] blocks) {
+        this.name = name;
+        this.elements = elements;
+        this.fillDefined = fillDefined;
+        this.fillValue = fillValue;
+        this.blocks = blocks;
+        min = new double[blocks.length];
+        max = new double[blocks.length];
+        fillCount = new int[blocks.length];
+    }
+
+    /**
+     * Returns the name of the variable.
+     * @return
+     */
+    public String getVariableName() {return name;}
+
+    /**
+     * Returns the number of blocks.
+     * @return
+     */
+    public int getBlockCount() {return blocks.length;}
+
+    /**
+     * Returns the first record of a block.
+     * @param blk
+     * @return
+     */
+    public int getFirstRecord(int blk) {return (int)blocks[blk][0];}
+
+    /**
+     * Returns the last record of a block.
+     * @param blk
+     * @return
+     */
+    public int getLastRecord(int blk) {return (int)blocks[blk][1];}
+
+    /**
+     * Returns the smallest valid value of a block, or NaN if it has none.
+     * @param blk
+     * @return
+     */
+    public double getMinimum(int blk) {return min[blk];}
+
+    /**
+     * Returns the largest valid value of a block, or NaN if it has none.
+     * @param blk
+     * @return
+     */
+    public double getMaximum(int blk) {return max[blk];}
+
+    /**
+     * Returns the number of values of a block which are fill value or NaN.
+     * @param blk
+     * @return
+     */
+    public int getFillCount(int blk) {return fillCount[blk];}
+
+    boolean isValid(double v) {
+        return !Double.isNaN(v) && !(fillDefined && (v == fillValue));
+    }
+
+    /**
+     * Returns the blocks of var holding records up to its last record,
+     * the last record of a block being clipped to it.
+     */
+    static long[][] blocks(Variable var) {
+        VariableDataLocator locator = var.getLocator();
+        if (locator == null) return new long[0][];
+        long[][] locations = locator.getLocations();
+        int last = var.getNumberOfValues() - 1;
+        int n = 0;
+        while ((n < locations.length) && (locations[n][0] <= last)) n++;
+        long[][] blocks = new long[n][];
+        for (int i = 0; i < n; i++) {
+            blocks[i] = new long[] {locations[i][0],
+                Math.min(locations[i][1], last), locations[i][2]};
+        }
+        return blocks;
+    }
+
+    /**
+     * Returns statistics of the current blocks of var, taking those of
+     * blocks in known, which may be null, and computing the others.
+     * If predicate is not null, records matching it are added to ranges,
+     * as runs {first, last}; blocks whose statistics are known are read
+     * only if they may contain a match.
+     */
+    static BlockStatistics scan(CDFImpl cdf, Variable var,
+        BlockStatistics known, ValuePredicate predicate, List<int[]> ranges)
+        throws Throwable {
+        double[] fill = (double[])Extractor.getFillValue(cdf, var);
+        BlockStatistics stats = new BlockStatistics(var.getName(),
+            var.getDataItemSize()/DataTypes.size[var.getType()],
+            fill[0] == 0, fill[1], blocks(var));
+        if ((known != null) && ((known.elements != stats.elements) ||
+            (known.fillDefined != stats.fillDefined) ||
+            (Double.compare(known.fillValue, stats.fillValue) != 0))) {
+            known = null;
+        }
+        int k = 0;
+        double[] data = null;
+        for (int blk = 0; blk < stats.blocks.length; blk++) {
+            long[] block = stats.blocks[blk];
+            boolean computed = false;
+            if (known != null) {
+                while ((k < known.blocks.length) &&
+                    (known.blocks[k][0] < block[0])) k++;
+                if ((k < known.blocks.length) &&
+                    Arrays.equals(known.blocks[k], block)) {
+                    stats.min[blk] = known.min[k];
+                    stats.max[blk] = known.max[k];
+                    stats.fillCount[blk] = known.fillCount[k];
+                    computed = true;
+                }
+            }
+            if (computed && ((predicate == null) ||
+                !predicate.mayMatch(stats.min[blk], stats.max[blk],
+                stats.elements))) {
+                continue;
+            }
+            double lo = Double.POSITIVE_INFINITY;
+            double hi = Double.NEGATIVE_INFINITY;
+            int fills = 0;
+            int step = var.isCompressed()?(int)(block[1] - block[0] + 1):
+                BlockCursor.CHUNK;
+            for (long r = block[0]; r <= block[1]; r += step) {
+                int first = (int)r;
+                int last = (int)Math.min(block[1], r + step - 1);
+                int n = (last - first + 1)*stats.elements;
+                if ((data == null) || (data.length < n)) data = new double[n];
+                DoubleVarContainer dc = new DoubleVarContainer(cdf, var,
+                    new int[] {first, last}, true);
+                try {
+                    dc.run();
+                    dc.getBuffer().asDoubleBuffer().get(data, 0, n);
+                } finally {
+                    dc.close();
+                }
+                if (!computed) {
+                    for (int i = 0; i < n; i++) {
+                        double v = data[i];
+                        if (!stats.isValid(v)) {
+                            fills++;
+                            continue;
+                        }
+                        if (v < lo) lo = v;
+                        if (v > hi) hi = v;
+                    }
+                }
+                if (predicate == null) continue;
+                for (int rec = first; rec <= last; rec++) {
+                    if (!predicate.matches(data, (rec - first)*stats.elements,
+                        stats.elements, stats)) continue;
+                    int[] run = ranges.isEmpty()?null:
+                        ranges.get(ranges.size() - 1);
+                    if ((run != null) && (run[1] == rec - 1)) {
+                        run[1] = rec;
+                    } else {
+                        ranges.add(new int[] {rec, rec});
+                    }
+                }
+            }
+            if (!computed) {
+                stats.min[blk] = (lo > hi)?Double.NaN:lo;
+                stats.max[blk] = (lo > hi)?Double.NaN:hi;
+                stats.fillCount[blk] = fills;
+            }
+        }
+        return stats;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeUTF(name);
+        out.writeInt(elements);
+        out.writeBoolean(fillDefined);
+        out.writeDouble(fillValue);
+        out.writeInt(blocks.length);
+        for (int i = 0; i < blocks.length; i++) {
+            for (int j = 0; j < 3; j++) out.writeLong(blocks[i][j]);
+            out.writeDouble(min[i]);
+            out.writeDouble(max[i]);
+            out.writeInt(fillCount[i]);
+        }
+    }
+
+    static BlockStatistics read(DataInputStream in) throws IOException {
+        String name = in.readUTF();
+        int elements = in.readInt();
+        boolean fillDefined = in.readBoolean();
+        double fillValue = in.readDouble();
+        long[][] blocks = new long[in.readInt()][3];
+        BlockStatistics stats = new BlockStatistics(name, elements,
+            fillDefined, fillValue, blocks);
+        for (int i = 0; i < blocks.length; i++) {
+            for (int j = 0; j < 3; j++) blocks[i][j] = in.readLong();
+            stats.min[i] = in.readDouble();
+            stats.max[i] = in.readDouble();
+            stats.fillCount[i] = in.readInt();
+        }
+        return stats;
+    }
+
+    /**
+     * Writes statistics to a file, replacing it.
+     */
+    static void save(String fname, Collection<BlockStatistics> list)
+        throws IOException {
+        File file = new File(fname);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new GZIPOutputStream(
+            new FileOutputStream(tmp), 1 << 16)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(list.size());
+            for (BlockStatistics stats : list) stats.write(out);
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to replace " + fname);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Unable to rename " + tmp + " to " +
+                fname);
+        }
+    }
+
+    /**
+     * Reads statistics written by save, returning an empty list if the
+     * file does not exist.
+     */
+    static List<BlockStatistics> load(String fname) throws IOException {
+        File file = new File(fname);
+        List<BlockStatistics> list = new ArrayList<>();
+        if (!file.exists()) return list;
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new GZIPInputStream(
+            new FileInputStream(file), 1 << 16)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(fname + " is not a block statistics " +
+                    "file.");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported block statistics " +
+                    "version " + version + " in " + fname);
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) list.add(read(in));
+            return list;
+        } catch (ZipException ex) {
+            throw new IOException(fname + " is not a block statistics " +
+                "file.");
+        }
+    }
+}
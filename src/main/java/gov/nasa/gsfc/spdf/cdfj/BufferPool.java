@@ -0,0 +1,202 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import java.nio.*;
+import java.util.*;
+
+/**
+ * Pool of direct ByteBuffers, kept in size classes of powers of two
+ * starting at 4 KB.
+ * <p>
+ * Direct memory is released only when a buffer is garbage collected, so
+ * applications that read many variables repeatedly can run out of direct
+ * memory well before the heap fills. Containers given a pool, either by
+ * {@link VDataContainer#setBufferPool(BufferPool) setBufferPool} or through
+ * {@link GenericReader#setBufferPool(BufferPool) GenericReader}, draw their
+ * buffer from it and return it when closed:
+ * </p>
+ * <pre>
+ *     try (VDataContainer.CDouble c = var.getDoubleContainer(range, false)) {
+ *         c.setBufferPool(pool);
+ *         c.run();
+ *         ...
+ *     }
+ * </pre>
+ * Buffers larger than the maximum buffer size are allocated as usual and
+ * are not retained, nor are returned buffers that would take the idle
+ * buffers held by the pool beyond the maximum pooled bytes.
+ */
+public final class BufferPool {
+    static final int MIN_SHIFT = 12;
+    final int maxBufferSize;
+    final long maxPooledBytes;
+    final FreeList[] free;
+    long pooledBytes;
+    long leasedBytes;
+    long hits;
+    long misses;
+    long releases;
+    long discards;
+
+    /**
+     * Constructs a pool that retains buffers of up to 64 MB, and up to
+     * 256 MB of idle buffers.
+     */
+    public BufferPool() {
+        this(64*1024*1024, 256L*1024*1024);
+    }
+
+    /**
+     * Constructs a pool with given limits.
+     * @param maxBufferSize largest buffer, in bytes, that is pooled,
+     * rounded up to a power of two of at least 4 KB
+     * @param maxPooledBytes largest total capacity of idle buffers held
+     */
+    public BufferPool(int maxBufferSize, long maxPooledBytes) {
+        if ((maxBufferSize <= 0) || (maxBufferSize > (1 << 30)) ||
+            (maxPooledBytes < 0)) {
+            throw new IllegalArgumentException("Invalid limits " +
+            maxBufferSize + ", " + maxPooledBytes);
+        }
+        // pooled buffers have the capacity of their size class
+        int c = sizeClass(maxBufferSize);
+        this.maxBufferSize = 1 << (MIN_SHIFT + c);
+        this.maxPooledBytes = maxPooledBytes;
+        free = new FreeList[c + 1];
+        for (int i = 0; i < free.length; i++) free[i] = new FreeList();
+    }
+
+    /**
+     * Idle buffers of one size class, most recently released first.
+     */
+    static final class FreeList {
+        final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<ByteBuffer>();
+    }
+
+    static int sizeClass(int size) {
+        if (size <= (1 << MIN_SHIFT)) return 0;
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    /**
+     * Returns a direct buffer with position 0, limit size, and big endian
+     * byte order. Its capacity may exceed size.
+     * @param size
+     * @return
+     */
+    public synchronized ByteBuffer acquire(int size) {
+        ByteBuffer buf = null;
+        if (size > maxBufferSize) {
+            misses++;
+            buf = ByteBuffer.allocateDirect(size);
+        } else {
+            int c = sizeClass(size);
+            buf = free[c].buffers.pollFirst();
+            if (buf == null) {
+                misses++;
+                buf = ByteBuffer.allocateDirect(1 << (MIN_SHIFT + c));
+            } else {
+                hits++;
+                pooledBytes -= buf.capacity();
+            }
+        }
+        leasedBytes += buf.capacity();
+        buf.clear();
+        buf.limit(size);
+        buf.order(ByteOrder.BIG_ENDIAN);
+        return buf;
+    }
+
+    /**
+     * Returns a buffer obtained from {@link #acquire(int) acquire} to the
+     * pool. The buffer, and any view of it, must not be used afterwards.
+     * @param buf
+     */
+    public synchronized void release(ByteBuffer buf) {
+        if (buf == null) return;
+        int capacity = buf.capacity();
+        releases++;
+        leasedBytes -= capacity;
+        if (!buf.isDirect() || (capacity > maxBufferSize) ||
+            (capacity < (1 << MIN_SHIFT)) ||
+            (Integer.bitCount(capacity) != 1) ||
+            (pooledBytes + capacity > maxPooledBytes)) {
+            discards++;
+            return;
+        }
+        free[sizeClass(capacity)].buffers.addFirst(buf);
+        pooledBytes += capacity;
+    }
+
+    /**
+     * Stops counting a buffer obtained from {@link #acquire(int) acquire}
+     * as leased, without retaining it, when it is handed to a caller
+     * that can not release it.
+     */
+    synchronized void forget(ByteBuffer buf) {
+        if (buf == null) return;
+        leasedBytes -= buf.capacity();
+        discards++;
+    }
+
+    /**
+     * Drops all idle buffers.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < free.length; i++) free[i].buffers.clear();
+        pooledBytes = 0;
+    }
+
+    /**
+     * Returns the largest buffer size that is pooled, a power of two.
+     * @return
+     */
+    public int getMaxBufferSize() {return maxBufferSize;}
+
+    /**
+     * Returns the largest total capacity of idle buffers held.
+     * @return
+     */
+    public long getMaxPooledBytes() {return maxPooledBytes;}
+
+    /**
+     * Returns the total capacity of idle buffers held.
+     * @return
+     */
+    public synchronized long getPooledBytes() {return pooledBytes;}
+
+    /**
+     * Returns the total capacity of buffers acquired and not yet released.
+     * @return
+     */
+    public synchronized long getLeasedBytes() {return leasedBytes;}
+
+    /**
+     * Returns the number of requests served by an idle buffer.
+     * @return
+     */
+    public synchronized long getHitCount() {return hits;}
+
+    /**
+     * Returns the number of requests that needed a new buffer.
+     * @return
+     */
+    public synchronized long getMissCount() {return misses;}
+
+    /**
+     * Returns the number of buffers released.
+     * @return
+     */
+    public synchronized long getReleaseCount() {return releases;}
+
+    /**
+     * Returns the number of released buffers that were not retained.
+     * @return
+     */
+    public synchronized long getDiscardCount() {return discards;}
+
+    @Override
+    public synchronized String toString() {
+        return "BufferPool[hits=" + hits + ", misses=" + misses +
+            ", releases=" + releases + ", discards=" + discards +
+            ", pooled=" + pooledBytes + ", leased=" + leasedBytes + "]";
+    }
+}
@@ -7,7 +7,6 @@ final class CDF2Impl extends CDFImpl implements CDF2, java.io.Serializable {
     public int OFFSET_zNumDims;
     public int VAR_OFFSET_NUM_ELEMENTS;
     public int OFFSET_NUM;
-    FileChannel fc;
     public CDF2Impl(ByteBuffer buf, int release, FileChannel  ch) throws
         Throwable {
         super(buf);
@@ -116,7 +115,7 @@ final class CDF2Impl extends CDFImpl implements CDF2, java.io.Serializable {
         try {
             _buf = getRecord(offset, MAX_STRING_SIZE);
         } catch (Throwable th) {
-            th.printStackTrace();
+            readFailed(offset, th);
             return null;
         }
         return getString(_buf, MAX_STRING_SIZE);
@@ -136,23 +135,19 @@ final class CDF2Impl extends CDFImpl implements CDF2, java.io.Serializable {
     protected ByteBuffer getRecord(long offset)  {
         if (fc == null) return super.getRecord(offset);
         ByteBuffer lenBuf = ByteBuffer.allocate(4);
-        synchronized (fc) {
-            try {
-                fc.position((long)offset + 4);
-                fc.read(lenBuf);
-                int size = lenBuf.getInt(0);
-                return getRecord(offset, size);
-            } catch (Throwable ex) {
-                ex.printStackTrace();
-                return null;
-            }
+        try {
+            read(lenBuf, offset + 4);
+            int size = lenBuf.getInt(0);
+            return getRecord(offset, size);
+        } catch (Throwable ex) {
+            readFailed(offset, ex);
+            return null;
         }
     }
 
     protected ByteBuffer getRecord(long offset, int size) throws Throwable {
         ByteBuffer bb = ByteBuffer.allocate(size);
-        fc.position((long)offset);
-        int got = fc.read(bb);
+        int got = read(bb, offset);
         if (got != size) {
             System.out.println("Needed " + size + " bytes. Got " + got);
             return null;
@@ -0,0 +1,404 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Appends records to variables of an existing CDF in place.
+ * <p>
+ * New data blocks are written at the end of the file, and linked into
+ * the variable's index by a new VXR. Only the record pointers of the
+ * VDR, the last VXR of each variable and the GDR are updated; no other
+ * existing bytes are rewritten. The cost of an append is proportional
+ * to the size of the data appended, except for files with an MD5
+ * checksum: as the updated pointers precede the end of the file, each
+ * {@link #write()} reads the whole file to compute the new checksum.
+ * </p>
+ * Only uncompressed, little endian, version 3 files can be appended to.
+ * Compressed variables must use GZIP compression.
+ * Data is buffered until {@link #write()} or {@link #close()} is called.
+ */
+public final class CDFAppender {
+    static final int VDR_OFFSET_VXRTAIL = 36;
+    static final int VDR_OFFSET_CPR = 72;
+    static final int GDR_OFFSET_EOF = 36;
+    static final int GDR_OFFSET_RMAXREC = 52;
+    static final int CDR_OFFSET_FLAGS = 40;
+    static final int CPR_OFFSET_CTYPE = 12;
+    static final int GZIP_COMPRESSION = 5;
+    final String fname;
+    final CDFImpl cdf;
+    final long gdrOffset;
+    final boolean rowMajority;
+    final boolean checksum;
+    RandomAccessFile raf;
+    FileChannel channel;
+    LinkedHashMap<String, Target> targets = new LinkedHashMap<>();
+
+    /**
+     * Opens an existing CDF for appending.
+     * @param fname
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.WriterError
+     */
+    public CDFAppender(String fname) throws CDFException.WriterError {
+        this.fname = fname;
+        CDFImpl _cdf = null;
+        try {
+            ByteBuffer magic = read(fname, 0, 8);
+            if (magic.getLong(0) != CDFFactory.CDF3_MAGIC) {
+                throw new Throwable(fname + " is not an uncompressed " +
+                "version 3 CDF.");
+            }
+            _cdf = CDFFactory.getCDF(fname);
+            cdf = _cdf;
+            if (cdf.byteOrder != ByteOrder.LITTLE_ENDIAN) {
+                throw new Throwable("Only little endian files can be " +
+                "appended to.");
+            }
+            gdrOffset = ((CDF3Impl)cdf).GDROffset;
+            rowMajority = cdf.rowMajority();
+            raf = new RandomAccessFile(fname, "rw");
+            channel = raf.getChannel();
+            checksum = (readInt(CDR_OFFSET_FLAGS) & 4) != 0;
+        } catch (CDFException.WriterError e) {
+            throw e;
+        } catch (Throwable th) {
+            close(raf);
+            close(_cdf);
+            throw new CDFException.WriterError(th.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of the last record of a variable, including
+     * records added but not yet written.
+     * @param name
+     * @return
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.WriterError
+     */
+    public int getLastRecord(String name) throws CDFException.WriterError {
+        Target target = getTarget(name);
+        int last = target.container.getLastRecord();
+        return target.base + last;
+    }
+
+    /**
+     * Appends data to a variable.
+     * @param name
+     * @param data an array whose rank is 1 greater than the rank of the
+     * variable, or a ByteOrder.LITTLE_ENDIAN ByteBuffer containing
+     * uncompressed data conforming to the majority of the file.
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.WriterError
+     * @see GenericWriter#addData(String name, Object data, int[] recordRange,
+     * boolean relax)
+     */
+    public void addData(String name, Object data) throws
+        CDFException.WriterError {
+        addData(name, data, false);
+    }
+
+    /**
+     * Appends data to a variable.
+     * @param name
+     * @param data
+     * @param relax
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.WriterError
+     * @see GenericWriter#addData(String name, Object data, int[] recordRange,
+     * boolean relax)
+     */
+    public void addData(String name, Object data, boolean relax) throws
+        CDFException.WriterError {
+        Target target = getTarget(name);
+        try {
+            target.container.addData(data, null, false, relax);
+        } catch (Throwable th) {
+            throw new CDFException.WriterError(th.getMessage());
+        }
+    }
+
+    /**
+     * Appends data, represented as a one dimensional array, to a variable.
+     * @param name
+     * @param data
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.WriterError
+     * @see GenericWriter#addOneD(String name, Object data, int[] recordRange,
+     * boolean relax)
+     */
+    public void addOneD(String name, Object data) throws
+        CDFException.WriterError {
+        Target target = getTarget(name);
+        try {
+            target.container.addData(data, null, true, false);
+        } catch (Throwable th) {
+            throw new CDFException.WriterError(th.getMessage());
+        }
+    }
+
+    /**
+     * Writes data added so far to the file.
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.WriterError
+     */
+    public void write() throws CDFException.WriterError {
+        if (channel == null) {
+            throw new CDFException.WriterError(fname + " is closed.");
+        }
+        try {
+            long end = readLong(gdrOffset + GDR_OFFSET_EOF);
+            if (end > channel.size()) end = channel.size();
+            boolean appended = false;
+            for (Target target : targets.values()) {
+                long _end = target.append(end);
+                if (_end != end) appended = true;
+                end = _end;
+            }
+            if (!appended) return;
+            writeLong(gdrOffset + GDR_OFFSET_EOF, end);
+            if (checksum) {
+                channel.write(digest(end), end);
+                end += 16;
+            }
+            channel.truncate(end);
+            channel.force(true);
+        } catch (IOException ex) {
+            throw new CDFException.WriterError(ex.getMessage());
+        }
+    }
+
+    /**
+     * Writes data added so far, and closes the file.
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.WriterError
+     */
+    public void close() throws CDFException.WriterError {
+        if (channel == null) return;
+        try {
+            write();
+        } finally {
+            close(raf);
+            close(cdf);
+            channel = null;
+        }
+    }
+
+    Target getTarget(String name) throws CDFException.WriterError {
+        Target target = targets.get(name);
+        if (target != null) return target;
+        CDFImpl.CDFVariable var = (CDFImpl.CDFVariable)cdf.getVariable(name);
+        if (var == null) {
+            throw new CDFException.WriterError("Variable " + name +
+            " is not defined.");
+        }
+        if (!var.recordVariance()) {
+            throw new CDFException.WriterError("Variable " + name +
+            " does not vary from record to record.");
+        }
+        try {
+            target = new Target(var);
+        } catch (Throwable th) {
+            throw new CDFException.WriterError(th.getMessage());
+        }
+        targets.put(name, target);
+        return target;
+    }
+
+    /**
+     * A variable to which records are appended.
+     */
+    final class Target {
+        final CDFImpl.CDFVariable var;
+        final long vdrOffset;
+        final boolean compressed;
+        final VDR vdr;
+        DataContainer container;
+        int base;
+
+        Target(CDFImpl.CDFVariable var) throws Throwable {
+            this.var = var;
+            vdrOffset = var.offset;
+            compressed = ((var.flags & 4) != 0);
+            if (compressed) {
+                long cpr = readLong(vdrOffset + VDR_OFFSET_CPR);
+                int ctype = readInt(cpr + CPR_OFFSET_CTYPE);
+                if (ctype != GZIP_COMPRESSION) {
+                    throw new Throwable("Variable " + var.getName() +
+                    " is compressed with unsupported compression " + ctype);
+                }
+            }
+            int[] dim = var.getDimensions();
+            boolean[] varys = var.getVarys();
+            if (var.getType() == DataTypes.EPOCH16) {
+                dim = new int[0];
+                varys = new boolean[0];
+            }
+            vdr = new VDR(var.getName(), var.getType(), dim, varys, true,
+                false, null, var.getNumberOfElements(),
+                SparseRecordOption.NONE);
+            base = readInt(vdrOffset + CDF3.OFFSET_MAXREC) + 1;
+            container = new DataContainer(vdr, rowMajority);
+        }
+
+        /**
+         * Writes pending data starting at the given file position, links
+         * it to the index of the variable, and returns the position
+         * following the data written.
+         */
+        long append(long end) throws IOException {
+            DataContainer dc = container;
+            int n = dc.bufs.size();
+            if (n == 0) return end;
+            int[] first = new int[n];
+            int[] last = new int[n];
+            long[] offsets = new long[n];
+            for (int i = 0; i < n; i++) {
+                first[i] = base + dc.firstRecords.get(i);
+                last[i] = base + dc.lastRecords.get(i);
+                ByteBuffer data = dc.bufs.get(i).duplicate();
+                if (compressed) data = gzip(data);
+                int len = data.remaining();
+                ByteBuffer header;
+                if (compressed) {
+                    header = ByteBuffer.allocate(DataContainer.CVVR_PREAMBLE);
+                    header.putLong(DataContainer.CVVR_PREAMBLE + len);
+                    header.putInt(CDFImpl.CVVR_RECORD_TYPE);
+                    header.putInt(0);
+                    header.putLong(len);
+                } else {
+                    header = ByteBuffer.allocate(DataContainer.VVR_PREAMBLE);
+                    header.putLong(DataContainer.VVR_PREAMBLE + len);
+                    header.putInt(CDFImpl.VVR_RECORD_TYPE);
+                }
+                header.flip();
+                offsets[i] = end;
+                end = write(header, end);
+                end = write(data, end);
+            }
+            ByteBuffer vxr = ByteBuffer.allocate(28 + 16*n);
+            vxr.putLong(vxr.capacity());
+            vxr.putInt(CDFImpl.VXR_RECORD_TYPE);
+            vxr.putLong(0);
+            vxr.putInt(n);
+            vxr.putInt(n);
+            for (int i = 0; i < n; i++) vxr.putInt(first[i]);
+            for (int i = 0; i < n; i++) vxr.putInt(last[i]);
+            for (int i = 0; i < n; i++) vxr.putLong(offsets[i]);
+            vxr.flip();
+            long vxrOffset = end;
+            end = write(vxr, end);
+            // link the new VXR after the last one, as given by the VDR
+            long head = readLong(vdrOffset + CDF3.OFFSET_FIRST_VXR);
+            if (head == 0) {
+                writeLong(vdrOffset + CDF3.OFFSET_FIRST_VXR, vxrOffset);
+            } else {
+                long tail = readLong(vdrOffset + VDR_OFFSET_VXRTAIL);
+                if (tail == 0) tail = head;
+                writeLong(tail + CDF3.OFFSET_NEXT_VXR, vxrOffset);
+            }
+            writeLong(vdrOffset + VDR_OFFSET_VXRTAIL, vxrOffset);
+            int maxRec = last[n - 1];
+            writeInt(vdrOffset + CDF3.OFFSET_MAXREC, maxRec);
+            if (var.isTypeR()) {
+                if (readInt(gdrOffset + GDR_OFFSET_RMAXREC) < maxRec) {
+                    writeInt(gdrOffset + GDR_OFFSET_RMAXREC, maxRec);
+                }
+            }
+            base = maxRec + 1;
+            container = new DataContainer(vdr, rowMajority);
+            return end;
+        }
+    }
+
+    static ByteBuffer gzip(ByteBuffer data) throws IOException {
+        byte[] uncompressed = new byte[data.remaining()];
+        data.get(uncompressed);
+        ByteArrayOutputStream baos =
+            new ByteArrayOutputStream(uncompressed.length);
+        GZIPOutputStream gzos = new GZIPOutputStream(baos);
+        gzos.write(uncompressed, 0, uncompressed.length);
+        gzos.finish();
+        return ByteBuffer.wrap(baos.toByteArray());
+    }
+
+    long write(ByteBuffer buf, long pos) throws IOException {
+        while (buf.remaining() > 0) {
+            pos += channel.write(buf, pos);
+        }
+        return pos;
+    }
+
+    int readInt(long pos) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4);
+        FileDataBlock.Source.read(channel, buf, pos);
+        return buf.getInt(0);
+    }
+
+    long readLong(long pos) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        FileDataBlock.Source.read(channel, buf, pos);
+        return buf.getLong(0);
+    }
+
+    void writeInt(long pos, int value) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4);
+        buf.putInt(0, value);
+        write(buf, pos);
+    }
+
+    void writeLong(long pos, long value) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        buf.putLong(0, value);
+        write(buf, pos);
+    }
+
+    /**
+     * Returns the MD5 digest of the first end bytes of the file. It can
+     * not be carried over from one write to the next, as appending
+     * rewrites pointers before the previous end of the file.
+     */
+    ByteBuffer digest(long end) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException nsa) {
+            throw new IOException(nsa.getMessage());
+        }
+        ByteBuffer buf = ByteBuffer.allocate(1024*1024);
+        long pos = 0;
+        while (pos < end) {
+            buf.clear();
+            if (end - pos < buf.capacity()) buf.limit((int)(end - pos));
+            int n = channel.read(buf, pos);
+            if (n < 0) throw new IOException("Unexpected end of data");
+            md.update(buf.array(), 0, n);
+            pos += n;
+        }
+        return ByteBuffer.wrap(md.digest());
+    }
+
+    static ByteBuffer read(String fname, long pos, int len) throws
+        IOException {
+        try (RandomAccessFile file = new RandomAccessFile(fname, "r")) {
+            ByteBuffer buf = ByteBuffer.allocate(len);
+            FileDataBlock.Source.read(file.getChannel(), buf, pos);
+            return buf;
+        }
+    }
+
+    static void close(RandomAccessFile file) {
+        if (file == null) return;
+        try {
+            file.close();
+        } catch (IOException ex) {
+        }
+    }
+
+    static void close(CDFImpl cdf) {
+        if (cdf == null) return;
+        try {
+            cdf.close();
+        } catch (IOException ex) {
+        }
+    }
+}
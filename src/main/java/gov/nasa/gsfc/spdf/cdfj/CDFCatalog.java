@@ -0,0 +1,693 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.*;
+import java.util.zip.*;
+import java.lang.reflect.Array;
+/**
+ * CDFCatalog is an inventory of the CDF files in a directory tree: for each
+ * file, its variables with their types, dimensions and key ISTP attributes,
+ * selected global attributes, and the first and last valid time of each
+ * time variable.
+ * <p>
+ * Files are scanned in parallel by a bounded number of threads. Each file is
+ * read through a channel without mapping it; only the metadata records and
+ * the first and last blocks of time variables are read, and the file is
+ * closed as soon as its entry is built. Files that cannot be read are
+ * recorded in {@link #getErrors() getErrors} and do not stop the scan.
+ * </p>
+ * <p>
+ * Entries are ordered by start time, then by path. A catalog may be saved
+ * to a compact index file and loaded back, and a rescan can reuse the
+ * entries of an earlier catalog for files whose size and modification time
+ * have not changed:
+ * </p>
+ * <pre>
+ *     CDFCatalog catalog = CDFCatalog.scan("/data/mms", ".*\\.cdf", 8,
+ *         CDFCatalog.load("mms.idx"));
+ *     catalog.save("mms.idx");
+ *     List&lt;CDFCatalog.Entry&gt; files = catalog.select("Epoch",
+ *         new int[] {2020, 1, 1}, new int[] {2020, 1, 2});
+ * </pre>
+ * Times are in the units of the default {@link TimeInstantModel time instant
+ * model}, as in {@link AggregateCDFReader}.
+ */
+public final class CDFCatalog {
+    static final int MAGIC = 0xcdfca7a1;
+    static final int VERSION = 1;
+    static int preamble = 3000;
+
+    /**
+     * Variable attributes recorded in the catalog.
+     */
+    public static final String[] VARIABLE_ATTRIBUTES = {"FIELDNAM",
+        "CATDESC", "VAR_TYPE", "DEPEND_0", "DEPEND_1", "DEPEND_2",
+        "DEPEND_3", "DEPEND_TIME", "UNITS", "FILLVAL"};
+
+    /**
+     * Global attributes recorded in the catalog.
+     */
+    public static final String[] GLOBAL_ATTRIBUTES = {"Project",
+        "Source_name", "Discipline", "Data_type", "Descriptor",
+        "Logical_source", "Mission_group", "Instrument_type",
+        "Data_version"};
+
+    final Entry[] entries;
+    final Map<String, String> errors;
+
+    CDFCatalog(Collection<Entry> entries, Map<String, String> errors) {
+        this.entries = entries.toArray(new Entry[entries.size()]);
+        Arrays.sort(this.entries);
+        this.errors = Collections.unmodifiableMap(
+            new TreeMap<String, String>(errors));
+    }
+
+    /**
+     * Scans a directory tree for CDF files whose names match the given
+     * regular expression, using the given number of threads.
+     * @param dir top directory
+     * @param pattern regular expression for file names
+     * @param nthreads number of threads
+     * @return
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError if dir
+     * is not a directory, or the scan is interrupted.
+     */
+    public static CDFCatalog scan(String dir, String pattern, int nthreads)
+        throws CDFException.ReaderError {
+        return scan(dir, pattern, nthreads, null);
+    }
+
+    /**
+     * Scans a directory tree for CDF files whose names match the given
+     * regular expression, using the given number of threads. Entries of
+     * previous for files whose size and modification time are unchanged
+     * are reused without opening the file.
+     * @param dir top directory
+     * @param pattern regular expression for file names
+     * @param nthreads number of threads
+     * @param previous an earlier catalog, may be null
+     * @return
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError if dir
+     * is not a directory, or the scan is interrupted.
+     */
+    public static CDFCatalog scan(String dir, String pattern, int nthreads,
+        CDFCatalog previous) throws CDFException.ReaderError {
+        File top = new File(dir);
+        if (!top.isDirectory()) {
+            throw new CDFException.ReaderError(dir + " is not a directory.");
+        }
+        final Pattern p = Pattern.compile(pattern);
+        final Map<String, Entry> known = new HashMap<>();
+        if (previous != null) {
+            for (int i = 0; i < previous.entries.length; i++) {
+                known.put(previous.entries[i].path, previous.entries[i]);
+            }
+        }
+        final Queue<Entry> found = new ConcurrentLinkedQueue<>();
+        final Map<String, String> errors = new ConcurrentHashMap<>();
+        int n = (nthreads < 1)?1:nthreads;
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(n, n, 0L,
+            TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(4*n),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "cdfj-catalog");
+                    t.setDaemon(true);
+                    return t;
+                }
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            Deque<File> dirs = new ArrayDeque<>();
+            dirs.push(top);
+            while (!dirs.isEmpty()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CDFException.ReaderError("Interrupted.");
+                }
+                File[] list = dirs.pop().listFiles();
+                if (list == null) continue;
+                Arrays.sort(list);
+                for (int i = list.length - 1; i >= 0; i--) {
+                    final File f = list[i];
+                    if (f.isDirectory()) {
+                        dirs.push(f);
+                        continue;
+                    }
+                    if (!p.matcher(f.getName()).matches()) continue;
+                    final Entry old = known.get(f.getPath());
+                    if ((old != null) && (old.size == f.length()) &&
+                        (old.lastModified == f.lastModified())) {
+                        found.add(old);
+                        continue;
+                    }
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                found.add(read(f));
+                            } catch (Throwable th) {
+                                errors.put(f.getPath(), String.valueOf(
+                                    th.getMessage()));
+                            }
+                        }
+                    });
+                }
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CDFException.ReaderError("Interrupted.");
+        } finally {
+            executor.shutdownNow();
+        }
+        return new CDFCatalog(found, errors);
+    }
+
+    /**
+     * Returns the catalog entry for a single file.
+     * @param fname
+     * @return
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     */
+    public static Entry getEntry(String fname) throws
+        CDFException.ReaderError {
+        try {
+            return read(new File(fname));
+        } catch (Throwable th) {
+            throw new CDFException.ReaderError(fname + ": " + th.getMessage());
+        }
+    }
+
+    static Entry read(File file) throws Throwable {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long len = raf.length();
+            if (len > preamble) len = preamble;
+            byte[] ba = new byte[(int)len];
+            raf.readFully(ba);
+            CDFImpl cdf = ReaderFactory.getVersion(ByteBuffer.wrap(ba),
+                raf.getChannel());
+            if (cdf == null) throw new Throwable("Not a CDF file.");
+            CDFReader rdr = new CDFReader();
+            rdr.setImpl(cdf);
+            return new Entry(file, rdr);
+        }
+    }
+
+    /**
+     * Returns the entries of this catalog, ordered by start time.
+     * @return
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(Arrays.asList(entries));
+    }
+
+    /**
+     * Returns the number of entries.
+     * @return
+     */
+    public int size() {return entries.length;}
+
+    /**
+     * Returns a map of path to error message for files that could not be
+     * read during the scan.
+     * @return
+     */
+    public Map<String, String> getErrors() {return errors;}
+
+    /**
+     * Returns the entries of files which have data in the given time range.
+     * @param startTime a 3 to 7 element int[], containing year,
+     * month (January is 1), day, hour, minute, second and millisecond.
+     * May be null, in which case the range is open at the start.
+     * @param stopTime a 3 to 7 element int[], containing year,
+     * month (January is 1), day, hour, minute, second and millisecond.
+     * May be null, in which case the range is open at the end.
+     * @return
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     */
+    public List<Entry> select(int[] startTime, int[] stopTime) throws
+        CDFException.ReaderError {
+        return select(null, startTime, stopTime);
+    }
+
+    /**
+     * Returns the entries of files which contain the variable and have
+     * data for it in the given time range.
+     * @param varName variable name, or null for any variable
+     * @param startTime a 3 to 7 element int[], containing year,
+     * month (January is 1), day, hour, minute, second and millisecond.
+     * May be null, in which case the range is open at the start.
+     * @param stopTime a 3 to 7 element int[], containing year,
+     * month (January is 1), day, hour, minute, second and millisecond.
+     * May be null, in which case the range is open at the end.
+     * @return
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     */
+    public List<Entry> select(String varName, int[] startTime,
+        int[] stopTime) throws CDFException.ReaderError {
+        Vector<Entry> selected = new Vector<>();
+        try {
+            for (int i = 0; i < entries.length; i++) {
+                double[] extent = (varName == null)?entries[i].getExtent():
+                    entries[i].getExtent(varName);
+                if (extent == null) continue;
+                boolean tt2000 = (extent[2] != 0);
+                if (startTime != null) {
+                    if (extent[1] < AggregateCDFReader.toMilliSecond(
+                        startTime, tt2000)) continue;
+                }
+                if (stopTime != null) {
+                    if (extent[0] >= AggregateCDFReader.toMilliSecond(
+                        stopTime, tt2000)) continue;
+                }
+                selected.add(entries[i]);
+            }
+        } catch (Throwable th) {
+            throw new CDFException.ReaderError(th.getMessage());
+        }
+        return selected;
+    }
+
+    /**
+     * Writes this catalog to a file.
+     * @param fname
+     * @throws IOException
+     */
+    public void save(String fname) throws IOException {
+        File file = new File(fname);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new GZIPOutputStream(
+            new FileOutputStream(tmp), 1 << 16)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.length);
+            for (int i = 0; i < entries.length; i++) {
+                entries[i].write(out);
+            }
+            out.writeInt(errors.size());
+            for (Map.Entry<String, String> e : errors.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeUTF(clip(e.getValue()));
+            }
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to replace " + fname);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Unable to rename " + tmp + " to " +
+                fname);
+        }
+    }
+
+    /**
+     * Reads a catalog written by {@link #save(String) save}.
+     * @param fname
+     * @return the catalog, or null if the file does not exist.
+     * @throws IOException if the file is not a catalog
+     */
+    public static CDFCatalog load(String fname) throws IOException {
+        File file = new File(fname);
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new GZIPInputStream(
+            new FileInputStream(file), 1 << 16)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(fname + " is not a CDF catalog.");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported catalog version " +
+                    version + " in " + fname);
+            }
+            int n = in.readInt();
+            Vector<Entry> list = new Vector<>(n);
+            for (int i = 0; i < n; i++) list.add(new Entry(in));
+            int nerr = in.readInt();
+            Map<String, String> errors = new HashMap<>();
+            for (int i = 0; i < nerr; i++) {
+                errors.put(in.readUTF(), in.readUTF());
+            }
+            return new CDFCatalog(list, errors);
+        } catch (ZipException ex) {
+            throw new IOException(fname + " is not a CDF catalog.");
+        }
+    }
+
+    static String clip(String s) {
+        return (s.length() > 8192)?s.substring(0, 8192):s;
+    }
+
+    static String toString(Object value) {
+        if (value == null) return null;
+        if (value instanceof String) return (String)value;
+        if (value instanceof String[]) {
+            String[] sa = (String[])value;
+            return (sa.length == 0)?null:sa[0];
+        }
+        if (!value.getClass().isArray()) return value.toString();
+        StringBuilder sb = new StringBuilder();
+        int n = Array.getLength(value);
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(Array.get(value, i));
+        }
+        return sb.toString();
+    }
+
+    static void writeMap(DataOutputStream out, Map<String, String> map)
+        throws IOException {
+        out.writeShort(map.size());
+        for (Map.Entry<String, String> e : map.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeUTF(e.getValue());
+        }
+    }
+
+    static Map<String, String> readMap(DataInputStream in) throws
+        IOException {
+        int n = in.readUnsignedShort();
+        Map<String, String> map = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) map.put(in.readUTF(), in.readUTF());
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Catalog entry for a CDF file.
+     */
+    public static final class Entry implements Comparable<Entry> {
+        final String path;
+        final long size;
+        final long lastModified;
+        final Map<String, String> globals;
+        final VariableEntry[] variables;
+        final Map<String, double[]> extents;
+        final double[] extent;
+
+        Entry(File file, CDFReader rdr) throws Throwable {
+            path = file.getPath();
+            size = file.length();
+            lastModified = file.lastModified();
+            Map<String, String> _globals = new LinkedHashMap<>();
+            for (int i = 0; i < GLOBAL_ATTRIBUTES.length; i++) {
+                String s = CDFCatalog.toString(
+                    rdr.getAttribute(GLOBAL_ATTRIBUTES[i]));
+                if (s != null) _globals.put(GLOBAL_ATTRIBUTES[i], clip(s));
+            }
+            globals = Collections.unmodifiableMap(_globals);
+            String[] names = rdr.getVariableNames();
+            variables = new VariableEntry[names.length];
+            Map<String, double[]> _extents = new LinkedHashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                variables[i] = new VariableEntry(rdr, names[i]);
+            }
+            CDFImpl cdf = rdr.thisCDF;
+            for (int i = 0; i < names.length; i++) {
+                Variable var = cdf.getVariable(names[i]);
+                if (var.getNumberOfValues() == 0) continue;
+                boolean themisLike = false;
+                if (!isTimeType(var.getType())) {
+                    // unix time variables are only known through
+                    // DEPEND_TIME
+                    if (!isDependTime(names[i])) continue;
+                    themisLike = true;
+                }
+                double[] tr = TimeVariableFactory.getValidTimeRange(cdf, var,
+                    themisLike, var.getNumberOfValues() - 1);
+                if (tr == null) continue;
+                boolean tt2000 = (var.getType() == DataTypes.CDF_TIME_TT2000);
+                _extents.put(names[i], new double[] {tr[0], tr[1],
+                    tt2000?1:0});
+            }
+            extents = Collections.unmodifiableMap(_extents);
+            extent = union(extents.values());
+        }
+
+        Entry(DataInputStream in) throws IOException {
+            path = in.readUTF();
+            size = in.readLong();
+            lastModified = in.readLong();
+            globals = readMap(in);
+            int n = in.readInt();
+            variables = new VariableEntry[n];
+            for (int i = 0; i < n; i++) variables[i] = new VariableEntry(in);
+            n = in.readInt();
+            Map<String, double[]> _extents = new LinkedHashMap<>();
+            for (int i = 0; i < n; i++) {
+                String name = in.readUTF();
+                double first = in.readDouble();
+                double last = in.readDouble();
+                double tt2000 = in.readBoolean()?1:0;
+                _extents.put(name, new double[] {first, last, tt2000});
+            }
+            extents = Collections.unmodifiableMap(_extents);
+            extent = union(extents.values());
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(path);
+            out.writeLong(size);
+            out.writeLong(lastModified);
+            writeMap(out, globals);
+            out.writeInt(variables.length);
+            for (int i = 0; i < variables.length; i++) {
+                variables[i].write(out);
+            }
+            out.writeInt(extents.size());
+            for (Map.Entry<String, double[]> e : extents.entrySet()) {
+                double[] x = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeDouble(x[0]);
+                out.writeDouble(x[1]);
+                out.writeBoolean(x[2] != 0);
+            }
+        }
+
+        static boolean isTimeType(int type) {
+            return (type == CDFTimeType.EPOCH.getValue()) ||
+                (type == CDFTimeType.EPOCH16.getValue()) ||
+                (type == CDFTimeType.TT2000.getValue());
+        }
+
+        boolean isDependTime(String name) {
+            for (int i = 0; i < variables.length; i++) {
+                if (name.equals(variables[i].attributes.get("DEPEND_TIME"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        static double[] union(Collection<double[]> list) {
+            double[] u = null;
+            for (double[] x : list) {
+                if (u == null) {
+                    u = x.clone();
+                    continue;
+                }
+                if (x[0] < u[0]) u[0] = x[0];
+                if (x[1] > u[1]) u[1] = x[1];
+            }
+            return u;
+        }
+
+        /**
+         * Returns the path of the file.
+         * @return
+         */
+        public String getPath() {return path;}
+
+        /**
+         * Returns the size of the file when it was scanned.
+         * @return
+         */
+        public long getSize() {return size;}
+
+        /**
+         * Returns the modification time of the file when it was scanned.
+         * @return
+         */
+        public long getLastModified() {return lastModified;}
+
+        /**
+         * Returns the recorded global attributes, as name to value of the
+         * first entry.
+         * @return
+         */
+        public Map<String, String> getGlobalAttributes() {return globals;}
+
+        /**
+         * Returns the variables of the file.
+         * @return
+         */
+        public List<VariableEntry> getVariables() {
+            return Collections.unmodifiableList(Arrays.asList(variables));
+        }
+
+        /**
+         * Returns the named variable, or null if the file does not
+         * contain it.
+         * @param name
+         * @return
+         */
+        public VariableEntry getVariable(String name) {
+            for (int i = 0; i < variables.length; i++) {
+                if (variables[i].name.equals(name)) return variables[i];
+            }
+            return null;
+        }
+
+        /**
+         * Returns the names of time variables with valid times.
+         * @return
+         */
+        public Set<String> getTimeVariableNames() {return extents.keySet();}
+
+        /**
+         * Returns {first, last, isTT2000} over all time variables of the
+         * file, or null if the file has no valid times.
+         * @return
+         */
+        public double[] getExtent() {
+            return (extent == null)?null:extent.clone();
+        }
+
+        /**
+         * Returns {first, last, isTT2000} for the time variable of the
+         * named variable, or for the named time variable; null if the file
+         * does not contain the variable, or it has no valid times.
+         * @param name
+         * @return
+         */
+        public double[] getExtent(String name) {
+            double[] x = extents.get(name);
+            if (x != null) return x.clone();
+            VariableEntry v = getVariable(name);
+            if (v == null) return null;
+            String tname = v.attributes.get("DEPEND_TIME");
+            if (tname == null) tname = v.attributes.get("DEPEND_0");
+            if ((tname == null) && extents.containsKey("Epoch")) {
+                tname = "Epoch";
+            }
+            if (tname == null) return null;
+            x = extents.get(tname);
+            return (x == null)?null:x.clone();
+        }
+
+        @Override
+        public int compareTo(Entry e) {
+            double s0 = (extent == null)?Double.POSITIVE_INFINITY:extent[0];
+            double s1 = (e.extent == null)?Double.POSITIVE_INFINITY:
+                e.extent[0];
+            int c = Double.compare(s0, s1);
+            return (c != 0)?c:path.compareTo(e.path);
+        }
+
+        @Override
+        public String toString() {
+            return path + " " + variables.length + " variables" +
+                ((extent == null)?"":(" [" + extent[0] + ", " + extent[1] +
+                "]"));
+        }
+    }
+
+    /**
+     * Catalog entry for a variable.
+     */
+    public static final class VariableEntry {
+        final String name;
+        final int type;
+        final int[] dimensions;
+        final int numberOfValues;
+        final boolean recordVariance;
+        final Map<String, String> attributes;
+
+        VariableEntry(CDFReader rdr, String name) throws Throwable {
+            this.name = name;
+            type = rdr.getType(name);
+            dimensions = rdr.getDimensions(name);
+            numberOfValues = rdr.getNumberOfValues(name);
+            recordVariance = rdr.recordVariance(name);
+            Map<String, String> _attributes = new LinkedHashMap<>();
+            for (int i = 0; i < VARIABLE_ATTRIBUTES.length; i++) {
+                List<?> values = (List<?>)rdr.getAttribute(name,
+                    VARIABLE_ATTRIBUTES[i]);
+                if ((values == null) || (values.size() == 0)) continue;
+                String s = CDFCatalog.toString(values.get(0));
+                if (s != null) {
+                    _attributes.put(VARIABLE_ATTRIBUTES[i], clip(s));
+                }
+            }
+            attributes = Collections.unmodifiableMap(_attributes);
+        }
+
+        VariableEntry(DataInputStream in) throws IOException {
+            name = in.readUTF();
+            type = in.readInt();
+            dimensions = new int[in.readUnsignedByte()];
+            for (int i = 0; i < dimensions.length; i++) {
+                dimensions[i] = in.readInt();
+            }
+            numberOfValues = in.readInt();
+            recordVariance = in.readBoolean();
+            attributes = readMap(in);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(name);
+            out.writeInt(type);
+            out.writeByte(dimensions.length);
+            for (int i = 0; i < dimensions.length; i++) {
+                out.writeInt(dimensions[i]);
+            }
+            out.writeInt(numberOfValues);
+            out.writeBoolean(recordVariance);
+            writeMap(out, attributes);
+        }
+
+        /**
+         * Returns the name of the variable.
+         * @return
+         */
+        public String getName() {return name;}
+
+        /**
+         * Returns the CDF data type of the variable.
+         * @return
+         */
+        public int getType() {return type;}
+
+        /**
+         * Returns the dimensions of the variable.
+         * @return
+         */
+        public int[] getDimensions() {return dimensions.clone();}
+
+        /**
+         * Returns the number of records of the variable.
+         * @return
+         */
+        public int getNumberOfValues() {return numberOfValues;}
+
+        /**
+         * Returns whether the variable varies from record to record.
+         * @return
+         */
+        public boolean recordVariance() {return recordVariance;}
+
+        /**
+         * Returns the recorded attributes, as name to value of the first
+         * entry.
+         * @return
+         */
+        public Map<String, String> getAttributes() {return attributes;}
+
+        @Override
+        public String toString() {
+            return name + " " + type + " " + Arrays.toString(dimensions) +
+                " " + numberOfValues;
+        }
+    }
+}
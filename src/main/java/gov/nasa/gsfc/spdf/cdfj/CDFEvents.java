@@ -0,0 +1,51 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+/**
+ * Hooks for Java Flight Recorder events.
+ * This version, used on Java 8, records nothing. On Java 11 and later,
+ * the version in the multi-release jar emits the events of category cdfj:
+ * open, VXR traversal, block inflation, container fill, variable layout
+ * and write.
+ * <p>
+ * Each begin method returns an opaque handle, null if the event is not
+ * enabled, to be passed to the corresponding end method.
+ * </p>
+ */
+final class CDFEvents {
+    private CDFEvents() {
+    }
+
+    static Object beginOpen() {return null;}
+
+    static void endOpen(Object event, String source, long bytes) {
+    }
+
+    static Object beginLocator() {return null;}
+
+    static void endLocator(Object event, CDFImpl cdf, String variable,
+        int vxrs, int blocks) {
+    }
+
+    static Object beginInflate() {return null;}
+
+    static void endInflate(Object event, CDFImpl cdf, long offset,
+        long compressedBytes, long bytes) {
+    }
+
+    static Object beginFill() {return null;}
+
+    static void endFill(Object event, CDFImpl cdf, String variable,
+        int first, int last, int paddedRecords, long bytes) {
+    }
+
+    static Object beginLayout() {return null;}
+
+    static void endLayout(Object event, String variable, boolean compressed,
+        long bytes) {
+    }
+
+    static Object beginWrite() {return null;}
+
+    static void endWrite(Object event, String destination, long bytes) {
+    }
+}
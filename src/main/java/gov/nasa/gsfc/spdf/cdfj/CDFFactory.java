@@ -44,16 +44,27 @@ public final class CDFFactory {
      * creates  CDFImpl object from a byte array.
      */
     static CDFImpl getCDF(byte [] ba) throws Throwable {
+        long start = System.nanoTime();
+        Object event = CDFEvents.beginOpen();
+        CDFImpl cdf = getVersion(copy(ba));
+        opened(event, start, "byte[]", ba.length);
+        return cdf;
+    }
+
+    static ByteBuffer copy(byte [] ba) {
         ByteBuffer buf;
         synchronized (ba) {
             buf = ByteBuffer.allocateDirect(ba.length);
             buf.put(ba);
         }
         buf.flip();
-        return getVersion(buf);
+        return buf;
     }
 
     static CDFImpl getCDF(ByteBuffer buf) throws Throwable {
+        long start = System.nanoTime();
+        Object event = CDFEvents.beginOpen();
+        int bytes = buf.remaining();
         ByteBuffer rbuf;
         synchronized (buf) {
             ByteBuffer _buf = ByteBuffer.allocateDirect(buf.remaining());
@@ -62,7 +73,19 @@ public final class CDFFactory {
             rbuf = _buf.asReadOnlyBuffer();
             rbuf.order(buf.order());
         }
-        return getVersion(rbuf);
+        CDFImpl cdf = getVersion(rbuf);
+        opened(event, start, "ByteBuffer", bytes);
+        return cdf;
+    }
+
+    /**
+     * Reports an open begun at start (System.nanoTime()) to CDFMetrics,
+     * and ends the open event returned by CDFEvents.beginOpen().
+     */
+    static void opened(Object event, long start, String source, long bytes) {
+        CDFMetrics.getInstance().cdfOpened(source, bytes,
+            System.nanoTime() - start);
+        CDFEvents.endOpen(event, source, bytes);
     }
 
     static CDFImpl getVersion(ByteBuffer buf) throws Throwable {
@@ -112,6 +135,8 @@ public final class CDFFactory {
 
     static CDFImpl getCDF(final String fname, final boolean option)
         throws Throwable {
+        long start = System.nanoTime();
+        Object event = CDFEvents.beginOpen();
         clean();
         File file = new File(fname);
         final String _fname = file.getPath();
@@ -134,12 +159,15 @@ public final class CDFFactory {
             public boolean isFile() {return true;};
         });
         cdfMap.put(cdf, _fname);
+        opened(event, start, _fname, buf.capacity());
         return cdf;
     }
     /**
      * creates  CDFImpl object from a URL.
      */
     static CDFImpl getCDF(URL url) throws Throwable {
+        long start = System.nanoTime();
+        Object event = CDFEvents.beginOpen();
         final String _url = url.toString();
         URLConnection con = new CDFUrl(url).openConnection();
         int remaining = con.getContentLength();
@@ -151,13 +179,14 @@ public final class CDFFactory {
             offset += got;
             remaining -= got;
         }
-        CDFImpl cdf = getCDF(ba);
+        CDFImpl cdf = getVersion(copy(ba));
         cdf.setSource(new CDFSource() {
             @Override
             public String getName() {return _url;};
             @Override
             public boolean isFile() {return false;};
         });
+        opened(event, start, _url, ba.length);
         return cdf;
     }
     static ByteBuffer uncompressed(ByteBuffer buf, int version) {
@@ -2,6 +2,7 @@ package gov.nasa.gsfc.spdf.cdfj;
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.*;
+import java.nio.channels.*;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -71,11 +72,17 @@ import java.util.zip.*;
     int[] rDimSizes;
     int lastLeapSecondId;
 
-    transient ByteBuffer buf;
+    transient volatile ByteBuffer buf;
+    /**
+     * Channel to read records from, for CDFs that are not held in buf.
+     */
+    transient volatile FileChannel fc;
+    transient volatile BufferPool bufferPool;
     protected String[] varNames;
-    protected Hashtable variableTable;
-    private HashMap<Integer,CDFVariable> ivariableTable;
-    Hashtable attributeTable;
+    long[] lastVDR = new long[2];
+    protected Map<String, CDFVariable> variableTable;
+    private Map<Integer,CDFVariable> ivariableTable;
+    Map<String, CDFAttribute> attributeTable;
     protected CDFCore thisCDF;
     protected CDFFactory.CDFSource source;
     protected CDFFactory.ProcessingOption processingOption;
@@ -92,6 +99,66 @@ import java.util.zip.*;
         return _buf.slice();
     }
 
+    /**
+     * Reads from fc at the given position into bb, until bb is full or the
+     * end of the file is reached. The position of the channel is not used,
+     * so that concurrent reads do not interfere.
+     * Returns the number of bytes read.
+     */
+    int read(ByteBuffer bb, long pos) throws IOException {
+        FileChannel ch = fc;
+        int start = bb.position();
+        try {
+            return read(ch, bb, pos);
+        } catch (ClosedChannelException ex) {
+            // A thread interrupted while reading closes the channel for all
+            // threads. Other threads reopen it and carry on.
+            if (Thread.currentThread().isInterrupted()) throw ex;
+            bb.position(start);
+            return read(reopen(ch), bb, pos);
+        }
+    }
+
+    /**
+     * Logs the failure to read the record at offset. A read abandoned
+     * because the reading thread was interrupted is not an error.
+     */
+    static void readFailed(long offset, Throwable th) {
+        if (th instanceof ClosedByInterruptException) {
+            LOGGER.log(Level.FINE, "read at {0} interrupted", offset);
+            return;
+        }
+        LOGGER.log(Level.WARNING, "cannot read record at " + offset, th);
+    }
+
+    static int read(FileChannel ch, ByteBuffer bb, long pos) throws
+        IOException {
+        int got = 0;
+        while (bb.hasRemaining()) {
+            int n = ch.read(bb, pos + got);
+            if (n < 0) break;
+            got += n;
+        }
+        return got;
+    }
+
+    synchronized FileChannel reopen(FileChannel closed) throws IOException {
+        if (fc != closed) return fc;
+        if ((source == null) || !source.isFile()) {
+            throw new ClosedChannelException();
+        }
+        fc = new RandomAccessFile(source.getName(), "r").getChannel();
+        return fc;
+    }
+
+    /**
+     * Closes the channel records are read from, if any.
+     */
+    void close() throws IOException {
+        FileChannel ch = fc;
+        if (ch != null) ch.close();
+    }
+
     /**
      * returns byte order of source CDF
      */
@@ -105,15 +172,15 @@ import java.util.zip.*;
     }
 
     /**
-     * returns name to Variable map
+     * returns name to Variable map. The map is not modified once built.
      */
-    protected Hashtable variables()  {
+    protected Map<String, CDFVariable> variables()  {
         if (variableTable != null) return variableTable;
         LOGGER.entering("CDFImpl","variables");
         int [] offsets = new int[] {(int)zVDRHead, (int)rVDRHead};
         String [] vtypes = {"z", "r"};
-        Hashtable table = new Hashtable();
-        HashMap<Integer,CDFVariable> ivariableTable= new HashMap<>();
+        Map<String, CDFVariable> table = new HashMap<>();
+        Map<Integer,CDFVariable> ivariableTable= new HashMap<>();
         Vector v = new Vector();
         for (int vtype = 0; vtype < 2; vtype++) {
             long offset = offsets[vtype];
@@ -128,6 +195,7 @@ import java.util.zip.*;
                 v.add(name);
                 ivariableTable.put( cdfv.number, cdfv );
                 table.put(name, cdfv);
+                lastVDR[vtype] = offset;
                 if (next == 0) break;
                 offset = next;
                 _buf = getRecord(offset);
@@ -137,10 +205,10 @@ import java.util.zip.*;
         for (int i = 0; i < v.size(); i++) {
             varNames[i] = (String)v.elementAt(i);
         }
-        variableTable = table;
-        this.ivariableTable= ivariableTable;
+        variableTable = Collections.unmodifiableMap(table);
+        this.ivariableTable= Collections.unmodifiableMap(ivariableTable);
         LOGGER.exiting("CDFImpl","variables");
-        return table;
+        return variableTable;
     }
 
     /**
@@ -159,7 +227,37 @@ import java.util.zip.*;
      * the named variable
      */
     public Variable getVariable(String name) {
-        return (Variable)variableTable.get(name);
+        return variableTable.get(name);
+    }
+
+    /**
+     * Brings record counts and data locators of variables up to date with
+     * a file that has grown since it was opened. If newBuf is not null, it
+     * is a view of the whole grown file and replaces the current one.
+     * Data written before is assumed to be unchanged, and the index
+     * of a variable to be updated after the data it points to.
+     * Returns the names of variables that have new records.
+     * @throws Throwable if variables have been added to the file
+     */
+    String[] refresh(ByteBuffer newBuf) throws Throwable {
+        if (newBuf != null) buf = newBuf;
+        for (int vtype = 0; vtype < 2; vtype++) {
+            if (lastVDR[vtype] == 0) continue;
+            ByteBuffer _buf = getRecord(lastVDR[vtype]);
+            _buf.position(offset_NEXT_VDR);
+            if (longInt(_buf) != 0) {
+                throw new Throwable("Variables have been added to the " +
+                    "file.");
+            }
+        }
+        List<String> grown = new ArrayList<>();
+        for (int i = 0; i < varNames.length; i++) {
+            CDFVariable var = variableTable.get(varNames[i]);
+            if (var.refresh()) grown.add(varNames[i]);
+        }
+        String [] sa = new String[grown.size()];
+        grown.toArray(sa);
+        return sa;
     }
 
     /**
@@ -192,7 +290,7 @@ import java.util.zip.*;
         Set set = attributeTable.keySet();
         Iterator iter = set.iterator();
         while (iter.hasNext()) {
-            CDFAttribute attr = (CDFAttribute)attributeTable.get(iter.next());
+            CDFAttribute attr = attributeTable.get(iter.next());
             if (attr.isGlobal()) {
                 vec.add(attr.name);
             }
@@ -208,7 +306,7 @@ import java.util.zip.*;
      * returns names of variable attributes in a String[]
      */
     public String [] variableAttributeNames(String name) {
-        CDFVariable var = (CDFVariable)variableTable.get(name);
+        CDFVariable var = variableTable.get(name);
         if (var == null) return null;
         String [] sa = new String [var.attributes.size()];
         for (int i = 0; i < sa.length; i++) {
@@ -223,7 +321,7 @@ import java.util.zip.*;
      */
     public Object getAttribute(String atr) {
         if (attributeTable == null) return null;
-        CDFAttribute a = (CDFAttribute)attributeTable.get(atr);
+        CDFAttribute a = attributeTable.get(atr);
         if (a == null) return null;
         if (!a.isGlobal()) return null;
         if (a.gEntries.size() == 0) return null;
@@ -245,7 +343,7 @@ import java.util.zip.*;
      */
     public GlobalAttribute getGlobalAttribute(String atr) throws Throwable {
         if (attributeTable == null) throw new Throwable("No attribute named " + atr);
-        final CDFAttribute a = (CDFAttribute)attributeTable.get(atr);
+        final CDFAttribute a = attributeTable.get(atr);
         if (a == null) throw new Throwable("No attribute named " + atr);
         if (!a.isGlobal()) throw new Throwable("No global attribute named " +
         atr);
@@ -289,7 +387,7 @@ import java.util.zip.*;
      * returns value of the named attribute for the named variable
      */
     public Object getAttribute(String var, String atr) {
-        CDFVariable c = (CDFVariable)variableTable.get(var);
+        CDFVariable c = variableTable.get(var);
         if (c == null) return null;
         Vector attrs = c.attributes;
         Vector values = new Vector();
@@ -307,7 +405,7 @@ import java.util.zip.*;
      */
     public Vector getAttributeEntries(String atr) throws Throwable {
         if (attributeTable == null) throw new Throwable("No attribute named " + atr);
-        final CDFAttribute a = (CDFAttribute)attributeTable.get(atr);
+        final CDFAttribute a = attributeTable.get(atr);
         if (a == null) throw new Throwable("No attribute named " + atr);
         if (!a.isGlobal()) throw new Throwable("No global attribute named " +
         atr);
@@ -319,7 +417,7 @@ import java.util.zip.*;
      * for the named variable.
      */
     public Vector getAttributeEntries(String var, String atr) {
-        CDFVariable c = (CDFVariable)variableTable.get(var);
+        CDFVariable c = variableTable.get(var);
         if (c == null) return null;
         Vector attrs = c.attributes;
         Vector entries = new Vector();
@@ -343,14 +441,15 @@ import java.util.zip.*;
     }
 
     /**
-     * returns name to Attribute object map
+     * returns name to Attribute object map. The map is not modified once
+     * built.
      */
-    Hashtable attributes()  {
+    Map<String, CDFAttribute> attributes()  {
         if (attributeTable != null) return attributeTable;
         LOGGER.entering("CDFImpl", "attributes");
         long offset = ADRHead;
         if (offset == 0) return null;
-        Hashtable table = new Hashtable();
+        Map<String, CDFAttribute> table = new LinkedHashMap<>();
         ByteBuffer _buf = getRecord(offset);
         while (true) {
             _buf.position(offset_NEXT_ADR);
@@ -365,9 +464,9 @@ import java.util.zip.*;
             offset = next;
             _buf = getRecord(offset);
         }
-        attributeTable = table;
+        attributeTable = Collections.unmodifiableMap(table);
         LOGGER.exiting("CDFImpl", "attributes");
-        return table;
+        return attributeTable;
     }
     /**
      * CDFAttribute class
@@ -566,16 +665,17 @@ import java.util.zip.*;
         int sRecords;
         int type;
         int numberOfElements;
-        protected int numberOfValues;
+        protected volatile int numberOfValues;
         public int [] dimensions;
         public boolean [] varies;
         public Object padValue;
         long offset;
-        boolean completed = false;
+        volatile boolean completed = false;
         transient ByteBuffer _buf;
         int dataItemSize;
         int blockingFactor;
-        DataLocator locator;
+        volatile DataLocator locator;
+        volatile boolean recordGap = false;
         public CDFVariable(long offset, String vtype) {
             this.offset = offset;
             this.vtype = vtype;
@@ -662,11 +762,22 @@ import java.util.zip.*;
             // ignore numberOfElements for numeric data types
             if (DataTypes.isStringType(type)) dataItemSize *= numberOfElements;
         }
+        /**
+         * Builds the locator on first use. The locator, and recordGap,
+         * are published by the volatile write of completed, so that
+         * callers which see completed set need not synchronize.
+         */
         synchronized void complete() {
             if (completed) return;
             if (numberOfValues > 0) {
-                locator = new DataLocator(_buf, numberOfValues,
+                long start = System.nanoTime();
+                Object event = CDFEvents.beginLocator();
+                locator = new DataLocator(_buf.duplicate(), numberOfValues,
                     ((flags & 4) != 0));
+                CDFMetrics.getInstance().locatorBuilt(name, locator.vxrs,
+                    locator.locations.size(), System.nanoTime() - start);
+                CDFEvents.endLocator(event, CDFImpl.this, name, locator.vxrs,
+                    locator.locations.size());
                 checkContinuity();
             }
             completed = true;
@@ -674,7 +785,45 @@ import java.util.zip.*;
         boolean isComplete() {
             return completed;
         }
-        boolean recordGap = false;
+
+        /**
+         * Reads the number of records from the VDR again. If it has grown,
+         * extends the locator, if built, by reading the tail of the VXR
+         * chain, and returns true. The locator is published before the
+         * number of records, so that a caller which sees the new number
+         * of records finds them in the locator.
+         */
+        synchronized boolean refresh() throws Throwable {
+            ByteBuffer vdr = getRecord(offset);
+            if (vdr == null) throw new Throwable("Unable to read VDR of " +
+                name);
+            vdr.position(offset_VAR_DATATYPE + 4);
+            int n = vdr.getInt() + 1;
+            if (n <= numberOfValues) return false;
+            _buf = vdr;
+            if (completed) {
+                vdr.position(offset_FIRST_VXR);
+                long head = longInt(vdr);
+                DataLocator grown;
+                if ((locator == null) || (locator.head != head)) {
+                    grown = new DataLocator(vdr.duplicate(), n,
+                        ((flags & 4) != 0));
+                } else {
+                    grown = new DataLocator(locator, n);
+                }
+                if (grown.locations.size() == 0) return false;
+                long[] tail = (long[])grown.locations.lastElement();
+                if (tail[1] < n - 1) n = (int)tail[1] + 1;
+                if (n <= numberOfValues) return false;
+                locator = grown;
+                recordGap = false;
+                numberOfValues = n;
+                checkContinuity();
+            } else {
+                numberOfValues = n;
+            }
+            return true;
+        }
         void checkContinuity() {
             if (numberOfValues == 0) return;
             long[][] locations = locator.getLocations();
@@ -1101,7 +1250,11 @@ import java.util.zip.*;
             if (ByteVarContainer.isCompatible(type, true)) {
                 container = new ByteVarContainer(CDFImpl.this, this, pt); 
                 container.run();
-                return container.as1DArray();
+                try {
+                    return container.as1DArray();
+                } finally {
+                    container.close();
+                }
             }
             throw new Throwable("Variable " + getName() + " cannot return " +
             "byte[].");
@@ -1122,7 +1275,11 @@ import java.util.zip.*;
             if (ByteVarContainer.isCompatible(type, true)) {
                 container = new ByteVarContainer(CDFImpl.this, this, pt); 
                 container.run();
-                return container.asOneDArray(columnMajor);
+                try {
+                    return container.asOneDArray(columnMajor);
+                } finally {
+                    container.close();
+                }
             }
             throw new Throwable("Variable " + getName() + " cannot return " +
             "byte[].");
@@ -1176,7 +1333,11 @@ import java.util.zip.*;
                 " cannot return " + "float[]."); 
             }
             container.run();
-            return container.as1DArray();
+            try {
+                return container.as1DArray();
+            } finally {
+                container.close();
+            }
         }
 
         /**
@@ -1240,7 +1401,11 @@ import java.util.zip.*;
                 " cannot return " + "double[]."); 
             }
             container.run();
-            return container.asOneDArray(tattr.columnMajor);
+            try {
+                return container.asOneDArray(tattr.columnMajor);
+            } finally {
+                container.close();
+            }
         }
 
         /**
@@ -1289,7 +1454,11 @@ import java.util.zip.*;
                 " cannot return " + "long[]."); 
             }
             container.run();
-            return container.as1DArray();
+            try {
+                return container.as1DArray();
+            } finally {
+                container.close();
+            }
         }
 
         /**
@@ -1346,7 +1515,11 @@ import java.util.zip.*;
                 " cannot return " + "int[]."); 
             }
             container.run();
-            return container.as1DArray();
+            try {
+                return container.as1DArray();
+            } finally {
+                container.close();
+            }
         }
 
         /**
@@ -1406,7 +1579,11 @@ import java.util.zip.*;
                 " cannot return " + "short[]."); 
             }
             container.run();
-            return container.as1DArray();
+            try {
+                return container.as1DArray();
+            } finally {
+                container.close();
+            }
         }
 
         /**
@@ -1451,15 +1628,50 @@ import java.util.zip.*;
         private int numberOfValues;
         private boolean compressed;
         protected Vector locations = new Vector();
+        int vxrs;
+        long head;
+        long tailOffset;
+        int tailStart;
         protected DataLocator(ByteBuffer b, int n, boolean compr) {
             _buf = b;
             numberOfValues = n;
             compressed = compr;
             _buf.position(offset_FIRST_VXR);
-            long offset = longInt(_buf);
-            ByteBuffer bx = getRecord(offset);
-            Vector v =  _getLocations(bx);
-            registerNodes(bx, v);
+            head = longInt(_buf);
+            append(head);
+        }
+
+        /**
+         * Constructs the locator of a variable which has grown to n
+         * records from its previous locator. Only the last VXR of the chain
+         * as seen by prev, and any VXR that follows it, are read.
+         */
+        DataLocator(DataLocator prev, int n) {
+            _buf = prev._buf;
+            numberOfValues = n;
+            compressed = prev.compressed;
+            head = prev.head;
+            for (int i = 0; i < prev.tailStart; i++) {
+                locations.add(prev.locations.elementAt(i));
+            }
+            append(prev.tailOffset);
+        }
+
+        /**
+         * Adds locations reachable from the VXR chain starting at offset,
+         * noting where the last VXR of the chain and its locations are.
+         */
+        void append(long offset) {
+            while (true) {
+                ByteBuffer bx = getRecord(offset);
+                tailOffset = offset;
+                tailStart = locations.size();
+                registerNodes(bx, entries(bx));
+                bx.position(offset_NEXT_VXR);
+                long next = longInt(bx);
+                if (next == 0) break;
+                offset = next;
+            }
         }
 
         public boolean isReallyCompressed() {return compressed;}
@@ -1479,33 +1691,45 @@ import java.util.zip.*;
         Vector _getLocations(ByteBuffer bx) {
             Vector locations = new Vector();
             while (true) {
+                locations.addAll(entries(bx));
                 bx.position(offset_NEXT_VXR);
                 long next = longInt(bx);
-                bx.position(offset_NENTRIES);
-                int nentries = bx.getInt();
-                bx.position(offset_NUSED);
-                int nused = bx.getInt();
-                bx.position(offset_FIRST);
-                ByteBuffer bf = bx.slice();
-                bx.position(offset_FIRST + nentries*4);
-                ByteBuffer bl = bx.slice();
-                bx.position(offset_FIRST + 2*nentries*4);
-                ByteBuffer bo = bx.slice();
-                for (int entry = 0; entry < nused; entry++) {
-                    long first = bf.getInt();
-                    long last = bl.getInt();
-                    if (last > (numberOfValues - 1)) {
-                        last = (numberOfValues - 1);
-                    }
-                    long off = longInt(bo);
-                    locations.add(new long[] {first, last, off});
-                }
                 if (next == 0) break;
                 bx = getRecord(next);
             }
             return locations;
         }
 
+        /**
+         * Returns the entries of a single VXR, omitting those which start
+         * after the last record.
+         */
+        Vector entries(ByteBuffer bx) {
+            Vector locations = new Vector();
+            vxrs++;
+            bx.position(offset_NENTRIES);
+            int nentries = bx.getInt();
+            bx.position(offset_NUSED);
+            int nused = bx.getInt();
+            bx.position(offset_FIRST);
+            ByteBuffer bf = bx.slice();
+            bx.position(offset_FIRST + nentries*4);
+            ByteBuffer bl = bx.slice();
+            bx.position(offset_FIRST + 2*nentries*4);
+            ByteBuffer bo = bx.slice();
+            for (int entry = 0; entry < nused; entry++) {
+                long first = bf.getInt();
+                long last = bl.getInt();
+                if (last > (numberOfValues - 1)) {
+                    last = (numberOfValues - 1);
+                }
+                long off = longInt(bo);
+                if (first > last) continue;
+                locations.add(new long[] {first, last, off});
+            }
+            return locations;
+        }
+
         void registerNodes(ByteBuffer bx, Vector v) {
             int vrtype = VVR_RECORD_TYPE;
             if (compressed) vrtype = CVVR_RECORD_TYPE;
@@ -1595,6 +1819,8 @@ import java.util.zip.*;
             bv.position(offset_RECORDS);
             return bv;
         }
+        long start = System.nanoTime();
+        Object event = CDFEvents.beginInflate();
         int clen = lowOrderInt(bv, offset_CSIZE);
         byte [] work = new byte[clen];
         bv.position(offset_CDATA);
@@ -1618,13 +1844,16 @@ import java.util.zip.*;
             return getValueBuffer(offset);
         }
         if (n < 0) return null;
+        CDFMetrics.getInstance().blockInflated(clen, udata.length,
+            System.nanoTime() - start);
+        CDFEvents.endInflate(event, this, offset, clen, udata.length);
         return ByteBuffer.wrap(udata);
     }
     /**
      * returns dimensions of the named variable.
      */
     public int [] variableDimensions(String name) {
-        Variable var = (Variable)variableTable.get(name);
+        Variable var = variableTable.get(name);
         if (var == null) return null;
         int [] dims = var.getDimensions();
         int [] ia = new int[dims.length];
@@ -1817,8 +2046,12 @@ import java.util.zip.*;
         }
         VDataContainer.CDouble container = var.getDoubleContainer(null, false);
         container.run();
-        DoubleArray da = (DoubleArray)container.asArray();
-        return da.array();
+        try {
+            DoubleArray da = (DoubleArray)container.asArray();
+            return da.array();
+        } finally {
+            container.close();
+        }
     }
 
     public Object getLong(String varName) throws Throwable {
@@ -1830,8 +2063,12 @@ import java.util.zip.*;
         }
         VDataContainer.CLong container = var.getLongContainer(null);
         container.run();
-        LongArray la = (LongArray)container.asArray();
-        return la.array();
+        try {
+            LongArray la = (LongArray)container.asArray();
+            return la.array();
+        } finally {
+            container.close();
+        }
     }
 
     public Object get(String varName, int element) throws Throwable {
@@ -1889,7 +2126,11 @@ import java.util.zip.*;
                 new DoubleVarContainer(this, var, new int[] {point},
                 false, ByteOrder.nativeOrder());
             dbuf.run();
-            return dbuf.asArray().array();
+            try {
+                return dbuf.asArray().array();
+            } finally {
+                dbuf.close();
+            }
         }
     }
 
@@ -1897,8 +2138,12 @@ import java.util.zip.*;
     public Object getRange(String varName, int first, int last,
         boolean oned) throws Throwable {
         DoubleVarContainer dbuf = getRangeBuffer(varName, first, last);
-        if (oned) return dbuf.as1DArray();
-        return dbuf.asArray().array();
+        try {
+            if (oned) return dbuf.as1DArray();
+            return dbuf.asArray().array();
+        } finally {
+            dbuf.close();
+        }
     }
 
     public Object getRange(String varName, int first, int last) throws
@@ -1909,7 +2154,11 @@ import java.util.zip.*;
     public Object getRangeOneD(String varName, int first, int last,
         boolean columnMajor) throws Throwable {
         DoubleVarContainer dbuf = getRangeBuffer(varName, first, last);
-        return dbuf.asOneDArray(columnMajor);
+        try {
+            return dbuf.asOneDArray(columnMajor);
+        } finally {
+            dbuf.close();
+        }
     }
 
     DoubleVarContainer getRangeBuffer(String varName, int first, int last)
@@ -0,0 +1,89 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+/**
+ * Receiver of measurements from the reader and writer hot paths.
+ * Methods of this class do nothing; subclasses override those of
+ * interest. Times are in nanoseconds, sizes in bytes.
+ * <p>
+ * Measurements are sent to the instance installed by
+ * {@link #setInstance(CDFMetrics) setInstance}. Implementations must be
+ * thread safe, and cheap, since they are called on the thread doing
+ * the work.
+ * </p>
+ * @see HistogramMetrics
+ */
+public abstract class CDFMetrics {
+    static final CDFMetrics NONE = new CDFMetrics() {};
+    static volatile CDFMetrics instance = NONE;
+
+    /**
+     * Installs the receiver of measurements. null restores the default,
+     * which ignores them.
+     * @param metrics
+     */
+    public static void setInstance(CDFMetrics metrics) {
+        instance = (metrics == null)?NONE:metrics;
+    }
+
+    /**
+     * Returns the receiver of measurements.
+     * @return
+     */
+    public static CDFMetrics getInstance() {return instance;}
+
+    /**
+     * Called when a CDF has been opened and its header read.
+     * @param source file name or URL, or "byte[]" or "ByteBuffer" for a
+     * CDF in memory
+     * @param bytes size of the CDF as mapped or read
+     * @param nanos
+     */
+    public void cdfOpened(String source, long bytes, long nanos) {}
+
+    /**
+     * Called when the record locations of a variable have been
+     * collected from its VXR tree.
+     * @param variable
+     * @param vxrs number of VXRs visited
+     * @param blocks number of data blocks found
+     * @param nanos
+     */
+    public void locatorBuilt(String variable, int vxrs, int blocks,
+        long nanos) {}
+
+    /**
+     * Called when a compressed block of values has been inflated.
+     * @param compressedBytes
+     * @param bytes size after inflation
+     * @param nanos
+     */
+    public void blockInflated(long compressedBytes, long bytes, long nanos) {}
+
+    /**
+     * Called when a variable container has been filled.
+     * @param variable
+     * @param records number of records in the container
+     * @param paddedRecords number of records filled for missing records
+     * @param bytes size of the container
+     * @param nanos
+     */
+    public void containerFilled(String variable, int records,
+        int paddedRecords, long bytes, long nanos) {}
+
+    /**
+     * Called when the time variable for a variable has been created.
+     * @param variable name of the variable whose times were sought
+     * @param records number of time values
+     * @param nanos
+     */
+    public void timeVariableCreated(String variable, int records,
+        long nanos) {}
+
+    /**
+     * Called when a CDF has been written.
+     * @param destination file name
+     * @param bytes size of the CDF
+     * @param nanos
+     */
+    public void cdfWritten(String destination, long bytes, long nanos) {}
+}
@@ -6,6 +6,18 @@ import java.lang.reflect.*;
  * CDFReader extends GenericReader with access methods for time series
  * variables. Time series methods of this class do not require a detailed
  * knowledge of the internal structure of CDF.
+ * <p>
+ * A CDFReader may be used by many threads at once, once it has been
+ * safely published to them, for example through a final field or an
+ * executor. Metadata is read when the reader is constructed and is not
+ * modified afterwards, other than record counts of a
+ * {@link RefreshableCDFReader}. The data locator of a variable is built on
+ * first use and is then read without locking. Each request reads through
+ * its own view of the file, so no read position is shared between
+ * requests.
+ * A thread interrupted while reading a file opened by {@link ReaderFactory}
+ * fails its own request without affecting other threads.
+ * </p>
  */
 public class CDFReader extends GenericReader {
     Scalar scalar;
@@ -15,6 +27,10 @@ public class CDFReader extends GenericReader {
      *
      */
     public CDFReader() {
+        scalar = new Scalar();
+        scalar.rdr = this;
+        vector = new CDFVector();
+        vector.rdr = this;
     }
     /**
      * Constructs a reader for the given CDF file.
@@ -204,21 +220,25 @@ public class CDFReader extends GenericReader {
     /**
      * Returns available time range using default
      * {@link TimeInstantModel time instant model}.
+     * Only the blocks of the time variable holding the first and the last
+     * valid times are read.
      * @param    varName   variable name
      * @return   double[2] 0th element is the first available offset time; 
      *                     1st element is the last available offset time; 
-     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError 
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError if the
+     * variable has no valid times
      */
     public double [] getAvailableTimeRange(String varName) throws
         CDFException.ReaderError {
+        double[] trange;
         try {
-            TimeVariable tv =
-                TimeVariableFactory.getTimeVariable(this, varName);
-            double[] times = tv.getTimes();
-            return new double[] {times[0], times[times.length - 1]};
+            trange = TimeVariableFactory.getAvailableTimeRange(this, varName);
         } catch (Throwable th) {
             throw new CDFException.ReaderError(th.getMessage());
         }
+        if (trange == null) throw new CDFException.ReaderError(varName +
+            " has no valid times.");
+        return trange;
     }
     boolean overlaps(double[] t) {
         if (t[0] == Double.MIN_VALUE) return false;
@@ -250,10 +270,10 @@ public class CDFReader extends GenericReader {
     public int[] firstAvailableTime(String varName, int[] start)
         throws CDFException.ReaderError {
         try {
-            TimeVariable tv =
-                TimeVariableFactory.getTimeVariable(this, varName);
-            double[] times = tv.getTimes();
-            double[] trange = new double[] {times[0], times[times.length - 1]};
+            double[] trange =
+                TimeVariableFactory.getAvailableTimeRange(this, varName);
+            if (trange == null) return null;
+            boolean tt2000 = TimeVariableFactory.isTT2000(this, varName);
             double[] tr;
             try {
                 tr = TSExtractor.getOverlap(this, trange, varName,
@@ -264,7 +284,7 @@ public class CDFReader extends GenericReader {
             if (tr[0] != Double.MIN_VALUE) {
                 Calendar c = new GregorianCalendar(TimeZone.getTimeZone("GMT"));
                 c.setTimeInMillis((long)tr[0]);
-                if (tv.isTT2000()) {
+                if (tt2000) {
                     long l0 = c.getTime().getTime();
                     long l = (long)TimeUtil.getOffset(l0);
                     c.setTimeInMillis((long)tr[0] - l + l0);
@@ -301,10 +321,10 @@ public class CDFReader extends GenericReader {
     public int[] lastAvailableTime(String varName, int[] stop)
         throws CDFException.ReaderError {
         try {
-            TimeVariable tv =
-                TimeVariableFactory.getTimeVariable(this, varName);
-            double[] times = tv.getTimes();
-            double[] trange = new double[] {times[0], times[times.length - 1]};
+            double[] trange =
+                TimeVariableFactory.getAvailableTimeRange(this, varName);
+            if (trange == null) return null;
+            boolean tt2000 = TimeVariableFactory.isTT2000(this, varName);
             double[] tr;
             try {
                 tr = TSExtractor.getOverlap(this, trange, varName,
@@ -315,7 +335,7 @@ public class CDFReader extends GenericReader {
             if (tr[1] != Double.MAX_VALUE) {
                 Calendar c = new GregorianCalendar(TimeZone.getTimeZone("GMT"));
                 c.setTimeInMillis((long)tr[1]);
-                if (tv.isTT2000()) {
+                if (tt2000) {
                     long l0 = c.getTime().getTime();
                     long l = (long)TimeUtil.getOffset(l0);
                     c.setTimeInMillis((long)tr[1] - l + l0);
@@ -349,8 +369,7 @@ public class CDFReader extends GenericReader {
         if (baseTime.length < 3) throw new CDFException.ReaderError(
             "incomplete base time " + "definition.");
         try {
-            boolean isTT2000 =
-                TimeVariableFactory.getTimeVariable(this, varName).isTT2000();
+            boolean isTT2000 = TimeVariableFactory.isTT2000(this, varName);
             long l = TSExtractor.getTime(baseTime);
             double msec = (!isTT2000)?(double)l:
                 TimeUtil.milliSecondSince1970(l);
@@ -698,6 +717,173 @@ public class CDFReader extends GenericReader {
             throw new CDFException.ReaderError(th.getMessage());
         }
     }
+    /**
+     * Returns the time series of the specified scalar variable in the
+     * specified time range at full resolution, with a
+     * {@link ValidityMask mask} of points whose value is valid.
+     * <p>
+     * Points where the value equals the fill value specified via the
+     * FILLVAL attribute, or the pad value of a missing record, are marked
+     * invalid. Unlike {@link #getScalarTimeSeries(String, boolean, int[],
+     * int[], TimeInstantModel) getScalarTimeSeries}, no arrays are
+     * compacted unless the valid points are asked for.
+     * </p>
+     * @param varName
+     * @param    startTime   a 3 to 7 element int[], containing year,
+     *  month (January is 1),
+     * day,hour, minute, second and millisecond. May be null, in which case
+     * the first available time is used.
+     * @param    stopTime   a 3 to 7 element int[], containing year,
+     *  month (January is 1),
+     * day,hour, minute, second and millisecond. May be null, in which case
+     * the stop time is assumed to be later than the last available time.
+     * @param    tspec  {@link TimeInstantModel time instant model}, May be
+     * null, in which case the default model is used.
+     * @return
+     * @throws   CDFException.ReaderError  if variables is non-numeric, or
+     * is not a scalar.
+     */
+    public MaskedTimeSeries getMaskedTimeSeries(String varName,
+        int[] startTime, int[] stopTime, TimeInstantModel tspec) throws
+        CDFException.ReaderError {
+        try {
+            return maskedTimeSeries(varName, null, startTime, stopTime,
+                tspec);
+        } catch (Throwable th) {
+            throw new CDFException.ReaderError(th.getMessage());
+        }
+    }
+
+    /**
+     * Returns the time series of the specified component of a 1
+     * dimensional variable in the specified time range at full resolution,
+     * with a {@link ValidityMask mask} of points whose value is valid.
+     * @param varName
+     * @param component
+     * @param startTime
+     * @param stopTime
+     * @param tspec
+     * @return
+     * @throws   CDFException.ReaderError  if variables is non-numeric, or is
+     * not a vector.
+     * @see #getMaskedTimeSeries(String, int[], int[], TimeInstantModel)
+     */
+    public MaskedTimeSeries getMaskedTimeSeries(String varName,
+        int component, int[] startTime, int[] stopTime,
+        TimeInstantModel tspec) throws CDFException.ReaderError {
+        try {
+            return maskedTimeSeries(varName, component, startTime, stopTime,
+                tspec);
+        } catch (Throwable th) {
+            throw new CDFException.ReaderError(th.getMessage());
+        }
+    }
+
+    MaskedTimeSeries maskedTimeSeries(String varName, Integer component,
+        int[] startTime, int[] stopTime, TimeInstantModel tspec) throws
+        Throwable {
+        checkType(varName);
+        Variable var = thisCDF.getVariable(varName);
+        if (component == null) {
+            if (var.getEffectiveRank() != 0) throw new
+                Throwable(varName + " is not a scalar.");
+        } else {
+            if (var.getEffectiveRank() != 1) throw new
+                Throwable(varName + " is not a vector.");
+            int dim = var.getEffectiveDimensions()[0];
+            if ((component < 0) || (component >= dim)) throw new
+                Throwable("Invalid component " + component + " for " +
+                varName);
+        }
+        double[] tr = null;
+        if ((startTime != null) || (stopTime != null)) {
+            tr = TSExtractor.getOverlap(this, getAvailableTimeRange(varName),
+                varName, startTime, stopTime);
+        }
+        return TSExtractor.getMaskedTimeSeries(this, var, component, tr,
+            tspec);
+    }
+
+    /**
+     * Resamples the specified variable onto a uniform time grid, writing
+     * the result into arrays supplied by the caller.
+     * <p>
+     * The grid has count points, starting at startTime and separated by
+     * cadence milliseconds. The value of element j of a record at grid
+     * point k is written to values[k*n + j], where n is the number of
+     * values in a record, in the order in which they are stored. Elements
+     * of a record are resampled independently. A value equal to the fill
+     * value specified via the FILLVAL attribute is not used. A record
+     * missing from a variable whose sparse record option is PREVIOUS takes
+     * the value of the record before it. Other missing records, including
+     * those given the pad value by the PADDED option, are not used, as in
+     * {@link #getMaskedTimeSeries(String, int[], int[], TimeInstantModel)
+     * getMaskedTimeSeries}. Grid points with no value are set to NaN.
+     * </p>
+     * <p>
+     * The variable and its time variable are read a block at a time, and
+     * blocks which lie entirely outside the grid, extended by tolerance
+     * for {@link ResamplingMethod#NEAREST NEAREST} and
+     * {@link ResamplingMethod#LINEAR LINEAR}, are not read beyond their
+     * times. Times of the variable are expected to increase.
+     * </p>
+     * @param varName
+     * @param    startTime   a 3 to 7 element int[], containing year,
+     *  month (January is 1),
+     * day,hour, minute, second and millisecond, of the first grid point.
+     * @param cadence interval between grid points in milliseconds
+     * @param count number of grid points
+     * @param method
+     * @param tolerance largest distance in milliseconds from a grid point
+     * to the sample used for it by NEAREST, or between the samples
+     * interpolated by LINEAR. May be Double.POSITIVE_INFINITY. Not used
+     * by {@link ResamplingMethod#BIN_AVERAGE BIN_AVERAGE}.
+     * @param values array of length at least count*n
+     * @param counts array of length at least count*n, or null. For
+     * BIN_AVERAGE, set to the number of samples averaged; otherwise to 1
+     * where a value has been assigned, and 0 elsewhere.
+     * @return number of values assigned
+     * @throws   CDFException.ReaderError  if variable is non-numeric or of
+     * type long, or an argument is invalid.
+     */
+    public int resample(String varName, int[] startTime, double cadence,
+        int count, ResamplingMethod method, double tolerance,
+        double[] values, int[] counts) throws CDFException.ReaderError {
+        checkType(varName);
+        Variable var = thisCDF.getVariable(varName);
+        if (DataTypes.isStringType(var.getType())) {
+            throw new CDFException.ReaderError(varName + " is not numeric.");
+        }
+        if (method == null) {
+            throw new CDFException.ReaderError("Resampling method is null.");
+        }
+        if (!(cadence > 0) || Double.isInfinite(cadence) || (count < 0)) {
+            throw new CDFException.ReaderError("Invalid grid: cadence " +
+            cadence + ", count " + count);
+        }
+        if (!(tolerance >= 0)) {
+            throw new CDFException.ReaderError("Invalid tolerance " +
+            tolerance);
+        }
+        int n = var.getDataItemSize()/DataTypes.size[var.getType()];
+        long size = (long)count*n;
+        if ((values.length < size) ||
+            ((counts != null) && (counts.length < size))) {
+            throw new CDFException.ReaderError("Output arrays are too " +
+            "small for " + count + " points of " + n + " values.");
+        }
+        try {
+            Variable tvar = TimeVariableFactory.getTimeVariableOf(this, var);
+            double start = AggregateCDFReader.toMilliSecond(startTime,
+                tvar.getType() == DataTypes.CDF_TIME_TT2000);
+            Resampler resampler = new Resampler(start, cadence, count,
+                method, tolerance, n, values, counts);
+            return resampler.run(thisCDF, var, tvar,
+                TimeVariableFactory.isUnixTime(this, var, tvar));
+        } catch (Throwable th) {
+            throw new CDFException.ReaderError(th.getMessage());
+        }
+    }
 /*
     void checkType(String varName) throws Throwable {
         Variable var = thisCDF.getVariable(varName);
@@ -3,6 +3,8 @@ import java.nio.*;
 import java.util.*;
 import java.io.*;
 import java.net.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 /**
@@ -13,6 +15,7 @@ public class CDFWriter extends GenericWriter {
     Hashtable variableMap = new Hashtable();
     Hashtable gamap = new Hashtable();
     SelectedVariableCollection vcol = new Selector();
+    HashMap<String, FileDataBlock.Source> sources = new HashMap<>();
     static final Logger anonymousLogger = Logger.getAnonymousLogger();
     static Logger logger = Logger.getLogger("cdfj.cdfwriter");
     static List<String> doNotCheckListGlobal = new ArrayList<String>();
@@ -68,6 +71,10 @@ public class CDFWriter extends GenericWriter {
     /**
      * Constructs a column major {@link CDFWriter CDFWriter} populated
      * with data from the given files.
+     * Data blocks of column major, little endian files are copied as they
+     * are. Data of row major files is decoded and transposed; use
+     * {@link #CDFWriter(String[], boolean) CDFWriter(files, true)} to merge
+     * row major files without decoding.
      * @param strings
      * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.WriterError
      * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
@@ -75,7 +82,7 @@ public class CDFWriter extends GenericWriter {
     public CDFWriter(String[] files) throws
         CDFException.WriterError, CDFException.ReaderError {
         this(files[0]);
-        for (int i = 1; i < files.length; i++) addCDF(files[i]);
+        addCDF(files, 1);
     }
 
     /**
@@ -144,7 +151,79 @@ public class CDFWriter extends GenericWriter {
     public CDFWriter(String[] files, SelectedVariableCollection col) throws
         CDFException.WriterError, CDFException.ReaderError {
         this(files[0], col);
-        for (int i = 1; i < files.length; i++) addCDF(files[i]);
+        addCDF(files, 1);
+    }
+
+    /**
+     * Constructs a {@link CDFWriter CDFWriter} of the row majority of the
+     * given CDF, populated with the records within a time range of
+     * selected variables, and of variables they depend on via DEPEND_ and
+     * LABL_PTR_ attributes.
+     * <p>
+     * Records of a variable are selected by the times of its time
+     * variable, and renumbered from 0. Variables which do not vary by
+     * record, or have no time variable, are copied whole. Blocks of a file
+     * lying entirely within the range are copied verbatim from the file
+     * when the CDF is written; only blocks at the edges of the range are
+     * decoded, and compressed again if needed. Blocks of a variable are
+     * also decoded if its compression differs from that chosen in the
+     * selection, or if it is a time variable.
+     * </p>
+     * @param cdf
+     * @param col
+     * @param startTime a 3 to 7 element int[], containing year,
+     *  month (January is 1), day, hour, minute, second and millisecond.
+     *  Records at or after startTime are included. May be null.
+     * @param stopTime a 3 to 7 element int[], as for startTime. Records
+     *  before stopTime are included. May be null.
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.WriterError
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     */
+    public CDFWriter(GenericReader cdf, SelectedVariableCollection col,
+        int[] startTime, int[] stopTime) throws CDFException.WriterError,
+        CDFException.ReaderError {
+        this(cdf, col, startTime, stopTime, false);
+    }
+
+    /**
+     * Blocks copied verbatim are read through a channel of their own, so
+     * the file of cdf may be closed once the subset has been added.
+     */
+    private CDFWriter(GenericReader cdf, SelectedVariableCollection col,
+        int[] startTime, int[] stopTime, boolean close) throws
+        CDFException.WriterError, CDFException.ReaderError {
+        super(cdf.rowMajority());
+        try {
+            addSubset(cdf, subsetNames(cdf, col), startTime, stopTime);
+        } finally {
+            if (close) {
+                try {
+                    cdf.thisCDF.close();
+                } catch (IOException ex) {
+                    logger.log(Level.WARNING, "Unable to close " +
+                        cdf.getSource(), ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructs a {@link CDFWriter CDFWriter} of the row majority of the
+     * given file, populated with the records within a time range of
+     * selected variables, and of variables they depend on.
+     * @param fname
+     * @param col
+     * @param startTime
+     * @param stopTime
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.WriterError
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     * @see #CDFWriter(GenericReader, SelectedVariableCollection, int[],
+     *  int[])
+     */
+    public CDFWriter(String fname, SelectedVariableCollection col,
+        int[] startTime, int[] stopTime) throws CDFException.WriterError,
+        CDFException.ReaderError {
+        this(ReaderFactory.getReader(fname), col, startTime, stopTime, true);
     }
 
     /**
@@ -252,7 +331,7 @@ public class CDFWriter extends GenericWriter {
     public CDFWriter(String[] files, boolean targetMajority) throws
         CDFException.WriterError, CDFException.ReaderError {
         this(files[0], targetMajority);
-        for (int i = 1; i < files.length; i++) addCDF(files[i]);
+        addCDF(files, 1);
     }
 
     /**
@@ -329,7 +408,7 @@ public class CDFWriter extends GenericWriter {
         SelectedVariableCollection col) throws
         CDFException.WriterError, CDFException.ReaderError {
         this(files[0], targetMajority, col);
-        for (int i = 1; i < files.length; i++) addCDF(files[i]);
+        addCDF(files, 1);
     }
 
 
@@ -390,6 +469,67 @@ public class CDFWriter extends GenericWriter {
         addCDF(cdf);
     }
 
+    /**
+     * Adds previously selected variables, and variables they depend on, from
+     * the given files.
+     * Files are opened, and their metadata read, in parallel. Data is added
+     * in the order in which the files are given.
+     * @param fnames
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.WriterError
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     */
+    public void addCDF(String[] fnames) throws
+        CDFException.WriterError, CDFException.ReaderError {
+        addCDF(fnames, 0);
+    }
+
+    void addCDF(String[] fnames, int from) throws
+        CDFException.WriterError, CDFException.ReaderError {
+        int n = fnames.length - from;
+        if (n <= 0) return;
+        if (n == 1) {
+            addCDF(fnames[from]);
+            return;
+        }
+        int nthreads = Math.min(n, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(nthreads);
+        try {
+            Vector<Future<GenericReader>> readers = new Vector<>();
+            for (int i = from; i < fnames.length; i++) {
+                final String fname = fnames[i];
+                readers.add(executor.submit(new Callable<GenericReader>() {
+                    @Override
+                    public GenericReader call() throws Exception {
+                        GenericReader cdf = getFileReader(fname);
+                        cdf.getVariableNames();
+                        cdf.globalAttributeNames();
+                        return cdf;
+                    }
+                }));
+            }
+            for (int i = 0; i < readers.size(); i++) {
+                GenericReader cdf;
+                try {
+                    cdf = readers.get(i).get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof CDFException.ReaderError) {
+                        throw (CDFException.ReaderError)cause;
+                    }
+                    throw new CDFException.ReaderError(cause.toString());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new CDFException.ReaderError("Interrupted while " +
+                    "opening " + fnames[from + i]);
+                }
+                readers.set(i, null);
+                addCDF(cdf);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Adds previously selected variables, and variables they depend on, from
      * the given URL.
@@ -436,11 +576,19 @@ public class CDFWriter extends GenericWriter {
                 }
             }
         }
+        Hashtable<String, Integer> offsets = recordOffsets(cdf, vnames);
         for (String vname : vnames) {
             if (cdf.getNumberOfValues(vname) == 0) {
                 ((DataContainer) dataContainers.get(vname)).addPhantomEntry();
             } else {
-                copyVariableData(cdf, vname);
+                DataContainer dc = dataContainers.get(vname);
+                int base = offsets.get(vname);
+                if (dc != null) dc.alignedStart = base;
+                try {
+                    copyVariableData(cdf, vname, base);
+                } finally {
+                    if (dc != null) dc.alignedStart = -1;
+                }
             }
             vcol.add(vname, cdf.isCompressed(vname), sparseRecordOption(cdf, vname));
         }
@@ -529,10 +677,16 @@ public class CDFWriter extends GenericWriter {
         variableMap.put(vn, vmap);
     }
 
-    void copyVariableData(GenericReader cdf, String vn) throws 
+    /**
+     * Adds the records of a variable of cdf, shifted by base.
+     */
+    void copyVariableData(GenericReader cdf, String vn, int base) throws 
         CDFException.ReaderError, CDFException.WriterError {
         if ((cdf.getByteOrder() == ByteOrder.LITTLE_ENDIAN) &&
             (cdf.rowMajority() == rowMajority)) {
+            if (!cdf.isTimeType(vn) && copyVariableBlocks(cdf, vn, base)) {
+                return;
+            }
             VariableDataBuffer[] dbufs = null;
             try {
                 Variable var = cdf.thisCDF.getVariable(vn);
@@ -541,8 +695,8 @@ public class CDFWriter extends GenericWriter {
                 throw new CDFException.ReaderError(th.getMessage());
             }
             for (VariableDataBuffer dbuf : dbufs) {
-                ByteBuffer b = dbuf.getBuffer();
-                addBuffer(vn, dbuf);
+                addData(vn, dbuf.getBuffer(), new int[] {
+                    base + dbuf.getFirstRecord(), base + dbuf.getLastRecord()});
             }
         } else {
             VDataContainer _container = null;
@@ -553,17 +707,8 @@ public class CDFWriter extends GenericWriter {
             }
             _container.run();
             int[] rr = new int[]{0, cdf.getNumberOfValues(vn) - 1, 1};
-            DataContainer container = dataContainers.get(vn);
-            if (container != null) {
-                int _last = container.getLastRecord();
-                System.out.println("last: " + _last);
-                if (_last >= 0) {
-                    _last++;
-                    rr[0] += _last;
-                    rr[1] += _last;
-                }
-            }
-                System.out.println("rr: " + rr[0] + "," + rr[1]);
+            rr[0] += base;
+            rr[1] += base;
             if (cdf.rowMajority() == rowMajority) {
                 addData(vn, _container.getBuffer(), rr);
             } else {
@@ -572,6 +717,331 @@ public class CDFWriter extends GenericWriter {
         }
     }
 
+    /**
+     * Returns the number by which record numbers of the variable in
+     * the next CDF are to be shifted, i.e. 1 + last record added so far.
+     */
+    int recordOffset(String vn) {
+        DataContainer container = dataContainers.get(vn);
+        if (container == null) return 0;
+        return container.getLastRecord() + 1;
+    }
+
+    /**
+     * Returns the offsets by which record numbers of variables of cdf are
+     * to be shifted, determined before any of its data is added.
+     * A variable with a time container, and as many records as its time
+     * variable in cdf, is shifted as its time variable, so that the two
+     * stay aligned even if earlier files had fewer records of the
+     * variable.
+     */
+    Hashtable<String, Integer> recordOffsets(GenericReader cdf,
+        String[] vnames) throws CDFException.ReaderError {
+        Hashtable<String, Integer> offsets = new Hashtable<>();
+        for (String vn : vnames) offsets.put(vn, recordOffset(vn));
+        for (String vn : vnames) {
+            DataContainer dc = dataContainers.get(vn);
+            if ((dc == null) || (dc.timeContainer == null)) continue;
+            if (!cdf.existsVariable(vn)) continue;
+            String tvar;
+            try {
+                tvar = cdf.getTimeVariableName(vn);
+            } catch (Throwable th) {
+                continue;
+            }
+            if (!offsets.containsKey(tvar)) continue;
+            if (cdf.getNumberOfValues(vn) != cdf.getNumberOfValues(tvar)) {
+                continue;
+            }
+            offsets.put(vn, offsets.get(tvar));
+        }
+        return offsets;
+    }
+
+    /**
+     * Adds the data blocks of a variable of a file based CDF as references,
+     * to be copied verbatim from the file when the CDF is written.
+     * Returns false if the blocks cannot be copied verbatim.
+     */
+    boolean copyVariableBlocks(GenericReader cdf, String vn, int base) throws
+        CDFException.ReaderError, CDFException.WriterError {
+        if (!cdf.sourceIsFile()) return false;
+        DataContainer container = dataContainers.get(vn);
+        if (container == null) return false;
+        FileDataBlock[] blocks;
+        long[][] locations;
+        try {
+            FileDataBlock.Source source = getSource(cdf.getSource());
+            if (source == null) return false;
+            Variable var = cdf.thisCDF.getVariable(vn);
+            if (var.isCompressed() &&
+                !source.isGzipped(((CDFImpl.CDFVariable)var).offset)) {
+                return false;
+            }
+            locations = var.getLocator().getLocations();
+            int size = var.getDataItemSize();
+            blocks = new FileDataBlock[locations.length];
+            for (int i = 0; i < locations.length; i++) {
+                blocks[i] = source.block(locations[i], size);
+                if (blocks[i].compressed != container.getVDR().isCompressed())
+                    return false;
+            }
+        } catch (IOException ex) {
+            throw new CDFException.ReaderError(ex.getMessage());
+        }
+        try {
+            for (int i = 0; i < blocks.length; i++) {
+                container.addBlock(blocks[i], new int[] {
+                    base + (int)locations[i][0], base + (int)locations[i][1]});
+            }
+        } catch (Throwable th) {
+            throw new CDFException.WriterError(th.getMessage());
+        }
+        return true;
+    }
+
+    FileDataBlock.Source getSource(String fname) throws IOException {
+        if (sources.containsKey(fname)) return sources.get(fname);
+        FileDataBlock.Source source = FileDataBlock.Source.open(fname);
+        sources.put(fname, source);
+        return source;
+    }
+
+    /**
+     * Returns the selected variables found in cdf, followed by the
+     * variables named, directly or not, by their DEPEND_ and LABL_PTR_
+     * attributes, and adds them to vcol. Dependencies keep the compression
+     * and sparse record option of cdf unless they are selected.
+     */
+    String[] subsetNames(GenericReader cdf, SelectedVariableCollection col)
+        throws CDFException.ReaderError {
+        Vector<String> selected = new Vector<>();
+        for (String name : col.getNames()) {
+            if (!cdf.existsVariable(name)) {
+                logger.log(Level.FINE, "{0} not found in original. ignoring.",
+                    name);
+                continue;
+            }
+            selected.add(name);
+            vcol.add(name, col.isCompressed(name),
+                col.getSparseRecordOption(name));
+        }
+        for (int n = 0; n < selected.size(); n++) {
+            String vname = selected.get(n);
+            String[] anames = cdf.variableAttributeNames(vname);
+            if (anames == null) continue;
+            for (String aname : anames) {
+                if (!aname.startsWith("DEPEND_") &&
+                    !aname.startsWith("LABL_PTR_")) continue;
+                Object dvar = ((Vector)cdf.getAttribute(vname, aname)).get(0);
+                if (!(dvar instanceof String)) continue;
+                if (selected.contains(dvar)) continue;
+                if (!cdf.existsVariable((String)dvar)) {
+                    logger.log(Level.FINE, "{0} of {1} not found in " +
+                        "original. ignoring.", new Object[] {aname, vname});
+                    continue;
+                }
+                selected.add((String)dvar);
+                vcol.add((String)dvar, cdf.isCompressed((String)dvar),
+                    sparseRecordOption(cdf, (String)dvar));
+                logger.log(Level.FINE, "added: {0}", dvar);
+            }
+        }
+        return selected.toArray(new String[0]);
+    }
+
+    void addSubset(GenericReader cdf, String[] vnames, int[] startTime,
+        int[] stopTime) throws CDFException.WriterError,
+        CDFException.ReaderError {
+        checkLastLeapSecondId(cdf);
+        copyGlobalAttributes(cdf);
+        addGlobalAttributeEntry("cdfj_source", cdf.getSource());
+        for (String vn : vnames) {
+            copyVariableAttributes(cdf, vn);
+        }
+        HashMap<String, int[]> ranges = new HashMap<>();
+        for (String vn : vnames) {
+            int[] range;
+            try {
+                range = subsetRange(cdf, vn, startTime, stopTime, ranges);
+            } catch (Throwable th) {
+                throw new CDFException.ReaderError(th.getMessage());
+            }
+            copyVariableRecords(cdf, vn, range);
+        }
+    }
+
+    /**
+     * Returns the range {first, last} of records of a variable within a
+     * time range, last being less than first if there are none. Ranges
+     * found for time variables are kept in ranges.
+     */
+    int[] subsetRange(GenericReader cdf, String vn, int[] startTime,
+        int[] stopTime, HashMap<String, int[]> ranges) throws Throwable {
+        Variable var = cdf.thisCDF.getVariable(vn);
+        int[] all = new int[] {0, var.getNumberOfValues() - 1};
+        if (!cdf.recordVariance(vn) || (var.getNumberOfValues() == 0)) {
+            return all;
+        }
+        Variable tvar = var;
+        boolean themisLike = false;
+        if (!cdf.isTimeType(vn)) {
+            try {
+                tvar = TimeVariableFactory.getTimeVariableOf(cdf, var);
+                themisLike = TimeVariableFactory.isUnixTime(cdf, var, tvar);
+            } catch (Throwable th) {
+                logger.log(Level.FINE, "No time variable for {0}. copying " +
+                    "all records.", vn);
+                return all;
+            }
+        }
+        String key = tvar.getName() + (themisLike?"/unix":"");
+        int[] range = ranges.get(key);
+        if (range == null) {
+            range = recordRange(cdf.thisCDF, tvar, themisLike, startTime,
+                stopTime);
+            ranges.put(key, range);
+        }
+        return range;
+    }
+
+    /**
+     * Returns the range {first, last} of records of a time variable whose
+     * times are at or after startTime and before stopTime, last being less
+     * than first if there are none. Times are expected to increase. Blocks
+     * ending before startTime are skipped by the time of their last record.
+     */
+    static int[] recordRange(CDFImpl cdf, Variable tvar, boolean themisLike,
+        int[] startTime, int[] stopTime) throws Throwable {
+        boolean tt2000 = !themisLike &&
+            (tvar.getType() == DataTypes.CDF_TIME_TT2000);
+        double start = (startTime == null)?Double.NEGATIVE_INFINITY:
+            AggregateCDFReader.toMilliSecond(startTime, tt2000);
+        double stop = (stopTime == null)?Double.POSITIVE_INFINITY:
+            AggregateCDFReader.toMilliSecond(stopTime, tt2000);
+        int first = 0;
+        int last = -1;
+        VariableDataLocator locator = tvar.getLocator();
+        if (locator == null) return new int[] {first, last};
+        int lastRecord = tvar.getNumberOfValues() - 1;
+        for (long[] location : locator.getLocations()) {
+            if (location[0] > lastRecord) break;
+            int end = (int)Math.min(location[1], lastRecord);
+            int step = end - (int)location[0] + 1;
+            if (!tvar.isCompressed()) {
+                double[] t = TimeVariableFactory.getBlockTimes(cdf, tvar,
+                    themisLike, new long[] {end, end}, end);
+                if (!Double.isNaN(t[0]) && (t[0] < start)) continue;
+                step = BlockCursor.CHUNK;
+            }
+            for (long r = location[0]; r <= end; r += step) {
+                int to = (int)Math.min(end, r + step - 1);
+                double[] times = TimeVariableFactory.getBlockTimes(cdf, tvar,
+                    themisLike, new long[] {r, to}, to);
+                for (int i = 0; i < times.length; i++) {
+                    if (Double.isNaN(times[i]) || (times[i] < start)) {
+                        continue;
+                    }
+                    if (times[i] >= stop) return new int[] {first, last};
+                    if (last < first) first = (int)r + i;
+                    last = (int)r + i;
+                }
+            }
+        }
+        return new int[] {first, last};
+    }
+
+    /**
+     * Adds the records of a variable in range, renumbered from range[0].
+     * Blocks of a file based CDF are added as references where they can be
+     * copied verbatim: whole blocks, or parts of uncompressed blocks.
+     * Other records are decoded, and compressed if the variable is to be
+     * stored as compressed.
+     */
+    void copyVariableRecords(GenericReader cdf, String vn, int[] range)
+        throws CDFException.ReaderError, CDFException.WriterError {
+        DataContainer container = dataContainers.get(vn);
+        Variable var = cdf.thisCDF.getVariable(vn);
+        VariableDataLocator locator = var.getLocator();
+        long[][] locations = (locator == null)?new long[0][]:
+            locator.getLocations();
+        int last = Math.min(range[1], var.getNumberOfValues() - 1);
+        int size = var.getDataItemSize();
+        boolean compressed = container.getVDR().isCompressed();
+        boolean added = false;
+        try {
+            FileDataBlock.Source source = null;
+            if (cdf.sourceIsFile() &&
+                (cdf.getByteOrder() == ByteOrder.LITTLE_ENDIAN) &&
+                (cdf.rowMajority() == rowMajority) && !cdf.isTimeType(vn)) {
+                source = getSource(cdf.getSource());
+            }
+            for (long[] location : locations) {
+                int first = (int)Math.max(location[0], range[0]);
+                int end = (int)Math.min(location[1], last);
+                if (first > end) continue;
+                int[] rr = new int[] {first - range[0], end - range[0]};
+                added = true;
+                FileDataBlock block = (source == null)?null:
+                    source.block(location, size);
+                if ((block != null) && (block.compressed == compressed)) {
+                    if (!compressed) {
+                        container.addBlock(new FileDataBlock(source,
+                            block.offset + (first - location[0])*size,
+                            (end - first + 1)*size, false), rr);
+                        continue;
+                    }
+                    if ((first == location[0]) && (end == location[1])) {
+                        container.addBlock(block, rr);
+                        continue;
+                    }
+                }
+                VDataContainer _container = getContainer(cdf, vn,
+                    new int[] {first, end});
+                _container.run();
+                ByteBuffer buf = _container.getBuffer();
+                container.addData(compressed?compress(buf):buf, rr, false);
+            }
+        } catch (IOException ex) {
+            throw new CDFException.ReaderError(ex.getMessage());
+        } catch (Throwable th) {
+            throw new CDFException.WriterError(th.getMessage());
+        }
+        if (!added) container.addPhantomEntry();
+    }
+
+    static ByteBuffer compress(ByteBuffer buf) throws IOException {
+        byte[] uncompressed = new byte[buf.remaining()];
+        buf.duplicate().get(uncompressed);
+        ByteArrayOutputStream baos =
+            new ByteArrayOutputStream(uncompressed.length);
+        GZIPOutputStream gzos = new GZIPOutputStream(baos);
+        gzos.write(uncompressed, 0, uncompressed.length);
+        gzos.finish();
+        return ByteBuffer.wrap(baos.toByteArray())
+            .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Writes CDF to a file.
+     * Files from which data blocks are copied are closed once the CDF
+     * has been written.
+     * @param fname
+     * @param overwrite
+     * @return
+     * @throws IOException
+     */
+    @Override
+    public boolean write(String fname, boolean overwrite) throws IOException {
+        try {
+            return super.write(fname, overwrite);
+        } finally {
+            for (FileDataBlock.Source source : sources.values()) {
+                if (source != null) source.close();
+            }
+        }
+    }
+
     /**
      * Adds previously selected variables, and variables they depend on, from
      * the given {@link GenericReader GenericReader}..
@@ -585,6 +1055,7 @@ public class CDFWriter extends GenericWriter {
         checkGlobalAttributes(cdf);
         List timeVariableList = getTimeVariableList(cdf);
         String[] vnames = vcol.getNames();
+        Hashtable<String, Integer> offsets = recordOffsets(cdf, vnames);
         for (String vn : vnames) {
             Hashtable vmap = (Hashtable)variableMap.get(vn);
             if (((Boolean)vmap.get("variance"))) {
@@ -612,7 +1083,7 @@ public class CDFWriter extends GenericWriter {
                     }
                 }
                 if (cdf.getNumberOfValues(vn) > 0) {
-                    copyVariableData(cdf, vn);
+                    copyVariableData(cdf, vn, offsets.get(vn));
                 }
             }
         }
@@ -836,37 +1307,42 @@ public class CDFWriter extends GenericWriter {
     }
     VDataContainer getContainer(GenericReader rdr, String varName)
         throws Throwable {
+        return getContainer(rdr, varName, null);
+    }
+
+    VDataContainer getContainer(GenericReader rdr, String varName,
+        int[] range) throws Throwable {
         Object container = null;
         CDFDataType ctype = SupportedTypes.cdfType(rdr.getType(varName));
         Variable var = rdr.thisCDF.getVariable(varName);
         ByteOrder order = ByteOrder.LITTLE_ENDIAN;
         if ((ctype == CDFDataType.INT1) || (ctype == CDFDataType.UINT1)) {
-            container = var.getByteContainer(null);
+            container = var.getByteContainer(range);
         }
         if (ctype == CDFDataType.INT2) {
-            container = var.getShortContainer(null, true, order);
+            container = var.getShortContainer(range, true, order);
         }
         if (ctype == CDFDataType.INT4) {
-            container = var.getIntContainer(null, true, order);
+            container = var.getIntContainer(range, true, order);
         }
         if (ctype == CDFDataType.UINT2) {
-            container = var.getShortContainer(null, false, order);
+            container = var.getShortContainer(range, false, order);
         }
         if (ctype == CDFDataType.UINT4) {
-            container = var.getIntContainer(null, false, order);
+            container = var.getIntContainer(range, false, order);
         }
         if (ctype == CDFDataType.FLOAT) {
-            container = var.getFloatContainer(null, true, order);
+            container = var.getFloatContainer(range, true, order);
         }
         if ((ctype == CDFDataType.DOUBLE) || (ctype == CDFDataType.EPOCH) ||
             (ctype == CDFDataType.EPOCH16)) {
-            container = var.getDoubleContainer(null, true, order);
+            container = var.getDoubleContainer(range, true, order);
         }
         if ((ctype == CDFDataType.TT2000) || (ctype == CDFDataType.INT8)) {
-            container = var.getLongContainer(null, order);
+            container = var.getLongContainer(range, order);
         }
         if (ctype == CDFDataType.CHAR) {
-            container = var.getStringContainer(null);
+            container = var.getStringContainer(range);
         }
         return (VDataContainer) container;
     }
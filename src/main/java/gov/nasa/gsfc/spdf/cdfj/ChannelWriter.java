@@ -0,0 +1,239 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.*;
+
+/**
+ * Sequential writer of CDF records to a file channel.
+ * Small items, such as record headers and VXR entries, are assembled in
+ * a reusable direct buffer.
+ * <p>
+ * For a FileChannel, the assembled bytes and the data buffers are
+ * written together by gathering writes, and blocks of other files are
+ * transferred directly.
+ * For an AsynchronousFileChannel, everything is copied into one of two
+ * buffers; one buffer is filled while the other is being written.
+ * </p>
+ * Optionally, the MD5 digest of the bytes written is computed on the way.
+ */
+final class ChannelWriter {
+    static final int STAGING_SIZE = 1024*1024;
+    static final int ASYNC_BUFFER_SIZE = 8*1024*1024;
+    static final int MAX_PENDING = 256;
+    static final int COPY_LIMIT = 4096;
+    final FileChannel channel;
+    final AsynchronousFileChannel asyncChannel;
+    MessageDigest md;
+    long position;
+    ByteBuffer staging;
+    // FileChannel: buffers awaiting a gathering write
+    final ByteBuffer[] pending;
+    int npending;
+    int segmentStart;
+    // AsynchronousFileChannel: the buffer being written, if any
+    ByteBuffer other;
+    Future<Integer> otherWrite;
+    long otherPosition;
+
+    /**
+     * Writes to channel starting at its current position.
+     */
+    ChannelWriter(FileChannel channel) throws IOException {
+        this.channel = channel;
+        asyncChannel = null;
+        position = channel.position();
+        staging = ByteBuffer.allocateDirect(STAGING_SIZE);
+        pending = new ByteBuffer[MAX_PENDING];
+    }
+
+    /**
+     * Writes to channel starting at the given position, overlapping the
+     * assembly of each buffer with the writing of the previous one.
+     */
+    ChannelWriter(AsynchronousFileChannel channel, long position) {
+        this.channel = null;
+        asyncChannel = channel;
+        this.position = position;
+        staging = ByteBuffer.allocateDirect(ASYNC_BUFFER_SIZE);
+        other = ByteBuffer.allocateDirect(ASYNC_BUFFER_SIZE);
+        pending = null;
+    }
+
+    /**
+     * Starts computing the MD5 digest of the bytes written from here on.
+     */
+    void setDigestNeeded() throws IOException {
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException nsa) {
+            throw new IOException(nsa.getMessage());
+        }
+    }
+
+    /**
+     * Returns the file position at which the next byte will be written.
+     */
+    long position() {
+        return position + staging.position() - segmentStart + pendingBytes();
+    }
+
+    long pendingBytes() {
+        long n = 0;
+        for (int i = 0; i < npending; i++) n += pending[i].remaining();
+        return n;
+    }
+
+    /**
+     * Returns a buffer with room for at least n bytes to be put at the
+     * current position. Intended for small items.
+     */
+    ByteBuffer reserve(int n) throws IOException {
+        if (staging.remaining() < n) flush();
+        return staging;
+    }
+
+    /**
+     * Writes the remaining bytes of buf. Position of buf is not changed.
+     */
+    void write(ByteBuffer buf) throws IOException {
+        ByteBuffer src = buf.duplicate();
+        if (asyncChannel != null) {
+            copy(src);
+            return;
+        }
+        if (src.remaining() <= COPY_LIMIT) {
+            reserve(src.remaining()).put(src);
+            return;
+        }
+        endSegment();
+        pending[npending++] = src;
+        if (npending >= MAX_PENDING - 1) flush();
+    }
+
+    /**
+     * Writes the contents of a block of another file.
+     */
+    void write(FileDataBlock block) throws IOException {
+        if ((asyncChannel == null) && (md == null)) {
+            flush();
+            channel.position(position);
+            block.transferTo(channel);
+            position += block.length;
+            return;
+        }
+        FileChannel ch = block.source.channel();
+        long pos = block.offset;
+        long end = block.offset + block.length;
+        while (pos < end) {
+            if (!staging.hasRemaining()) flush();
+            ByteBuffer dst = staging.duplicate();
+            if (end - pos < dst.remaining()) {
+                dst.limit(dst.position() + (int)(end - pos));
+            }
+            int n = ch.read(dst, pos);
+            if (n < 0) throw new IOException("Unexpected end of data in " +
+                block.source.path);
+            staging.position(staging.position() + n);
+            pos += n;
+        }
+    }
+
+    void copy(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            if (!staging.hasRemaining()) flush();
+            int n = Math.min(src.remaining(), staging.remaining());
+            ByteBuffer part = src.duplicate();
+            part.limit(part.position() + n);
+            staging.put(part);
+            src.position(src.position() + n);
+        }
+    }
+
+    void endSegment() {
+        if (staging.position() == segmentStart) return;
+        ByteBuffer segment = staging.duplicate();
+        segment.position(segmentStart);
+        segment.limit(staging.position());
+        pending[npending++] = segment;
+        segmentStart = staging.position();
+    }
+
+    /**
+     * Hands everything assembled so far to the channel.
+     */
+    void flush() throws IOException {
+        if (asyncChannel != null) {
+            startWrite();
+            return;
+        }
+        endSegment();
+        if (npending == 0) return;
+        if (md != null) {
+            for (int i = 0; i < npending; i++) {
+                md.update(pending[i].duplicate());
+            }
+        }
+        long n = pendingBytes();
+        channel.position(position);
+        long done = 0;
+        while (done < n) done += channel.write(pending, 0, npending);
+        position += n;
+        for (int i = 0; i < npending; i++) pending[i] = null;
+        npending = 0;
+        staging.clear();
+        segmentStart = 0;
+    }
+
+    void startWrite() throws IOException {
+        if (staging.position() == 0) return;
+        staging.flip();
+        if (md != null) md.update(staging.duplicate());
+        awaitWrite();
+        ByteBuffer buf = staging;
+        staging = other;
+        other = buf;
+        otherPosition = position;
+        position += other.remaining();
+        otherWrite = asyncChannel.write(other, otherPosition);
+    }
+
+    void awaitWrite() throws IOException {
+        if (otherWrite == null) return;
+        try {
+            while (true) {
+                int n = otherWrite.get();
+                otherPosition += n;
+                if (!other.hasRemaining()) break;
+                otherWrite = asyncChannel.write(other, otherPosition);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(ex.getMessage());
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) throw (IOException)cause;
+            throw new IOException(cause);
+        }
+        otherWrite = null;
+        other.clear();
+    }
+
+    /**
+     * Returns the MD5 digest of the bytes written so far.
+     */
+    byte[] digest() throws IOException {
+        flush();
+        return md.digest();
+    }
+
+    /**
+     * Writes everything assembled so far and waits for completion.
+     */
+    void finish() throws IOException {
+        flush();
+        if (asyncChannel != null) awaitWrite();
+    }
+}
@@ -15,6 +15,7 @@ public class DataContainer {
     Vector<Integer> firstRecords = new Vector<>();
     Vector<Integer> lastRecords = new Vector<>();
     Vector<ByteBuffer> bufs = new Vector<>();
+    Vector<FileDataBlock> blocks = new Vector<>();
     Vector<Integer> points = new Vector<>();
 
     /**
@@ -61,13 +62,20 @@ public class DataContainer {
     Vector<Integer> _firstRecords;
     Vector<Integer> _lastRecords;
     Vector<ByteBuffer> _bufs;
+    Vector<FileDataBlock> _blocks;
     void setTimeContainer(DataContainer dc) {timeContainer = dc;}
+    /**
+     * Record at which the records being merged from a file may start
+     * after a gap, or -1.
+     */
+    int alignedStart = -1;
     Boolean phantom = null;
     void addPhantomEntry() {
         if (phantom != null) return;
         firstRecords.add(-1);
         lastRecords.add(-1);
         bufs.add(null);
+        blocks.add(null);
         phantom = Boolean.TRUE;
     }
 
@@ -95,74 +103,13 @@ public class DataContainer {
                     "supplied buffer must be in LITTLE_ENDIAN order");
                 }
             }
-            if (vdr.isCompressed()) {
-                if (recordRange == null) {
-                    throw new Throwable("Record range must be specified " +
-                    "since " + vdr.getName() + "is to be stored as compressed."
-                    );
-                }
-                if (_doNotCompress == null) {
-                    doNotCompress = (recordRange.length == 2);
-                    _doNotCompress = doNotCompress;
-                } else {
-                    if ((doNotCompress && (recordRange.length > 2)) ||
-                       (!doNotCompress && (recordRange.length == 2))) {
-                       String t = "compressed";
-                       if (!doNotCompress) t = "uncompressed";
-                        throw new Throwable("Changing compression mode of" +
-                        " input. Previous = " + t + ".");
-                    }    
-                }    
-            }
+            if (vdr.isCompressed()) checkCompressionMode(recordRange);
         } else {
             if (!(data.getClass().isArray())) {
                 throw new Throwable("supplied object not an array");
             }
         }
-        int first = (recordRange == null)?0:recordRange[0];
-        if (lastRecords.size() > 0) {
-            int _last = -1;
-            if (timeContainer != null) {
-                _last = timeContainer.getLastRecord(lastRecords.size() - 1);
-            } else {
-                _last = getLastRecord();
-            }
-            if (recordRange == null) {
-                first = _last + 1;
-                int expected = getLastRecord() + 1;
-                if ((first - expected) > 0) {
-                    if (vdr.sRecords == 0) {
-                        System.out.println("Gap: " + expected + " - " +
-                        first + " for " + vdr.getName());
-                        throw new Throwable(
-                        " SparseRecordOption must be set. There are " +
-                        " missing records between files for " +
-                        vdr.getName());
-                    }
-                }
-            } else {
-                if (recordRange[0] <= _last) {
-                    throw new Throwable("first record " + recordRange[0] +
-                    " must follow the last seen record " + _last);
-                }
-                if (recordRange[0] > (_last + 1)) {
-                    if (vdr.sRecords == 0) {
-                        throw new Throwable("Specified start of the range " +
-                        recordRange[0] + " does not follow " +
-                        "last record " + _last + " immediately." +
-                       " SparseRecordOption must be set if the CDF is missing" +
-                        " records");
-                    }
-                }
-            }
-        } else { // first cannot be nonzero unless sparseness option was chosen
-            if (first != 0) {
-                if (vdr.sRecords == 0) {
-                    throw new Throwable("SparseRecordOption " +
-                   "must be set if the CDF is missing records");
-                }
-            }
-        }
+        int first = firstRecord(recordRange);
         boolean done = false;
         int npt = 0;
         int last = -1;
@@ -178,6 +125,7 @@ public class DataContainer {
             firstRecords.add(first);
             lastRecords.add(last);
             bufs.add(buf);
+            blocks.add(null);
             points.add(npt);
             return;
         }
@@ -368,17 +316,269 @@ public class DataContainer {
                                 " Use relax = true to force acceptance");
             }
         }
+        add(first, last, buf, npt);
+    }
+
+    void add(int first, int last, ByteBuffer buf, int npt) {
         if (phantom == Boolean.TRUE) {
             firstRecords.clear();
             lastRecords.clear();
             bufs.clear();
+            blocks.clear();
             phantom = Boolean.FALSE;
         }
         firstRecords.add(first);
         lastRecords.add(last);
         bufs.add(buf);
+        blocks.add(null);
         points.add(npt);
     }
+
+    /**
+     * Adds nrec records from a flat array of double or float values
+     * wrapped in a buffer. Values are taken from the buffer's position
+     * on, and the position is not changed. shape gives the dimensions of
+     * a record, and rowMajor the order of values within a record.
+     */
+    void addFlat(Buffer data, int nrec, int[] shape, boolean rowMajor)
+        throws Throwable {
+        boolean dsrc = (data instanceof DoubleBuffer);
+        int type = vdr.dataType;
+        boolean ddst = (type == 22) || (type == 45) || (type == 31);
+        boolean fdst = (type == 21) || (type == 44);
+        if (!(ddst || (fdst && (dsrc || (data instanceof FloatBuffer))))) {
+            throw new Throwable("Flat " + (dsrc?"double":"float") +
+                " data can not be added to variable " + vdr.getName() +
+                " of type " + type);
+        }
+        if (shape == null) shape = new int[0];
+        int[] dim = new int[vdr.efdim.size()];
+        for (int i = 0; i < dim.length; i++) dim[i] = vdr.efdim.get(i);
+        if (!Arrays.equals(shape, dim)) {
+            throw new Throwable("Dimension mismatch, expected: " +
+                Arrays.toString(dim) + " found " + Arrays.toString(shape) +
+                ".");
+        }
+        int items = vdr.itemsPerPoint;
+        long count = (long)nrec*items;
+        if ((nrec < 0) || (count > data.remaining())) {
+            throw new Throwable("Supplied data holds " + data.remaining() +
+                " values, " + count + " needed for " + nrec + " records.");
+        }
+        int first = firstRecord(null);
+        int size = (ddst)?8:4;
+        long bytes = count*size;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new Throwable(nrec + " records of variable " +
+                vdr.getName() + " need " + bytes + " bytes, more than " +
+                "can be added at once.");
+        }
+        ByteBuffer buf = ByteBuffer.allocateDirect((int)bytes);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        int[] map = ((shape.length < 2) || (rowMajor == rowMajority))? null:
+            transposition(shape, rowMajor);
+        if (dsrc) {
+            DoubleBuffer src = ((DoubleBuffer)data).duplicate();
+            if (ddst) {
+                copy(src, buf.asDoubleBuffer(), (int)count, items, map);
+            } else {
+                copy(src, buf.asFloatBuffer(), (int)count, items, map);
+            }
+        } else {
+            FloatBuffer src = ((FloatBuffer)data).duplicate();
+            if (ddst) {
+                copy(src, buf.asDoubleBuffer(), (int)count, items, map);
+            } else {
+                copy(src, buf.asFloatBuffer(), (int)count, items, map);
+            }
+        }
+        add(first, first + nrec - 1, buf, nrec);
+    }
+
+    /**
+     * Returns, for each value of a record in the given majority, its
+     * index within the record in the opposite majority.
+     */
+    static int[] transposition(int[] shape, boolean rowMajor) {
+        int rank = shape.length;
+        int[] stride = new int[rank];
+        int items = 1;
+        if (rowMajor) { // target is column major
+            for (int i = 0; i < rank; i++) {
+                stride[i] = items;
+                items *= shape[i];
+            }
+        } else {
+            for (int i = rank - 1; i >= 0; i--) {
+                stride[i] = items;
+                items *= shape[i];
+            }
+        }
+        int[] map = new int[items];
+        int[] index = new int[rank];
+        int to = 0;
+        for (int k = 0; k < items; k++) {
+            map[k] = to;
+            // advance index in source order
+            for (int n = 0; n < rank; n++) {
+                int i = (rowMajor)?(rank - 1 - n):n;
+                to += stride[i];
+                if (++index[i] < shape[i]) break;
+                to -= stride[i]*shape[i];
+                index[i] = 0;
+            }
+        }
+        return map;
+    }
+
+    static void copy(DoubleBuffer src, DoubleBuffer dst, int count,
+        int items, int[] map) {
+        if (map == null) {
+            src.limit(src.position() + count);
+            dst.put(src);
+            return;
+        }
+        int from = src.position();
+        for (int base = 0; base < count; base += items) {
+            for (int k = 0; k < items; k++) {
+                dst.put(base + map[k], src.get(from + base + k));
+            }
+        }
+    }
+
+    static void copy(DoubleBuffer src, FloatBuffer dst, int count,
+        int items, int[] map) {
+        int from = src.position();
+        if (map == null) {
+            for (int i = 0; i < count; i++) {
+                dst.put(i, (float)src.get(from + i));
+            }
+            return;
+        }
+        for (int base = 0; base < count; base += items) {
+            for (int k = 0; k < items; k++) {
+                dst.put(base + map[k], (float)src.get(from + base + k));
+            }
+        }
+    }
+
+    static void copy(FloatBuffer src, FloatBuffer dst, int count,
+        int items, int[] map) {
+        if (map == null) {
+            src.limit(src.position() + count);
+            dst.put(src);
+            return;
+        }
+        int from = src.position();
+        for (int base = 0; base < count; base += items) {
+            for (int k = 0; k < items; k++) {
+                dst.put(base + map[k], src.get(from + base + k));
+            }
+        }
+    }
+
+    static void copy(FloatBuffer src, DoubleBuffer dst, int count,
+        int items, int[] map) {
+        int from = src.position();
+        if (map == null) {
+            for (int i = 0; i < count; i++) {
+                dst.put(i, (double)src.get(from + i));
+            }
+            return;
+        }
+        for (int base = 0; base < count; base += items) {
+            for (int k = 0; k < items; k++) {
+                dst.put(base + map[k], (double)src.get(from + base + k));
+            }
+        }
+    }
+
+    void checkCompressionMode(int[] recordRange) throws Throwable {
+        if (recordRange == null) {
+            throw new Throwable("Record range must be specified " +
+            "since " + vdr.getName() + "is to be stored as compressed."
+            );
+        }
+        if (_doNotCompress == null) {
+            doNotCompress = (recordRange.length == 2);
+            _doNotCompress = doNotCompress;
+        } else {
+            if ((doNotCompress && (recordRange.length > 2)) ||
+               (!doNotCompress && (recordRange.length == 2))) {
+               String t = "compressed";
+               if (!doNotCompress) t = "uncompressed";
+                throw new Throwable("Changing compression mode of" +
+                " input. Previous = " + t + ".");
+            }    
+        }    
+    }
+
+    int firstRecord(int[] recordRange) throws Throwable {
+        int first = (recordRange == null)?0:recordRange[0];
+        if (lastRecords.size() > 0) {
+            int _last = getLastRecord();
+            if (recordRange == null) {
+                first = _last + 1;
+            } else {
+                if (recordRange[0] <= _last) {
+                    throw new Throwable("first record " + recordRange[0] +
+                    " must follow the last seen record " + _last);
+                }
+                // When files are merged, the records of a variable having
+                // as many records as its time variable in a file start at
+                // the offset of the time variable, skipping those for
+                // which earlier files had no values
+                if (recordRange[0] > (_last + 1)) {
+                    if ((vdr.sRecords == 0) &&
+                        (recordRange[0] != alignedStart)) {
+                        throw new Throwable("Specified start of the range " +
+                        recordRange[0] + " does not follow " +
+                        "last record " + _last + " immediately." +
+                       " SparseRecordOption must be set if the CDF is missing" +
+                        " records");
+                    }
+                }
+            }
+        } else { // first cannot be nonzero unless sparseness option was chosen
+            if (first != 0) {
+                if (vdr.sRecords == 0) {
+                    throw new Throwable("SparseRecordOption " +
+                   "must be set if the CDF is missing records");
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Adds a block of data to be copied from a source file when the CDF
+     * is written. Contents of the block must conform to the row majority
+     * of this container, and be compressed if, and only if, the variable
+     * is to be stored as compressed.
+     */
+    void addBlock(FileDataBlock block, int[] recordRange) throws Throwable {
+        if (block.compressed != vdr.isCompressed()) {
+            throw new Throwable("Compression of block does not match " +
+            "that of " + vdr.getName());
+        }
+        if (vdr.isCompressed()) checkCompressionMode(recordRange);
+        int first = firstRecord(recordRange);
+        firstRecords.add(first);
+        lastRecords.add(recordRange[1]);
+        bufs.add(null);
+        blocks.add(block);
+        points.add(recordRange[1] - first + 1);
+    }
+
+    boolean isMissing(int n) {
+        return (bufs.get(n) == null) && (blocks.get(n) == null);
+    }
+
+    int length(int n) {
+        FileDataBlock block = _blocks.get(n);
+        if (block != null) return block.length;
+        return _bufs.get(n).limit();
+    }
     long[] locs;
     VXR[] vxrs;
 
@@ -387,6 +587,13 @@ public class DataContainer {
      * @return
      */
     public int getSize() {
+        Object event = CDFEvents.beginLayout();
+        int size = _getSize();
+        CDFEvents.endLayout(event, vdr.sname, vdr.isCompressed(), size);
+        return size;
+    }
+
+    int _getSize() {
         // update vdr
         int size = vdr.getSize();
         if (vdr.isCompressed()) {
@@ -399,7 +606,7 @@ public class DataContainer {
             int last = -1;
             int nbuf = bufs.size() - 1;
             while (nbuf >= 0) {
-                if (bufs.get(nbuf) != null) {
+                if (!isMissing(nbuf)) {
                     last = lastRecords.get(nbuf);
                     break;
                 }
@@ -415,31 +622,13 @@ public class DataContainer {
         _firstRecords = new Vector<>();
         _lastRecords = new Vector<>();
         _bufs = new Vector<>();
-        if (timeContainer == null) {
-            int nbuf = 0;
-            while (nbuf < bufs.size()) {
-                if (bufs.get(nbuf) != null) {
-                    _firstRecords.add(firstRecords.get(nbuf));
-                    _lastRecords.add(lastRecords.get(nbuf));
-                    _bufs.add(bufs.get(nbuf));
-                }
-                nbuf++;
-            }
-        } else {
-            int nbuf = 0;
-            while (nbuf < bufs.size()) {
-                if (bufs.get(nbuf) != null) {
-                    int _first = firstRecords.get(nbuf);
-                    if (_first < timeContainer.firstRecords.get(nbuf)) {
-                        _first = timeContainer.firstRecords.get(nbuf);
-                    }
-                    _firstRecords.add(_first);
-                    _lastRecords.add(_first + lastRecords.get(nbuf) -
-                       firstRecords.get(nbuf));
-                    _bufs.add(bufs.get(nbuf));
-                }
-                nbuf++;
-            }
+        _blocks = new Vector<>();
+        for (int n = 0; n < bufs.size(); n++) {
+            if (isMissing(n)) continue;
+            _firstRecords.add(firstRecords.get(n));
+            _lastRecords.add(lastRecords.get(n));
+            _bufs.add(bufs.get(n));
+            _blocks.add(blocks.get(n));
         }
             
         int vxrsNeeded = _bufs.size()/CXR_MAX_ENTRIES;
@@ -465,7 +654,7 @@ public class DataContainer {
             if (!vdr.isCompressed()) {
                 for (int e = 0; e < entries; e++) {
                     locs[nbuf] = position + size;
-                    int len = VVR_PREAMBLE + _bufs.get(nbuf).limit();
+                    int len = VVR_PREAMBLE + length(nbuf);
                     size += len;
                     nbuf++;
                 }
@@ -474,38 +663,38 @@ public class DataContainer {
                 if (doNotCompress) {
                     for (int e = 0; e < entries; e++) {
                         locs[nbuf] = position + size;
-                        int len = CVVR_PREAMBLE + _bufs.get(nbuf).limit();
+                        int len = CVVR_PREAMBLE + length(nbuf);
                         size += len;
                         nbuf++;
                     }
-                    return size;
-                }
-                for (int e = 0; e < entries; e++) {
-                    locs[nbuf] = position + size;
-                    ByteBuffer b = _bufs.get(nbuf);
-                    byte[] uncompressed = null;
-                    if (b.hasArray()) {
-                        uncompressed = b.array();
-                    } else {
-                        uncompressed = new byte[b.remaining()];
-                        b.get(uncompressed);
-                        _bufs.setElementAt(null,nbuf);
-                    }
-                    ByteArrayOutputStream baos;
-                    baos = new ByteArrayOutputStream(uncompressed.length);
-                    try {
-                        GZIPOutputStream gzos = new GZIPOutputStream(baos);
-                        gzos.write(uncompressed, 0, uncompressed.length);
-                        gzos.finish();
-                        baos.flush();
-                        b = ByteBuffer.wrap(baos.toByteArray());
-                        _bufs.setElementAt(b, nbuf);
-                        int len = CVVR_PREAMBLE + b.limit();
-                        size += len;
-                    } catch (IOException ex) {
-                        ex.printStackTrace();
+                } else {
+                    for (int e = 0; e < entries; e++) {
+                        locs[nbuf] = position + size;
+                        ByteBuffer b = _bufs.get(nbuf);
+                        byte[] uncompressed = null;
+                        if (b.hasArray()) {
+                            uncompressed = b.array();
+                        } else {
+                            uncompressed = new byte[b.remaining()];
+                            b.get(uncompressed);
+                            _bufs.setElementAt(null,nbuf);
+                        }
+                        ByteArrayOutputStream baos;
+                        baos = new ByteArrayOutputStream(uncompressed.length);
+                        try {
+                            GZIPOutputStream gzos = new GZIPOutputStream(baos);
+                            gzos.write(uncompressed, 0, uncompressed.length);
+                            gzos.finish();
+                            baos.flush();
+                            b = ByteBuffer.wrap(baos.toByteArray());
+                            _bufs.setElementAt(b, nbuf);
+                            int len = CVVR_PREAMBLE + b.limit();
+                            size += len;
+                        } catch (IOException ex) {
+                            ex.printStackTrace();
+                        }
+                        nbuf++;
                     }
-                    nbuf++;
                 }
             }
             if (v != (vxrs.length - 1)) vxrs[v].setVXRNext(position + size);
@@ -518,8 +707,9 @@ public class DataContainer {
      *
      * @param buf
      * @return
+     * @throws IOException
      */
-    public ByteBuffer update(ByteBuffer buf) {
+    public ByteBuffer update(ByteBuffer buf) throws IOException {
         buf.position((int)position);
         buf.put(vdr.get());
         if (vdr.isCompressed()) {
@@ -543,18 +733,18 @@ public class DataContainer {
                 }
                 if (!vdr.isCompressed()) {
                     for (int e = 0; e < vxr1.numEntries; e++) {
-                        buf.putLong(VVR_PREAMBLE + _bufs.get(nbuf + e).limit());
+                        buf.putLong(VVR_PREAMBLE + length(nbuf + e));
                         buf.putInt(7);
-                        buf.put(_bufs.get(nbuf + e));
+                        put(buf, nbuf + e);
                     }
                 } else {
                     for (int e = 0; e < vxr1.numEntries; e++) {
-                        ByteBuffer b = _bufs.get(nbuf + e);
-                        buf.putLong(CVVR_PREAMBLE + b.limit());
+                        int len = length(nbuf + e);
+                        buf.putLong(CVVR_PREAMBLE + len);
                         buf.putInt(13);
                         buf.putInt(0);
-                        buf.putLong((long)b.limit());
-                        buf.put(b);
+                        buf.putLong((long)len);
+                        put(buf, nbuf + e);
                     }
                 }
                 nbuf += vxr1.numEntries;
@@ -562,6 +752,24 @@ public class DataContainer {
         }
         return buf;
     }
+    void put(ByteBuffer buf, int n) throws IOException {
+        FileDataBlock block = _blocks.get(n);
+        if (block != null) {
+            block.readInto(buf);
+        } else {
+            buf.put(_bufs.get(n));
+        }
+    }
+
+    void write(ChannelWriter out, int n) throws IOException {
+        FileDataBlock block = _blocks.get(n);
+        if (block != null) {
+            out.write(block);
+        } else {
+            out.write(_bufs.get(n));
+        }
+    }
+
     int getBlockingFactor() {
         int n = -1;
         for (int i = 0; i < points.size(); i++) {
@@ -659,7 +867,7 @@ public class DataContainer {
         }
         if (buf == null) return true;
         if (CDFTimeType.TT2000.getValue() == vdr.dataType) {
-            return (((long[])nextTime)[0] > buf.getLong(buf.limit()));
+            return (((long[])nextTime)[0] > buf.getLong(buf.limit() - 8));
         }
         if (CDFTimeType.EPOCH16.getValue() == vdr.dataType) {
             double[] e16 = new double[2];
@@ -681,61 +889,55 @@ public class DataContainer {
      */
     public void update(FileChannel channel) throws IOException {
         channel.position(position);
-        channel.write(vdr.get());
+        ChannelWriter out = new ChannelWriter(channel);
+        update(out);
+        out.finish();
+    }
+
+    /**
+     * Writes the container at the current position of out, which must be
+     * the position of the container.
+     */
+    void update(ChannelWriter out) throws IOException {
+        if (out.position() != position) {
+            throw new IOException("Container for " + vdr.sname +
+                " is to be written at " + position + ", not at " +
+                out.position());
+        }
+        out.write(vdr.get());
         if (vdr.isCompressed()) {
-            channel.write(cpr.get());
+            out.write(cpr.get());
         }
         if (_bufs == null) return;
         int nbuf = 0;
-        ByteBuffer longbuf = ByteBuffer.allocate(8);
-        ByteBuffer intbuf = ByteBuffer.allocate(4);
         if (_bufs.size() > 0) {
             for (VXR vxr1 : vxrs) {
-                channel.write(vxr1.get());
+                out.write(vxr1.get());
                 for (int e = 0; e < vxr1.numEntries; e++) {
-                    int n = _firstRecords.get(nbuf + e);
-                    writeInt(channel, intbuf, n);
+                    out.reserve(4).putInt(_firstRecords.get(nbuf + e));
                 }
                 for (int e = 0; e < vxr1.numEntries; e++) {
-                    int n = _lastRecords.get(nbuf + e);
-                    writeInt(channel, intbuf, n);
+                    out.reserve(4).putInt(_lastRecords.get(nbuf + e));
                 }
                 for (int e = 0; e < vxr1.numEntries; e++) {
-                    writeLong(channel, longbuf, locs[nbuf + e]);
+                    out.reserve(8).putLong(locs[nbuf + e]);
                 }
                 if (!vdr.isCompressed()) {
                     for (int e = 0; e < vxr1.numEntries; e++) {
-                        writeLong(channel, longbuf,
-                                VVR_PREAMBLE + _bufs.get(nbuf + e).limit());
-                        writeInt(channel, intbuf, 7);
-                        channel.write(_bufs.get(nbuf + e));
+                        out.reserve(12).putLong(VVR_PREAMBLE +
+                            length(nbuf + e)).putInt(7);
+                        write(out, nbuf + e);
                     }
                 } else {
                     for (int e = 0; e < vxr1.numEntries; e++) {
-                        ByteBuffer b = _bufs.get(nbuf + e);
-                        writeLong(channel, longbuf, CVVR_PREAMBLE + b.limit());
-                        writeInt(channel, intbuf, 13);
-                        writeInt(channel, intbuf, 0);
-                        writeLong(channel, longbuf, (long)b.limit());
-                        channel.write(b);
+                        int len = length(nbuf + e);
+                        out.reserve(24).putLong(CVVR_PREAMBLE + len)
+                            .putInt(13).putInt(0).putLong((long)len);
+                        write(out, nbuf + e);
                     }
                 }
                 nbuf += vxr1.numEntries;
             }
         }
     }
-    void writeInt(FileChannel ch, ByteBuffer buf, int value) throws
-        IOException {
-        buf.position(0);
-        buf.putInt(value);
-        buf.position(0);
-        ch.write(buf);
-    }
-    void writeLong(FileChannel ch, ByteBuffer buf, long value) throws
-        IOException {
-        buf.position(0);
-        buf.putLong(value);
-        buf.position(0);
-        ch.write(buf);
-    }
 }
@@ -0,0 +1,98 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.*;
+
+/**
+ * Verifies the MD5 digest at the end of a version 3 CDF file.
+ * The file is mapped in chunks; while one chunk is digested, the next
+ * one is mapped and loaded by another thread. Verification runs in the
+ * background, so that it does not delay opening the file.
+ */
+final class DigestVerifier implements Callable<Boolean> {
+    static final int CHUNK = 64*1024*1024;
+    static final int OFFSET_FLAGS = 40;
+    static final int MD5_FLAGS = 0xc;
+    static final ExecutorService executor = Executors.newCachedThreadPool(
+        new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "cdfj-digest");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    final String path;
+    final int chunk;
+
+    DigestVerifier(String path, int chunk) {
+        this.path = path;
+        this.chunk = chunk;
+    }
+
+    /**
+     * Returns whether the named file is a version 3 CDF that carries an
+     * MD5 digest.
+     */
+    static boolean hasDigest(String path) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(path, "r")) {
+            if (raf.length() < OFFSET_FLAGS + 4 + 16) return false;
+            if (raf.readLong() != CDFFactory.CDF3_MAGIC) return false;
+            raf.seek(OFFSET_FLAGS);
+            return (raf.readInt() & MD5_FLAGS) == MD5_FLAGS;
+        }
+    }
+
+    /**
+     * Starts verification of the named file, which must carry an MD5
+     * digest. The result is true if the digest matches the contents.
+     */
+    static Future<Boolean> submit(String path) throws IOException {
+        if (!hasDigest(path)) {
+            throw new IOException(path + " does not have an MD5 digest.");
+        }
+        return executor.submit(new DigestVerifier(path, CHUNK));
+    }
+
+    @Override
+    public Boolean call() throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException nsa) {
+            throw new IOException(nsa.getMessage());
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(path, "r")) {
+            final FileChannel ch = raf.getChannel();
+            long eof = ch.size() - 16;
+            Future<MappedByteBuffer> next = load(ch, 0, eof);
+            for (long pos = 0; pos < eof; pos += chunk) {
+                MappedByteBuffer buf = next.get();
+                next = (pos + chunk < eof)? load(ch, pos + chunk, eof) : null;
+                md.update(buf);
+            }
+            ByteBuffer expected = ByteBuffer.allocate(16);
+            FileDataBlock.Source.read(ch, expected, eof);
+            return MessageDigest.isEqual(expected.array(), md.digest());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(ex.getMessage());
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) throw (IOException)cause;
+            throw new IOException(cause);
+        }
+    }
+
+    Future<MappedByteBuffer> load(final FileChannel ch, final long pos,
+        final long eof) {
+        return executor.submit(new Callable<MappedByteBuffer>() {
+            public MappedByteBuffer call() throws IOException {
+                long size = Math.min(chunk, eof - pos);
+                return ch.map(FileChannel.MapMode.READ_ONLY, pos, size).load();
+            }
+        });
+    }
+}
@@ -1960,6 +1960,175 @@ public class Extractor {
         if (longType) return ldata;
         return data;
     }
+
+    /**
+     * returns values of a hyperslab of a numeric variable. The hyperslab
+     * consists of records first through last, and, along each effective
+     * dimension i, of count[i] indices beginning at start[i] and
+     * stride[i] apart. Only the selected elements are decoded.
+     * Values are returned in a flat array, record by record, with the
+     * last dimension of the hyperslab varying fastest, regardless of the
+     * majority of the CDF. Missing records are filled with pad values.
+     * @param thisCDF
+     * @param var
+     * @param first
+     * @param last
+     * @param start
+     * @param count
+     * @param stride
+     * @return double[], or long[] for variables of type INT8 or TT2000
+     * @throws java.lang.Throwable
+     */
+    public static Object getHyperslab(CDFImpl thisCDF, Variable var,
+        int first, int last, int[] start, int[] count, int[] stride)
+        throws Throwable {
+        int type = var.getType();
+        int category = DataTypes.typeCategory[type];
+        if ((category == DataTypes.STRING) || (type == DataTypes.EPOCH16)) {
+            throw new Throwable("Hyperslab is not supported for variable " +
+                var.getName() + " of type " + type);
+        }
+        if (last < first) throw new Throwable("Invalid record range " +
+            first + " to " + last);
+        int[] offsets = hyperslabOffsets(var, start, count, stride);
+        int ne = offsets.length;
+        int esize = DataTypes.size[type];
+        for (int e = 0; e < ne; e++) offsets[e] *= esize;
+        int size = var.getDataItemSize();
+        long values = ((long)last - first + 1)*ne;
+        if (values > Integer.MAX_VALUE) throw new Throwable("Hyperslab " +
+            "of " + values + " values of " + var.getName() +
+            " is too large.");
+        int nrec = last - first + 1;
+        boolean longType = (category == DataTypes.LONG);
+        long longInt = DataTypes.longInt[type];
+        double[] data = (longType)?null:new double[nrec*ne];
+        long[] ldata = (longType)?new long[nrec*ne]:null;
+        Object pad = getPadValue(thisCDF, var);
+        Vector locations =
+            ((CDFImpl.DataLocator)var.getLocator()).getLocationsAsVector();
+        int[] blks = getBlockRange(locations, var.recordVariance(), first,
+            last);
+        int done = 0;
+        for (int blk = (blks == null)?0:blks[0];
+            (blks != null) && (blk <= blks[1]); blk++) {
+            Object[] oa = positionBuffer((CDFImpl)thisCDF, var, blks, blk,
+                first, last);
+            if (oa == null) break;
+            ByteBuffer bv = (ByteBuffer)oa[0];
+            int _first = ((Integer)oa[1]);
+            int _last = ((Integer)oa[2]);
+            done = fillPad(pad, offsets, esize, data, ldata, done,
+                _first - first);
+            int pos = bv.position();
+            int index = done*ne;
+            for (int n = _first; n <= _last; n++) {
+                for (int e = 0; e < ne; e++) {
+                    int p = pos + offsets[e];
+                    switch (category) {
+                    case 0:
+                        data[index++] = bv.getFloat(p);
+                        break;
+                    case 1:
+                        data[index++] = bv.getDouble(p);
+                        break;
+                    case 2:
+                    case 3:
+                        long x;
+                        if (esize == 1) {
+                            x = bv.get(p);
+                        } else if (esize == 2) {
+                            x = bv.getShort(p);
+                        } else {
+                            x = bv.getInt(p);
+                        }
+                        if ((category == 3) && (x < 0)) x += longInt;
+                        data[index++] = (double)x;
+                        break;
+                    case 5:
+                        ldata[index++] = bv.getLong(p);
+                        break;
+                    }
+                }
+                pos += size;
+            }
+            done += _last - _first + 1;
+        }
+        fillPad(pad, offsets, esize, data, ldata, done, nrec);
+        if (!var.recordVariance()) {
+            for (int n = 1; n < nrec; n++) {
+                if (longType) {
+                    System.arraycopy(ldata, 0, ldata, n*ne, ne);
+                } else {
+                    System.arraycopy(data, 0, data, n*ne, ne);
+                }
+            }
+        }
+        if (longType) return ldata;
+        return data;
+    }
+
+    /**
+     * returns offsets, in units of elements, within a record of the
+     * elements of a hyperslab.
+     */
+    static int[] hyperslabOffsets(Variable var, int[] start, int[] count,
+        int[] stride) throws Throwable {
+        int[] dim = var.getEffectiveDimensions();
+        int rank = dim.length;
+        if ((start.length != rank) || (count.length != rank) ||
+            (stride.length != rank)) {
+            throw new Throwable("start, count and stride must have " + rank +
+                " elements for " + var.getName());
+        }
+        int[] step = new int[rank];
+        int n = 1;
+        for (int j = 0; j < rank; j++) {
+            int i = (var.rowMajority())?rank - 1 - j:j;
+            step[i] = n;
+            n *= dim[i];
+        }
+        int total = 1;
+        for (int i = 0; i < rank; i++) {
+            if ((start[i] < 0) || (count[i] < 1) || (stride[i] < 1) ||
+                (start[i] + (long)(count[i] - 1)*stride[i] >= dim[i])) {
+                throw new Throwable("Invalid hyperslab along dimension " + i +
+                    " of " + var.getName() + " (" + dim[i] + ")");
+            }
+            total *= count[i];
+        }
+        int[] offsets = new int[total];
+        int[] index = new int[rank];
+        for (int e = 0; e < total; e++) {
+            int offset = 0;
+            for (int i = 0; i < rank; i++) {
+                offset += (start[i] + index[i]*stride[i])*step[i];
+            }
+            offsets[e] = offset;
+            for (int i = rank - 1; i >= 0; i--) {
+                if (++index[i] < count[i]) break;
+                index[i] = 0;
+            }
+        }
+        return offsets;
+    }
+
+    // fills records from through to - 1 of a hyperslab with pad values
+    static int fillPad(Object pad, int[] offsets, int esize, double[] data,
+        long[] ldata, int from, int to) {
+        int ne = offsets.length;
+        for (int n = from; n < to; n++) {
+            for (int e = 0; e < ne; e++) {
+                int element = offsets[e]/esize;
+                if (ldata != null) {
+                    ldata[n*ne + e] = ((long[])pad)[element];
+                } else {
+                    data[n*ne + e] = ((double[])pad)[element];
+                }
+            }
+        }
+        return (to > from)?to:from;
+    }
 /*
     public static double [][][] getRange2(CDFImpl thisCDF, Variable var,
         Integer istart, Integer iend) throws Throwable {
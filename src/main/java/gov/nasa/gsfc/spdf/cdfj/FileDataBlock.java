@@ -0,0 +1,168 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * Reference to the data portion of a VVR or CVVR of a CDF file.
+ * Data is copied from the source file when the output CDF is written,
+ * and is not held in memory in the meantime.
+ */
+final class FileDataBlock {
+    final Source source;
+    final long offset;
+    final int length;
+    final boolean compressed;
+
+    FileDataBlock(Source source, long offset, int length, boolean compressed) {
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
+        this.compressed = compressed;
+    }
+
+    /**
+     * Copies the block to the current position of the target channel.
+     */
+    void transferTo(FileChannel target) throws IOException {
+        FileChannel ch = source.channel();
+        long done = 0;
+        while (done < length) {
+            long n = ch.transferTo(offset + done, length - done, target);
+            if (n <= 0) throw new IOException("Unexpected end of data in " +
+                source.path);
+            done += n;
+        }
+    }
+
+    /**
+     * Reads the block into the target buffer at its current position.
+     */
+    void readInto(ByteBuffer target) throws IOException {
+        FileChannel ch = source.channel();
+        ByteBuffer dst = target.duplicate();
+        dst.limit(dst.position() + length);
+        long pos = offset;
+        while (dst.remaining() > 0) {
+            int n = ch.read(dst, pos);
+            if (n < 0) throw new IOException("Unexpected end of data in " +
+                source.path);
+            pos += n;
+        }
+        target.position(target.position() + length);
+    }
+
+    /**
+     * An uncompressed version 3 CDF file whose blocks may be copied
+     * verbatim, or a scratch file of blocks prepared by a writer.
+     */
+    static final class Source {
+        final String path;
+        FileChannel channel;
+
+        private Source(String path) {
+            this.path = path;
+        }
+
+        /**
+         * Returns a Source for the named file, or null if the file is not
+         * an uncompressed version 3 CDF.
+         */
+        static Source open(String path) throws IOException {
+            Source source = new Source(path);
+            ByteBuffer magic = ByteBuffer.allocate(8);
+            FileChannel ch = source.channel();
+            while (magic.remaining() > 0) {
+                if (ch.read(magic, magic.position()) < 0) break;
+            }
+            if ((magic.remaining() > 0) ||
+                (magic.getLong(0) != CDFFactory.CDF3_MAGIC)) {
+                source.close();
+                return null;
+            }
+            return source;
+        }
+
+        /**
+         * Returns a Source for a scratch file holding blocks encoded by the
+         * caller. The file is not checked to be a CDF.
+         */
+        static Source scratch(String path) {
+            return new Source(path);
+        }
+
+        synchronized FileChannel channel() throws IOException {
+            if ((channel == null) || !channel.isOpen()) {
+                channel = new RandomAccessFile(path, "r").getChannel();
+            }
+            return channel;
+        }
+
+        synchronized void close() {
+            if (channel == null) return;
+            try {
+                channel.close();
+            } catch (IOException ex) {
+            }
+            channel = null;
+        }
+
+        /**
+         * Returns the block described by a location {first, last, offset}
+         * of a variable whose records are itemSize bytes long.
+         */
+        FileDataBlock block(long[] location, int itemSize) throws
+            IOException {
+            FileChannel ch = channel();
+            ByteBuffer header = ByteBuffer.allocate(4);
+            long offset = location[2];
+            read(ch, header, offset + CDF3.OFFSET_RECORD_TYPE);
+            int type = header.getInt(0);
+            if (type == CDFImpl.VVR_RECORD_TYPE) {
+                long len = (location[1] - location[0] + 1)*itemSize;
+                if (len > Integer.MAX_VALUE) {
+                    throw new IOException("Block of " + len + " bytes at " +
+                        offset + " in " + path + " is too large.");
+                }
+                return new FileDataBlock(this, offset + CDF3.OFFSET_RECORDS,
+                    (int)len, false);
+            }
+            if (type != CDFImpl.CVVR_RECORD_TYPE) {
+                throw new IOException("Unexpected record type " + type +
+                    " at " + offset + " in " + path);
+            }
+            // a VVR may end less than 16 bytes before the end of the file,
+            // so the size of compressed data is read only for a CVVR
+            header = ByteBuffer.allocate(8);
+            read(ch, header, offset + CDF3.OFFSET_CSIZE);
+            long csize = header.getLong(0);
+            return new FileDataBlock(this, offset + CDF3.OFFSET_CDATA,
+                (int)csize, true);
+        }
+
+        /**
+         * Returns whether the compressed blocks of the variable whose VDR
+         * is at vdrOffset are compressed with GZIP, the only compression
+         * the writer can index.
+         */
+        boolean isGzipped(long vdrOffset) throws IOException {
+            FileChannel ch = channel();
+            ByteBuffer buf = ByteBuffer.allocate(8);
+            read(ch, buf, vdrOffset + CDFAppender.VDR_OFFSET_CPR);
+            long cpr = buf.getLong(0);
+            if (cpr == 0) return false;
+            buf = ByteBuffer.allocate(4);
+            read(ch, buf, cpr + CDFAppender.CPR_OFFSET_CTYPE);
+            return (buf.getInt(0) == CDFAppender.GZIP_COMPRESSION);
+        }
+
+        static void read(FileChannel ch, ByteBuffer buf, long pos) throws
+            IOException {
+            buf.clear();
+            while (buf.remaining() > 0) {
+                int n = ch.read(buf, pos + buf.position());
+                if (n < 0) throw new IOException("Unexpected end of data");
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ import java.io.*;
 import java.net.*;
 import java.nio.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.lang.reflect.*;
 import java.util.logging.Logger;
 /**
@@ -14,7 +15,10 @@ import java.util.logging.Logger;
  */
 public class GenericReader extends MetaData {
     private ThreadGroup tgroup;
-    private Hashtable threadMap = new Hashtable();
+    private final ConcurrentHashMap<String, ThreadMapEntry> threadMap =
+        new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, BlockStatistics> statistics =
+        new ConcurrentHashMap<>();
     static final Hashtable classMap = new Hashtable();
     static {
         classMap.put("long", Long.TYPE);
@@ -55,8 +59,11 @@ public class GenericReader extends MetaData {
         LOGGER.exiting("GenericReader","constructor");
         //setup();
     }
-    void setup() {
-        tgroup = new ThreadGroup(Integer.toHexString(hashCode()));
+    synchronized ThreadGroup setup() {
+        if (tgroup == null) {
+            tgroup = new ThreadGroup(Integer.toHexString(hashCode()));
+        }
+        return tgroup;
     }
     /**
      * Constructs a reader for the given CDF URL.
@@ -449,6 +456,73 @@ public class GenericReader extends MetaData {
         }
     }
 
+    /**
+     * Returns values of a hyperslab of a numeric variable.
+     * <p>
+     * The hyperslab consists of records first through last, and, along
+     * each effective dimension i, of count[i] indices beginning at
+     * start[i] and stride[i] apart. Only the selected elements are
+     * decoded. Values are returned in a flat array, record by record, with
+     * the last dimension of the hyperslab varying fastest, whatever the
+     * majority of the CDF. For a scalar variable, start, count and stride
+     * are empty arrays.
+     * </p>
+     * Missing records are filled with the pad value.
+     * @param    varName   variable name
+     * @param    first     first record of range
+     * @param    last      last record of range
+     * @param    start     first index along each effective dimension
+     * @param    count     number of indices along each effective dimension
+     * @param    stride    spacing of indices along each effective dimension
+     * @return
+     * @throws CDFException.ReaderError for character, INT8 or TT2000 types,
+     * and if the hyperslab does not fit the variable's dimensions.
+     * @see #getLongHyperslab(String, int, int, int[], int[], int[])
+     */
+    public final double[] getHyperslab(String varName, int first, int last,
+        int[] start, int[] count, int[] stride) throws
+        CDFException.ReaderError {
+        checkType(varName);
+        try {
+            return (double[])Extractor.getHyperslab(thisCDF,
+                thisCDF.getVariable(varName), first, last, start, count,
+                stride);
+        } catch (Throwable th) {
+            throw new CDFException.ReaderError(th.getMessage());
+        }
+    }
+
+    /**
+     * Returns values of a hyperslab of a variable of type INT8 or TT2000.
+     * @param    varName   variable name
+     * @param    first     first record of range
+     * @param    last      last record of range
+     * @param    start     first index along each effective dimension
+     * @param    count     number of indices along each effective dimension
+     * @param    stride    spacing of indices along each effective dimension
+     * @return
+     * @throws CDFException.ReaderError for types other than INT8 and TT2000,
+     * and if the hyperslab does not fit the variable's dimensions.
+     * @see #getHyperslab(String, int, int, int[], int[], int[])
+     */
+    public final long[] getLongHyperslab(String varName, int first, int last,
+        int[] start, int[] count, int[] stride) throws
+        CDFException.ReaderError {
+        Variable var = thisCDF.getVariable(varName);
+        if (var == null) throw new CDFException.ReaderError(
+            "No such variable " + varName);
+        if (DataTypes.typeCategory[var.getType()] != DataTypes.LONG) {
+            throw new CDFException.ReaderError(varName +
+                " is not of type INT8 or TT2000.");
+        }
+        try {
+            return (long[])Extractor.getHyperslab(thisCDF, var, first, last,
+                start, count, stride);
+        } catch (Throwable th) {
+            throw new CDFException.ReaderError(th.getMessage());
+        }
+    }
+
     /**
      * Starts a new thread to extract specified data.
      * @param    varName   variable name
@@ -504,10 +578,9 @@ public class GenericReader extends MetaData {
         Class type = getContainerClass(targetType);
         VDataContainer container = getContainer(varName, type,
             recordRange, preserve, bo);
-        if (tgroup == null) setup();
-        Thread thread = new Thread(tgroup, container, tname);
-        thread.start();
+        Thread thread = new Thread(setup(), container, tname);
         threadMap.put(tname, new ThreadMapEntry(container, thread));
+        thread.start();
         return tname;
     }
 
@@ -520,35 +593,39 @@ public class GenericReader extends MetaData {
      */
     public final boolean threadFinished(String threadName) throws
         CDFException.ReaderError {
-        Thread thread =
-            ((ThreadMapEntry)threadMap.get(threadName)).getThread();
-        if (thread == null) {
+        return (entry(threadName).getThread().getState() ==
+            Thread.State.TERMINATED);
+    }
+
+    ThreadMapEntry entry(String threadName) throws CDFException.ReaderError {
+        ThreadMapEntry entry = (threadName == null)?null:
+            threadMap.get(threadName);
+        if (entry == null) {
             throw new CDFException.ReaderError("Invalid thread name " +
             threadName);
         }
-        return (thread.getState() == Thread.State.TERMINATED);
+        return entry;
     }
 
     /**
      * Returns data extracted by the named thread as ByteBuffer.After this method returns the ByteBuffer, threadName is forgotten.
+     * A buffer drawn from a {@link #setBufferPool(BufferPool) pool} is
+     * handed over to the caller, and is not returned to the pool.
      * @param threadName
      * @return
      * @throws java.lang.Throwable
      */ 
     public final ByteBuffer getBuffer(String threadName) throws Throwable {
         if (threadFinished(threadName)) {
-            synchronized (threadMap) {
-                VDataContainer container =
-                ((ThreadMapEntry)threadMap.get(threadName)).getContainer();
-                ByteBuffer buffer = null;
-                try {
-                    buffer = container.getBuffer();
-                } catch (Throwable th) {
-                    throw new CDFException.ReaderError(th.getMessage());
-                }
-                threadMap.remove(threadName);
-                return buffer;
+            ThreadMapEntry entry = entry(threadName);
+            ByteBuffer buffer = null;
+            try {
+                buffer = entry.getContainer().getBuffer();
+            } catch (Throwable th) {
+                throw new CDFException.ReaderError(th.getMessage());
             }
+            if (threadMap.remove(threadName, entry)) entry.detach();
+            return buffer;
         } else {
             throw new CDFException.ReaderError("Thread " + threadName +
             " is working");
@@ -566,19 +643,15 @@ public class GenericReader extends MetaData {
     public final Object getOneDArray(String threadName, boolean columnMajor)
         throws CDFException.ReaderError {
         if (threadFinished(threadName)) {
-            synchronized (threadMap) {
-                VDataContainer container =
-                ((ThreadMapEntry)threadMap.get(threadName)).getContainer();
-                //System.out.println("getOneDArray: " + container);
-                Object array = null;
-                try {
-                    array = container.asOneDArray(columnMajor);
-                } catch (Throwable th) {
-                    throw new CDFException.ReaderError(th.getMessage());
-                }
-                threadMap.remove(threadName);
-                return array;
+            ThreadMapEntry entry = entry(threadName);
+            Object array = null;
+            try {
+                array = entry.getContainer().asOneDArray(columnMajor);
+            } catch (Throwable th) {
+                throw new CDFException.ReaderError(th.getMessage());
             }
+            if (threadMap.remove(threadName, entry)) entry.close();
+            return array;
         } else {
             throw new CDFException.ReaderError("Thread " + threadName +
             " is working");
@@ -639,6 +712,8 @@ public class GenericReader extends MetaData {
             throw new CDFException.ReaderError(th.getMessage());
         }
         container.setDirect(useDirect);
+        // the caller has no way to return the buffer to a pool
+        container.setBufferPool(null);
         container.run();
         return container.getBuffer();
     }
@@ -670,7 +745,58 @@ public class GenericReader extends MetaData {
             throw new CDFException.ReaderError(th.getMessage());
         }
         container.run();
-        return container.asOneDArray(columnMajor);
+        try {
+            return container.asOneDArray(columnMajor);
+        } finally {
+            container.close();
+        }
+    }
+
+    /**
+     * Returns all available values of a numeric variable as an
+     * {@link NDArray NDArray} of doubles, dimension 0 being the record.
+     * For variable of type long, loss of precision may occur.
+     * @param    varName   variable name
+     * @return
+     * @throws CDFException.ReaderError
+     */
+    public final NDArray getNDArray(String varName) throws
+        CDFException.ReaderError {
+        return getNDArray(varName, null, "double", false);
+    }
+
+    /**
+     * Returns values of a numeric variable for a range of records as an
+     * {@link NDArray NDArray} of specified type, dimension 0 being the
+     * record. Values are not rearranged: strides of the returned array
+     * reflect the storage order of the variable.
+     * If a {@link #setBufferPool(BufferPool) buffer pool} is set, the
+     * values are held in a pooled buffer, returned to the pool when the
+     * array is {@link NDArray#close() closed}.
+     * @param    varName   variable name
+     * @param    recordRange  first and last record, or null for all
+     * @param    type  desired type of extracted data - one of
+     *                 the following: "long", "double", "float", "int", "short",
+     *                 or "byte"
+     * @param    preserve    specifies whether the target must preserve
+     *                       precision. if false, possible loss of precision
+     *                       is deemed acceptable.
+     * @return
+     * @throws CDFException.ReaderError
+     */
+    public final NDArray getNDArray(String varName, int[] recordRange,
+        String type, boolean preserve) throws CDFException.ReaderError {
+        BaseVarContainer container = null;
+        try {
+            container = getRangeContainer(varName, recordRange, type,
+                preserve);
+            NDArray a = container.asNDArray();
+            a.owner = container;
+            return a;
+        } catch (Throwable t) {
+            if (container != null) container.close();
+            throw new CDFException.ReaderError(t.getMessage());
+        }
     }
 
     String threadName(String varName, String type, int[] recordRange,
@@ -701,6 +827,24 @@ public class GenericReader extends MetaData {
         }
         VDataContainer getContainer() {return container;}
         Thread getThread() {return thread;}
+
+        /**
+         * Returns the buffer of the container to its pool, once the data
+         * has been taken from it.
+         */
+        void close() {
+            container.close();
+        }
+
+        /**
+         * Leaves the buffer of the container to the caller it was given
+         * to.
+         */
+        void detach() {
+            if (container instanceof BaseVarContainer) {
+                ((BaseVarContainer)container).detach();
+            }
+        }
     }
 
     void checkType(String varName) throws CDFException.ReaderError {
@@ -716,6 +860,124 @@ public class GenericReader extends MetaData {
         }
     }
 
+    /**
+     * Returns {@link BlockStatistics statistics} of the blocks of the
+     * specified variable, computing those of blocks for which they are
+     * not already known.
+     * @param varName
+     * @return
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError if the
+     * variable is not numeric, or is of type long.
+     */
+    public BlockStatistics getBlockStatistics(String varName) throws
+        CDFException.ReaderError {
+        checkNumeric(varName);
+        try {
+            return statistics(varName, null, null);
+        } catch (Throwable th) {
+            throw new CDFException.ReaderError(th.getMessage());
+        }
+    }
+
+    /**
+     * Returns the records of the specified variable which match a
+     * {@link ValuePredicate predicate}, as runs of consecutive records.
+     * <p>
+     * Blocks whose {@link BlockStatistics statistics} show that they
+     * cannot contain a matching record are not read. Statistics of blocks
+     * not yet known are computed as the blocks are read, and kept for
+     * later queries.
+     * </p>
+     * @param varName
+     * @param predicate
+     * @return int[n][2] containing the first and the last record of each
+     * run of matching records, in increasing order.
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError if the
+     * variable is not numeric, or is of type long.
+     */
+    public int[][] findRecords(String varName, ValuePredicate predicate)
+        throws CDFException.ReaderError {
+        checkNumeric(varName);
+        if (predicate == null) {
+            throw new CDFException.ReaderError("Predicate is null.");
+        }
+        List<int[]> ranges = new ArrayList<>();
+        try {
+            statistics(varName, predicate, ranges);
+        } catch (Throwable th) {
+            throw new CDFException.ReaderError(th.getMessage());
+        }
+        return ranges.toArray(new int[ranges.size()][]);
+    }
+
+    /**
+     * Writes the block statistics known to this reader to a sidecar file,
+     * replacing it.
+     * @param fname
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     */
+    public void saveBlockStatistics(String fname) throws
+        CDFException.ReaderError {
+        try {
+            BlockStatistics.save(fname, statistics.values());
+        } catch (IOException ex) {
+            throw new CDFException.ReaderError(ex.getMessage());
+        }
+    }
+
+    /**
+     * Reads block statistics written by
+     * {@link #saveBlockStatistics(String) saveBlockStatistics} for this
+     * file. Statistics of a block are used only if a block with the same
+     * records and offset is in the file.
+     * @param fname
+     * @return number of variables whose statistics were read, 0 if the
+     * file does not exist.
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError if the file
+     * could not be read.
+     */
+    public int loadBlockStatistics(String fname) throws
+        CDFException.ReaderError {
+        List<BlockStatistics> list;
+        try {
+            list = BlockStatistics.load(fname);
+        } catch (IOException ex) {
+            throw new CDFException.ReaderError(ex.getMessage());
+        }
+        int n = 0;
+        for (BlockStatistics stats : list) {
+            Variable var = thisCDF.getVariable(stats.name);
+            if ((var == null) || DataTypes.isStringType(var.getType()) ||
+                (DataTypes.typeCategory[var.getType()] == DataTypes.LONG)) {
+                continue;
+            }
+            statistics.put(stats.name, stats);
+            n++;
+        }
+        return n;
+    }
+
+    BlockStatistics statistics(String varName, ValuePredicate predicate,
+        List<int[]> ranges) throws Throwable {
+        Variable var = thisCDF.getVariable(varName);
+        BlockStatistics known = statistics.get(varName);
+        if ((known != null) && (predicate == null) &&
+            Arrays.deepEquals(known.blocks, BlockStatistics.blocks(var))) {
+            return known;
+        }
+        BlockStatistics stats = BlockStatistics.scan(thisCDF, var, known,
+            predicate, ranges);
+        statistics.put(varName, stats);
+        return stats;
+    }
+
+    void checkNumeric(String varName) throws CDFException.ReaderError {
+        checkType(varName);
+        if (DataTypes.isStringType(thisCDF.getVariable(varName).getType())) {
+            throw new CDFException.ReaderError(varName + " is not numeric.");
+        }
+    }
+
     /**
      *
      * @return
@@ -728,6 +990,61 @@ public class GenericReader extends MetaData {
      */
     public final String getSource() {return thisCDF.getSource().getName();}
 
+    /**
+     * Returns whether the source CDF is a file that carries an MD5 digest.
+     * @return
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     */
+    public final boolean hasDigest() throws CDFException.ReaderError {
+        if (!sourceIsFile()) return false;
+        try {
+            return DigestVerifier.hasDigest(getSource());
+        } catch (IOException ex) {
+            throw new CDFException.ReaderError(ex.getMessage());
+        }
+    }
+
+    /**
+     * Starts verification of the MD5 digest of the source CDF file in
+     * the background. The file is read through memory mapped chunks,
+     * and the returned Future yields true if the digest matches.
+     * @return
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     * if the source is not a file, or has no MD5 digest.
+     * @see #hasDigest()
+     */
+    public final Future<Boolean> verifyDigest() throws
+        CDFException.ReaderError {
+        if (!sourceIsFile()) throw new CDFException.ReaderError(
+            getSource() + " is not a file.");
+        try {
+            return DigestVerifier.submit(getSource());
+        } catch (IOException ex) {
+            throw new CDFException.ReaderError(ex.getMessage());
+        }
+    }
+
+    /**
+     * Sets the pool from which variable containers created for this CDF
+     * draw their buffers. Containers used internally to build arrays are
+     * returned to the pool once the array is built; others are returned
+     * when closed, as are arrays returned by
+     * {@link #getNDArray(String, int[], String, boolean) getNDArray}.
+     * Buffers returned by getBuffer are not drawn from the pool.
+     * A null pool disables pooling.
+     * @param pool
+     */
+    public final void setBufferPool(BufferPool pool) {
+        thisCDF.bufferPool = pool;
+    }
+
+    /**
+     * Returns the pool set by {@link #setBufferPool(BufferPool)
+     * setBufferPool}, or null.
+     * @return
+     */
+    public final BufferPool getBufferPool() {return thisCDF.bufferPool;}
+
     /**
      * Returns whether a variable is scalar.
      * @param varName
@@ -846,7 +1163,11 @@ public class GenericReader extends MetaData {
                 range, type, preserve);
             int[] _stride = (stride > 0)?new int[]{stride}:
                    new int[] {-1, -stride};
-            return container.asOneDArray(columnMajor, new Stride(_stride));
+            try {
+                return container.asOneDArray(columnMajor, new Stride(_stride));
+            } finally {
+                container.close();
+            }
         } catch (Throwable t) {
             throw new CDFException.ReaderError(t.getMessage());
         }
@@ -876,7 +1197,11 @@ public class GenericReader extends MetaData {
                 new int[]{first, last}, type, preserve);
             int[] _stride = (stride > 0)?new int[]{stride}:
                    new int[] {-1, -stride};
-            return container.asSampledArray(new Stride(_stride));
+            try {
+                return container.asSampledArray(new Stride(_stride));
+            } finally {
+                container.close();
+            }
         } catch (Throwable t) {
             throw new CDFException.ReaderError(t.getMessage());
         }
@@ -971,6 +1296,7 @@ public class GenericReader extends MetaData {
             throw new CDFException.ReaderError(th.getMessage());
         }
         container.setUserBuffer(buffer);
+        container.setBufferPool(null);
         container.run();
         return container.getBuffer();
     }
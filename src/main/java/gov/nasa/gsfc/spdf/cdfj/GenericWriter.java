@@ -1,6 +1,7 @@
 package gov.nasa.gsfc.spdf.cdfj;
 import java.nio.*;
 import java.nio.channels.*;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.io.*;
 import java.security.MessageDigest;
@@ -904,6 +905,94 @@ public class GenericWriter {
         }
     }
 
+    /**
+     * Adds records held in a flat array to a variable of type DOUBLE,
+     * EPOCH or FLOAT. Records follow the last record added.
+     * @param name name of the variable.
+     * @param data values of numberOfRecords records, one record after
+     * another.
+     * @param numberOfRecords number of records.
+     * @param shape dimensions of a record. Must match the dimensions of
+     * the variable. May be null for a scalar variable.
+     * @param rowMajority order of values within a record in data, which
+     * need not be the majority of this GenericWriter.
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.WriterError
+     */
+    public void addData(String name, double[] data, int numberOfRecords,
+        int[] shape, boolean rowMajority) throws CDFException.WriterError {
+        addFlat(name, DoubleBuffer.wrap(data), numberOfRecords, shape,
+            rowMajority);
+    }
+
+    /**
+     * Adds records held in a flat array to a variable of type FLOAT or
+     * DOUBLE. Records follow the last record added.
+     * @param name name of the variable.
+     * @param data values of numberOfRecords records, one record after
+     * another.
+     * @param numberOfRecords number of records.
+     * @param shape dimensions of a record. Must match the dimensions of
+     * the variable. May be null for a scalar variable.
+     * @param rowMajority order of values within a record in data, which
+     * need not be the majority of this GenericWriter.
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.WriterError
+     */
+    public void addData(String name, float[] data, int numberOfRecords,
+        int[] shape, boolean rowMajority) throws CDFException.WriterError {
+        addFlat(name, FloatBuffer.wrap(data), numberOfRecords, shape,
+            rowMajority);
+    }
+
+    /**
+     * Adds records held in a buffer to a variable of type DOUBLE,
+     * EPOCH or FLOAT. Values are read starting at the position of the
+     * buffer, which is not changed.
+     * @param name
+     * @param data
+     * @param numberOfRecords
+     * @param shape
+     * @param rowMajority
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.WriterError
+     * @see #addData(String name, double[] data, int numberOfRecords,
+     * int[] shape, boolean rowMajority)
+     */
+    public void addData(String name, DoubleBuffer data, int numberOfRecords,
+        int[] shape, boolean rowMajority) throws CDFException.WriterError {
+        addFlat(name, data, numberOfRecords, shape, rowMajority);
+    }
+
+    /**
+     * Adds records held in a buffer to a variable of type FLOAT or
+     * DOUBLE. Values are read starting at the position of the
+     * buffer, which is not changed.
+     * @param name
+     * @param data
+     * @param numberOfRecords
+     * @param shape
+     * @param rowMajority
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.WriterError
+     * @see #addData(String name, float[] data, int numberOfRecords,
+     * int[] shape, boolean rowMajority)
+     */
+    public void addData(String name, FloatBuffer data, int numberOfRecords,
+        int[] shape, boolean rowMajority) throws CDFException.WriterError {
+        addFlat(name, data, numberOfRecords, shape, rowMajority);
+    }
+
+    void addFlat(String name, Buffer data, int numberOfRecords, int[] shape,
+        boolean rowMajority) throws CDFException.WriterError {
+        DataContainer container = dataContainers.get(name);
+        if (container == null) {
+            throw new CDFException.WriterError("Variable " + name +
+            " is not defined.");
+        }
+        try {
+            container.addFlat(data, numberOfRecords, shape, rowMajority);
+        } catch (Throwable th) {
+            throw new CDFException.WriterError(th.getMessage());
+        }
+    }
+
     void addBuffer(String name, VariableDataBuffer data) throws
         CDFException.WriterError {
         DataContainer container = dataContainers.get(name);
@@ -927,6 +1016,19 @@ public class GenericWriter {
      * @param need
      */
     public void setMD5Needed(boolean need) {needDigest = need;}
+    boolean asynchronousWrite = false;
+    // CDFs larger than this are written through a ChannelWriter
+    long channelThreshold = Integer.MAX_VALUE;
+
+    /**
+     * Prescribes whether a CDF too large to be assembled in memory is
+     * written asynchronously, so that assembly of the next block of the
+     * file overlaps writing of the previous one.
+     * @param async
+     */
+    public void setAsynchronousWrite(boolean async) {
+        asynchronousWrite = async;
+    }
 
     long getSize() {
         long size = cdr.getSize();
@@ -989,19 +1091,34 @@ public class GenericWriter {
      * @throws IOException
      */
     public boolean write(String fname, boolean overwrite) throws IOException {
+        long start = System.nanoTime();
+        Object event = CDFEvents.beginWrite();
+        long len = _write(fname, overwrite);
+        CDFMetrics.getInstance().cdfWritten(fname, len,
+            System.nanoTime() - start);
+        CDFEvents.endWrite(event, fname, len);
+        return true;
+    }
+
+    long _write(String fname, boolean overwrite) throws IOException {
         if (lastLeapSecondId != -1) {
             gdr.setLastLeapSecondId(lastLeapSecondId); 
         }
         long len = getSize();
-        if (needDigest) len += 32;
+        if (needDigest) len += 16;
         RandomAccessFile raf = null;
         FileChannel channel = null;
-        if (len > Integer.MAX_VALUE) {
+        if (len > channelThreshold) {
+            if (asynchronousWrite) {
+                writeAsynchronously(fname, len);
+                return len;
+            }
             raf = new RandomAccessFile(new File(fname), "rw");
             channel = raf.getChannel();
             write(channel, len);
+            channel.force(true);
             raf.close();
-            return true;
+            return len;
         }
         ByteBuffer obuf;
         if (isWindows()) {
@@ -1079,16 +1196,21 @@ public class GenericWriter {
             cbuf = dc.update(cbuf);
         }
         obuf.position((int)gdr.position);
-        gdr.setEof(obuf.limit());
+        int eof = obuf.limit();
+        if (needDigest) eof -= 16;
+        gdr.setEof(eof);
         gdr.setNumAttr(attributes.size());
         gdr.setNzVars(dataContainers.size());
         obuf.put(gdr.get());
         ByteBuffer digest = null;
         if (needDigest) {
             obuf.position(0);
+            obuf.limit(eof);
             digest = getDigest(obuf);
+            obuf.limit(eof + 16);
+            obuf.position(eof);
         }
-        if (digest != null) cbuf.put(digest);
+        if (digest != null) obuf.put(digest);
         if (isWindows()) {
             writeWin(fname, obuf);
         } else {
@@ -1101,7 +1223,7 @@ public class GenericWriter {
             channel.force(true);
             raf.close();
         }
-        return true;
+        return len;
     }
     ByteBuffer getDigest(ByteBuffer obuf) {
         MessageDigest md = null;
@@ -1111,15 +1233,7 @@ public class GenericWriter {
             nsa.printStackTrace();
             return null;
         }
-        int pos = obuf.position();
-        byte[] ba = new byte[1024*1024];
-        while (obuf.remaining() > 0) {
-            int csize = obuf.remaining();
-            if (csize > ba.length) csize = ba.length;
-            obuf.get(ba, 0, csize);
-            md.update(ba, 0, csize);
-        }
-        obuf.position(pos);
+        md.update(obuf.duplicate());
         return ByteBuffer.wrap(md.digest());
     }
 
@@ -1169,13 +1283,38 @@ public class GenericWriter {
     public void setLastLeapSecondId(int n) {
         lastLeapSecondId = n;
     }
+    /**
+     * Writes the CDF to the channel, replacing its contents.
+     */
     void write(FileChannel channel, long len) throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        write(new ChannelWriter(channel), len);
+    }
+
+    void writeAsynchronously(String fname, long len) throws IOException {
+        try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(
+            new File(fname).toPath(), StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(new ChannelWriter(channel, 0), len);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Writes the CDF in file order. GDR is completed before any attribute
+     * or variable is written, so that the MD5 digest, if needed, is
+     * computed as the bytes are written.
+     */
+    void write(ChannelWriter out, long len) throws IOException {
+        long eof = (needDigest)? len - 16 : len;
+        if (needDigest) out.setDigestNeeded();
         cdr.setRowMajority(rowMajority);
         cdr.setMD5Needed(needDigest);
-        channel.write(cdr.get());
+        out.write(cdr.get());
         // need gdrbuf for insertion of pointers later
-        gdr.position = channel.position();
-        channel.position(gdr.position + gdr.getSize());
+        gdr.position = out.position();
+        long position = gdr.position + gdr.getSize();
         // assemble attributes
         Set<String> atset = attributes.keySet();
         Iterator<String> ait = atset.iterator();
@@ -1185,12 +1324,12 @@ public class GenericWriter {
             ADR adr = attributes.get(ait.next());
             String name = adr.name;
             //if (adr.scope != 1) continue;
-            adr.position = channel.position();
-            channel.position(adr.position + adr.getSize());
+            adr.position = position;
+            position += adr.getSize();
             Vector<AEDR> vec = attributeEntries.get(name);
             for (int i = 0; i < vec.size(); i++) {
                 AEDR ae = vec.get(i);
-                ae.position = channel.position();
+                ae.position = position;
                 if (i == 0) {
                     if (adr.scope == 1) {
                         adr.setAgrEDRHead(ae.position);
@@ -1200,7 +1339,7 @@ public class GenericWriter {
                 } else {
                     vec.get(i - 1).setAEDRNext(ae.position);
                 }
-                channel.position(channel.position() + ae.getSize());
+                position += ae.getSize();
             }
             if (first) {
                 gdr.setADRHead((long)adr.position);
@@ -1210,65 +1349,38 @@ public class GenericWriter {
             }
             lastADR = adr;
         }
+        gdr.setEof(eof);
+        gdr.setNumAttr(attributes.size());
+        gdr.setNzVars(dataContainers.size());
+        out.write(gdr.get());
 
         // write attributes
         ait = atset.iterator();
         while (ait.hasNext()) {
             ADR adr = attributes.get(ait.next());
             String name = adr.name;
-            channel.position(adr.position);
-            channel.write(adr.get());
+            out.write(adr.get());
 
             Vector<AEDR> vec = attributeEntries.get(name);
             for (int i = 0; i < vec.size(); i++) {
-                AEDR ae = vec.get(i);
-                channel.position(ae.position);
-                channel.write(ae.get());
+                out.write(vec.get(i).get());
             }
         }
         Set<String> dcset = dataContainers.keySet();
         Iterator<String> dcit = dcset.iterator();
         while (dcit.hasNext()) {
             DataContainer dc = dataContainers.get(dcit.next());
-            dc.update(channel);
-        }
-        channel.position(gdr.position);
-        gdr.setEof(channel.size());
-        gdr.setNumAttr(attributes.size());
-        gdr.setNzVars(dataContainers.size());
-        channel.write(gdr.get());
-        channel.position(channel.size());
-        if (needDigest) {
-            getDigest(channel);
+            dc.update(out);
         }
-    }
-    void getDigest(FileChannel channel) throws IOException {
-        MessageDigest md = null;
-        try {
-            md = MessageDigest.getInstance("MD5");
-        } catch (NoSuchAlgorithmException nsa) {
-            nsa.printStackTrace();
-            return;
+        if (out.position() != eof) {
+            throw new IOException("Size of " + out.position() +
+                " bytes written differs from expected " + eof);
         }
-        //System.out.println(channel.position());
-        byte[] ba = new byte[1024*1024];
-        ByteBuffer buf = ByteBuffer.wrap(ba);
-        long remaining = channel.size();
-        channel.position(0);
-        while (remaining > 0) {
-            long csize = remaining;
-            if (csize > ba.length) csize = ba.length;
-            buf.position(0);
-            buf.limit((int)csize);
-            int trans = channel.read(buf);
-            if (trans == -1) throw new IOException("Unexpected end of data");
-            md.update(ba, 0, trans);
-            remaining -= trans;
+        if (needDigest) {
+            byte[] digest = out.digest();
+            out.reserve(16).put(digest);
         }
-        //System.out.println(channel.position());
-        //channel.position(channel.size());
-        channel.write(ByteBuffer.wrap(md.digest()));
-        //System.out.println(channel.size());
+        out.finish();
     }
     void writeWin(String fname, ByteBuffer buf) throws IOException {
         try (FileOutputStream fos = new FileOutputStream(fname)) {
@@ -0,0 +1,250 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * {@link CDFMetrics CDFMetrics} that keeps, in memory, a histogram of
+ * the times of each kind of operation, and running totals of the counts
+ * and sizes reported.
+ * <p>
+ * Histograms are named open, locator, inflate, container, timeVariable
+ * and write. Totals are named opened, openedBytes, vxrs, blocks,
+ * compressedBytes, inflatedBytes, records, paddedRecords, containerBytes,
+ * timeValues, written and writtenBytes.
+ * </p>
+ * Updates do not lock; a snapshot taken while operations are in progress
+ * may mix earlier and later values.
+ */
+public final class HistogramMetrics extends CDFMetrics {
+    static final String[] HISTOGRAMS = {"open", "locator", "inflate",
+        "container", "timeVariable", "write"};
+    static final String[] TOTALS = {"opened", "openedBytes", "vxrs",
+        "blocks", "compressedBytes", "inflatedBytes", "records",
+        "paddedRecords", "containerBytes", "timeValues", "written",
+        "writtenBytes"};
+    final Map<String, Histogram> histograms =
+        new LinkedHashMap<String, Histogram>();
+    final Map<String, AtomicLong> totals = new LinkedHashMap<String, AtomicLong>();
+
+    /**
+     * Constructs empty histograms and totals.
+     */
+    public HistogramMetrics() {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            histograms.put(HISTOGRAMS[i], new Histogram());
+        }
+        for (int i = 0; i < TOTALS.length; i++) {
+            totals.put(TOTALS[i], new AtomicLong());
+        }
+    }
+
+    void add(String name, long n) {
+        totals.get(name).addAndGet(n);
+    }
+
+    @Override
+    public void cdfOpened(String source, long bytes, long nanos) {
+        histograms.get("open").record(nanos);
+        add("opened", 1);
+        add("openedBytes", bytes);
+    }
+
+    @Override
+    public void locatorBuilt(String variable, int vxrs, int blocks,
+        long nanos) {
+        histograms.get("locator").record(nanos);
+        add("vxrs", vxrs);
+        add("blocks", blocks);
+    }
+
+    @Override
+    public void blockInflated(long compressedBytes, long bytes, long nanos) {
+        histograms.get("inflate").record(nanos);
+        add("compressedBytes", compressedBytes);
+        add("inflatedBytes", bytes);
+    }
+
+    @Override
+    public void containerFilled(String variable, int records,
+        int paddedRecords, long bytes, long nanos) {
+        histograms.get("container").record(nanos);
+        add("records", records);
+        add("paddedRecords", paddedRecords);
+        add("containerBytes", bytes);
+    }
+
+    @Override
+    public void timeVariableCreated(String variable, int records,
+        long nanos) {
+        histograms.get("timeVariable").record(nanos);
+        add("timeValues", records);
+    }
+
+    @Override
+    public void cdfWritten(String destination, long bytes, long nanos) {
+        histograms.get("write").record(nanos);
+        add("written", 1);
+        add("writtenBytes", bytes);
+    }
+
+    /**
+     * Returns the histogram of the given name, or null.
+     * @param name
+     * @return
+     */
+    public Histogram getHistogram(String name) {return histograms.get(name);}
+
+    /**
+     * Returns the names of the histograms.
+     * @return
+     */
+    public String[] getHistogramNames() {return HISTOGRAMS.clone();}
+
+    /**
+     * Returns the total of the given name.
+     * @param name
+     * @return
+     * @throws IllegalArgumentException if there is no such total
+     */
+    public long getTotal(String name) {
+        AtomicLong total = totals.get(name);
+        if (total == null) throw new IllegalArgumentException(
+            "No total named " + name);
+        return total.get();
+    }
+
+    /**
+     * Returns the names of the totals.
+     * @return
+     */
+    public String[] getTotalNames() {return TOTALS.clone();}
+
+    /**
+     * Clears all histograms and totals.
+     */
+    public void reset() {
+        for (Histogram h : histograms.values()) h.reset();
+        for (AtomicLong total : totals.values()) total.set(0);
+    }
+
+    /**
+     * Returns the histograms and totals, one per line, in the form
+     * name count=.. mean=.. p50=.. p99=.. max=.. for histograms (times in
+     * nanoseconds), and name=value for totals.
+     * @return
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+            sb.append(e.getKey()).append(' ').append(e.getValue());
+            sb.append('\n');
+        }
+        for (Map.Entry<String, AtomicLong> e : totals.entrySet()) {
+            sb.append(e.getKey()).append('=').append(e.getValue().get());
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Histogram of non negative values in buckets of powers of two.
+     * Bucket 0 counts values of 0; bucket i, for i &gt; 0, counts values v
+     * with 2<sup>i-1</sup> &lt;= v &lt; 2<sup>i</sup>.
+     */
+    public static final class Histogram {
+        final AtomicLongArray buckets = new AtomicLongArray(64);
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong total = new AtomicLong();
+        final AtomicLong max = new AtomicLong();
+
+        Histogram() {
+        }
+
+        void record(long value) {
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+            count.incrementAndGet();
+            total.addAndGet(value);
+            long m = max.get();
+            while ((value > m) && !max.compareAndSet(m, value)) m = max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) buckets.set(i, 0);
+            count.set(0);
+            total.set(0);
+            max.set(0);
+        }
+
+        /**
+         * Returns the number of values recorded.
+         * @return
+         */
+        public long getCount() {return count.get();}
+
+        /**
+         * Returns the sum of values recorded.
+         * @return
+         */
+        public long getTotal() {return total.get();}
+
+        /**
+         * Returns the largest value recorded.
+         * @return
+         */
+        public long getMax() {return max.get();}
+
+        /**
+         * Returns the mean of values recorded, or 0 if none.
+         * @return
+         */
+        public double getMean() {
+            long n = count.get();
+            return (n == 0)?0:(double)total.get()/n;
+        }
+
+        /**
+         * Returns the counts of the buckets.
+         * @return
+         */
+        public long[] getBucketCounts() {
+            long[] counts = new long[buckets.length()];
+            for (int i = 0; i < counts.length; i++) counts[i] = buckets.get(i);
+            return counts;
+        }
+
+        /**
+         * Returns an upper bound for the value below which the given
+         * fraction of values fall, i.e. the exclusive upper limit of the
+         * bucket in which that value lies, capped at the maximum.
+         * @param fraction between 0 and 1
+         * @return
+         */
+        public long getPercentile(double fraction) {
+            long[] counts = getBucketCounts();
+            long n = 0;
+            for (int i = 0; i < counts.length; i++) n += counts[i];
+            if (n == 0) return 0;
+            long rank = (long)Math.ceil(fraction*n);
+            if (rank < 1) rank = 1;
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    if (i == 0) return 0;
+                    long limit = (i == 63)?Long.MAX_VALUE:(1L << i);
+                    return Math.min(limit, getMax());
+                }
+            }
+            return getMax();
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + getCount() + " mean=" + (long)getMean() +
+                " p50=" + getPercentile(0.5) + " p99=" + getPercentile(0.99) +
+                " max=" + getMax();
+        }
+    }
+}
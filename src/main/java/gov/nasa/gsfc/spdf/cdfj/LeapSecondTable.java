@@ -0,0 +1,406 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+/**
+ * Leap seconds inserted since January 1, 1972.
+ * <p>
+ * A table may be read from a file in the format of CDFLeapSeconds.txt
+ * distributed with the CDF library. The table in use is taken, in order
+ * of preference, from the file named by the system property
+ * cdfj.leapSecondTable or the environment variable CDF_LEAPSECONDSTABLE,
+ * from a CDFLeapSeconds.txt resource at the root of the classpath,
+ * or from the table built into this library. It can be replaced at any
+ * time by {@link #setCurrent(LeapSecondTable)} or {@link #reload()};
+ * conversions in progress complete with the table they started with.
+ * </p>
+ */
+public final class LeapSecondTable {
+
+    /**
+     * system property naming a leap second table file
+     */
+    public static final String PROPERTY = "cdfj.leapSecondTable";
+
+    /**
+     * environment variable naming a leap second table file, as used by
+     * the CDF library
+     */
+    public static final String ENVIRONMENT = "CDF_LEAPSECONDSTABLE";
+
+    /**
+     * name of the classpath resource
+     */
+    public static final String RESOURCE = "CDFLeapSeconds.txt";
+
+    private static final Logger LOGGER =
+        Logger.getLogger("cdfj.leapsecondtable");
+    static final LeapSecondTable BUILT_IN = builtIn();
+    static final AtomicReference<LeapSecondTable> current =
+        new AtomicReference<>(configured(BUILT_IN));
+
+    // java time of 23:59:59 preceding each leap second
+    final long[] jtimes;
+    // yyyymmdd of the day following each leap second
+    final int[] ids;
+    // tt2000 of jtimes
+    final long[] ttTimes;
+    // tt2000 above which i + 1 leap seconds are to be removed
+    final long[] ttSegments;
+    // nanoseconds since 1970 above which i + 1 leap seconds are to be added
+    final long[] nanoSegments;
+
+    LeapSecondTable(long[] jtimes, int[] ids) {
+        this.jtimes = jtimes;
+        this.ids = ids;
+        int n = jtimes.length;
+        ttTimes = new long[n];
+        ttSegments = new long[n];
+        nanoSegments = new long[n];
+        for (int i = 0; i < n; i++) {
+            // i leap seconds precede jtimes[i]
+            ttTimes[i] = TimeUtil.TT_JANUARY_1_1970 +
+                1000000*(jtimes[i] + 1000*i);
+            ttSegments[i] = ttTimes[i] + 1000000000L;
+            nanoSegments[i] = 1000000*jtimes[i] + 999999;
+        }
+    }
+
+    /**
+     * returns the table in use.
+     * @return
+     */
+    public static LeapSecondTable current() {
+        return current.get();
+    }
+
+    /**
+     * makes the given table the one in use, and returns the table
+     * it replaces.
+     * @param table
+     * @return
+     */
+    public static LeapSecondTable setCurrent(LeapSecondTable table) {
+        if (table == null) throw new NullPointerException("table");
+        return current.getAndSet(table);
+    }
+
+    /**
+     * returns the table built into this library.
+     * @return
+     */
+    public static LeapSecondTable getBuiltIn() {
+        return BUILT_IN;
+    }
+
+    /**
+     * rereads the configured table file or resource, and makes it the
+     * table in use.
+     * @return the new table
+     * @throws IOException if the configured table can not be read
+     */
+    public static LeapSecondTable reload() throws IOException {
+        LeapSecondTable table = load();
+        if (table == null) table = BUILT_IN;
+        current.set(table);
+        return table;
+    }
+
+    /**
+     * reads a table in CDFLeapSeconds.txt format from a file.
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static LeapSecondTable read(String path) throws IOException {
+        try (InputStream in = new FileInputStream(path)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * reads a table in CDFLeapSeconds.txt format from a stream.
+     * Lines starting with ';' are comments. Other lines hold year, month,
+     * day and the accumulated leap seconds in effect from that day.
+     * Entries before 1972 are ignored.
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static LeapSecondTable read(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(in, StandardCharsets.US_ASCII));
+        Vector<Long> times = new Vector<>();
+        Vector<Integer> dates = new Vector<>();
+        double last = Double.NaN;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if ((line.length() == 0) || line.startsWith(";")) continue;
+            String[] fields = line.split("\\s+");
+            int year;
+            int month;
+            int day;
+            double seconds;
+            try {
+                year = Integer.parseInt(fields[0]);
+                month = Integer.parseInt(fields[1]);
+                day = Integer.parseInt(fields[2]);
+                seconds = Double.parseDouble(fields[3]);
+            } catch (RuntimeException ex) {
+                throw new IOException("Invalid leap second table entry: " +
+                    line);
+            }
+            if (year < 1972) continue;
+            if (!Double.isNaN(last)) {
+                if (seconds != last + 1) {
+                    throw new IOException("Unsupported leap second table " +
+                        "entry: " + line);
+                }
+                long days = TimeUtil.daysSince1970(year, month, day);
+                long t = days*86400000L - 1000;
+                if (!times.isEmpty() && (t <= times.lastElement())) {
+                    throw new IOException("Leap second table entries " +
+                        "are out of order: " + line);
+                }
+                times.add(t);
+                dates.add(year*10000 + month*100 + day);
+            }
+            last = seconds;
+        }
+        if (times.isEmpty()) {
+            throw new IOException("Leap second table has no entries " +
+                "after January 1, 1972");
+        }
+        long[] jtimes = new long[times.size()];
+        int[] ids = new int[times.size()];
+        for (int i = 0; i < jtimes.length; i++) {
+            jtimes[i] = times.get(i);
+            ids[i] = dates.get(i);
+        }
+        return new LeapSecondTable(jtimes, ids);
+    }
+
+    /**
+     * returns the number of leap seconds in the table.
+     * @return
+     */
+    public int size() {
+        return jtimes.length;
+    }
+
+    /**
+     * returns the dates (yyyymmdd) of the days following the leap seconds.
+     * @return
+     */
+    public int[] getLeapSecondIds() {
+        return ids.clone();
+    }
+
+    /**
+     * returns the date (yyyymmdd) of the day following the last leap
+     * second.
+     * @return
+     */
+    public int getLastLeapSecondId() {
+        return ids[ids.length - 1];
+    }
+
+    /**
+     * returns the table named by the system property or environment
+     * variable, or found on the classpath, or null if none is configured.
+     */
+    static LeapSecondTable load() throws IOException {
+        String path = System.getProperty(PROPERTY);
+        if (path == null) path = System.getenv(ENVIRONMENT);
+        if (path != null) return read(path);
+        InputStream in = LeapSecondTable.class.getResourceAsStream(
+            "/" + RESOURCE);
+        if (in == null) return null;
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    static LeapSecondTable configured(LeapSecondTable builtIn) {
+        try {
+            LeapSecondTable table = load();
+            if (table != null) return table;
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Unable to read leap second table. " +
+                "Using built-in table. {0}", ex.getMessage());
+        }
+        return builtIn;
+    }
+
+    static LeapSecondTable builtIn() {
+        boolean[][] transition = new boolean[100][2];
+        transition[2][0] = true;
+        transition[2][1] = true;
+        transition[3][1] = true;
+        transition[4][1] = true;
+        transition[5][1] = true;
+        transition[6][1] = true;
+        transition[7][1] = true;
+        transition[8][1] = true;
+        transition[9][1] = true;
+        transition[11][0] = true;
+        transition[12][0] = true;
+        transition[13][0] = true;
+        transition[15][0] = true;
+        transition[17][1] = true;
+        transition[19][1] = true;
+        transition[20][1] = true;
+        transition[22][0] = true;
+        transition[23][0] = true;
+        transition[24][0] = true;
+        transition[25][1] = true;
+        transition[27][0] = true;
+        transition[28][1] = true;
+        transition[35][1] = true;
+        transition[38][1] = true;
+        transition[42][0] = true;
+        transition[45][0] = true;
+        transition[46][1] = true;
+        Vector<Long> times = new Vector<>();
+        Vector<Integer> ids = new Vector<>();
+        for (int i = 0; i < transition.length; i++) {
+            if (transition[i][0]) {
+                times.add(TimeUtil.milliSecondSince1970(1970 + i, 6, 30,
+                    23, 59, 59, 0));
+                ids.add((1970 + i)*10000 + 701);
+            }
+            if (transition[i][1]) {
+                times.add(TimeUtil.milliSecondSince1970(1970 + i, 12, 31,
+                    23, 59, 59, 0));
+                ids.add((1971 + i)*10000 + 101);
+            }
+        }
+        long[] jtimes = new long[times.size()];
+        int[] _ids = new int[times.size()];
+        for (int i = 0; i < jtimes.length; i++) {
+            jtimes[i] = times.get(i);
+            _ids[i] = ids.get(i);
+        }
+        return new LeapSecondTable(jtimes, _ids);
+    }
+
+    /**
+     * returns the number of elements of the sorted array bounds that are
+     * less than v.
+     */
+    static int segment(long[] bounds, long v) {
+        int lo = 0;
+        int hi = bounds.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (bounds[mid] < v) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    static void checkRange(long javaMilliSecond) throws Throwable {
+        if (javaMilliSecond < TimeUtil.JANUARY_1_1972) throw new Throwable(
+            "Times before January 1, 1972 are not supported at present");
+    }
+
+    /**
+     * corrects (java Date returned) number of milliseconds since 1970 for
+     * leap seconds
+     */
+    long milliSecondSince1970(long javaMilliSecond) throws Throwable {
+        checkRange(javaMilliSecond);
+        return javaMilliSecond + 1000*segment(jtimes, javaMilliSecond);
+    }
+
+    long getOffset(long javaMilliSecond) throws Throwable {
+        checkRange(javaMilliSecond);
+        return javaMilliSecond + 1000*segment(jtimes, javaMilliSecond + 1);
+    }
+
+    boolean isLeapSecondId(int id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    /**
+     * tt2000 to UTC conversion. The leap second segment is looked up only
+     * when a value falls outside the segment of its predecessor.
+     */
+    void toUTC(long[] src, int from, long[] dst, int to, int count,
+        boolean millis) throws Throwable {
+        long lo = Long.MAX_VALUE;
+        long hi = Long.MIN_VALUE;
+        long shift = 0;
+        for (int i = 0; i < count; i++) {
+            long t = src[from + i];
+            if ((t <= lo) || (t > hi)) {
+                if (t <= Long.MIN_VALUE + 1) {
+                    dst[to + i] = t;
+                    continue;
+                }
+                if (t < TimeUtil.TT_JANUARY_1_1972) throw new Throwable(
+                    "Times before January 1, 1972 are not supported " +
+                    "at present");
+                int k = segment(ttSegments, t);
+                lo = (k == 0)? TimeUtil.TT_JANUARY_1_1972 - 1:
+                    ttSegments[k - 1];
+                hi = (k == ttSegments.length)? Long.MAX_VALUE: ttSegments[k];
+                shift = TimeUtil.TT_JANUARY_1_1970 + 1000000000L*k;
+            }
+            long ns = t - shift;
+            dst[to + i] = (millis)? Math.floorDiv(ns, 1000000L): ns;
+        }
+    }
+
+    /**
+     * UTC to tt2000 conversion, the inverse of toUTC.
+     */
+    void fromUTC(long[] src, long[] dst, boolean millis) throws Throwable {
+        long[] bounds = (millis)? jtimes: nanoSegments;
+        long scale = (millis)? 1000000: 1;
+        long min = (millis)? TimeUtil.JANUARY_1_1972:
+            1000000*TimeUtil.JANUARY_1_1972;
+        long lo = Long.MAX_VALUE;
+        long hi = Long.MIN_VALUE;
+        long shift = 0;
+        for (int i = 0; i < src.length; i++) {
+            long t = src[i];
+            if ((t <= lo) || (t > hi)) {
+                if (t < min) throw new Throwable("Times before " +
+                    "January 1, 1972 are not supported at present");
+                int k = segment(bounds, t);
+                lo = (k == 0)? min - 1: bounds[k - 1];
+                hi = (k == bounds.length)? Long.MAX_VALUE: bounds[k];
+                shift = TimeUtil.TT_JANUARY_1_1970 + 1000000000L*k;
+            }
+            dst[i] = scale*t + shift;
+        }
+    }
+
+    /**
+     * returns tt2000 time recorded in a file whose last leap second
+     * is leapId, corrected for leap seconds added since.
+     */
+    long correctedIfNecessary(long varTime, int leapId) throws Throwable {
+        int last = ids.length - 1;
+        if (leapId == ids[last]) return varTime;
+        if (leapId < ids[last]) {
+            int id = Arrays.binarySearch(ids, leapId);
+            if (id < 0) throw new Throwable("Invalid leapId");
+            if (varTime < ttTimes[id + 1]) return varTime;
+            int i = Math.min(segment(ttTimes, varTime + 1) - 1, last);
+            return varTime + (i - id)*1000000000L;
+        }
+        if (varTime < ttTimes[last]) return varTime;
+        throw new Throwable("Out of date Leap second table");
+    }
+}
@@ -0,0 +1,69 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+/**
+ * Time series of a scalar, or of a component of a vector, returned at full
+ * resolution together with a {@link ValidityMask ValidityMask} that marks
+ * points whose value equals fill value, or is a pad value of a missing
+ * record, as invalid.
+ * <p>
+ * {@link #getTimes() getTimes()} and {@link #getValues() getValues()}
+ * return only the valid points; these are compacted on first use.
+ * </p>
+ */
+public final class MaskedTimeSeries implements TimeSeries {
+    final double[] times;
+    final double[] values;
+    final ValidityMask mask;
+    final TimeInstantModel tspec;
+    double[] validTimes;
+    double[] validValues;
+
+    MaskedTimeSeries(double[] times, double[] values, ValidityMask mask,
+        TimeInstantModel tspec) {
+        this.times = times;
+        this.values = values;
+        this.mask = mask;
+        this.tspec = tspec;
+    }
+
+    /**
+     * Returns times of all points, valid or not.
+     * @return
+     */
+    public double[] getAllTimes() {return times;}
+
+    /**
+     * Returns values of all points, valid or not.
+     * @return
+     */
+    public double[] getAllValues() {return values;}
+
+    /**
+     * Returns the validity mask of the points.
+     * @return
+     */
+    public ValidityMask getMask() {return mask;}
+
+    /**
+     * Returns times of valid points.
+     * @return
+     */
+    @Override
+    public synchronized double[] getTimes() {
+        if (validTimes == null) validTimes = mask.compact(times);
+        return validTimes;
+    }
+
+    /**
+     * Returns values at valid points.
+     * @return
+     */
+    @Override
+    public synchronized Object getValues() {
+        if (validValues == null) validValues = mask.compact(values);
+        return validValues;
+    }
+
+    @Override
+    public TimeInstantModel getTimeInstantModel() {return tspec;}
+}
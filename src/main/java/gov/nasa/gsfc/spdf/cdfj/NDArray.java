@@ -0,0 +1,456 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import java.nio.*;
+import java.lang.reflect.Array;
+
+/**
+ * Flat representation of a multi dimensional array of a primitive type.
+ * Values are held in a single buffer, or primitive array, and are
+ * addressed through a shape and strides, so that values stored in either
+ * row or column major order can be viewed without rearranging them.
+ * <p>
+ * {@link #slice(int, int) slice}, {@link #range(int, int, int, int) range}
+ * and {@link #transpose() transpose} return views sharing the values of
+ * this array. Jagged java arrays are created only when asked for by
+ * {@link #toArray() toArray()}.
+ * </p>
+ * For arrays obtained from a variable, dimension 0 is the record.
+ */
+public final class NDArray implements AutoCloseable {
+    final Buffer data;
+    final Class<?> type;
+    final int offset;
+    final int[] shape;
+    final int[] strides;
+    // container whose pooled buffer holds the values, released by close
+    BaseVarContainer owner;
+
+    NDArray(Buffer data, Class<?> type, int offset, int[] shape,
+        int[] strides) {
+        this.data = data;
+        this.type = type;
+        this.offset = offset;
+        this.shape = shape;
+        this.strides = strides;
+    }
+
+    /**
+     * Returns the array of records of given dimensions contained in buf,
+     * values within a record being stored in row or column major order.
+     */
+    static NDArray ofRecords(ByteBuffer buf, Class<?> type, int[] dimensions,
+        boolean rowMajority) throws Throwable {
+        Buffer data = typedView(buf, type);
+        int[] shape = new int[dimensions.length + 1];
+        int[] strides = new int[dimensions.length + 1];
+        int recordSize = dimensionStrides(dimensions, rowMajority, shape,
+            strides);
+        shape[0] = data.remaining()/recordSize;
+        strides[0] = recordSize;
+        return new NDArray(data, type, 0, shape, strides);
+    }
+
+    /**
+     * Returns an NDArray of the given shape backed by a one dimensional
+     * primitive array, whose values are stored in row or column major
+     * order.
+     * @param array one dimensional array of long, double, float, int,
+     * short or byte
+     * @param shape
+     * @param rowMajority
+     * @return
+     * @throws Throwable if array is not a suitable array, or is too short
+     */
+    public static NDArray wrap(Object array, int[] shape, boolean rowMajority)
+        throws Throwable {
+        Buffer data = null;
+        Class<?> type = null;
+        if (array instanceof double[]) {
+            data = DoubleBuffer.wrap((double[])array);
+            type = Double.TYPE;
+        }
+        if (array instanceof float[]) {
+            data = FloatBuffer.wrap((float[])array);
+            type = Float.TYPE;
+        }
+        if (array instanceof long[]) {
+            data = LongBuffer.wrap((long[])array);
+            type = Long.TYPE;
+        }
+        if (array instanceof int[]) {
+            data = IntBuffer.wrap((int[])array);
+            type = Integer.TYPE;
+        }
+        if (array instanceof short[]) {
+            data = ShortBuffer.wrap((short[])array);
+            type = Short.TYPE;
+        }
+        if (array instanceof byte[]) {
+            data = ByteBuffer.wrap((byte[])array);
+            type = Byte.TYPE;
+        }
+        if (data == null) throw new Throwable("NDArray: " + array +
+            " is not a one dimensional array of a numeric type");
+        int[] _shape = shape.clone();
+        int[] _strides = new int[shape.length];
+        int size = dimensionStrides(shape, rowMajority, null, _strides);
+        if (size > data.remaining()) throw new Throwable("NDArray: " +
+            "array of length " + data.remaining() + " is too short for " +
+            size + " values");
+        return new NDArray(data, type, 0, _shape, _strides);
+    }
+
+    static Buffer typedView(ByteBuffer buf, Class<?> type) throws Throwable {
+        if (type == Double.TYPE) return buf.asDoubleBuffer();
+        if (type == Float.TYPE) return buf.asFloatBuffer();
+        if (type == Long.TYPE) return buf.asLongBuffer();
+        if (type == Integer.TYPE) return buf.asIntBuffer();
+        if (type == Short.TYPE) return buf.asShortBuffer();
+        if (type == Byte.TYPE) return buf.slice();
+        throw new Throwable("NDArray: unsupported type " + type);
+    }
+
+    /**
+     * Fills strides (and shape, if not null) for dimensions, starting at
+     * position strides.length - dimensions.length, and returns the number
+     * of values spanned.
+     */
+    static int dimensionStrides(int[] dimensions, boolean rowMajority,
+        int[] shape, int[] strides) {
+        int first = strides.length - dimensions.length;
+        int size = 1;
+        for (int i = 0; i < dimensions.length; i++) {
+            int d = (rowMajority)?dimensions.length - 1 - i:i;
+            strides[first + d] = size;
+            if (shape != null) shape[first + d] = dimensions[d];
+            size *= dimensions[d];
+        }
+        return size;
+    }
+
+    /**
+     * Returns the java type of the values, e.g. Double.TYPE.
+     * @return
+     */
+    public Class<?> getType() {return type;}
+
+    /**
+     * Returns the number of dimensions.
+     * @return
+     */
+    public int getRank() {return shape.length;}
+
+    /**
+     * Returns the shape.
+     * @return
+     */
+    public int[] getShape() {return shape.clone();}
+
+    /**
+     * Returns the distance, in values, between successive indices of each
+     * dimension.
+     * @return
+     */
+    public int[] getStrides() {return strides.clone();}
+
+    /**
+     * Returns the index in {@link #getData() getData()} of the first value.
+     * @return
+     */
+    public int getOffset() {return offset;}
+
+    /**
+     * Returns the buffer holding the values. Depending on the type this is
+     * a DoubleBuffer, FloatBuffer, LongBuffer, IntBuffer, ShortBuffer or
+     * ByteBuffer, which may be shared with other views.
+     * @return
+     */
+    public Buffer getData() {return data;}
+
+    /**
+     * Returns the number of values.
+     * @return
+     */
+    public int getSize() {
+        int size = 1;
+        for (int i = 0; i < shape.length; i++) size *= shape[i];
+        return size;
+    }
+
+    /**
+     * Returns whether values are stored in row major order with no gaps.
+     * @return
+     */
+    public boolean isContiguous() {
+        int size = 1;
+        for (int i = shape.length - 1; i >= 0; i--) {
+            if ((shape[i] != 1) && (strides[i] != size)) return false;
+            size *= shape[i];
+        }
+        return true;
+    }
+
+    int position(int[] index) {
+        if (index.length != shape.length) throw new IllegalArgumentException(
+            "Expected " + shape.length + " indices, found " + index.length);
+        int pos = offset;
+        for (int i = 0; i < index.length; i++) {
+            if ((index[i] < 0) || (index[i] >= shape[i])) {
+                throw new IndexOutOfBoundsException("Index " + index[i] +
+                " out of range for dimension " + i + " of size " + shape[i]);
+            }
+            pos += index[i]*strides[i];
+        }
+        return pos;
+    }
+
+    /**
+     * Returns the value at index as a double.
+     * @param index
+     * @return
+     */
+    public double getDouble(int... index) {
+        int pos = position(index);
+        if (data instanceof DoubleBuffer) return ((DoubleBuffer)data).get(pos);
+        if (data instanceof FloatBuffer) return ((FloatBuffer)data).get(pos);
+        return getLong(pos);
+    }
+
+    /**
+     * Returns the value at index as a long. Floating point values are
+     * truncated.
+     * @param index
+     * @return
+     */
+    public long getLong(int... index) {
+        return getLong(position(index));
+    }
+
+    long getLong(int pos) {
+        if (data instanceof LongBuffer) return ((LongBuffer)data).get(pos);
+        if (data instanceof IntBuffer) return ((IntBuffer)data).get(pos);
+        if (data instanceof ShortBuffer) return ((ShortBuffer)data).get(pos);
+        if (data instanceof ByteBuffer) return ((ByteBuffer)data).get(pos);
+        if (data instanceof DoubleBuffer) {
+            return (long)((DoubleBuffer)data).get(pos);
+        }
+        return (long)((FloatBuffer)data).get(pos);
+    }
+
+    /**
+     * Returns the view of rank one less, with dimension dim fixed at index.
+     * @param dim
+     * @param index
+     * @return
+     */
+    public NDArray slice(int dim, int index) {
+        checkDimension(dim);
+        if ((index < 0) || (index >= shape[dim])) {
+            throw new IndexOutOfBoundsException("Index " + index +
+            " out of range for dimension " + dim + " of size " + shape[dim]);
+        }
+        int[] _shape = new int[shape.length - 1];
+        int[] _strides = new int[shape.length - 1];
+        for (int i = 0, n = 0; i < shape.length; i++) {
+            if (i == dim) continue;
+            _shape[n] = shape[i];
+            _strides[n++] = strides[i];
+        }
+        return new NDArray(data, type, offset + index*strides[dim], _shape,
+            _strides);
+    }
+
+    /**
+     * Returns the view containing count indices of dimension dim,
+     * starting at start, and step apart.
+     * @param dim
+     * @param start
+     * @param count
+     * @param step positive
+     * @return
+     */
+    public NDArray range(int dim, int start, int count, int step) {
+        checkDimension(dim);
+        if ((step <= 0) || (start < 0) || (count < 0) ||
+            ((count > 0) && (start + (long)(count - 1)*step >= shape[dim]))) {
+            throw new IndexOutOfBoundsException("Invalid range: start " +
+            start + ", count " + count + ", step " + step +
+            " for dimension " + dim + " of size " + shape[dim]);
+        }
+        int[] _shape = shape.clone();
+        int[] _strides = strides.clone();
+        _shape[dim] = count;
+        _strides[dim] = strides[dim]*step;
+        return new NDArray(data, type, offset + start*strides[dim], _shape,
+            _strides);
+    }
+
+    /**
+     * Returns the view with the order of dimensions reversed.
+     * @return
+     */
+    public NDArray transpose() {
+        int[] _shape = new int[shape.length];
+        int[] _strides = new int[shape.length];
+        for (int i = 0; i < shape.length; i++) {
+            _shape[i] = shape[shape.length - 1 - i];
+            _strides[i] = strides[shape.length - 1 - i];
+        }
+        return new NDArray(data, type, offset, _shape, _strides);
+    }
+
+    /**
+     * Returns the buffer holding the values of an array obtained from
+     * {@link GenericReader#getNDArray(String, int[], String, boolean)
+     * GenericReader.getNDArray} to the buffer pool of the reader, if any.
+     * This array, and views of it, must not be used afterwards.
+     * Does nothing for other arrays.
+     */
+    @Override
+    public void close() {
+        BaseVarContainer container;
+        synchronized (this) {
+            container = owner;
+            owner = null;
+        }
+        if (container != null) container.close();
+    }
+
+    void checkDimension(int dim) {
+        if ((dim < 0) || (dim >= shape.length)) {
+            throw new IllegalArgumentException("Invalid dimension " + dim +
+            " for rank " + shape.length);
+        }
+    }
+
+    /**
+     * Returns the values as a one dimensional primitive array in row major
+     * order. If the values are held in a java array in this order, that
+     * array is returned without copying.
+     * @return
+     */
+    public Object toFlatArray() {
+        int size = getSize();
+        if (data.hasArray() && (data.arrayOffset() == 0) && (offset == 0) &&
+            (Array.getLength(data.array()) == size) && isContiguous()) {
+            return data.array();
+        }
+        Object flat = Array.newInstance(type, size);
+        if ((size == 0) || (shape.length == 0)) {
+            if (size == 1) copyRun(flat, 0, offset, 1, 1);
+            return flat;
+        }
+        int last = shape.length - 1;
+        int n = shape[last];
+        int[] index = new int[shape.length];
+        int pos = offset;
+        for (int dpos = 0; dpos < size; dpos += n) {
+            copyRun(flat, dpos, pos, n, strides[last]);
+            int i = last - 1;
+            for (; i >= 0; i--) {
+                pos += strides[i];
+                if (++index[i] < shape[i]) break;
+                pos -= index[i]*strides[i];
+                index[i] = 0;
+            }
+        }
+        return flat;
+    }
+
+    /**
+     * Returns the values as a jagged java array of rank getRank(), or
+     * as a boxed value for rank 0.
+     * @return
+     */
+    public Object toArray() {
+        if (shape.length == 0) return Array.get(toFlatArray(), 0);
+        Object a = Array.newInstance(type, shape);
+        fill(a, 0, offset);
+        return a;
+    }
+
+    void fill(Object a, int dim, int pos) {
+        if (dim == shape.length - 1) {
+            copyRun(a, 0, pos, shape[dim], strides[dim]);
+            return;
+        }
+        for (int i = 0; i < shape[dim]; i++) {
+            fill(Array.get(a, i), dim + 1, pos + i*strides[dim]);
+        }
+    }
+
+    /**
+     * Copies n values, stride apart, starting at pos in data, to dst
+     * starting at dpos.
+     */
+    void copyRun(Object dst, int dpos, int pos, int n, int stride) {
+        if (data instanceof DoubleBuffer) {
+            DoubleBuffer b = (DoubleBuffer)data;
+            double[] d = (double[])dst;
+            if (stride == 1) {
+                b = b.duplicate();
+                b.position(pos);
+                b.get(d, dpos, n);
+                return;
+            }
+            for (int i = 0; i < n; i++) d[dpos + i] = b.get(pos + i*stride);
+            return;
+        }
+        if (data instanceof FloatBuffer) {
+            FloatBuffer b = (FloatBuffer)data;
+            float[] f = (float[])dst;
+            if (stride == 1) {
+                b = b.duplicate();
+                b.position(pos);
+                b.get(f, dpos, n);
+                return;
+            }
+            for (int i = 0; i < n; i++) f[dpos + i] = b.get(pos + i*stride);
+            return;
+        }
+        if (data instanceof LongBuffer) {
+            LongBuffer b = (LongBuffer)data;
+            long[] l = (long[])dst;
+            if (stride == 1) {
+                b = b.duplicate();
+                b.position(pos);
+                b.get(l, dpos, n);
+                return;
+            }
+            for (int i = 0; i < n; i++) l[dpos + i] = b.get(pos + i*stride);
+            return;
+        }
+        if (data instanceof IntBuffer) {
+            IntBuffer b = (IntBuffer)data;
+            int[] ia = (int[])dst;
+            if (stride == 1) {
+                b = b.duplicate();
+                b.position(pos);
+                b.get(ia, dpos, n);
+                return;
+            }
+            for (int i = 0; i < n; i++) ia[dpos + i] = b.get(pos + i*stride);
+            return;
+        }
+        if (data instanceof ShortBuffer) {
+            ShortBuffer b = (ShortBuffer)data;
+            short[] s = (short[])dst;
+            if (stride == 1) {
+                b = b.duplicate();
+                b.position(pos);
+                b.get(s, dpos, n);
+                return;
+            }
+            for (int i = 0; i < n; i++) s[dpos + i] = b.get(pos + i*stride);
+            return;
+        }
+        ByteBuffer b = (ByteBuffer)data;
+        byte[] ba = (byte[])dst;
+        if (stride == 1) {
+            b = b.duplicate();
+            b.position(pos);
+            b.get(ba, dpos, n);
+            return;
+        }
+        for (int i = 0; i < n; i++) ba[dpos + i] = b.get(pos + i*stride);
+    }
+}
@@ -22,11 +22,15 @@ public final class ReaderFactory {
      */
     public static CDFReader getReader(String fname) throws
         CDFException.ReaderError {
+        long start = System.nanoTime();
+        Object event = CDFEvents.beginOpen();
         CDFImpl cdf = null;
         File file = new File(fname);
+        long size;
         try {
             RandomAccessFile raf = new RandomAccessFile(file, "r");
-            long len = raf.length(); 
+            size = raf.length();
+            long len = size;
             if (len > preamble) len = preamble;
             byte[] ba = new byte[(int)len];
             raf.readFully(ba);
@@ -42,6 +46,7 @@ public final class ReaderFactory {
             @Override
             public boolean isFile() {return true;};
         });
+        CDFFactory.opened(event, start, _fname, size);
         CDFReader rdr = new CDFReader();
         rdr.setImpl(cdf);
         return rdr;
@@ -55,7 +60,10 @@ public final class ReaderFactory {
      */
     public static CDFReader getReader(URL url) throws
         CDFException.ReaderError {
+        long start = System.nanoTime();
+        Object event = CDFEvents.beginOpen();
         CDFImpl cdf = null;
+        int size;
         try {
             URLConnection con = new CDFUrl(url).openConnection();
             int remaining = con.getContentLength();
@@ -68,6 +76,7 @@ public final class ReaderFactory {
                 remaining -= got;
             }
             ((HttpURLConnection)con).disconnect();
+            size = ba.length;
             ByteBuffer buf = ByteBuffer.wrap(ba);
             cdf = CDFFactory.getVersion(buf);
         } catch (Throwable th) {
@@ -82,6 +91,7 @@ public final class ReaderFactory {
             @Override
             public boolean isFile() {return false;};
         });
+        CDFFactory.opened(event, start, _url, size);
         return rdr;
     }
 
@@ -131,10 +141,14 @@ public final class ReaderFactory {
      */
     public static CDFReader getReader(String fname, boolean map) throws
         CDFException.ReaderError {
+        long start = System.nanoTime();
+        Object event = CDFEvents.beginOpen();
         CDFImpl cdf = null;
         File file = new File(fname);
+        int size;
         try {
             int len = (int)file.length();
+            size = len;
             byte[] ba = new byte[len];
             int rem = len;
             try (FileInputStream fis = new FileInputStream(file)) {
@@ -145,7 +159,7 @@ public final class ReaderFactory {
                     rem -= len;
                 }
             }
-            cdf = CDFFactory.getCDF(ba);
+            cdf = CDFFactory.getVersion(CDFFactory.copy(ba));
         } catch (Throwable th) {
             throw new CDFException.ReaderError("I/O Error reading " + fname);
         }
@@ -156,6 +170,7 @@ public final class ReaderFactory {
             @Override
             public boolean isFile() {return true;};
         });
+        CDFFactory.opened(event, start, _fname, size);
         CDFReader rdr = new CDFReader();
         rdr.setImpl(cdf);
         return rdr;
@@ -0,0 +1,212 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+/**
+ * RefreshableCDFReader is a CDFReader for a CDF that is still being
+ * appended to, for example by a near real time ground station.
+ * <p>
+ * {@link #refresh() refresh} maps the file again if it has grown. Whether
+ * or not it has, for each variable only the record count in its VDR and
+ * the tail of its VXR chain are read again, so that an index updated in
+ * place after its data was written is seen; other metadata is not
+ * re-read. Variables with new records are reported to registered
+ * {@link Listener listeners}, and the new records may be read with
+ * {@link #getRecordsSince(String, int) getRecordsSince}. Refresh may be
+ * called explicitly, or periodically by a background thread started by
+ * {@link #startPolling(long, TimeUnit) startPolling}:
+ * </p>
+ * <pre>
+ *     RefreshableCDFReader rdr = new RefreshableCDFReader(fname);
+ *     rdr.addListener(new RefreshableCDFReader.Listener() {
+ *         public void recordsAdded(RefreshableCDFReader rdr, String name,
+ *             int first, int last) {
+ *             ...rdr.getRecordsSince(name, first)...
+ *         }
+ *     });
+ *     rdr.startPolling(1, TimeUnit.SECONDS);
+ * </pre>
+ * <p>
+ * Only uncompressed version 3 files are supported. Data already written is
+ * assumed not to change, and a writer is assumed to update the index of a
+ * variable after writing the data it points to, as {@link CDFAppender} and
+ * the CDF library do. Variables added to the file after it was opened are
+ * not seen; refresh fails if that happens. Attribute entries are not read
+ * again.
+ * </p>
+ * The reader may be used by other threads while it is being refreshed;
+ * a request sees the variable either before or after the refresh.
+ */
+public class RefreshableCDFReader extends CDFReader {
+    final String fname;
+    long size;
+    final CopyOnWriteArrayList<Listener> listeners =
+        new CopyOnWriteArrayList<>();
+    ScheduledExecutorService poller;
+
+    private static final Logger LOGGER =
+        Logger.getLogger("cdfj.refreshablereader");
+
+    /**
+     * Constructs a reader for a CDF file which may be growing.
+     * @param cdfFile
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError if the file
+     * is not an uncompressed version 3 CDF.
+     */
+    public RefreshableCDFReader(String cdfFile) throws
+        CDFException.ReaderError {
+        super(cdfFile);
+        fname = cdfFile;
+        ByteBuffer buf = thisCDF.getBuffer();
+        if ((buf.capacity() < 8) ||
+            (buf.getLong(0) != CDFFactory.CDF3_MAGIC)) {
+            throw new CDFException.ReaderError(cdfFile + " is not an " +
+            "uncompressed version 3 CDF.");
+        }
+        size = buf.capacity();
+    }
+
+    /**
+     * Reads the index of each variable again, mapping the file again if
+     * it has grown, and notifies listeners of variables that have new
+     * records.
+     * @return names of variables with new records
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError if the file
+     * could not be read, or variables have been added to it.
+     */
+    public synchronized String[] refresh() throws CDFException.ReaderError {
+        long len = new File(fname).length();
+        if (len > Integer.MAX_VALUE) {
+            throw new CDFException.ReaderError("Size of file " + fname +
+            " exceeds Integer.MAX_VALUE.");
+        }
+        String[] names = getVariableNames();
+        int[] before = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            before[i] = thisCDF.getVariable(names[i]).getNumberOfValues();
+        }
+        String[] grown;
+        try {
+            if (len <= size) {
+                // the mapping sees index entries updated in place
+                grown = thisCDF.refresh(null);
+            } else {
+                try (FileInputStream fis = new FileInputStream(fname)) {
+                    FileChannel ch = fis.getChannel();
+                    len = ch.size();
+                    grown = thisCDF.refresh(ch.map(
+                        FileChannel.MapMode.READ_ONLY, 0, len));
+                }
+                size = len;
+            }
+        } catch (Throwable th) {
+            throw new CDFException.ReaderError(fname + ": " +
+                th.getMessage());
+        }
+        if (grown.length == 0) return grown;
+        Set<String> set = new HashSet<>(Arrays.asList(grown));
+        for (int i = 0; i < names.length; i++) {
+            if (!set.contains(names[i])) continue;
+            int last = thisCDF.getVariable(names[i]).getNumberOfValues() - 1;
+            for (Listener listener : listeners) {
+                try {
+                    listener.recordsAdded(this, names[i], before[i], last);
+                } catch (RuntimeException ex) {
+                    LOGGER.log(Level.WARNING, "Listener failed", ex);
+                }
+            }
+        }
+        return grown;
+    }
+
+    /**
+     * Returns records first to the last available record of a variable,
+     * in the form returned by {@link GenericReader#getRange(String, int, int)
+     * getRange}, or null if there are no such records.
+     * @param varName variable name
+     * @param first number of the first record
+     * @return
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     */
+    public Object getRecordsSince(String varName, int first) throws
+        CDFException.ReaderError {
+        int last = getNumberOfValues(varName) - 1;
+        if (first > last) return null;
+        return getRange(varName, first, last);
+    }
+
+    /**
+     * Registers a listener for new records.
+     * @param listener
+     */
+    public void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Removes a listener.
+     * @param listener
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts a daemon thread which calls {@link #refresh() refresh} at the
+     * given interval, until {@link #stopPolling() stopPolling} is called.
+     * Failures are logged, and the next refresh is attempted as usual.
+     * @param period interval between refreshes
+     * @param unit unit of period
+     */
+    public synchronized void startPolling(long period, TimeUnit unit) {
+        stopPolling();
+        poller = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "cdfj-refresh");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        poller.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    refresh();
+                } catch (CDFException.ReaderError ex) {
+                    LOGGER.log(Level.WARNING, ex.getMessage());
+                }
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stops periodic refresh.
+     */
+    public synchronized void stopPolling() {
+        if (poller == null) return;
+        poller.shutdownNow();
+        poller = null;
+    }
+
+    /**
+     * Listener for records appended to variables of a
+     * RefreshableCDFReader.
+     */
+    public interface Listener {
+        /**
+         * Called after a refresh for each variable with new records.
+         * @param reader the reader
+         * @param varName variable name
+         * @param first number of the first new record
+         * @param last number of the last new record
+         */
+        void recordsAdded(RefreshableCDFReader reader, String varName,
+            int first, int last);
+    }
+}
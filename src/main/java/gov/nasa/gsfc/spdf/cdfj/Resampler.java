@@ -0,0 +1,160 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import java.util.*;
+/**
+ * Resamples a variable onto a uniform time grid, reading the variable and
+ * its time variable a chunk at a time with a {@link BlockCursor}. A value
+ * is a sample if its record is present in the file, or is missing between
+ * blocks of a variable whose sparse record option is PREVIOUS, its time is
+ * valid and it is not equal to the fill value.
+ */
+final class Resampler {
+    final double start;
+    final double cadence;
+    final int count;
+    final ResamplingMethod method;
+    final double tolerance;
+    final int elements;
+    final double[] values;
+    final int[] counts;
+    final int[] next;
+    final double[] prevTime;
+    final double[] prevValue;
+    int unresolved;
+    int assigned;
+
+    Resampler(double start, double cadence, int count,
+        ResamplingMethod method, double tolerance, int elements,
+        double[] values, int[] counts) {
+        this.start = start;
+        this.cadence = cadence;
+        this.count = count;
+        this.method = method;
+        this.tolerance = tolerance;
+        this.elements = elements;
+        this.values = values;
+        int n = count*elements;
+        if ((counts == null) && (method == ResamplingMethod.BIN_AVERAGE)) {
+            counts = new int[n];
+        }
+        this.counts = counts;
+        if (counts != null) Arrays.fill(counts, 0, n, 0);
+        Arrays.fill(values, 0, n, (method == ResamplingMethod.BIN_AVERAGE)?
+            0:Double.NaN);
+        next = new int[elements];
+        prevTime = new double[elements];
+        prevValue = new double[elements];
+        Arrays.fill(prevTime, Double.NaN);
+        unresolved = (count == 0)?0:elements;
+    }
+
+    /**
+     * Resamples var, whose times are given by tvar, and returns the number
+     * of values assigned.
+     */
+    int run(CDFImpl cdf, Variable var, Variable tvar, boolean themisLike)
+        throws Throwable {
+        double lo;
+        double hi;
+        if (method == ResamplingMethod.BIN_AVERAGE) {
+            lo = start - cadence/2;
+            hi = start + (count - 0.5)*cadence;
+        } else {
+            lo = start - tolerance;
+            hi = start + (count - 1)*cadence + tolerance;
+        }
+        BlockCursor cursor = new BlockCursor(cdf, var, tvar, themisLike,
+            false, var.missingRecordValueIsPrevious());
+        while ((count > 0) && cursor.next(lo)) {
+            double[] times = cursor.times;
+            if (times[cursor.lo] > hi) break;
+            double[] data = cursor.data();
+            for (int i = cursor.lo; i <= cursor.hi; i++) {
+                double t = times[i];
+                if (Double.isNaN(t)) continue;
+                int offset = i*elements;
+                for (int j = 0; j < elements; j++) {
+                    double v = data[offset + j];
+                    if (cursor.isValid(v)) add(j, t, v);
+                }
+            }
+            if ((method != ResamplingMethod.BIN_AVERAGE) &&
+                (unresolved == 0)) {
+                break;
+            }
+        }
+        return finish();
+    }
+
+    void set(int k, int j, double v) {
+        int idx = k*elements + j;
+        values[idx] = v;
+        if (counts != null) counts[idx] = 1;
+        assigned++;
+    }
+
+    /**
+     * Adds a sample of element j. Samples of an element are expected in
+     * increasing order of time; a sample not later than the previous one
+     * is ignored.
+     */
+    void add(int j, double t, double v) {
+        if (method == ResamplingMethod.BIN_AVERAGE) {
+            double x = Math.floor((t - start)/cadence + 0.5);
+            if ((x < 0) || (x >= count)) return;
+            int idx = (int)x*elements + j;
+            values[idx] += v;
+            counts[idx]++;
+            return;
+        }
+        double tp = prevTime[j];
+        if (t <= tp) return;
+        double vp = prevValue[j];
+        boolean linear = (method == ResamplingMethod.LINEAR);
+        int k = next[j];
+        for (; k < count; k++) {
+            double g = start + k*cadence;
+            if (g > t) break;
+            if (linear && (g == t)) {
+                set(k, j, v);
+            } else if (Double.isNaN(tp)) {
+                if (!linear && (t - g <= tolerance)) set(k, j, v);
+            } else if (linear) {
+                if (t - tp <= tolerance) {
+                    set(k, j, vp + (v - vp)*(g - tp)/(t - tp));
+                }
+            } else if (g - tp <= t - g) {
+                if (g - tp <= tolerance) set(k, j, vp);
+            } else {
+                if (t - g <= tolerance) set(k, j, v);
+            }
+        }
+        if ((k == count) && (next[j] < count)) unresolved--;
+        next[j] = k;
+        prevTime[j] = t;
+        prevValue[j] = v;
+    }
+
+    int finish() {
+        if (method == ResamplingMethod.BIN_AVERAGE) {
+            for (int idx = 0; idx < count*elements; idx++) {
+                if (counts[idx] == 0) {
+                    values[idx] = Double.NaN;
+                } else {
+                    values[idx] /= counts[idx];
+                    assigned++;
+                }
+            }
+            return assigned;
+        }
+        if (method == ResamplingMethod.NEAREST) {
+            for (int j = 0; j < elements; j++) {
+                if (Double.isNaN(prevTime[j])) continue;
+                for (int k = next[j]; k < count; k++) {
+                    if (start + k*cadence - prevTime[j] > tolerance) break;
+                    set(k, j, prevValue[j]);
+                }
+            }
+        }
+        return assigned;
+    }
+}
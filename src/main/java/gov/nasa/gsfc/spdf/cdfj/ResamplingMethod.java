@@ -0,0 +1,59 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import java.util.*;
+/**
+ * Methods of computing the value of a time series at the points of a
+ * uniform time grid, for use with
+ * {@link CDFReader#resample(String, int[], double, int, ResamplingMethod,
+ * double, double[], int[]) CDFReader.resample}.
+ */
+public final class ResamplingMethod {
+
+    /**
+     * NEAREST - value of the valid sample nearest in time to the grid
+     * point, if it is no farther than the tolerance. The earlier sample is
+     * used when two are equally near.
+     */
+    public static final ResamplingMethod NEAREST = new ResamplingMethod(0);
+
+    /**
+     * LINEAR - value interpolated linearly between the valid samples on
+     * either side of the grid point, if they are no farther apart than the
+     * tolerance.
+     */
+    public static final ResamplingMethod LINEAR = new ResamplingMethod(1);
+
+    /**
+     * BIN_AVERAGE - average of the valid samples in the bin of width
+     * equal to the cadence centered on the grid point. A sample on the
+     * boundary of two bins belongs to the later one.
+     */
+    public static final ResamplingMethod BIN_AVERAGE =
+        new ResamplingMethod(2);
+
+    static Hashtable<String, ResamplingMethod> ht =
+        new Hashtable<String, ResamplingMethod>();
+    static {
+        ht.put("nearest", NEAREST);
+        ht.put("linear", LINEAR);
+        ht.put("bin_average", BIN_AVERAGE);
+    }
+    int method;
+    private ResamplingMethod(int method) {
+        this.method = method;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public int getValue() {return method;}
+
+    /**
+     * Returns ResamplingMethod object for the named method.
+     * @param s
+     * @return
+     */
+    public static ResamplingMethod getMethod(String s) {
+        return ht.get(s.toLowerCase());
+    }
+}
@@ -0,0 +1,762 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generator of reproducible synthetic CDFs, for tests, benchmarks and
+ * sizing experiments.
+ * <p>
+ * A SyntheticCDF describes a CDF by a seed, a number of records, the
+ * number of records per block, a time variable and a list of data
+ * variables depending on it, together with the fraction of values to be
+ * replaced by fill value and a pattern of records missing from the data
+ * variables. The same description always produces the same values.
+ * </p>
+ * <pre>
+ *     new SyntheticCDF(7).setRecords(1000000).setCompressed(true)
+ *         .setFillDensity(0.01).setGaps(10000, 100)
+ *         .addVariable("B", CDFDataType.FLOAT, new int[] {3})
+ *         .addVariables(100, CDFDataType.INT2, new int[0])
+ *         .write("synthetic.cdf");
+ * </pre>
+ * Blocks are encoded, and compressed if required, one at a time into a
+ * scratch file next to the output, from which they are copied when the
+ * CDF is written. Memory used is therefore bounded by the size of a block,
+ * whatever the size of the CDF. As with {@link GenericWriter GenericWriter},
+ * a record number must be less than 2^31, and the stored data of a single
+ * variable must not exceed 2 GB.
+ * <p>
+ * The class may also be run from the command line; run it without
+ * arguments for usage.
+ * </p>
+ */
+public final class SyntheticCDF {
+    static final long LIMIT = Integer.MAX_VALUE - (1 << 20);
+    static final int PREAMBLE = 32;
+    static Hashtable<String, CDFDataType> types =
+        new Hashtable<String, CDFDataType>();
+    static {
+        types.put("int1", CDFDataType.INT1);
+        types.put("int2", CDFDataType.INT2);
+        types.put("int4", CDFDataType.INT4);
+        types.put("int8", CDFDataType.INT8);
+        types.put("uint1", CDFDataType.UINT1);
+        types.put("uint2", CDFDataType.UINT2);
+        types.put("uint4", CDFDataType.UINT4);
+        types.put("float", CDFDataType.FLOAT);
+        types.put("double", CDFDataType.DOUBLE);
+    }
+    final long seed;
+    int records = 1000;
+    int blockSize = 8192;
+    CDFTimeType timeType = CDFTimeType.TT2000;
+    String timeName = "Epoch";
+    int[] start = new int[] {2010, 1, 1};
+    long cadence = 1000000000L;
+    boolean compressed;
+    double fillDensity;
+    int gapEvery;
+    int gapLength;
+    final Vector<Spec> variables = new Vector<>();
+
+    /**
+     * Constructs a description of a CDF of 1000 records, in blocks of 8192
+     * records, with a TT2000 time variable named Epoch starting on
+     * January 1, 2010 at a cadence of one second, and no data variables.
+     * @param seed seed of the values
+     */
+    public SyntheticCDF(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the number of records.
+     * @param records
+     * @return this
+     */
+    public SyntheticCDF setRecords(int records) {
+        if (records < 0) throw new IllegalArgumentException(
+            "Invalid number of records " + records);
+        this.records = records;
+        return this;
+    }
+
+    /**
+     * Sets the number of records per block.
+     * @param blockSize
+     * @return this
+     */
+    public SyntheticCDF setBlockSize(int blockSize) {
+        if (blockSize <= 0) throw new IllegalArgumentException(
+            "Invalid block size " + blockSize);
+        this.blockSize = blockSize;
+        return this;
+    }
+
+    /**
+     * Sets the name and type of the time variable.
+     * @param name
+     * @param timeType
+     * @return this
+     */
+    public SyntheticCDF setTimeVariable(String name, CDFTimeType timeType) {
+        if (find(name) != null) throw new IllegalArgumentException(
+            "Variable " + name + " exists already.");
+        timeName = name;
+        this.timeType = timeType;
+        return this;
+    }
+
+    /**
+     * Sets the time of the first record.
+     * @param time year, month, day and optionally hour, minute, second
+     * and millisecond
+     * @return this
+     */
+    public SyntheticCDF setStart(int[] time) {
+        if (time.length < 3) throw new IllegalArgumentException(
+            "Start time must include year, month and day");
+        start = time.clone();
+        return this;
+    }
+
+    /**
+     * Sets the interval between records.
+     * @param nanoseconds
+     * @return this
+     */
+    public SyntheticCDF setCadence(long nanoseconds) {
+        if (nanoseconds <= 0) throw new IllegalArgumentException(
+            "Invalid cadence " + nanoseconds);
+        cadence = nanoseconds;
+        return this;
+    }
+
+    /**
+     * Sets whether variables are stored compressed.
+     * @param compressed
+     * @return this
+     */
+    public SyntheticCDF setCompressed(boolean compressed) {
+        this.compressed = compressed;
+        return this;
+    }
+
+    /**
+     * Sets the fraction of values of data variables that are fill values.
+     * @param density
+     * @return this
+     */
+    public SyntheticCDF setFillDensity(double density) {
+        if (!((density >= 0) && (density <= 1))) {
+            throw new IllegalArgumentException("Invalid fill density " +
+            density);
+        }
+        fillDensity = density;
+        return this;
+    }
+
+    /**
+     * Sets records missing from the data variables: of every run of
+     * every records, the last length are missing. The time variable has
+     * all records.
+     * @param every
+     * @param length 0 for no missing records
+     * @return this
+     */
+    public SyntheticCDF setGaps(int every, int length) {
+        if ((length < 0) || ((length > 0) && (length >= every))) {
+            throw new IllegalArgumentException("Invalid gaps " + every +
+            ", " + length);
+        }
+        gapEvery = (length == 0)?0:every;
+        gapLength = length;
+        return this;
+    }
+
+    /**
+     * Adds a data variable depending on the time variable.
+     * @param name
+     * @param dataType one of the integer types, FLOAT or DOUBLE
+     * @param dim dimensions of a record
+     * @return this
+     */
+    public SyntheticCDF addVariable(String name, CDFDataType dataType,
+        int[] dim) {
+        if (!types.containsValue(dataType)) {
+            throw new IllegalArgumentException("Unsupported type " +
+            dataType.getValue() + " for " + name);
+        }
+        if (name.equals(timeName) || (find(name) != null)) {
+            throw new IllegalArgumentException("Variable " + name +
+            " exists already.");
+        }
+        variables.add(new Spec(name, dataType, dim, variables.size()));
+        return this;
+    }
+
+    /**
+     * Adds count data variables named v0, v1, ... after the number of
+     * variables already added.
+     * @param count
+     * @param dataType
+     * @param dim
+     * @return this
+     */
+    public SyntheticCDF addVariables(int count, CDFDataType dataType,
+        int[] dim) {
+        for (int i = 0; i < count; i++) {
+            addVariable("v" + variables.size(), dataType, dim);
+        }
+        return this;
+    }
+
+    Spec find(String name) {
+        for (int i = 0; i < variables.size(); i++) {
+            if (variables.get(i).name.equals(name)) return variables.get(i);
+        }
+        return null;
+    }
+
+    /**
+     * Writes the CDF to a file, replacing the file if it exists.
+     * @param fname
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.WriterError
+     * @throws java.io.IOException
+     */
+    public void write(String fname) throws CDFException.WriterError,
+        IOException {
+        Spec time = new Spec(timeName, CDFDataType.getType(timeType),
+            new int[0], -1);
+        check(time);
+        for (int i = 0; i < variables.size(); i++) check(variables.get(i));
+        File file = new File(fname);
+        File scratch = File.createTempFile("cdfj", ".blocks",
+            file.getAbsoluteFile().getParentFile());
+        Scratch blocks = null;
+        try {
+            blocks = new Scratch(scratch);
+            GenericWriter writer = new GenericWriter(true);
+            addGlobalAttributes(writer, file.getName());
+            t0 = TimeUtil.tt2000(start);
+            e0 = TimeVariableFactory.JANUARY_1_1970 +
+                TimeUtil.milliSecondSince1970(start);
+            define(writer, time);
+            for (int i = 0; i < variables.size(); i++) {
+                define(writer, variables.get(i));
+            }
+            addRecords(writer.dataContainers.get(timeName), time, blocks);
+            for (int i = 0; i < variables.size(); i++) {
+                Spec spec = variables.get(i);
+                addRecords(writer.dataContainers.get(spec.name), spec,
+                    blocks);
+            }
+            blocks.finish();
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Unable to replace " + fname);
+            }
+            writer.write(fname, false);
+        } catch (IOException ex) {
+            throw ex;
+        } catch (CDFException.WriterError ex) {
+            throw ex;
+        } catch (Throwable th) {
+            throw new CDFException.WriterError(th.getMessage());
+        } finally {
+            if (blocks != null) blocks.close();
+            scratch.delete();
+        }
+    }
+
+    void check(Spec spec) throws CDFException.WriterError {
+        long recordBytes = (long)spec.items*
+            DataTypes.size[spec.type.getValue()];
+        if ((long)blockSize*recordBytes > (1 << 30)) {
+            throw new CDFException.WriterError("Blocks of " + spec.name +
+            " would exceed 1 GB.");
+        }
+        if (!compressed && ((long)records*recordBytes > LIMIT)) {
+            throw new CDFException.WriterError("Data of " + spec.name +
+            " would exceed 2 GB.");
+        }
+    }
+
+    void addGlobalAttributes(GenericWriter writer, String fname) throws
+        CDFException.WriterError {
+        String name = fname;
+        if (name.toLowerCase().endsWith(".cdf")) {
+            name = name.substring(0, name.length() - 4);
+        }
+        writer.addGlobalAttributeEntry("Project", "cdfj");
+        writer.addGlobalAttributeEntry("Source_name", "SYN>Synthetic");
+        writer.addGlobalAttributeEntry("Discipline", "Space Physics");
+        writer.addGlobalAttributeEntry("Data_type", "L0>Synthetic");
+        writer.addGlobalAttributeEntry("Descriptor", "GEN>Generator");
+        writer.addGlobalAttributeEntry("Data_version", "1");
+        writer.addGlobalAttributeEntry("Logical_file_id", name);
+        writer.addGlobalAttributeEntry("Logical_source", "syn_l0_gen");
+        writer.addGlobalAttributeEntry("Logical_source_description",
+            "Synthetic data");
+        writer.addGlobalAttributeEntry("Mission_group", "Synthetic");
+        writer.addGlobalAttributeEntry("PI_name", "None");
+        writer.addGlobalAttributeEntry("PI_affiliation", "None");
+        writer.addGlobalAttributeEntry("Instrument_type", "Synthetic");
+        writer.addGlobalAttributeEntry("TEXT", "Generated by " +
+            getClass().getName() + " from " + this);
+    }
+
+    /**
+     * Defines the variable of a spec, and its attributes.
+     */
+    void define(GenericWriter writer, Spec spec) throws Throwable {
+        int type = spec.type.getValue();
+        boolean[] varys = new boolean[spec.dim.length];
+        for (int i = 0; i < varys.length; i++) varys[i] = true;
+        if (spec.index < 0) {
+            writer.defineVariable(spec.name, spec.type, spec.dim, varys,
+                true, compressed, null, 1, SparseRecordOption.NONE);
+            long last = Math.max(records - 1, 0);
+            String units = "ns";
+            if (type == CDFDataType.EPOCH.getValue()) units = "ms";
+            if (type == CDFDataType.EPOCH16.getValue()) units = "ps";
+            writer.addVariableAttributeEntry(spec.name, "FIELDNAM",
+                spec.name);
+            writer.addVariableAttributeEntry(spec.name, "CATDESC",
+                "Time of record");
+            writer.addVariableAttributeEntry(spec.name, "UNITS", units);
+            writer.addVariableAttributeEntry(spec.name, "VAR_TYPE",
+                "support_data");
+            writer.addVariableAttributeEntry(spec.name, "LABLAXIS",
+                spec.name);
+            writer.addVariableAttributeEntry(spec.name, "MONOTON",
+                "INCREASE");
+            if (type == CDFDataType.TT2000.getValue()) {
+                writer.addVariableAttributeEntry(spec.name, "FILLVAL",
+                    spec.type, new long[] {Long.MIN_VALUE});
+                writer.addVariableAttributeEntry(spec.name, "VALIDMIN",
+                    spec.type, new long[] {tt2000(0)});
+                writer.addVariableAttributeEntry(spec.name, "VALIDMAX",
+                    spec.type, new long[] {tt2000(last)});
+            } else {
+                int n = (type == CDFDataType.EPOCH16.getValue())?2:1;
+                double[] fill = new double[] {-1e31, -1e31};
+                double[] first = new double[2];
+                double[] end = new double[2];
+                encodeTime(first, 0);
+                encodeTime(end, last);
+                writer.addVariableAttributeEntry(spec.name, "FILLVAL",
+                    spec.type, Arrays.copyOf(fill, n));
+                writer.addVariableAttributeEntry(spec.name, "VALIDMIN",
+                    spec.type, Arrays.copyOf(first, n));
+                writer.addVariableAttributeEntry(spec.name, "VALIDMAX",
+                    spec.type, Arrays.copyOf(end, n));
+            }
+            return;
+        }
+        long fill = fill(type);
+        Object pad;
+        if (isReal(type)) {
+            pad = new double[] {-1e31};
+        } else {
+            if ((type == CDFDataType.INT8.getValue()) ||
+                (type == CDFDataType.UINT4.getValue())) {
+                pad = new long[] {fill};
+            } else {
+                pad = new int[] {(int)fill};
+            }
+        }
+        SparseRecordOption option = (gapEvery == 0)?SparseRecordOption.NONE:
+            SparseRecordOption.PADDED;
+        writer.defineVariable(spec.name, spec.type, spec.dim, varys, true,
+            compressed, pad, 1, option);
+        writer.addVariableAttributeEntry(spec.name, "FIELDNAM", spec.name);
+        writer.addVariableAttributeEntry(spec.name, "CATDESC",
+            "Synthetic variable " + spec.name);
+        writer.addVariableAttributeEntry(spec.name, "DEPEND_0", timeName);
+        writer.addVariableAttributeEntry(spec.name, "VAR_TYPE", "data");
+        writer.addVariableAttributeEntry(spec.name, "DISPLAY_TYPE",
+            (spec.dim.length == 0)?"time_series":"spectrogram");
+        writer.addVariableAttributeEntry(spec.name, "LABLAXIS", spec.name);
+        writer.addVariableAttributeEntry(spec.name, "UNITS",
+            isReal(type)?"arb. unit":"counts");
+        writer.addVariableAttributeEntry(spec.name, "FORMAT",
+            isReal(type)?"E12.4":"I11");
+        if (type == CDFDataType.INT8.getValue()) {
+            writer.addVariableAttributeEntry(spec.name, "FILLVAL",
+                spec.type, new long[] {fill});
+            writer.addVariableAttributeEntry(spec.name, "VALIDMIN",
+                spec.type, new long[] {0});
+            writer.addVariableAttributeEntry(spec.name, "VALIDMAX",
+                spec.type, new long[] {bound(type) - 1});
+        } else {
+            double scale = isReal(type)?0.125:1;
+            writer.addVariableAttributeEntry(spec.name, "FILLVAL",
+                spec.type, new double[] {isReal(type)?-1e31:fill});
+            writer.addVariableAttributeEntry(spec.name, "VALIDMIN",
+                spec.type, new double[] {0});
+            writer.addVariableAttributeEntry(spec.name, "VALIDMAX",
+                spec.type, new double[] {scale*(bound(type) - 1)});
+        }
+    }
+
+    /**
+     * Encodes the records of a variable block by block into the scratch
+     * file, and adds the blocks to the variable's container. Records in
+     * gaps are skipped for data variables.
+     */
+    void addRecords(DataContainer dc, Spec spec, Scratch scratch) throws
+        Throwable {
+        int type = spec.type.getValue();
+        int recordBytes = spec.items*DataTypes.size[type];
+        ByteBuffer buf = ByteBuffer.allocate(
+            Math.max(Math.min(blockSize, records), 1)*recordBytes);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        Random random = new Random(seed + 0x9E3779B97F4A7C15L*
+            (spec.index + 1));
+        boolean time = (spec.index < 0);
+        long total = 0;
+        for (long first = 0; first < records; first += blockSize) {
+            long last = Math.min(records, first + blockSize) - 1;
+            long r = first;
+            while (r <= last) {
+                long end = last;
+                if (!time && (gapEvery > 0)) {
+                    long phase = r%gapEvery;
+                    long open = gapEvery - gapLength;
+                    if (phase >= open) {
+                        r += gapEvery - phase;
+                        continue;
+                    }
+                    end = Math.min(last, r - phase + open - 1);
+                }
+                buf.clear();
+                if (time) {
+                    for (long n = r; n <= end; n++) putTime(buf, type, n);
+                } else {
+                    for (long n = (end - r + 1)*spec.items; n > 0; n--) {
+                        put(buf, type, random);
+                    }
+                }
+                buf.flip();
+                FileDataBlock block = scratch.add(buf, compressed);
+                total += PREAMBLE + block.length;
+                if (total > LIMIT) {
+                    throw new Throwable("Data of " + spec.name +
+                    " would exceed 2 GB.");
+                }
+                dc.addBlock(block, new int[] {(int)r, (int)end});
+                r = end + 1;
+            }
+        }
+    }
+
+    void put(ByteBuffer buf, int type, Random random) {
+        long v = random.nextInt(bound(type));
+        if ((fillDensity > 0) && (random.nextDouble() < fillDensity)) {
+            if (isReal(type)) {
+                if (type == CDFDataType.FLOAT.getValue()) {
+                    buf.putFloat(-1e31f);
+                } else {
+                    buf.putDouble(-1e31);
+                }
+                return;
+            }
+            v = fill(type);
+        }
+        if (type == CDFDataType.FLOAT.getValue()) {
+            buf.putFloat(0.125f*v);
+            return;
+        }
+        if (type == CDFDataType.DOUBLE.getValue()) {
+            buf.putDouble(0.125*v);
+            return;
+        }
+        switch (DataTypes.size[type]) {
+        case 1:
+            buf.put((byte)v);
+            return;
+        case 2:
+            buf.putShort((short)v);
+            return;
+        case 4:
+            buf.putInt((int)v);
+            return;
+        default:
+            buf.putLong(v);
+        }
+    }
+
+    long t0;
+    double e0;
+    final double[] t = new double[2];
+    void putTime(ByteBuffer buf, int type, long n) {
+        if (type == CDFDataType.TT2000.getValue()) {
+            buf.putLong(tt2000(n));
+            return;
+        }
+        encodeTime(t, n);
+        buf.putDouble(t[0]);
+        if (type == CDFDataType.EPOCH16.getValue()) buf.putDouble(t[1]);
+    }
+
+    long tt2000(long n) {
+        return t0 + n*cadence;
+    }
+
+    /**
+     * Sets the EPOCH, or the EPOCH16 seconds and picoseconds, of record n
+     * in t.
+     */
+    void encodeTime(double[] t, long n) {
+        long ns = n*cadence;
+        if (timeType == CDFTimeType.EPOCH16) {
+            double seconds = Math.floor(e0/1000);
+            ns += 1000000L*(long)(e0 - 1000*seconds);
+            t[0] = seconds + ns/1000000000L;
+            t[1] = 1000.0*(ns%1000000000L);
+            return;
+        }
+        t[0] = e0 + ns/1.0e6;
+    }
+
+    static boolean isReal(int type) {
+        return (type == CDFDataType.FLOAT.getValue()) ||
+            (type == CDFDataType.DOUBLE.getValue());
+    }
+
+    static int bound(int type) {
+        return (DataTypes.size[type] == 1)?100:1000;
+    }
+
+    static long fill(int type) {
+        if (type == CDFDataType.INT1.getValue()) return Byte.MIN_VALUE;
+        if (type == CDFDataType.INT2.getValue()) return Short.MIN_VALUE;
+        if (type == CDFDataType.INT4.getValue()) return Integer.MIN_VALUE;
+        if (type == CDFDataType.UINT1.getValue()) return 255;
+        if (type == CDFDataType.UINT2.getValue()) return 65535;
+        if (type == CDFDataType.UINT4.getValue()) return 4294967295L;
+        return Long.MIN_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("seed=").append(seed).append(", records=").append(records);
+        sb.append(", block=").append(blockSize);
+        sb.append(", time=").append(timeName).append(':');
+        sb.append(CDFDataType.getType(timeType).getValue());
+        sb.append(", cadence=").append(cadence);
+        sb.append(", compressed=").append(compressed);
+        sb.append(", fill=").append(fillDensity);
+        sb.append(", gaps=").append(gapEvery).append(',').append(gapLength);
+        for (int i = 0; i < variables.size(); i++) {
+            Spec spec = variables.get(i);
+            sb.append(", ").append(spec.name).append(':');
+            sb.append(spec.type.getValue());
+            sb.append(Arrays.toString(spec.dim));
+        }
+        return sb.toString();
+    }
+
+    static final class Spec {
+        final String name;
+        final CDFDataType type;
+        final int[] dim;
+        final int index;
+        final int items;
+
+        Spec(String name, CDFDataType type, int[] dim, int index) {
+            this.name = name;
+            this.type = type;
+            this.dim = dim.clone();
+            this.index = index;
+            long n = (type == CDFDataType.EPOCH16)?2:1;
+            for (int i = 0; i < dim.length; i++) {
+                if (dim[i] <= 0) throw new IllegalArgumentException(
+                    "Invalid dimensions " + Arrays.toString(dim) + " for " +
+                    name);
+                n *= dim[i];
+            }
+            if (n > (1 << 24)) throw new IllegalArgumentException(
+                "Records of " + name + " are too large");
+            items = (int)n;
+        }
+    }
+
+    /**
+     * Scratch file to which blocks are appended.
+     */
+    static final class Scratch {
+        final FileDataBlock.Source source;
+        final OutputStream out;
+        long offset;
+
+        Scratch(File file) throws IOException {
+            source = FileDataBlock.Source.scratch(file.getPath());
+            out = new BufferedOutputStream(new FileOutputStream(file),
+                1 << 16);
+        }
+
+        FileDataBlock add(ByteBuffer buf, boolean compress) throws
+            IOException {
+            byte[] bytes = buf.array();
+            int len = buf.limit();
+            if (compress) {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream(len);
+                GZIPOutputStream gzos = new GZIPOutputStream(baos);
+                gzos.write(bytes, 0, len);
+                gzos.finish();
+                bytes = baos.toByteArray();
+                len = bytes.length;
+            }
+            out.write(bytes, 0, len);
+            FileDataBlock block = new FileDataBlock(source, offset, len,
+                compress);
+            offset += len;
+            return block;
+        }
+
+        void finish() throws IOException {
+            out.close();
+        }
+
+        void close() {
+            try {
+                out.close();
+            } catch (IOException ex) {
+            }
+            source.close();
+        }
+    }
+
+    static CDFDataType getType(String name) {
+        CDFDataType type = types.get(name.toLowerCase());
+        if (type == null) throw new IllegalArgumentException(
+            "Unsupported type " + name);
+        return type;
+    }
+
+    static int[] numbers(String s) {
+        if (s.length() == 0) return new int[0];
+        String[] parts = s.split("[^0-9]+");
+        int[] n = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            n[i] = Integer.parseInt(parts[i]);
+        }
+        return n;
+    }
+
+    static final String USAGE =
+        "Usage: java gov.nasa.gsfc.spdf.cdfj.SyntheticCDF [options] file\n" +
+        "  --seed n                  seed of the values (0)\n" +
+        "  --records n               number of records (1000)\n" +
+        "  --block n                 records per block (8192)\n" +
+        "  --time tt2000|epoch|epoch16\n" +
+        "                            type of the time variable (tt2000)\n" +
+        "  --start yyyy-mm-dd[Thh:mm:ss]\n" +
+        "                            time of the first record (2010-01-01)\n" +
+        "  --cadence ns              interval between records (1000000000)\n" +
+        "  --compress                store variables compressed\n" +
+        "  --fill fraction           fraction of fill values (0)\n" +
+        "  --gaps every,length       records missing from data variables\n" +
+        "  --var name:type[:dims]    add a variable, e.g. B:float:3\n" +
+        "  --vars count:type[:dims]  add variables v0, v1, ..." +
+        " e.g. 10:int2:4x8\n" +
+        "types: int1, int2, int4, int8, uint1, uint2, uint4, float, double";
+
+    /**
+     * Writes a synthetic CDF described by command line options.
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        String fname = null;
+        String seed = "0";
+        Vector<String[]> options = new Vector<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    if (fname != null) throw new IllegalArgumentException(
+                        "More than one output file");
+                    fname = arg;
+                    continue;
+                }
+                if (arg.equals("--compress")) {
+                    options.add(new String[] {arg, null});
+                    continue;
+                }
+                if (++i == args.length) throw new IllegalArgumentException(
+                    "Missing value for " + arg);
+                if (arg.equals("--seed")) {
+                    seed = args[i];
+                } else {
+                    options.add(new String[] {arg, args[i]});
+                }
+            }
+            if (fname == null) throw new IllegalArgumentException(
+                "Missing output file");
+            SyntheticCDF cdf = new SyntheticCDF(Long.parseLong(seed));
+            for (int i = 0; i < options.size(); i++) {
+                cdf.apply(options.get(i)[0], options.get(i)[1]);
+            }
+            long start = System.nanoTime();
+            cdf.write(fname);
+            System.out.println(fname + ": " + new File(fname).length() +
+                " bytes in " + (System.nanoTime() - start)/1000000 + " ms");
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (Exception ex) {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    void apply(String option, String value) {
+        if (option.equals("--records")) {
+            setRecords(Integer.parseInt(value));
+        } else if (option.equals("--block")) {
+            setBlockSize(Integer.parseInt(value));
+        } else if (option.equals("--time")) {
+            CDFTimeType type = CDFTimeType.getType(value);
+            if (type == null) throw new IllegalArgumentException(
+                "Unknown time type " + value);
+            setTimeVariable(timeName, type);
+        } else if (option.equals("--start")) {
+            setStart(numbers(value));
+        } else if (option.equals("--cadence")) {
+            setCadence(Long.parseLong(value));
+        } else if (option.equals("--compress")) {
+            setCompressed(true);
+        } else if (option.equals("--fill")) {
+            setFillDensity(Double.parseDouble(value));
+        } else if (option.equals("--gaps")) {
+            int[] gaps = numbers(value);
+            if (gaps.length != 2) throw new IllegalArgumentException(
+                "Invalid gaps " + value);
+            setGaps(gaps[0], gaps[1]);
+        } else if (option.equals("--var") || option.equals("--vars")) {
+            String[] parts = value.split(":");
+            if ((parts.length < 2) || (parts.length > 3)) {
+                throw new IllegalArgumentException("Invalid variable " +
+                value);
+            }
+            CDFDataType type = getType(parts[1]);
+            int[] dim = numbers((parts.length == 3)?parts[2]:"");
+            if (option.equals("--var")) {
+                addVariable(parts[0], type, dim);
+            } else {
+                addVariables(Integer.parseInt(parts[0]), type, dim);
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown option " + option);
+        }
+    }
+}
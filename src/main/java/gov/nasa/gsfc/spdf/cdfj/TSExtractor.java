@@ -171,6 +171,91 @@ public class TSExtractor extends Extractor {
         }
         return filterFill(stimes, oa[1], fillValue);
     }
+    /**
+     * Returns the time series of a scalar variable, or of an element of
+     * a vector variable, at full resolution, with a mask that marks
+     * fill values, and pad values of missing records, as invalid.
+     * @param rdr
+     * @param var
+     * @param which
+     * @param timeRange
+     * @param ts
+     * @return
+     * @throws Throwable
+     */
+    public static MaskedTimeSeries getMaskedTimeSeries(MetaData rdr,
+        Variable var, Integer which, double[] timeRange, TimeInstantModel ts)
+        throws Throwable {
+        TimeInstantModel tspec = null;
+        if (ts != null) {
+            synchronized (ts) {
+                tspec = (TimeInstantModel)ts.clone();
+            }
+        }
+        TimeVariable tv = TimeVariableFactory.getTimeVariable(rdr,
+            var.getName());
+        double[] times = tv.getTimes(tspec);
+        if (times == null) throw new Throwable("times not available for " +
+            var.getName());
+        int element = (which == null)?0:which;
+        int first = 0;
+        Object o;
+        if (timeRange == null) {
+            o = (which == null)?getSeries0(rdr.thisCDF, var):
+                getElement1(rdr.thisCDF, var, which);
+        } else {
+            int[] recordRange = getRecordRange(rdr, var, timeRange, ts);
+            if (recordRange == null) throw new Throwable("no record range");
+            first = recordRange[0];
+            o = (which == null)?
+                getRange0(rdr.thisCDF, var, recordRange[0], recordRange[1]):
+                getRangeForElement1(rdr.thisCDF, var, recordRange[0],
+                recordRange[1], which);
+        }
+        int n = Array.getLength(o);
+        if ((first != 0) || (n != times.length)) {
+            double[] stimes = new double[n];
+            System.arraycopy(times, first, stimes, 0, n);
+            times = stimes;
+        }
+        ValidityMask mask = new ValidityMask(n);
+        Object fill = getFillValue(rdr.thisCDF, var);
+        double[] vdata;
+        if (o.getClass().getComponentType() == Long.TYPE) {
+            long[] lfill = (long[])fill;
+            long[] ldata = (long[])o;
+            vdata = (lfill[0] == 0)?
+                ValidityMask.castToDouble(ldata, lfill[1], mask):
+                castToDouble(ldata, true);
+            if (var.isMissingRecords()) {
+                long pad = ((long[])getPadValue(rdr.thisCDF, var))[element];
+                RecordSensor sensor =
+                    new RecordSensor(var.getLocator().getLocations());
+                for (int i = 0; i < n; i++) {
+                    if ((ldata[i] == pad) && !sensor.hasRecord(first + i)) {
+                        mask.invalidate(i);
+                    }
+                }
+            }
+        } else {
+            double[] dfill = (double[])fill;
+            vdata = (double[])o;
+            mask = (dfill[0] == 0)?ValidityMask.ofFill(vdata, dfill[1]):mask;
+            if (var.isMissingRecords()) {
+                double pad =
+                    ((double[])getPadValue(rdr.thisCDF, var))[element];
+                RecordSensor sensor =
+                    new RecordSensor(var.getLocator().getLocations());
+                for (int i = 0; i < n; i++) {
+                    if ((vdata[i] == pad) && !sensor.hasRecord(first + i)) {
+                        mask.invalidate(i);
+                    }
+                }
+            }
+        }
+        return new MaskedTimeSeries(times, vdata, mask, tspec);
+    }
+
     static int[] getRecordRange(MetaData rdr,Variable var,
         double[] timeRange) {
         return getRecordRange(rdr, var, timeRange, null);
@@ -479,6 +564,8 @@ public class TSExtractor extends Extractor {
         double [] vdata;
         double [] times;
         TimeInstantModel tspec;
+        ValidityMask mask = null;
+        int first;
         double[][] filtered = null;
 
         /**
@@ -537,23 +624,31 @@ public class TSExtractor extends Extractor {
             } else {
                 // fill values need to be filtered
                 double [] fill = (double[])getFillValue(rdr.thisCDF, var);
-                int first = (timeRange != null)?recordRange[0]:0;
+                first = (timeRange != null)?recordRange[0]:0;
                 if (fill[0] != 0) { // there is no fill value
                     stimes = new double[vdata.length];
                     System.arraycopy(times, first, stimes, 0, vdata.length);
                     times = stimes;
                 } else {
-                    filtered = filterFill(times, vdata, fill[1], first);
+                    // compacted when asked for
+                    mask = ValidityMask.ofFill(vdata, fill[1]);
                 }
             }
         }
+        synchronized double[][] filtered() {
+            if (filtered == null) {
+                filtered = new double[][] {mask.compact(times, first),
+                    mask.compact(vdata)};
+            }
+            return filtered;
+        }
         @Override
         public double[] getTimes() {
-            return (filtered != null)?filtered[0]:times;
+            return (mask != null)?filtered()[0]:times;
         }
         @Override
         public double[] getValues() {
-            return (filtered != null)?filtered[1]:vdata;
+            return (mask != null)?filtered()[1]:vdata;
         }
         @Override
         public TimeInstantModel getTimeInstantModel() {return tspec;}
@@ -710,32 +805,17 @@ public class TSExtractor extends Extractor {
            "implemented for " + var.getName());
         return method;
     }
-    static Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
-
     /**
-     *
+     * Returns number of milliseconds since 1970 for the given time,
+     * ignoring leap seconds.
      * @param time
      * @return
      */
     public static long getTime(int[] time) {
-        int[] t = new int[6];
-        for (int i = 0; i < 3; i++) t[i] = time[i];
-        t[1]--;
-        for (int i = 3; i < 6; i++) t[i] = 0;
         int n = time.length;
-        if (n >= 4) {
-            t[3] = time[3];
-            if (n >= 5) {
-                t[4] = time[4];
-                if (n >= 6) {
-                    t[5] = time[5];
-                }
-            }
-        }
-        cal.clear();
-        cal.set(t[0], t[1], t[2], t[3], t[4], t[5]);
-        cal.set(Calendar.MILLISECOND,(n > 6)?time[6]:0);
-        return cal.getTimeInMillis();
+        return TimeUtil.milliSecondSince1970(time[0], time[1], time[2],
+            (n > 3)?time[3]:0, (n > 4)?time[4]:0, (n > 5)?time[5]:0,
+            (n > 6)?time[6]:0);
     }
 
     /**
@@ -748,8 +828,7 @@ public class TSExtractor extends Extractor {
      */
     public static double getTime(MetaData rdr, String vname, int[] time)
         throws Throwable {
-        boolean isTT2000 =
-            TimeVariableFactory.getTimeVariable(rdr, vname).isTT2000();
+        boolean isTT2000 = TimeVariableFactory.isTT2000(rdr, vname);
         long t = getTime(time);
         return (isTT2000)?TimeUtil.milliSecondSince1970(t):(double)t;
     }
@@ -0,0 +1,437 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import java.util.*;
+/**
+ * TimeAligner aligns variables with different time variables, in the same
+ * or in different CDFs, on a common time line.
+ * <p>
+ * The time line is the union of the times of the variables, or the times
+ * of one {@link #setReference(int) reference} variable. It is formed by
+ * merging the time variables, which are read forward a block at a time
+ * together with the values, so that memory used does not grow with the
+ * length of the time range. The value of a variable at each time of the
+ * line is chosen by the {@link AlignmentPolicy policy} with which the
+ * variable was {@link #add(CDFReader, String, AlignmentPolicy, double)
+ * added}. Each value of a record makes a column of the output, and is
+ * aligned independently. Values equal to the fill value specified via
+ * the FILLVAL attribute, and records missing from a variable, are not
+ * used. Where no value is chosen, the column holds NaN.
+ * </p>
+ * <pre>
+ *     TimeAligner aligner = new TimeAligner();
+ *     int mag = aligner.add(magReader, "B_gse", AlignmentPolicy.EXACT, 0);
+ *     int pl = aligner.add(plasmaReader, "Np", AlignmentPolicy.PREVIOUS,
+ *         8000);
+ *     aligner.setReference(mag);
+ *     aligner.setTimeRange(new int[] {2010, 1, 1}, new int[] {2010, 1, 4});
+ *     TimeAligner.Chunk chunk;
+ *     while ((chunk = aligner.next()) != null) {
+ *         double[] bx = chunk.getColumn(aligner.getFirstColumn(mag));
+ *         double[] np = chunk.getColumn(aligner.getFirstColumn(pl));
+ *         ...
+ *     }
+ * </pre>
+ * <p>
+ * Times are in milliseconds since 1970. If all variables have TT2000 time
+ * variables, times are those of the default {@link TimeInstantModel time
+ * instant model} for TT2000; otherwise TT2000 times are converted to
+ * milliseconds since 1970 with leap seconds removed, as for EPOCH.
+ * Times of each variable are expected to increase; a time not later than
+ * the previous one is skipped. An aligner is used by a single thread,
+ * though the readers may be shared.
+ * </p>
+ */
+public final class TimeAligner {
+    final ArrayList<Input> inputs = new ArrayList<>();
+    int reference = -1;
+    int chunkSize = 4096;
+    int[] startTime;
+    int[] stopTime;
+    int width;
+    boolean started;
+    double start = Double.NEGATIVE_INFINITY;
+    double stop = Double.POSITIVE_INFINITY;
+    PriorityQueue<Input> queue;
+    AlignmentPolicy[] policies;
+    double[] tolerances;
+    double[] lastTime;
+    double[] lastValue;
+    int[] pending;
+    double[] rowTimes;
+    double[][] columns;
+    int rows;
+
+    /**
+     * Adds a variable to be aligned.
+     * @param reader reader of the CDF containing the variable
+     * @param varName
+     * @param policy
+     * @param tolerance largest distance in milliseconds from a time of the
+     * line to the sample used for it by PREVIOUS or NEAREST. May be
+     * Double.POSITIVE_INFINITY; a finite tolerance lets blocks which
+     * cannot contribute be skipped.
+     * @return index of the variable among those added, starting at 0
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError if the
+     * variable is not numeric, is of type long, or has no time variable,
+     * or if alignment has started.
+     */
+    public int add(CDFReader reader, String varName, AlignmentPolicy policy,
+        double tolerance) throws CDFException.ReaderError {
+        if (started) throw new CDFException.ReaderError("Variables may " +
+            "not be added once alignment has started.");
+        if (policy == null) {
+            throw new CDFException.ReaderError("Alignment policy is null.");
+        }
+        if (!(tolerance >= 0)) {
+            throw new CDFException.ReaderError("Invalid tolerance " +
+            tolerance);
+        }
+        reader.checkType(varName);
+        Input in = new Input();
+        in.var = reader.thisCDF.getVariable(varName);
+        if (DataTypes.isStringType(in.var.getType())) {
+            throw new CDFException.ReaderError(varName + " is not numeric.");
+        }
+        try {
+            in.tvar = TimeVariableFactory.getTimeVariableOf(reader, in.var);
+            in.themisLike = TimeVariableFactory.isUnixTime(reader, in.var,
+                in.tvar);
+        } catch (Throwable th) {
+            throw new CDFException.ReaderError(th.getMessage());
+        }
+        in.cdf = reader.thisCDF;
+        in.index = inputs.size();
+        in.policy = policy;
+        in.tolerance = tolerance;
+        in.column = width;
+        in.elements = in.var.getDataItemSize()/
+            DataTypes.size[in.var.getType()];
+        width += in.elements;
+        inputs.add(in);
+        return in.index;
+    }
+
+    /**
+     * Restricts the time line to the times of the given variable.
+     * @param input index returned by add
+     */
+    public void setReference(int input) {
+        if ((input < 0) || (input >= inputs.size())) {
+            throw new IllegalArgumentException("Invalid input " + input);
+        }
+        reference = input;
+    }
+
+    /**
+     * Restricts the time line to times at or after startTime and before
+     * stopTime.
+     * @param    startTime   a 3 to 7 element int[], containing year,
+     *  month (January is 1),
+     * day,hour, minute, second and millisecond. May be null.
+     * @param    stopTime   a 3 to 7 element int[], containing year,
+     *  month (January is 1),
+     * day,hour, minute, second and millisecond. May be null.
+     */
+    public void setTimeRange(int[] startTime, int[] stopTime) {
+        this.startTime = startTime;
+        this.stopTime = stopTime;
+    }
+
+    /**
+     * Sets the largest number of times in a chunk returned by
+     * {@link #next() next}. The default is 4096.
+     * @param size
+     */
+    public void setChunkSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size " + size);
+        }
+        chunkSize = size;
+    }
+
+    /**
+     * Returns the number of columns of the output.
+     * @return
+     */
+    public int getColumnCount() {return width;}
+
+    /**
+     * Returns the column of the first value of a record of the given
+     * variable. Its values occupy as many columns as a record has values,
+     * in the order in which they are stored.
+     * @param input index returned by add
+     * @return
+     */
+    public int getFirstColumn(int input) {
+        return inputs.get(input).column;
+    }
+
+    /**
+     * Returns whether times are in the default time instant model for
+     * TT2000, that is, whether all variables have TT2000 time variables.
+     * @return
+     */
+    public boolean isTT2000() {
+        if (inputs.isEmpty()) return false;
+        for (Input in : inputs) {
+            if (in.tvar.getType() != DataTypes.CDF_TIME_TT2000) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the next chunk of the aligned output, or null if there is
+     * no more.
+     * @return
+     * @throws gov.nasa.gsfc.spdf.cdfj.CDFException.ReaderError
+     */
+    public Chunk next() throws CDFException.ReaderError {
+        try {
+            if (!started) begin();
+            while (!queue.isEmpty() && (ready() < chunkSize)) step();
+            if (queue.isEmpty()) finish();
+            int n = Math.min(ready(), chunkSize);
+            if (n == 0) return null;
+            double[][] cols = new double[width][];
+            for (int c = 0; c < width; c++) {
+                cols[c] = Arrays.copyOf(columns[c], n);
+                System.arraycopy(columns[c], n, columns[c], 0, rows - n);
+                if (policies[c] == AlignmentPolicy.NEAREST) pending[c] -= n;
+            }
+            Chunk chunk = new Chunk(Arrays.copyOf(rowTimes, n), cols);
+            System.arraycopy(rowTimes, n, rowTimes, 0, rows - n);
+            rows -= n;
+            return chunk;
+        } catch (CDFException.ReaderError e) {
+            throw e;
+        } catch (Throwable th) {
+            throw new CDFException.ReaderError(th.getMessage());
+        }
+    }
+
+    void begin() throws Throwable {
+        if (inputs.isEmpty()) {
+            throw new CDFException.ReaderError("No variables to align.");
+        }
+        started = true;
+        boolean tt2000 = isTT2000();
+        if (startTime != null) {
+            start = AggregateCDFReader.toMilliSecond(startTime, tt2000);
+        }
+        if (stopTime != null) {
+            stop = AggregateCDFReader.toMilliSecond(stopTime, tt2000);
+        }
+        policies = new AlignmentPolicy[width];
+        tolerances = new double[width];
+        lastTime = new double[width];
+        lastValue = new double[width];
+        pending = new int[width];
+        Arrays.fill(lastTime, Double.NaN);
+        rowTimes = new double[Math.min(chunkSize, 1024)];
+        columns = new double[width][rowTimes.length];
+        queue = new PriorityQueue<Input>(inputs.size(),
+            new Comparator<Input>() {
+                @Override
+                public int compare(Input a, Input b) {
+                    int c = Double.compare(a.time, b.time);
+                    return (c != 0)?c:(a.index - b.index);
+                }
+            });
+        for (Input in : inputs) {
+            for (int e = 0; e < in.elements; e++) {
+                policies[in.column + e] = in.policy;
+                tolerances[in.column + e] = in.tolerance;
+            }
+            in.cursor = new BlockCursor(in.cdf, in.var, in.tvar,
+                in.themisLike, !tt2000, false);
+            in.from = (in.policy == AlignmentPolicy.EXACT)?start:
+                start - in.tolerance;
+            in.limit = (in.policy == AlignmentPolicy.NEAREST)?
+                stop + in.tolerance:stop;
+            if (!in.cursor.next(in.from)) continue;
+            in.pos = in.cursor.lo;
+            in.time = in.cursor.times[in.pos];
+            if (in.time <= in.limit) queue.add(in);
+        }
+    }
+
+    /**
+     * Consumes the samples at the earliest time of the merge, and adds
+     * the time to the line if required.
+     */
+    void step() throws Throwable {
+        Input in = queue.poll();
+        double t = in.time;
+        boolean row = (reference < 0) || (in.index == reference);
+        consume(in, t);
+        while (!queue.isEmpty() && (queue.peek().time == t)) {
+            in = queue.poll();
+            row |= (in.index == reference);
+            consume(in, t);
+        }
+        if (row && (t >= start) && (t < stop)) addRow(t);
+        resolve(t);
+    }
+
+    void consume(Input in, double t) throws Throwable {
+        double[] data = in.cursor.data();
+        int offset = in.pos*in.elements;
+        for (int e = 0; e < in.elements; e++) {
+            double v = data[offset + e];
+            if (in.cursor.isValid(v)) sample(in.column + e, t, v);
+        }
+        if (advance(in)) queue.add(in);
+    }
+
+    /**
+     * Moves in to its next valid time later than the current one.
+     * Returns false if there is none within its limit.
+     */
+    boolean advance(Input in) throws Throwable {
+        double t = in.time;
+        while (true) {
+            if (++in.pos > in.cursor.hi) {
+                if (!in.cursor.next(in.from)) return false;
+                in.pos = in.cursor.lo;
+            }
+            double u = in.cursor.times[in.pos];
+            if (Double.isNaN(u) || (u <= t)) continue;
+            in.time = u;
+            return (u <= in.limit);
+        }
+    }
+
+    /**
+     * Records a sample of column c. For NEAREST, times of the line since
+     * the previous sample are now bracketed, and are resolved.
+     */
+    void sample(int c, double t, double v) {
+        if (policies[c] == AlignmentPolicy.NEAREST) {
+            double tp = lastTime[c];
+            double vp = lastValue[c];
+            double tol = tolerances[c];
+            for (int r = pending[c]; r < rows; r++) {
+                double g = rowTimes[r];
+                double value = Double.NaN;
+                if (!Double.isNaN(tp) && (g - tp <= t - g)) {
+                    if (g - tp <= tol) value = vp;
+                } else {
+                    if (t - g <= tol) value = v;
+                }
+                columns[c][r] = value;
+            }
+            pending[c] = rows;
+        }
+        lastTime[c] = t;
+        lastValue[c] = v;
+    }
+
+    void addRow(double t) {
+        if (rows == rowTimes.length) {
+            rowTimes = Arrays.copyOf(rowTimes, 2*rows);
+            for (int c = 0; c < width; c++) {
+                columns[c] = Arrays.copyOf(columns[c], 2*rows);
+            }
+        }
+        rowTimes[rows] = t;
+        for (int c = 0; c < width; c++) {
+            double tp = lastTime[c];
+            double value = Double.NaN;
+            if (tp == t) {
+                value = lastValue[c];
+                if (policies[c] == AlignmentPolicy.NEAREST) {
+                    pending[c] = rows + 1;
+                }
+            } else if (policies[c] == AlignmentPolicy.PREVIOUS) {
+                if (t - tp <= tolerances[c]) value = lastValue[c];
+            }
+            columns[c][rows] = value;
+        }
+        rows++;
+    }
+
+    /**
+     * Resolves pending times of NEAREST columns that no sample later than
+     * t can be nearer to than the previous one, or be within tolerance of.
+     */
+    void resolve(double t) {
+        for (int c = 0; c < width; c++) {
+            if (policies[c] != AlignmentPolicy.NEAREST) continue;
+            double tp = lastTime[c];
+            double tol = tolerances[c];
+            int r = pending[c];
+            for (; r < rows; r++) {
+                double g = rowTimes[r];
+                if (!((t - g >= tol) || (t - g >= g - tp))) break;
+                columns[c][r] = (g - tp <= tol)?lastValue[c]:Double.NaN;
+            }
+            pending[c] = r;
+        }
+    }
+
+    /**
+     * Resolves all pending times, there being no more samples.
+     */
+    void finish() {
+        resolve(Double.POSITIVE_INFINITY);
+    }
+
+    int ready() {
+        int n = rows;
+        for (int c = 0; c < width; c++) {
+            if (policies[c] == AlignmentPolicy.NEAREST) {
+                n = Math.min(n, pending[c]);
+            }
+        }
+        return n;
+    }
+
+    static final class Input {
+        CDFImpl cdf;
+        Variable var;
+        Variable tvar;
+        boolean themisLike;
+        int index;
+        AlignmentPolicy policy;
+        double tolerance;
+        int column;
+        int elements;
+        BlockCursor cursor;
+        int pos;
+        double time;
+        double from;
+        double limit;
+    }
+
+    /**
+     * A run of consecutive times of the aligned output with the values of
+     * each column at those times.
+     */
+    public static final class Chunk {
+        final double[] times;
+        final double[][] columns;
+
+        Chunk(double[] times, double[][] columns) {
+            this.times = times;
+            this.columns = columns;
+        }
+
+        /**
+         * Returns the number of times in the chunk.
+         * @return
+         */
+        public int size() {return times.length;}
+
+        /**
+         * Returns the times.
+         * @return
+         */
+        public double[] getTimes() {return times;}
+
+        /**
+         * Returns the values of a column, NaN where no value was chosen.
+         * @param column
+         * @return
+         */
+        public double[] getColumn(int column) {return columns[column];}
+    }
+}
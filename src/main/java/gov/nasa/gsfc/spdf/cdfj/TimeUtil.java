@@ -1,4 +1,5 @@
 package gov.nasa.gsfc.spdf.cdfj;
+import java.nio.*;
 import java.util.*;
 import java.text.*;
 
@@ -7,10 +8,6 @@ import java.text.*;
  * @author nand
  */
 public class TimeUtil {
-    static final long[] jtimes;
-    static final int[] leapSecondIds;
-    static final long[] tt_times;;
-    static final int HIGHEST;
     static SimpleDateFormat sdf =
         new SimpleDateFormat("y'-'M'-'dd'T'HH:mm:ss.SSS");
 
@@ -19,93 +16,10 @@ public class TimeUtil {
      */
     public static final long TT_JANUARY_1_1970 = -946727957816000000l;
     static final long JANUARY_1_1972 = Date.UTC(72,0,1,0,0,0);
-    static final int LAST_LEAP_SECOND_ID;
+    static final long TT_JANUARY_1_1972 =
+        TT_JANUARY_1_1970 + 1000000*JANUARY_1_1972;
     static {
         sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
-        boolean[][] transition = new boolean[100][2];
-        transition[2][0] = true;
-        transition[2][1] = true;
-        transition[3][1] = true;
-        transition[4][1] = true;
-        transition[5][1] = true;
-        transition[6][1] = true;
-        transition[7][1] = true;
-        transition[8][1] = true;
-        transition[9][1] = true;
-        transition[11][0] = true;
-        transition[12][0] = true;
-        transition[13][0] = true;
-        transition[15][0] = true;
-        transition[17][1] = true;
-        transition[19][1] = true;
-        transition[20][1] = true;
-        transition[22][0] = true;
-        transition[23][0] = true;
-        transition[24][0] = true;
-        transition[25][1] = true;
-        transition[27][0] = true;
-        transition[28][1] = true;
-        transition[35][1] = true;
-        transition[38][1] = true;
-        transition[42][0] = true;
-        transition[45][0] = true;
-        transition[46][1] = true;
-/*
-        try {
-            URL url = new URL(
-            "https://hpiers.obspm.fr/eoppc/bul/bulc/UTC-TAI.history");
-            URLConnection con = url.openConnection();
-            InputStream is = con.getInputStream();
-            byte[] ba = new byte[con.getContentLength()];
-            int index = 0;
-            int c;
-            while ((c = is.read()) != -1) ba[index++] = (byte)c;
-            String s = new String(ba);
-            Scanner sc = new Scanner(s);
-            Vector lines = new Vector();
-            while (sc.hasNextLine()) lines.add(sc.nextLine());
-            int n = lines.size() -2;
-            while (n > 0) {
-                Scanner scl = new Scanner((String)lines.get(n));
-                int year = scl.nextInt();
-                String mon = scl.next();
-                if (mon.startsWith("Jul")) transition[year-1970][0]=true;
-                if (mon.startsWith("Jan")) transition[year-1970-1][1]=true;
-                if (year == 1973) break;
-                n--;
-            }
-            System.out.println("Leap second table updated");
-        } catch (Exception ex) {
-            System.out.println("Unable to retrieve leap second table. " +
-            "Using existing table for version 3.6");
-        }
-*/
-        Vector<Long> times = new Vector<>();
-        Vector<Integer> ids = new Vector<>();
-        for (int i = 0; i < transition.length; i++) {
-            if (transition[i][0]) {
-                times.add(Date.UTC(70 + i, 5, 30, 23, 59, 59));
-                ids.add((1970 + i)*10000 + 701);
-            }
-            if (transition[i][1]) {
-                times.add(Date.UTC(70 + i, 11, 31, 23, 59, 59));
-                ids.add((1971 + i)*10000 + 101);
-            }
-        }
-        jtimes = new long[times.size()];
-        tt_times = new long[times.size()];
-        leapSecondIds = new int[times.size()];
-        for (int i = 0; i < jtimes.length; i++) {
-            jtimes[i] = times.get(i);
-            leapSecondIds[i] = ids.get(i);
-            try {
-                tt_times[i] = tt2000(jtimes[i]);
-            } catch (Throwable t) {
-                System.out.println("Internal error.");
-            }
-        }
-        HIGHEST = 1000*jtimes.length;
-        LAST_LEAP_SECOND_ID = leapSecondIds[leapSecondIds.length - 1];
     }
 
     /**
@@ -115,25 +29,7 @@ public class TimeUtil {
      * @throws Throwable
      */
     public static double getOffset(long l) throws Throwable {
-        if (l < JANUARY_1_1972) throw new Throwable("Times before " +
-            "January 1, 1972 are not supported at present");
-        int i;
-        double start;
-        if (l < jtimes[0]) {
-            start = (double)l;
-        } else {
-            start = -1;
-            i = 0;
-            while (i < (jtimes.length - 1)) {
-                if (l < jtimes[i+1]) {
-                    start = (double)(l + (i + 1)*1000);
-                    break;
-                }
-                i++;
-            }
-            if (start < 0) start = (double)(l + HIGHEST);
-        }
-        return start;
+        return (double)LeapSecondTable.current().getOffset(l);
     }
 
     /**
@@ -156,15 +52,8 @@ public class TimeUtil {
      */
     public static double milliSecondSince1970(long javaMilliSecond) throws
         Throwable {
-        long l = javaMilliSecond;
-        if (l < JANUARY_1_1972) throw new Throwable("Times before " +
-            "January 1, 1972 are not supported at present");
-        int i = (jtimes.length - 1);
-        while (i >= 0) {
-            if (l > jtimes[i]) return (double)(l + (i + 1)*1000);
-            i--;
-        }
-        return (double)l;
+        return (double)LeapSecondTable.current().milliSecondSince1970(
+            javaMilliSecond);
     }
 
     /**
@@ -187,7 +76,230 @@ public class TimeUtil {
     public static long tt2000(Date d) throws Throwable {
         return  TT_JANUARY_1_1970 + 1000000*(long)milliSecondSince1970(d);
     }
-    static Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+
+    /**
+     * converts tt2000 values to (java Date compatible) number of
+     * milliseconds since 1970, i.e. with leap seconds removed.
+     * Fill and pad values are passed through unchanged.
+     * @param tt
+     * @param msec array to receive the result. A new array is allocated
+     * if this is null. May be the same array as tt.
+     * @return msec
+     * @throws java.lang.Throwable
+     */
+    public static long[] utcMilliSecondSince1970(long[] tt, long[] msec)
+        throws Throwable {
+        if (msec == null) msec = new long[tt.length];
+        LeapSecondTable.current().toUTC(tt, 0, msec, 0, tt.length, true);
+        return msec;
+    }
+
+    /**
+     * converts the remaining tt2000 values of a buffer to (java Date
+     * compatible) number of milliseconds since 1970.
+     * The position of the buffer is not changed.
+     * @param tt
+     * @param msec array to receive the result. A new array is allocated
+     * if this is null.
+     * @return msec
+     * @throws java.lang.Throwable
+     */
+    public static long[] utcMilliSecondSince1970(LongBuffer tt, long[] msec)
+        throws Throwable {
+        int count = tt.remaining();
+        if (msec == null) msec = new long[count];
+        tt.duplicate().get(msec, 0, count);
+        LeapSecondTable.current().toUTC(msec, 0, msec, 0, count, true);
+        return msec;
+    }
+
+    /**
+     * converts tt2000 values to number of nanoseconds since 1970 with
+     * leap seconds removed.
+     * Fill and pad values are passed through unchanged.
+     * @param tt
+     * @param nsec array to receive the result. A new array is allocated
+     * if this is null. May be the same array as tt.
+     * @return nsec
+     * @throws java.lang.Throwable
+     */
+    public static long[] utcNanoSecondSince1970(long[] tt, long[] nsec)
+        throws Throwable {
+        if (nsec == null) nsec = new long[tt.length];
+        LeapSecondTable.current().toUTC(tt, 0, nsec, 0, tt.length, false);
+        return nsec;
+    }
+
+    /**
+     * converts the remaining tt2000 values of a buffer to number of
+     * nanoseconds since 1970 with leap seconds removed.
+     * The position of the buffer is not changed.
+     * @param tt
+     * @param nsec array to receive the result. A new array is allocated
+     * if this is null.
+     * @return nsec
+     * @throws java.lang.Throwable
+     */
+    public static long[] utcNanoSecondSince1970(LongBuffer tt, long[] nsec)
+        throws Throwable {
+        int count = tt.remaining();
+        if (nsec == null) nsec = new long[count];
+        tt.duplicate().get(nsec, 0, count);
+        LeapSecondTable.current().toUTC(nsec, 0, nsec, 0, count, false);
+        return nsec;
+    }
+
+    /**
+     * returns tt2000 for (java Date returned) numbers of milliseconds
+     * since 1970.
+     * @param javaMilliSecond
+     * @param tt array to receive the result. A new array is allocated
+     * if this is null. May be the same array as javaMilliSecond.
+     * @return tt
+     * @throws java.lang.Throwable
+     */
+    public static long[] tt2000(long[] javaMilliSecond, long[] tt)
+        throws Throwable {
+        if (tt == null) tt = new long[javaMilliSecond.length];
+        LeapSecondTable.current().fromUTC(javaMilliSecond, tt, true);
+        return tt;
+    }
+
+    /**
+     * returns tt2000 for numbers of nanoseconds since 1970 with leap
+     * seconds removed.
+     * @param nsec
+     * @param tt array to receive the result. A new array is allocated
+     * if this is null. May be the same array as nsec.
+     * @return tt
+     * @throws java.lang.Throwable
+     */
+    public static long[] tt2000FromNanoSecond(long[] nsec, long[] tt)
+        throws Throwable {
+        if (tt == null) tt = new long[nsec.length];
+        LeapSecondTable.current().fromUTC(nsec, tt, false);
+        return tt;
+    }
+
+    /**
+     * returns offsets of count tt2000 values, starting at index first of
+     * the buffer, from the tt2000 time origin, in units of the given number
+     * of nanoseconds. Offsets include leap seconds, i.e. they measure
+     * elapsed time. The whole number of units of an offset is exact; its
+     * fraction is rounded, and then the sum.
+     * Both the fill value, -9223372036854775808, and the pad value,
+     * -9223372036854775807, yield NaN. Note that TT2000 times of
+     * {@link TimeVariable#getTimes() time variables}, which are computed
+     * by this method, used to be NaN only for -9223372036854775807.
+     * @param tt
+     * @param first
+     * @param count
+     * @param origin
+     * @param unit 1000000 for milliseconds, 1000 for microseconds, or
+     * 1 for nanoseconds
+     * @param da array to receive the result. A new array is allocated
+     * if this is null.
+     * @return da
+     */
+    public static double[] offsets(LongBuffer tt, int first, int count,
+        long origin, long unit, double[] da) {
+        if (da == null) da = new double[count];
+        LongBuffer src = tt.duplicate();
+        src.position(first);
+        long[] chunk = new long[Math.min(count, 4096)];
+        double u = (double)unit;
+        for (int done = 0; done < count; done += chunk.length) {
+            int n = Math.min(chunk.length, count - done);
+            src.get(chunk, 0, n);
+            for (int i = 0; i < n; i++) {
+                long t = chunk[i];
+                if (t <= Long.MIN_VALUE + 1) {
+                    da[done + i] = Double.NaN;
+                    continue;
+                }
+                long d = t - origin;
+                da[done + i] = (double)(d/unit) + (double)(d%unit)/u;
+            }
+        }
+        return da;
+    }
+
+    /**
+     * returns number of days from January 1, 1970 to the given date of the
+     * proleptic Gregorian calendar. Month and day values outside their
+     * usual range are carried over, as by a lenient Calendar.
+     * @param year
+     * @param month January is 1
+     * @param day
+     * @return
+     */
+    public static long daysSince1970(int year, int month, int day) {
+        long y = (long)year + Math.floorDiv(month - 1, 12);
+        int m = Math.floorMod(month - 1, 12) + 1;
+        if (m <= 2) y--;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era*400;
+        int doy = (153*(m + ((m > 2)?-3:9)) + 2)/5;
+        long doe = yoe*365 + yoe/4 - yoe/100 + doy;
+        return era*146097 + doe - 719468 + (day - 1);
+    }
+
+    /**
+     * returns number of milliseconds since 1970 for given time ignoring
+     * leap seconds. This method does not allocate, and is safe for
+     * concurrent use.
+     * @param year
+     * @param month January is 1
+     * @param day
+     * @param hour
+     * @param minute
+     * @param second
+     * @param millisecond
+     * @return
+     */
+    public static long milliSecondSince1970(int year, int month, int day,
+        int hour, int minute, int second, int millisecond) {
+        long days = daysSince1970(year, month, day);
+        return ((days*24 + hour)*60 + minute)*60000L + second*1000L +
+            millisecond;
+    }
+
+    /**
+     * returns number of milliseconds since 1970 ignoring leap seconds,
+     * for each of the given times.
+     * @param times array of 3 to 7 element int[], containing year,
+     *  month (January is 1), day, hour, minute, second and millisecond
+     * @param msec array to receive the result, of length at least
+     * times.length. May be null.
+     * @return msec, or a new array if msec is null
+     * @throws java.lang.Throwable
+     */
+    public static long[] milliSecondSince1970(int[][] times, long[] msec)
+        throws Throwable {
+        long[] result = (msec == null)?new long[times.length]:msec;
+        for (int i = 0; i < times.length; i++) {
+            result[i] = milliSecondSince1970(times[i], false);
+        }
+        return result;
+    }
+
+    /**
+     * returns tt2000 for each of the given times.
+     * @param times array of 3 to 9 element int[], containing year,
+     *  month (January is 1), day, hour, minute, second, millisecond,
+     *  microsecond and nanosecond
+     * @param tt array to receive the result, of length at least
+     * times.length. May be null.
+     * @return tt, or a new array if tt is null
+     * @throws java.lang.Throwable
+     */
+    public static long[] tt2000(int[][] times, long[] tt) throws Throwable {
+        long[] result = (tt == null)?new long[times.length]:tt;
+        for (int i = 0; i < times.length; i++) {
+            result[i] = tt2000(times[i]);
+        }
+        return result;
+    }
 
     /**
      * returns number of milliseconds since 1970 for given time ignoring
@@ -205,26 +317,15 @@ public class TimeUtil {
      * ignoring leap seconds
      */
     static long milliSecondSince1970(int[] time, boolean tt) throws Throwable {
-        int[] t = new int[6];
-        for (int i = 0; i < 3; i++) t[i] = time[i];
-        t[1]--;
-        for (int i = 3; i < 6; i++) t[i] = 0;
         int n = time.length;
-        if (n >= 4) {
-            t[3] = time[3];
-            if (n >= 5) {
-                t[4] = time[4];
-                if (n >= 6) {
-                    t[5] = time[5];
-                }
-            }
-        }
-        int adjust = 0;
-        if (t[5] == 60) {
+        int hour = (n > 3)?time[3]:0;
+        int minute = (n > 4)?time[4]:0;
+        int second = (n > 5)?time[5]:0;
+        if (second == 60) {
             if (!tt) throw new Throwable("second value 60 is valid " +
                 "for tt2000 only.");
             int id = -1;
-            if ((t[4] == 59) && (t[3] == 23)) {
+            if ((minute == 59) && (hour == 23)) {
                 if ((time[2] == 30) && (time[1] == 6)) {
                     id = time[0]*10000 + 701;
                 } else {
@@ -234,18 +335,13 @@ public class TimeUtil {
                 }
             }
             if (id == -1) throw new Throwable("Invalid leap second time");
-            for (int i = (leapSecondIds.length - 1); i >= 0; i--) {
-                if (id != leapSecondIds[i]) continue;
-                adjust = 1000000000;
-                break;
+            if (!LeapSecondTable.current().isLeapSecondId(id)) {
+                throw new Throwable("Invalid leap second time");
             }
-            if (adjust == 0) throw new Throwable("Invalid leap second time");
-            t[5] = 59;
+            second = 59;
         }
-        cal.clear();
-        cal.set(t[0], t[1], t[2], t[3], t[4], t[5]);
-        cal.set(Calendar.MILLISECOND,(n > 6)?time[6]:0);
-        return cal.getTimeInMillis();
+        return milliSecondSince1970(time[0], time[1], time[2], hour, minute,
+            second, (n > 6)?time[6]:0);
     }
     /**
      * returns tt2000 for the given time
@@ -276,28 +372,8 @@ public class TimeUtil {
          */
         public static long correctedIfNecessary(long varTime, int leapId) throws
             Throwable {
-            if (leapId == LAST_LEAP_SECOND_ID) return varTime;
-            if (leapId < LAST_LEAP_SECOND_ID) { //
-                int id = -1;
-                for (int i = (leapSecondIds.length - 1); i >= 0; i--) {
-                    if (leapId == leapSecondIds[i]) {
-                        id = i;
-                        break;
-                    }
-                }
-                if (id < 0) throw new Throwable("Invalid leapId");
-                //if (varTime < tt2000(jtimes[id + 1])) return varTime;
-                if (varTime < tt_times[id + 1]) return varTime;
-                int i = (id + 1);
-                for (; i < (jtimes.length -1); i++) {
-                    //if (varTime < tt2000(jtimes[i + 1])) break;
-                    if (varTime < tt_times[i + 1]) break;
-                }
-                return varTime + (i - id)*1000000000L;
-            } else {
-                if (varTime < tt_times[jtimes.length - 1]) return varTime;
-                throw new Throwable("Out of date Leap second table");
-            }
+            return LeapSecondTable.current().correctedIfNecessary(varTime,
+                leapId);
         }
     }
 }
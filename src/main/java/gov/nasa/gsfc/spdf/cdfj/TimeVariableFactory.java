@@ -74,16 +74,55 @@ public class TimeVariableFactory {
      */
     public static CDFTimeVariable getTimeVariable(MetaData rdr,
         String vname) throws Throwable {
+        long start = System.nanoTime();
         CDFImpl cdf = rdr.thisCDF;
-        Variable var = (Variable)cdf.getVariable(vname);
-        int precision = -1;
-        String tname = null;
+        Variable var = cdf.getVariable(vname);
+        if (var == null) {
+            throw new Throwable("Bad variable name " + vname);
+        }
         int recordCount = var.getNumberOfValues();
+        Variable tvar = getTimeVariableOf(rdr, var);
+        boolean themisLike = isUnixTime(rdr, var, tvar);
         CDFTimeVariable tv;
+        VDataContainer container = container(cdf, tvar, null);
+        tv = timeVariable(cdf, tvar, themisLike, container.getBuffer());
+        tv.setRecordCount(recordCount); 
+        CDFMetrics.getInstance().timeVariableCreated(vname,
+            tvar.getNumberOfValues(), System.nanoTime() - start);
+        return tv;
+    }
+
+    /**
+     * Returns the first and the last valid times of the time variable of
+     * the named variable, using the default
+     * {@link TimeInstantModel time instant model}. Only the blocks that
+     * hold these times are read.
+     * @param rdr
+     * @param vname
+     * @return double[2], or null if there is no valid time
+     * @throws Throwable
+     */
+    public static double[] getAvailableTimeRange(MetaData rdr,
+        String vname) throws Throwable {
+        CDFImpl cdf = rdr.thisCDF;
+        Variable var = cdf.getVariable(vname);
         if (var == null) {
             throw new Throwable("Bad variable name " + vname);
         }
-        tname = rdr.getTimeVariableName(vname);
+        Variable tvar = getTimeVariableOf(rdr, var);
+        return getValidTimeRange(cdf, tvar, isUnixTime(rdr, var, tvar),
+            var.getNumberOfValues() - 1);
+    }
+
+    /**
+     * Returns the time variable of var: the variable named by DEPEND_0,
+     * or, if that has no records, the unix time variable named by
+     * DEPEND_TIME.
+     */
+    static Variable getTimeVariableOf(MetaData rdr, Variable var) throws
+        Throwable {
+        CDFImpl cdf = rdr.thisCDF;
+        String tname = rdr.getTimeVariableName(var.getName());
 /*
         Vector v = (Vector)cdf.getAttribute(var.getName(), "DEPEND_0");
         if (v.size() > 0) tname = (String)v.elementAt(0);
@@ -103,17 +142,16 @@ public class TimeVariableFactory {
             }
         }
 */
-        Variable tvar = (Variable)cdf.getVariable(tname);
+        Variable tvar = cdf.getVariable(tname);
         if (tvar == null) {
-            throw new Throwable("Time variable not found for " + vname);
+            throw new Throwable("Time variable not found for " +
+            var.getName());
         }
-        boolean themisLike = false;
         if (tvar.getNumberOfValues() == 0) { //themis like
             Vector v = (Vector)cdf.getAttribute(var.getName(), "DEPEND_TIME");
             if (v.size() > 0) {
                 tname = (String)v.elementAt(0);
                 tvar = cdf.getVariable(tname);
-                themisLike = true;
             } else {
                 throw new Throwable("Expected unix time variable " +
                 "not found " + "for " + var.getName());
@@ -122,32 +160,102 @@ public class TimeVariableFactory {
         if (tvar.getNumberOfValues() == 0) {
             throw new Throwable("Empty time variable for " + var.getName());
         }
-        ByteBuffer buf = null;
+        return tvar;
+    }
+
+    /**
+     * Returns whether the time variable of the named variable is of type
+     * TT2000, without reading it.
+     */
+    static boolean isTT2000(MetaData rdr, String vname) throws Throwable {
+        Variable var = rdr.thisCDF.getVariable(vname);
+        if (var == null) {
+            throw new Throwable("Bad variable name " + vname);
+        }
+        return getTimeVariableOf(rdr, var).getType() ==
+            DataTypes.CDF_TIME_TT2000;
+    }
+
+    static boolean isUnixTime(MetaData rdr, Variable var, Variable tvar)
+        throws Throwable {
+        return !tvar.getName().equals(rdr.getTimeVariableName(var.getName()));
+    }
+
+    static VDataContainer container(CDFImpl cdf, Variable tvar,
+        int[] range) throws Throwable {
+        VDataContainer container;
         if (tvar.getType() == DataTypes.CDF_TIME_TT2000) {
-            LongVarContainer lbuf = new LongVarContainer(cdf, tvar, null);
-            lbuf.run();
-            buf = lbuf.getBuffer();
+            container = new LongVarContainer(cdf, tvar, range);
         } else {
-            DoubleVarContainer dbuf = new DoubleVarContainer(cdf, tvar, null,
-            true);
-            dbuf.run();
-            buf = dbuf.getBuffer();
+            container = new DoubleVarContainer(cdf, tvar, range, true);
         }
+        container.run();
+        return container;
+    }
+
+    static CDFTimeVariable timeVariable(CDFImpl cdf, Variable tvar,
+        boolean themisLike, ByteBuffer buf) {
+        String tname = tvar.getName();
         if (tvar.getType() == DataTypes.EPOCH16) {
-            tv = new CDFEpoch16Variable(cdf, tname, buf);
-        } else {
-            if (tvar.getType() == DataTypes.CDF_TIME_TT2000) {
-                tv = new CDFTT2000Variable(cdf, tname, buf);
-            } else {
-                if (themisLike) {
-                    tv = new UnixTimeVariable(cdf, tname, buf);
-                } else {
-                    tv = new CDFEpochVariable(cdf, tname, buf);
+            return new CDFEpoch16Variable(cdf, tname, buf);
+        }
+        if (tvar.getType() == DataTypes.CDF_TIME_TT2000) {
+            return new CDFTT2000Variable(cdf, tname, buf);
+        }
+        if (themisLike) return new UnixTimeVariable(cdf, tname, buf);
+        return new CDFEpochVariable(cdf, tname, buf);
+    }
+
+    /**
+     * Returns the first and the last valid times among records 0 to last
+     * of tvar, using the default time instant model, or null if there is
+     * none. Blocks are read from either end until a valid time is found.
+     */
+    static double[] getValidTimeRange(CDFImpl cdf, Variable tvar,
+        boolean themisLike, int last) throws Throwable {
+        VariableDataLocator locator = tvar.getLocator();
+        if (locator == null) return null;
+        long[][] locations = locator.getLocations();
+        double first = Double.NaN;
+        int blk = 0;
+        for (; blk < locations.length; blk++) {
+            if (locations[blk][0] > last) return null;
+            double[] times = getBlockTimes(cdf, tvar, themisLike,
+                locations[blk], last);
+            for (int i = 0; i < times.length; i++) {
+                if (!Double.isNaN(times[i])) {
+                    first = times[i];
+                    break;
+                }
+            }
+            if (!Double.isNaN(first)) break;
+        }
+        if (Double.isNaN(first)) return null;
+        for (int b = locations.length - 1; b >= blk; b--) {
+            if (locations[b][0] > last) continue;
+            double[] times = getBlockTimes(cdf, tvar, themisLike,
+                locations[b], last);
+            for (int i = times.length - 1; i >= 0; i--) {
+                if (!Double.isNaN(times[i])) {
+                    return new double[] {first, times[i]};
                 }
             }
         }
-        tv.setRecordCount(recordCount); 
-        return tv;
+        return new double[] {first, first};
+    }
+
+    static double[] getBlockTimes(CDFImpl cdf, Variable tvar,
+        boolean themisLike, long[] location, int last) throws Throwable {
+        int[] range = new int[] {(int)location[0],
+            (int)Math.min(location[1], last)};
+        VDataContainer container = container(cdf, tvar, range);
+        try {
+            CDFTimeVariable tv = timeVariable(cdf, tvar, themisLike,
+                container.getBuffer());
+            return tv.getTimes(0, range[1] - range[0], null);
+        } finally {
+            container.close();
+        }
     }
 
     /**
@@ -249,8 +357,9 @@ public class TimeVariableFactory {
                 "incomplete stop time " + "definition.");
             stop = TSExtractor.getTime(stopTime);
             if (isTT2000()) {
-                start = (long)TimeUtil.milliSecondSince1970(start);
-                stop = (long)TimeUtil.milliSecondSince1970(stop);
+                LeapSecondTable table = LeapSecondTable.current();
+                start = table.milliSecondSince1970(start);
+                stop = table.milliSecondSince1970(stop);
             }
             return getTimes(new double[]{(double)start, (double)stop}, ts);
         }
@@ -296,8 +405,9 @@ public class TimeVariableFactory {
             long start = TSExtractor.getTime(startTime);
             long stop = TSExtractor.getTime(stopTime);
             if (isTT2000()) {
-                start = (long)TimeUtil.milliSecondSince1970(start);
-                stop = (long)TimeUtil.milliSecondSince1970(stop);
+                LeapSecondTable table = LeapSecondTable.current();
+                start = table.milliSecondSince1970(start);
+                stop = table.milliSecondSince1970(stop);
             }
             return getRecordRange(
                new double[]{(double)start, (double)stop}, ts);
@@ -483,53 +593,29 @@ public class TimeVariableFactory {
                 base = (long)ts.getBaseTime();
                 offsetUnits = ts.getOffsetUnits();
             }
-            int count = last - first + 1;
-            double [] da = new double[count];
-            ByteBuffer bbuf = tbuf.duplicate();
-            bbuf.order(tbuf.order());
-            LongBuffer lbuf = bbuf.asLongBuffer();
-            if (offsetUnits == TimePrecision.MILLISECOND) {
-                offset = base - TT2000_DATE;
-                for (int i = first; i <= last; i++) {
-                    long nano = lbuf.get(i);
-                    if (nano == LONG_FILL) {
-                        da[i - first] = Double.NaN;
-                        continue;
-                    }
-                    long milli = (nano/1000000) - offset;
-                    double rem = ((double)(nano % 1000000))/1.0e6;
-                    da[i - first] = (double)(milli) + rem;
-                }
+            long unit = 1000000;
+            if (offsetUnits == TimePrecision.MICROSECOND) {
+                unit = 1000;
             } else {
-                if (offsetUnits == TimePrecision.MICROSECOND) {
-                    offset = 1000*(base - TT2000_DATE);
-                    for (int i = first; i <= last; i++) {
-                        long nano = lbuf.get(i);
-                        if (nano == LONG_FILL) {
-                            da[i - first] = Double.NaN;
-                            continue;
-                        }
-                        long micro = (nano/1000) - offset;
-                        double rem = ((double)(nano % 1000))/1.0e3;
-                        da[i - first] = (double)(micro) + rem;
-                    }
+                if (offsetUnits == TimePrecision.NANOSECOND) {
+                    unit = 1;
                 } else {
-                    if (offsetUnits != TimePrecision.NANOSECOND) {
+                    if (offsetUnits != TimePrecision.MILLISECOND) {
                         throw new Throwable("You may request only " +
                         "millisecond, microsecond or nanosecond offset " +
                         "for a variable whose time variable is TT2000 type.");
                     }
-                    offset = 1000000*(base - TT2000_DATE);
-                    for (int i = first; i <= last; i++) {
-                        long nano = lbuf.get(i);
-                        if (nano == LONG_FILL) {
-                            da[i - first] = Double.NaN;
-                            continue;
-                        }
-                        da[i - first] = (double)(nano - offset);
-                    }
                 }
             }
+            offset = base - TT2000_DATE;
+            if (Math.abs(offset) > Long.MAX_VALUE/1000000) {
+                throw new Throwable("Base time is outside the range " +
+                    "of TT2000.");
+            }
+            ByteBuffer bbuf = tbuf.duplicate();
+            bbuf.order(tbuf.order());
+            double [] da = TimeUtil.offsets(bbuf.asLongBuffer(), first,
+                last - first + 1, 1000000*offset, unit, null);
             return da;
         }
         @Override
@@ -4,7 +4,7 @@ import java.nio.*;
 /**
  * Data Container for a variable
  */
-public interface VDataContainer extends Runnable {
+public interface VDataContainer extends Runnable, AutoCloseable {
     /**
      * Returns ByteBuffer for this container.
      * @return 
@@ -37,12 +37,55 @@ public interface VDataContainer extends Runnable {
      */
     public AArray asArray() throws Throwable ;
 
+    /**
+     * Returns the flat multi dimensional representation, sharing
+     * the buffer of this container. The default views the buffer as
+     * records of the type of the container's one dimensional array.
+     * @return
+     * @throws Throwable
+     */
+    public default NDArray asNDArray() throws Throwable {
+        ByteBuffer b = getBuffer();
+        if (b == null) return null;
+        Class<?> type = null;
+        if (this instanceof CDouble) type = Double.TYPE;
+        if (this instanceof CFloat) type = Float.TYPE;
+        if (this instanceof CLong) type = Long.TYPE;
+        if (this instanceof CInt) type = Integer.TYPE;
+        if (this instanceof CShort) type = Short.TYPE;
+        if (this instanceof CByte) type = Byte.TYPE;
+        if (type == null) type = as1DArray().getClass().getComponentType();
+        Variable var = getVariable();
+        if ((type == null) || DataTypes.isStringType(var.getType())) {
+            throw new Throwable("Function not supported for variable " +
+                var.getName());
+        }
+        return NDArray.ofRecords(b, type, var.getEffectiveDimensions(),
+            var.rowMajority());
+    }
+
     /**
      *
      * @param direct
      */
     public void setDirect(boolean direct);
 
+    /**
+     * Sets the pool from which the buffer of this container is drawn.
+     * The default ignores the pool.
+     * @param pool
+     */
+    public default void setBufferPool(BufferPool pool) {
+    }
+
+    /**
+     * Returns the buffer of this container to its pool, if any. The
+     * default does nothing.
+     */
+    @Override
+    public default void close() {
+    }
+
     /**
      * Returns the {@link Variable Variable} for this container.
      * @return 
@@ -0,0 +1,148 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+/**
+ * Compact record of which points of a series are valid, one bit per point.
+ * A ValidityMask lets full resolution values be returned as decoded,
+ * leaving it to the caller to skip invalid points, or to
+ * {@link #compact(double[]) compact} the values when dense arrays are
+ * needed.
+ */
+public final class ValidityMask {
+    final long[] bits;
+    final int size;
+    int count;
+
+    /**
+     * Constructs a mask of the given size with all points valid.
+     */
+    ValidityMask(int size) {
+        this.size = size;
+        bits = new long[(size + 63) >>> 6];
+        for (int i = 0; i < bits.length; i++) bits[i] = -1L;
+        if ((size & 63) != 0) bits[bits.length - 1] = (1L << size) - 1;
+        count = size;
+    }
+
+    /**
+     * Returns the mask of values not equal to fill.
+     * @param values
+     * @param fill
+     * @return
+     */
+    public static ValidityMask ofFill(double[] values, double fill) {
+        ValidityMask mask = new ValidityMask(values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == fill) mask.invalidate(i);
+        }
+        return mask;
+    }
+
+    /**
+     * Converts long values to double, invalidating in mask those
+     * that are equal to fill in the same pass.
+     */
+    static double[] castToDouble(long[] values, long fill, ValidityMask mask) {
+        double[] vdata = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == fill) mask.invalidate(i);
+            vdata[i] = (double)values[i];
+        }
+        return vdata;
+    }
+
+    void invalidate(int i) {
+        long bit = 1L << i;
+        if ((bits[i >>> 6] & bit) == 0) return;
+        bits[i >>> 6] &= ~bit;
+        count--;
+    }
+
+    /**
+     * Returns the number of points covered by the mask.
+     * @return
+     */
+    public int size() {return size;}
+
+    /**
+     * Returns the number of valid points.
+     * @return
+     */
+    public int getValidCount() {return count;}
+
+    /**
+     * Returns whether all points are valid.
+     * @return
+     */
+    public boolean isAllValid() {return count == size;}
+
+    /**
+     * Returns whether point i is valid.
+     * @param i
+     * @return
+     */
+    public boolean isValid(int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Returns the index of the first valid point at or after from,
+     * or -1 if there is none.
+     * @param from
+     * @return
+     */
+    public int nextValid(int from) {
+        if (from >= size) return -1;
+        int w = from >>> 6;
+        long word = bits[w] & (-1L << from);
+        while (true) {
+            if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == bits.length) return -1;
+            word = bits[w];
+        }
+    }
+
+    /**
+     * Returns the mask as a bit set, bit i of element i/64 being set
+     * if point i is valid.
+     * @return
+     */
+    public long[] toLongArray() {return bits.clone();}
+
+    /**
+     * Returns the values of the valid points.
+     * @param values array of length size()
+     * @return values itself if all points are valid.
+     */
+    public double[] compact(double[] values) {
+        return compact(values, 0);
+    }
+
+    /**
+     * Returns the values of the valid points, point i corresponding
+     * to values[offset + i].
+     * @param values
+     * @param offset
+     * @return values itself if all points are valid and offset is 0.
+     */
+    public double[] compact(double[] values, int offset) {
+        if (isAllValid() && (offset == 0) && (values.length == size)) {
+            return values;
+        }
+        double[] dense = new double[count];
+        int n = 0;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            if (word == -1L) {
+                System.arraycopy(values, offset + (w << 6), dense, n, 64);
+                n += 64;
+                continue;
+            }
+            while (word != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                dense[n++] = values[offset + i];
+                word &= word - 1;
+            }
+        }
+        return dense;
+    }
+}
@@ -0,0 +1,190 @@
+package gov.nasa.gsfc.spdf.cdfj;
+/**
+ * Condition on the values of a record, for use with
+ * {@link GenericReader#findRecords(String, ValuePredicate)
+ * GenericReader.findRecords}.
+ * <p>
+ * A comparison matches a record if any value of the record satisfies it.
+ * A magnitude condition is on the Euclidean norm of the values of the
+ * record, and matches only records none of whose values is fill. Values
+ * equal to the fill value specified via the FILLVAL attribute, and NaN,
+ * never satisfy a comparison.
+ * </p>
+ */
+public final class ValuePredicate {
+    static final int GT = 0;
+    static final int GE = 1;
+    static final int LT = 2;
+    static final int LE = 3;
+    static final int EQ = 4;
+    static final int NE = 5;
+    static final int BETWEEN = 6;
+    static final int MAGNITUDE_GT = 7;
+    static final int MAGNITUDE_LT = 8;
+    final int op;
+    final double a;
+    final double b;
+
+    private ValuePredicate(int op, double a, double b) {
+        if (Double.isNaN(a) || Double.isNaN(b)) {
+            throw new IllegalArgumentException("NaN is not a valid bound.");
+        }
+        this.op = op;
+        this.a = a;
+        this.b = b;
+    }
+
+    /**
+     * Returns the condition value &gt; x.
+     * @param x
+     * @return
+     */
+    public static ValuePredicate greaterThan(double x) {
+        return new ValuePredicate(GT, x, 0);
+    }
+
+    /**
+     * Returns the condition value &gt;= x.
+     * @param x
+     * @return
+     */
+    public static ValuePredicate atLeast(double x) {
+        return new ValuePredicate(GE, x, 0);
+    }
+
+    /**
+     * Returns the condition value &lt; x.
+     * @param x
+     * @return
+     */
+    public static ValuePredicate lessThan(double x) {
+        return new ValuePredicate(LT, x, 0);
+    }
+
+    /**
+     * Returns the condition value &lt;= x.
+     * @param x
+     * @return
+     */
+    public static ValuePredicate atMost(double x) {
+        return new ValuePredicate(LE, x, 0);
+    }
+
+    /**
+     * Returns the condition value == x.
+     * @param x
+     * @return
+     */
+    public static ValuePredicate equalTo(double x) {
+        return new ValuePredicate(EQ, x, 0);
+    }
+
+    /**
+     * Returns the condition value != x.
+     * @param x
+     * @return
+     */
+    public static ValuePredicate notEqualTo(double x) {
+        return new ValuePredicate(NE, x, 0);
+    }
+
+    /**
+     * Returns the condition lo &lt;= value &lt;= hi.
+     * @param lo
+     * @param hi
+     * @return
+     */
+    public static ValuePredicate between(double lo, double hi) {
+        return new ValuePredicate(BETWEEN, lo, hi);
+    }
+
+    /**
+     * Returns the condition |record| &gt; x.
+     * @param x
+     * @return
+     */
+    public static ValuePredicate magnitudeGreaterThan(double x) {
+        return new ValuePredicate(MAGNITUDE_GT, x, 0);
+    }
+
+    /**
+     * Returns the condition |record| &lt; x.
+     * @param x
+     * @return
+     */
+    public static ValuePredicate magnitudeLessThan(double x) {
+        return new ValuePredicate(MAGNITUDE_LT, x, 0);
+    }
+
+    /**
+     * Returns whether some record of a block whose valid values lie
+     * between min and max may match. min is NaN if the block has no
+     * valid value.
+     */
+    boolean mayMatch(double min, double max, int elements) {
+        if (Double.isNaN(min)) return false;
+        switch (op) {
+        case GT:
+            return max > a;
+        case GE:
+            return max >= a;
+        case LT:
+            return min < a;
+        case LE:
+            return min <= a;
+        case EQ:
+            return (min <= a) && (a <= max);
+        case NE:
+            return (min != a) || (max != a);
+        case BETWEEN:
+            return (max >= a) && (min <= b);
+        case MAGNITUDE_GT:
+            return Math.sqrt(elements)*
+                Math.max(Math.abs(min), Math.abs(max)) > a;
+        default:
+            if ((min <= 0) && (max >= 0)) return true;
+            return Math.sqrt(elements)*
+                Math.min(Math.abs(min), Math.abs(max)) < a;
+        }
+    }
+
+    /**
+     * Returns whether the record of the given values matches.
+     */
+    boolean matches(double[] data, int offset, int elements,
+        BlockStatistics stats) {
+        if (op >= MAGNITUDE_GT) {
+            double sum = 0;
+            for (int i = offset; i < offset + elements; i++) {
+                if (!stats.isValid(data[i])) return false;
+                sum += data[i]*data[i];
+            }
+            double norm = Math.sqrt(sum);
+            return (op == MAGNITUDE_GT)?(norm > a):(norm < a);
+        }
+        for (int i = offset; i < offset + elements; i++) {
+            double v = data[i];
+            if (stats.isValid(v) && test(v)) return true;
+        }
+        return false;
+    }
+
+    boolean test(double v) {
+        switch (op) {
+        case GT:
+            return v > a;
+        case GE:
+            return v >= a;
+        case LT:
+            return v < a;
+        case LE:
+            return v <= a;
+        case EQ:
+            return v == a;
+        case NE:
+            return v != a;
+        default:
+            return (v >= a) && (v <= b);
+        }
+    }
+}
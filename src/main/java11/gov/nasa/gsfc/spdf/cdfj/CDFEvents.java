@@ -0,0 +1,211 @@
+package gov.nasa.gsfc.spdf.cdfj;
+import jdk.jfr.*;
+
+/**
+ * Hooks for Java Flight Recorder events, Java 11 version.
+ * Events are of category cdfj, and are emitted only while a recording
+ * has them enabled.
+ */
+final class CDFEvents {
+    private CDFEvents() {
+    }
+
+    static String sourceName(CDFImpl cdf) {
+        CDFFactory.CDFSource source = cdf.getSource();
+        return (source == null)?null:source.getName();
+    }
+
+    @Name("gov.nasa.gsfc.spdf.cdfj.Open")
+    @Label("CDF Open")
+    @Description("Mapping or reading of a CDF and parsing of its metadata")
+    @Category("cdfj")
+    static final class OpenEvent extends Event {
+        @Label("Source")
+        String source;
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    static Object beginOpen() {
+        OpenEvent event = new OpenEvent();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    static void endOpen(Object event, String source, long bytes) {
+        if (event == null) return;
+        OpenEvent e = (OpenEvent)event;
+        e.source = source;
+        e.bytes = bytes;
+        e.commit();
+    }
+
+    @Name("gov.nasa.gsfc.spdf.cdfj.VXRTraversal")
+    @Label("VXR Traversal")
+    @Description("Collection of record locations of a variable")
+    @Category("cdfj")
+    static final class LocatorEvent extends Event {
+        @Label("Source")
+        String source;
+        @Label("Variable")
+        String variable;
+        @Label("VXRs")
+        int vxrs;
+        @Label("Blocks")
+        int blocks;
+    }
+
+    static Object beginLocator() {
+        LocatorEvent event = new LocatorEvent();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    static void endLocator(Object event, CDFImpl cdf, String variable,
+        int vxrs, int blocks) {
+        if (event == null) return;
+        LocatorEvent e = (LocatorEvent)event;
+        e.source = sourceName(cdf);
+        e.variable = variable;
+        e.vxrs = vxrs;
+        e.blocks = blocks;
+        e.commit();
+    }
+
+    @Name("gov.nasa.gsfc.spdf.cdfj.Inflate")
+    @Label("Block Inflation")
+    @Description("GZIP inflation of a compressed block of values")
+    @Category("cdfj")
+    static final class InflateEvent extends Event {
+        @Label("Source")
+        String source;
+        @Label("Offset")
+        long offset;
+        @Label("Compressed Size")
+        @DataAmount
+        long compressedBytes;
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    static Object beginInflate() {
+        InflateEvent event = new InflateEvent();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    static void endInflate(Object event, CDFImpl cdf, long offset,
+        long compressedBytes, long bytes) {
+        if (event == null) return;
+        InflateEvent e = (InflateEvent)event;
+        e.source = sourceName(cdf);
+        e.offset = offset;
+        e.compressedBytes = compressedBytes;
+        e.bytes = bytes;
+        e.commit();
+    }
+
+    @Name("gov.nasa.gsfc.spdf.cdfj.ContainerFill")
+    @Label("Container Fill")
+    @Description("Filling of a variable container for a range of records")
+    @Category("cdfj")
+    static final class FillEvent extends Event {
+        @Label("Source")
+        String source;
+        @Label("Variable")
+        String variable;
+        @Label("First Record")
+        int first;
+        @Label("Last Record")
+        int last;
+        @Label("Padded Records")
+        int paddedRecords;
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    static Object beginFill() {
+        FillEvent event = new FillEvent();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    static void endFill(Object event, CDFImpl cdf, String variable,
+        int first, int last, int paddedRecords, long bytes) {
+        if (event == null) return;
+        FillEvent e = (FillEvent)event;
+        e.source = sourceName(cdf);
+        e.variable = variable;
+        e.first = first;
+        e.last = last;
+        e.paddedRecords = paddedRecords;
+        e.bytes = bytes;
+        e.commit();
+    }
+
+    @Name("gov.nasa.gsfc.spdf.cdfj.Layout")
+    @Label("Variable Layout")
+    @Description("Sizing, and compression if needed, of a variable to be " +
+        "written")
+    @Category("cdfj")
+    static final class LayoutEvent extends Event {
+        @Label("Variable")
+        String variable;
+        @Label("Compressed")
+        boolean compressed;
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    static Object beginLayout() {
+        LayoutEvent event = new LayoutEvent();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    static void endLayout(Object event, String variable, boolean compressed,
+        long bytes) {
+        if (event == null) return;
+        LayoutEvent e = (LayoutEvent)event;
+        e.variable = variable;
+        e.compressed = compressed;
+        e.bytes = bytes;
+        e.commit();
+    }
+
+    @Name("gov.nasa.gsfc.spdf.cdfj.Write")
+    @Label("CDF Write")
+    @Description("Writing of a CDF by GenericWriter")
+    @Category("cdfj")
+    static final class WriteEvent extends Event {
+        @Label("Destination")
+        String destination;
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    static Object beginWrite() {
+        WriteEvent event = new WriteEvent();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    static void endWrite(Object event, String destination, long bytes) {
+        if (event == null) return;
+        WriteEvent e = (WriteEvent)event;
+        e.destination = destination;
+        e.bytes = bytes;
+        e.commit();
+    }
+}
@@ -0,0 +1,166 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class AggregateCDFReaderTest {
+
+    static final int[] START = {2010, 1, 1, 0, 5};
+    static final int[] STOP = {2010, 1, 1, 2, 5};
+
+    /**
+     * Writes three files of ten minutes each, starting on the hour.
+     */
+    static File[] files() throws Throwable {
+        final File[] files = new File[3];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = File.createTempFile("day" + i, ".cdf");
+            new SyntheticCDF(i).setRecords(600).setBlockSize(100)
+                .setStart(new int[] {2010, 1, 1, i})
+                .setCompressed(i == 1)
+                .addVariable("B", CDFDataType.FLOAT, new int[] {3})
+                .addVariable("v", CDFDataType.DOUBLE, new int[0])
+                .write(files[i].getPath());
+        }
+        return files;
+    }
+
+    static List<String> names(final File[] files) {
+        final String[] names = new String[files.length];
+        for (int i = 0; i < files.length; i++) names[i] = files[i].getPath();
+        return Arrays.asList(names);
+    }
+
+    static void delete(final File[] files) {
+        for (final File file : files) file.delete();
+    }
+
+    @Test
+    void testTimeSeries() throws Throwable {
+        final File[] files = files();
+        final AggregateCDFReader agg = new AggregateCDFReader(names(files), 2);
+        try {
+            final TimeSeries ts = agg.getTimeSeries("B", START, STOP, null);
+            final double[][] values = (double[][])ts.getValues();
+            assertEquals(ts.getTimes().length, values.length);
+            int n = 0;
+            for (final File file : files) {
+                final TimeSeries part = ReaderFactory.getReader(file.getPath())
+                    .getTimeSeries("B", START, STOP);
+                final double[] times = part.getTimes();
+                final double[][] expected = (double[][])part.getValues();
+                for (int i = 0; i < times.length; i++) {
+                    assertEquals(times[i], ts.getTimes()[n + i]);
+                    assertArrayEquals(expected[i], values[n + i]);
+                }
+                n += times.length;
+            }
+            assertEquals(300 + 600 + 300, n);
+            assertEquals(n, values.length);
+
+            final double[] scalar =
+                (double[])agg.getTimeSeries("v", START, STOP, null)
+                .getValues();
+            assertEquals(n, scalar.length);
+        } finally {
+            agg.close();
+            delete(files);
+        }
+    }
+
+    @Test
+    void testTimeSeriesOneD() throws Throwable {
+        final File[] files = files();
+        final AggregateCDFReader agg = new AggregateCDFReader(names(files));
+        try {
+            for (final boolean columnMajor : new boolean[] {false, true}) {
+                final TimeSeriesOneD ts = agg.getTimeSeriesOneD("B", START,
+                    STOP, null, columnMajor);
+                assertEquals(columnMajor, ts.isColumnMajor());
+                final double[] values = ts.getValues();
+                int n = 0;
+                for (final File file : files) {
+                    final double[] expected =
+                        ReaderFactory.getReader(file.getPath())
+                        .getTimeSeriesOneD("B", START, STOP, null,
+                        columnMajor).getValues();
+                    assertArrayEquals(expected, Arrays.copyOfRange(values, n,
+                        n + expected.length));
+                    n += expected.length;
+                }
+                assertEquals(n, values.length);
+                assertEquals(3*ts.getTimes().length, values.length);
+            }
+        } finally {
+            agg.close();
+            delete(files);
+        }
+    }
+
+    @Test
+    void testFiles() throws Throwable {
+        final File[] files = files();
+        final AggregateCDFReader agg = new AggregateCDFReader(names(files));
+        try {
+            assertArrayEquals(new String[] {files[1].getPath()},
+                agg.getFiles("B", new int[] {2010, 1, 1, 0, 30},
+                new int[] {2010, 1, 1, 1, 30}));
+            assertArrayEquals(names(files).toArray(),
+                agg.getFiles("v", null, null));
+            assertEquals(0, agg.getFiles("B", new int[] {2010, 1, 1, 0, 15},
+                new int[] {2010, 1, 1, 0, 50}).length);
+            assertEquals(0, agg.getFiles("none", null, null).length);
+            assertNull(agg.getAvailableTimeRange("none"));
+
+            final double[] range = agg.getAvailableTimeRange("B");
+            final double[] first = ReaderFactory.getReader(files[0].getPath())
+                .getAvailableTimeRange("B");
+            final double[] last = ReaderFactory.getReader(files[2].getPath())
+                .getAvailableTimeRange("B");
+            assertEquals(first[0], range[0]);
+            assertEquals(last[1], range[1]);
+        } finally {
+            agg.close();
+            delete(files);
+        }
+    }
+
+    @Test
+    void testMetaData() throws Throwable {
+        final File[] files = files();
+        try {
+            final CDFReader meta;
+            try (AggregateCDFReader agg =
+                new AggregateCDFReader(names(files))) {
+                meta = agg.getMetaData();
+                assertSame(meta, agg.getMetaData());
+                assertEquals(files[0].getPath(), meta.getSource());
+                assertTrue(meta.thisCDF.fc.isOpen());
+            }
+            assertFalse(meta.thisCDF.fc.isOpen());
+        } finally {
+            delete(files);
+        }
+    }
+
+    @Test
+    void testNoData() throws Throwable {
+        final File[] files = files();
+        final AggregateCDFReader agg = new AggregateCDFReader(names(files));
+        try {
+            assertThrows(CDFException.ReaderError.class,
+                () -> agg.getTimeSeries("B", new int[] {2010, 1, 1, 0, 15},
+                new int[] {2010, 1, 1, 0, 50}, null));
+            assertThrows(CDFException.ReaderError.class,
+                () -> agg.getTimeSeries("none", null, null, null));
+        } finally {
+            agg.close();
+            delete(files);
+        }
+    }
+}
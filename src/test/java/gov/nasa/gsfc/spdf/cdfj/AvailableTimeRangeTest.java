@@ -0,0 +1,104 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Test;
+
+class AvailableTimeRangeTest {
+
+    static final int RECORDS = 500;
+    // EPOCH of 2010-01-01, in milliseconds since 0000-01-01
+    static final double EPOCH0 = 63429523200000.0;
+
+    /**
+     * Writes a row major file of 500 one second records in blocks of 100,
+     * whose first lead and last trail times are fill.
+     */
+    static void write(final String fname, final CDFTimeType type,
+        final int lead, final int trail) throws Throwable {
+        final GenericWriter gw = new GenericWriter(true);
+        gw.defineTimeVariable("Epoch", type);
+        gw.defineTimeSeries("v", CDFDataType.DOUBLE, new int[0]);
+        final long t0 = TimeUtil.tt2000(new int[] {2010, 1, 1});
+        for (int b = 0; b < RECORDS; b += 100) {
+            final long[] tt2000 = new long[100];
+            final double[] epoch = new double[100];
+            final double[] v = new double[100];
+            for (int i = 0; i < 100; i++) {
+                final int n = b + i;
+                final boolean fill = (n < lead) || (n >= RECORDS - trail);
+                tt2000[i] = fill ? Long.MIN_VALUE : t0 + n*1000000000L;
+                epoch[i] = fill ? -1e31 : EPOCH0 + n*1000.0;
+                v[i] = n;
+            }
+            if (type == CDFTimeType.TT2000) {
+                gw.addData("Epoch", tt2000);
+            } else {
+                gw.addData("Epoch", epoch);
+            }
+            gw.addData("v", v);
+        }
+        gw.write(fname, true);
+    }
+
+    @Test
+    void testRange() throws Throwable {
+        final File file = File.createTempFile("range", ".cdf");
+        try {
+            for (final CDFTimeType type :
+                new CDFTimeType[] {CDFTimeType.TT2000, CDFTimeType.EPOCH}) {
+                final int[][] cases = {{0, 0}, {150, 0}, {0, 120},
+                    {150, 120}};
+                for (final int[] c : cases) {
+                    write(file.getPath(), type, c[0], c[1]);
+                    final CDFReader rdr =
+                        ReaderFactory.getReader(file.getPath());
+                    final double[] times = TimeVariableFactory
+                        .getTimeVariable(rdr, "v").getTimes();
+                    final int last = RECORDS - 1 - c[1];
+                    final double[] expected = {times[c[0]], times[last]};
+                    final String msg = type + " " + c[0] + " " + c[1];
+                    assertArrayEquals(expected,
+                        TimeVariableFactory.getAvailableTimeRange(rdr, "v"),
+                        msg);
+                    assertArrayEquals(expected,
+                        rdr.getAvailableTimeRange("v"), msg);
+                    assertArrayEquals(new int[] {2010, 1, 1, 0,
+                        c[0]/60, c[0]%60, 0}, rdr.firstAvailableTime("v"),
+                        msg);
+                    assertArrayEquals(new int[] {2010, 1, 1, 0,
+                        last/60, last%60, 0}, rdr.lastAvailableTime("v"),
+                        msg);
+                    rdr.thisCDF.close();
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testAllFill() throws Throwable {
+        final File file = File.createTempFile("range", ".cdf");
+        try {
+            for (final CDFTimeType type :
+                new CDFTimeType[] {CDFTimeType.TT2000, CDFTimeType.EPOCH}) {
+                write(file.getPath(), type, RECORDS, 0);
+                final CDFReader rdr = ReaderFactory.getReader(file.getPath());
+                assertNull(TimeVariableFactory.getAvailableTimeRange(rdr,
+                    "v"));
+                assertThrows(CDFException.ReaderError.class,
+                    () -> rdr.getAvailableTimeRange("v"));
+                assertNull(rdr.firstAvailableTime("v"));
+                assertNull(rdr.lastAvailableTime("v"));
+                assertThrows(CDFException.ReaderError.class,
+                    () -> rdr.getAvailableTimeRange("none"));
+                rdr.thisCDF.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
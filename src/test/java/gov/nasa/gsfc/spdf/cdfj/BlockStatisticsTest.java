@@ -0,0 +1,191 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class BlockStatisticsTest {
+
+    /**
+     * Returns the values of all records of a variable, record by record.
+     */
+    static double[][] records(final GenericReader reader, final String name)
+        throws Throwable {
+        final Object o = reader.get(name);
+        if (o instanceof double[][]) return (double[][])o;
+        final double[] v = (double[])o;
+        final double[][] r = new double[v.length][];
+        for (int i = 0; i < v.length; i++) {
+            r[i] = new double[] {v[i]};
+        }
+        return r;
+    }
+
+    static double fill(final GenericReader reader, final String name) {
+        final double[] fill = (double[])Extractor.getFillValue(
+            reader.thisCDF, reader.thisCDF.getVariable(name));
+        return (fill[0] == 0) ? fill[1] : Double.NaN;
+    }
+
+    static int[][] scan(final GenericReader reader, final String name,
+        final ValuePredicate predicate) throws Throwable {
+        final double[][] values = records(reader, name);
+        final double fill = fill(reader, name);
+        final List<int[]> ranges = new ArrayList<>();
+        for (int rec = 0; rec < values.length; rec++) {
+            boolean match = false;
+            double sum = 0;
+            boolean complete = true;
+            for (final double v : values[rec]) {
+                final boolean valid = !Double.isNaN(v) && (v != fill);
+                complete &= valid;
+                sum += v * v;
+                if (valid && (predicate.op < ValuePredicate.MAGNITUDE_GT)) {
+                    match |= predicate.test(v);
+                }
+            }
+            if (predicate.op == ValuePredicate.MAGNITUDE_GT) {
+                match = complete && (Math.sqrt(sum) > predicate.a);
+            }
+            if (predicate.op == ValuePredicate.MAGNITUDE_LT) {
+                match = complete && (Math.sqrt(sum) < predicate.a);
+            }
+            if (!match) continue;
+            if (!ranges.isEmpty() &&
+                (ranges.get(ranges.size() - 1)[1] == rec - 1)) {
+                ranges.get(ranges.size() - 1)[1] = rec;
+            } else {
+                ranges.add(new int[] {rec, rec});
+            }
+        }
+        return ranges.toArray(new int[0][]);
+    }
+
+    static void checkStatistics(final GenericReader reader,
+        final String name) throws Throwable {
+        final BlockStatistics stats = reader.getBlockStatistics(name);
+        final double[][] values = records(reader, name);
+        final double fill = fill(reader, name);
+        final long[][] locations =
+            reader.thisCDF.getVariable(name).getLocator().getLocations();
+        assertEquals(locations.length, stats.getBlockCount());
+        for (int blk = 0; blk < stats.getBlockCount(); blk++) {
+            assertEquals(locations[blk][0], stats.getFirstRecord(blk));
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            int fills = 0;
+            for (int rec = stats.getFirstRecord(blk);
+                rec <= stats.getLastRecord(blk); rec++) {
+                for (final double v : values[rec]) {
+                    if (Double.isNaN(v) || (v == fill)) {
+                        fills++;
+                    } else {
+                        min = Math.min(min, v);
+                        max = Math.max(max, v);
+                    }
+                }
+            }
+            assertEquals(min, stats.getMinimum(blk));
+            assertEquals(max, stats.getMaximum(blk));
+            assertEquals(fills, stats.getFillCount(blk));
+        }
+    }
+
+    static final ValuePredicate[] PREDICATES = {
+        ValuePredicate.greaterThan(900), ValuePredicate.atMost(3),
+        ValuePredicate.notEqualTo(0), ValuePredicate.equalTo(17),
+        ValuePredicate.between(100, 110), ValuePredicate.lessThan(-1),
+        ValuePredicate.atLeast(998)};
+
+    @Test
+    void testFindRecords() throws Throwable {
+        final File file = File.createTempFile("stats", ".cdf");
+        try {
+            for (final boolean compressed : new boolean[] {false, true}) {
+                new SyntheticCDF(15).setRecords(20000).setBlockSize(500)
+                    .setCompressed(compressed).setFillDensity(0.05)
+                    .setGaps(1000, 100)
+                    .addVariable("B", CDFDataType.FLOAT, new int[] {3})
+                    .addVariables(1, CDFDataType.INT2, new int[0])
+                    .write(file.getPath());
+                final GenericReader reader = new GenericReader(
+                    file.getPath());
+                checkStatistics(reader, "B");
+                for (final ValuePredicate p : PREDICATES) {
+                    assertArrayEquals(scan(reader, "v1", p),
+                        reader.findRecords("v1", p));
+                    assertArrayEquals(scan(reader, "B", p),
+                        reader.findRecords("B", p));
+                }
+                checkStatistics(reader, "v1");
+                for (final ValuePredicate p : new ValuePredicate[] {
+                    ValuePredicate.magnitudeGreaterThan(205),
+                    ValuePredicate.magnitudeLessThan(20)}) {
+                    final int[][] expected = scan(reader, "B", p);
+                    assertTrue(expected.length > 0);
+                    assertArrayEquals(expected, reader.findRecords("B", p));
+                }
+            }
+            final GenericReader reader = new GenericReader(file.getPath());
+            final ValuePredicate any = ValuePredicate.atLeast(0);
+            final int[][] all = reader.findRecords("v1", any);
+            assertEquals(0, all[0][0]);
+            final BlockStatistics stats = reader.getBlockStatistics("v1");
+            stats.min[0] = -2;
+            stats.max[0] = -1;
+            final int[][] skipped = reader.findRecords("v1", any);
+            assertEquals(stats.getLastRecord(0) + 1, skipped[0][0]);
+            assertThrows(CDFException.ReaderError.class, () ->
+                reader.findRecords("Epoch", any));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testSidecarAndAppend() throws Throwable {
+        final File file = File.createTempFile("stats", ".cdf");
+        final File sidecar = new File(file.getPath() + ".stats");
+        try {
+            new SyntheticCDF(16).setRecords(200).setBlockSize(64)
+                .addVariable("B", CDFDataType.DOUBLE, new int[] {3})
+                .addVariables(2, CDFDataType.INT4, new int[0])
+                .write(file.getPath());
+            final GenericReader first = new GenericReader(file.getPath());
+            assertEquals(0, first.loadBlockStatistics(sidecar.getPath()));
+            final BlockStatistics b = first.getBlockStatistics("B");
+            first.getBlockStatistics("v2");
+            first.saveBlockStatistics(sidecar.getPath());
+
+            final RefreshableCDFReader reader =
+                new RefreshableCDFReader(file.getPath());
+            assertEquals(2, reader.loadBlockStatistics(sidecar.getPath()));
+            final BlockStatistics loaded = reader.getBlockStatistics("B");
+            assertArrayEquals(b.min, loaded.min);
+            assertArrayEquals(b.max, loaded.max);
+            assertArrayEquals(b.fillCount, loaded.fillCount);
+            final ValuePredicate high = ValuePredicate.greaterThan(1500);
+            assertEquals(0, reader.findRecords("v2", high).length);
+
+            for (int round = 0; round < 4; round++) {
+                RefreshableCDFReaderTest.append(file.getPath(),
+                    200 + 100 * round, 100);
+            }
+            reader.refresh();
+            final int[][] ranges = reader.findRecords("v2", high);
+            assertArrayEquals(scan(reader, "v2", high), ranges);
+            assertArrayEquals(new int[][] {{501, 599}}, ranges);
+            checkStatistics(reader, "v2");
+            final BlockStatistics grown = reader.getBlockStatistics("v2");
+            assertTrue(grown.getBlockCount() >
+                first.getBlockStatistics("v2").getBlockCount());
+        } finally {
+            file.delete();
+            sidecar.delete();
+        }
+    }
+}
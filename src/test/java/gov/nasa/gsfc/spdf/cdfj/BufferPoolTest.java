@@ -0,0 +1,127 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+class BufferPoolTest {
+
+    @Test
+    void testSizeClasses() {
+        final BufferPool pool = new BufferPool(5000, 1 << 20);
+        assertEquals(8192, pool.getMaxBufferSize());
+        assertEquals(4096, new BufferPool(1, 0).getMaxBufferSize());
+        assertThrows(IllegalArgumentException.class,
+            () -> new BufferPool(0, 0));
+        assertThrows(IllegalArgumentException.class,
+            () -> new BufferPool((1 << 30) + 1, 0));
+
+        final ByteBuffer a = pool.acquire(4500);
+        assertTrue(a.isDirect());
+        assertEquals(8192, a.capacity());
+        assertEquals(4500, a.limit());
+        assertEquals(8192, pool.getLeasedBytes());
+        pool.release(a);
+        assertEquals(0, pool.getDiscardCount());
+        assertEquals(8192, pool.getPooledBytes());
+        assertSame(a, pool.acquire(6000));
+        assertEquals(1, pool.getHitCount());
+        assertEquals(6000, a.limit());
+        pool.release(a);
+
+        final ByteBuffer b = pool.acquire(100);
+        assertEquals(4096, b.capacity());
+        final ByteBuffer big = pool.acquire(10000);
+        assertEquals(10000, big.capacity());
+        pool.release(big);
+        assertEquals(1, pool.getDiscardCount());
+        assertEquals(4096, pool.getLeasedBytes());
+        pool.release(b);
+        assertEquals(8192 + 4096, pool.getPooledBytes());
+        pool.clear();
+        assertEquals(0, pool.getPooledBytes());
+        assertEquals(3, pool.getMissCount());
+    }
+
+    @Test
+    void testMaxPooledBytes() {
+        final BufferPool pool = new BufferPool(1 << 16, 8192);
+        final ByteBuffer[] bufs = new ByteBuffer[3];
+        for (int i = 0; i < bufs.length; i++) bufs[i] = pool.acquire(4096);
+        for (final ByteBuffer buf : bufs) pool.release(buf);
+        assertEquals(8192, pool.getPooledBytes());
+        assertEquals(1, pool.getDiscardCount());
+        assertEquals(0, pool.getLeasedBytes());
+    }
+
+    @Test
+    void testReader() throws Throwable {
+        final File file = File.createTempFile("pool", ".cdf");
+        try {
+            new SyntheticCDF(38).setRecords(2000).setBlockSize(500)
+                .addVariable("B", CDFDataType.FLOAT, new int[] {3})
+                .write(file.getPath());
+            final GenericReader rdr = new GenericReader(file.getPath());
+            final double[] expected = rdr.getOneD("B", false);
+            final BufferPool pool = new BufferPool();
+            rdr.setBufferPool(pool);
+            assertSame(pool, rdr.getBufferPool());
+
+            try (NDArray a = rdr.getNDArray("B")) {
+                assertEquals(65536, pool.getLeasedBytes());
+                assertArrayEquals(expected, (double[])a.toFlatArray());
+            }
+            assertEquals(0, pool.getLeasedBytes());
+            assertEquals(1, pool.getReleaseCount());
+
+            final NDArray a = rdr.getNDArray("B", new int[] {10, 19},
+                "float", false);
+            assertTrue(pool.getLeasedBytes() > 0);
+            a.close();
+            a.close();
+            assertEquals(0, pool.getLeasedBytes());
+            assertEquals(2, pool.getReleaseCount());
+
+            // buffers handed to the caller are not drawn from the pool
+            final ByteBuffer buf = rdr.getBuffer("B", "double", null, false);
+            assertTrue(buf.isDirect());
+            assertEquals(2000*3*8, buf.limit());
+            assertEquals(0, pool.getLeasedBytes());
+            final long misses = pool.getMissCount();
+            rdr.getBuffer("B", "float", new int[] {0, 9}, false,
+                ByteBuffer.allocateDirect(120));
+            assertEquals(misses, pool.getMissCount());
+
+            // arrays built internally return their buffer
+            assertArrayEquals(expected, rdr.getOneD("B", false));
+            assertEquals(0, pool.getLeasedBytes());
+
+            // so do containers read by a thread, once their data is taken
+            String name = rdr.startContainerThread("B", "double", null,
+                false);
+            while (!rdr.threadFinished(name)) Thread.sleep(1);
+            assertTrue(pool.getLeasedBytes() > 0);
+            final long releases = pool.getReleaseCount();
+            assertArrayEquals(expected,
+                (double[])rdr.getOneDArray(name, false));
+            assertEquals(0, pool.getLeasedBytes());
+            assertEquals(releases + 1, pool.getReleaseCount());
+
+            name = rdr.startContainerThread("B", "double", null, false);
+            while (!rdr.threadFinished(name)) Thread.sleep(1);
+            final ByteBuffer async = rdr.getBuffer(name);
+            assertEquals(0, pool.getLeasedBytes());
+            assertEquals(releases + 1, pool.getReleaseCount());
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], async.getDouble(8*i));
+            }
+            assertThrows(CDFException.ReaderError.class,
+                () -> rdr.getBuffer("none"));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class CDFAppenderTest {
+
+    /**
+     * Writes a CDF of 1000 records in blocks of 100, so that each
+     * variable has two VXRs, with an MD5 digest.
+     */
+    static void source(final String fname, final boolean compressed)
+        throws Throwable {
+        final File plain = File.createTempFile("plain", ".cdf");
+        try {
+            new SyntheticCDF(32).setRecords(1000).setBlockSize(100)
+                .setCompressed(compressed)
+                .addVariable("B", CDFDataType.DOUBLE, new int[] {3})
+                .addVariables(1, CDFDataType.INT4, new int[0])
+                .write(plain.getPath());
+            final CDFWriter writer =
+                new CDFWriter(new GenericReader(plain.getPath()));
+            writer.setMD5Needed(true);
+            writer.write(fname, true);
+        } finally {
+            plain.delete();
+        }
+    }
+
+    static void append(final String fname, final long t0, final int first,
+        final int count) throws Throwable {
+        final long[] epoch = new long[count];
+        final double[][] b = new double[count][3];
+        final int[] v = new int[count];
+        for (int i = 0; i < count; i++) {
+            epoch[i] = t0 + (first + i)*1000000000L;
+            b[i] = new double[] {first + i, 0, -(first + i)};
+            v[i] = 3*(first + i);
+        }
+        final CDFAppender appender = new CDFAppender(fname);
+        assertEquals(first - 1, appender.getLastRecord("Epoch"));
+        appender.addData("Epoch", epoch);
+        appender.addData("B", b);
+        appender.addData("v1", v);
+        assertEquals(first + count - 1, appender.getLastRecord("B"));
+        appender.close();
+    }
+
+    /**
+     * Returns the offsets of the VXRs of a variable, following the chain.
+     */
+    static long[] vxrs(final CDFImpl cdf, final String name) {
+        final CDF3Impl cdf3 = (CDF3Impl)cdf;
+        final CDFImpl.CDFVariable var =
+            (CDFImpl.CDFVariable)cdf.getVariable(name);
+        long[] offsets = new long[0];
+        long vxr = cdf.getBuffer().getLong((int)var.offset +
+            cdf3.OFFSET_FIRST_VXR);
+        while (vxr != 0) {
+            offsets = Arrays.copyOf(offsets, offsets.length + 1);
+            offsets[offsets.length - 1] = vxr;
+            vxr = cdf.getBuffer().getLong((int)vxr + cdf3.OFFSET_NEXT_VXR);
+        }
+        return offsets;
+    }
+
+    @Test
+    void testAppend() throws Throwable {
+        final File file = File.createTempFile("append", ".cdf");
+        try {
+            for (final boolean compressed : new boolean[] {false, true}) {
+                source(file.getPath(), compressed);
+                GenericReader rdr = new GenericReader(file.getPath());
+                final double[][] b = (double[][])rdr.get("B");
+                final double[] v = (double[])rdr.get("v1");
+                final long[] times = (long[])rdr.getLong("Epoch");
+                assertEquals(2, vxrs(rdr.thisCDF, "B").length);
+
+                append(file.getPath(), times[0], 1000, 50);
+                append(file.getPath(), times[0], 1050, 30);
+
+                rdr = new GenericReader(file.getPath());
+                assertTrue(rdr.verifyDigest().get());
+                assertEquals(compressed, rdr.isCompressed("B"));
+                assertEquals(1080, rdr.getNumberOfValues("Epoch"));
+                final long[] vxrs = vxrs(rdr.thisCDF, "B");
+                assertEquals(4, vxrs.length);
+                final CDFImpl.CDFVariable var =
+                    (CDFImpl.CDFVariable)rdr.thisCDF.getVariable("B");
+                assertEquals(vxrs[3], rdr.thisCDF.getBuffer().getLong(
+                    (int)var.offset + CDFAppender.VDR_OFFSET_VXRTAIL));
+
+                final double[][] _b = (double[][])rdr.get("B");
+                final double[] _v = (double[])rdr.get("v1");
+                final long[] _times = (long[])rdr.getLong("Epoch");
+                for (int i = 0; i < 1080; i++) {
+                    if (i < 1000) {
+                        assertArrayEquals(b[i], _b[i]);
+                        assertEquals(v[i], _v[i], 0);
+                        assertEquals(times[i], _times[i]);
+                    } else {
+                        assertArrayEquals(new double[] {i, 0, -i}, _b[i]);
+                        assertEquals(3*i, _v[i], 0);
+                        assertEquals(times[0] + i*1000000000L, _times[i]);
+                    }
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testErrors() throws Throwable {
+        final File file = File.createTempFile("append", ".cdf");
+        try {
+            source(file.getPath(), false);
+            final CDFAppender appender = new CDFAppender(file.getPath());
+            assertThrows(CDFException.WriterError.class,
+                () -> appender.addData("none", new int[1]));
+            final FileChannel fc = appender.cdf.reopen(appender.cdf.fc);
+            appender.close();
+            assertFalse(fc.isOpen());
+            assertThrows(CDFException.WriterError.class,
+                () -> appender.write());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class CDFCatalogTest {
+
+    static File tree() throws Throwable {
+        final File top = File.createTempFile("catalog", "");
+        top.delete();
+        final File sub = new File(top, "2010/01");
+        sub.mkdirs();
+        for (int day = 1; day <= 4; day++) {
+            final File dir = (day < 3) ? top : sub;
+            new SyntheticCDF(day).setRecords(300).setBlockSize(64)
+                .setCompressed(day == 2)
+                .setStart(new int[] {2010, 1, day})
+                .setTimeVariable("Epoch", (day == 4) ? CDFTimeType.EPOCH
+                    : CDFTimeType.TT2000)
+                .addVariable("B", CDFDataType.FLOAT, new int[] {3})
+                .write(new File(dir, "test_" + day + ".cdf").getPath());
+        }
+        try (FileOutputStream out =
+            new FileOutputStream(new File(sub, "bad.cdf"))) {
+            out.write(new byte[100]);
+        }
+        return top;
+    }
+
+    static void delete(final File f) {
+        final File[] list = f.listFiles();
+        if (list != null) {
+            for (final File c : list) {
+                delete(c);
+            }
+        }
+        f.delete();
+    }
+
+    @Test
+    void testScan() throws Throwable {
+        final File top = tree();
+        try {
+            final CDFCatalog catalog = CDFCatalog.scan(top.getPath(),
+                ".*\\.cdf", 3);
+            assertEquals(4, catalog.size());
+            assertEquals(1, catalog.getErrors().size());
+            final List<CDFCatalog.Entry> entries = catalog.getEntries();
+            for (int i = 0; i < 4; i++) {
+                assertTrue(entries.get(i).getPath().endsWith(
+                    "test_" + (i + 1) + ".cdf"));
+            }
+            final CDFCatalog.Entry e = entries.get(0);
+            final CDFCatalog.VariableEntry b = e.getVariable("B");
+            assertEquals(CDFDataType.FLOAT.getValue(), b.getType());
+            assertArrayEquals(new int[] {3}, b.getDimensions());
+            assertEquals(300, b.getNumberOfValues());
+            assertEquals("Epoch", b.getAttributes().get("DEPEND_0"));
+            assertEquals("data", b.getAttributes().get("VAR_TYPE"));
+            final CDFReader rdr = new CDFReader(e.getPath());
+            final double[] range = rdr.getAvailableTimeRange("B");
+            final double[] extent = e.getExtent("B");
+            assertEquals(range[0], extent[0]);
+            assertEquals(range[1], extent[1]);
+            assertEquals(1.0, extent[2]);
+            assertEquals(3, catalog.select("B",
+                new int[] {2010, 1, 1, 0, 2},
+                new int[] {2010, 1, 3, 12}).size());
+            assertEquals(1, catalog.select(new int[] {2010, 1, 4},
+                null).size());
+            assertEquals(0, catalog.select("C", null, null).size());
+        } finally {
+            delete(top);
+        }
+    }
+
+    @Test
+    void testSaveAndRescan() throws Throwable {
+        final File top = tree();
+        final File index = File.createTempFile("catalog", ".idx");
+        try {
+            final CDFCatalog catalog = CDFCatalog.scan(top.getPath(),
+                ".*\\.cdf", 2);
+            catalog.save(index.getPath());
+            final CDFCatalog loaded = CDFCatalog.load(index.getPath());
+            assertEquals(catalog.size(), loaded.size());
+            assertEquals(catalog.getErrors(), loaded.getErrors());
+            for (int i = 0; i < catalog.size(); i++) {
+                final CDFCatalog.Entry a = catalog.getEntries().get(i);
+                final CDFCatalog.Entry b = loaded.getEntries().get(i);
+                assertEquals(a.getPath(), b.getPath());
+                assertArrayEquals(a.getExtent(), b.getExtent());
+                assertEquals(a.getGlobalAttributes(),
+                    b.getGlobalAttributes());
+                assertEquals(a.getVariable("B").getAttributes(),
+                    b.getVariable("B").getAttributes());
+            }
+            final CDFCatalog rescanned = CDFCatalog.scan(top.getPath(),
+                ".*\\.cdf", 2, loaded);
+            for (int i = 0; i < catalog.size(); i++) {
+                assertSame(loaded.getEntries().get(i),
+                    rescanned.getEntries().get(i));
+            }
+        } finally {
+            index.delete();
+            delete(top);
+        }
+    }
+}
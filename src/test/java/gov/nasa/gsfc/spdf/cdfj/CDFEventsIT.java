@@ -0,0 +1,71 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Smoke check of the multi-release jar built by the jfr profile, run by
+ * failsafe against the packaged jar. jdk.jfr is used through reflection,
+ * since tests are compiled for Java 8.
+ */
+class CDFEventsIT {
+
+    static final String OPEN = "gov.nasa.gsfc.spdf.cdfj.Open";
+
+    @Test
+    void testJava11Layer() throws Throwable {
+        final URL url = CDFEvents.class.getResource("CDFEvents.class");
+        assertTrue(url.toString().contains("!/META-INF/versions/11/"),
+            url.toString());
+        assertEquals("jdk.jfr.Event", Class.forName(
+            "gov.nasa.gsfc.spdf.cdfj.CDFEvents$OpenEvent").getSuperclass()
+            .getName());
+    }
+
+    @Test
+    void testOpenEvents() throws Throwable {
+        final File file = File.createTempFile("events", ".cdf");
+        final File dump = File.createTempFile("events", ".jfr");
+        final Class<?> rc = Class.forName("jdk.jfr.Recording");
+        final Object recording = rc.getConstructor().newInstance();
+        try {
+            new SyntheticCDF(40).setRecords(100)
+                .addVariable("v", CDFDataType.DOUBLE, new int[0])
+                .write(file.getPath());
+            rc.getMethod("enable", String.class).invoke(recording, OPEN);
+            rc.getMethod("start").invoke(recording);
+            new GenericReader(file.getPath());
+            ReaderFactory.getReader(file.getPath()).thisCDF.close();
+            ReaderFactory.getReader(file.getPath(), true);
+            rc.getMethod("stop").invoke(recording);
+            rc.getMethod("dump", java.nio.file.Path.class).invoke(recording,
+                dump.toPath());
+
+            final Method read = Class.forName(
+                "jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents",
+                java.nio.file.Path.class);
+            int n = 0;
+            for (final Object event :
+                (List<?>)read.invoke(null, dump.toPath())) {
+                final Object type = event.getClass().getMethod(
+                    "getEventType").invoke(event);
+                if (!OPEN.equals(type.getClass().getMethod("getName")
+                    .invoke(type))) continue;
+                assertEquals(file.getPath(), event.getClass().getMethod(
+                    "getString", String.class).invoke(event, "source"));
+                n++;
+            }
+            assertEquals(3, n);
+        } finally {
+            rc.getMethod("close").invoke(recording);
+            file.delete();
+            dump.delete();
+        }
+    }
+}
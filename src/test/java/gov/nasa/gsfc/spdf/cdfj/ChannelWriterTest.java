@@ -0,0 +1,80 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+
+import org.junit.jupiter.api.Test;
+
+class ChannelWriterTest {
+
+    /**
+     * Writes the CDF in memory and through a ChannelWriter, with and
+     * without digest, synchronously and asynchronously, and checks that
+     * the files are identical. A writer is used for one write only.
+     */
+    static void check(final Callable<GenericWriter> writers)
+        throws Throwable {
+        final File memory = File.createTempFile("memory", ".cdf");
+        final File channel = File.createTempFile("channel", ".cdf");
+        try {
+            for (final boolean md5 : new boolean[] {false, true}) {
+                GenericWriter writer = writers.call();
+                writer.setMD5Needed(md5);
+                writer.write(memory.getPath(), true);
+                final byte[] expected = Files.readAllBytes(memory.toPath());
+                for (final boolean async : new boolean[] {false, true}) {
+                    writer = writers.call();
+                    writer.setMD5Needed(md5);
+                    writer.setAsynchronousWrite(async);
+                    writer.channelThreshold = 0;
+                    writer.write(channel.getPath(), true);
+                    assertArrayEquals(expected,
+                        Files.readAllBytes(channel.toPath()),
+                        "md5 " + md5 + " async " + async);
+                }
+                if (md5) {
+                    assertTrue(new GenericReader(channel.getPath())
+                        .verifyDigest().get());
+                }
+            }
+        } finally {
+            memory.delete();
+            channel.delete();
+        }
+    }
+
+    @Test
+    void testWriter() throws Throwable {
+        final File file = File.createTempFile("source", ".cdf");
+        try {
+            for (final boolean compressed : new boolean[] {false, true}) {
+                new SyntheticCDF(34).setRecords(3000).setBlockSize(250)
+                    .setCompressed(compressed).setFillDensity(0.01)
+                    .addVariable("B", CDFDataType.DOUBLE, new int[] {3})
+                    .addVariables(3, CDFDataType.INT2, new int[0])
+                    .write(file.getPath());
+                check(() -> new CDFWriter(new GenericReader(file.getPath())));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testBlocks() throws Throwable {
+        // blocks of other files are transferred, or read when digested
+        for (final boolean compressed : new boolean[] {false, true}) {
+            final String[] files = MergeWriterTest.files(compressed);
+            try {
+                assertNotNull(new CDFWriter(files, true).dataContainers
+                    .get("B").blocks.get(0));
+                check(() -> new CDFWriter(files, true));
+            } finally {
+                MergeWriterTest.delete(files);
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class ConcurrentReaderTest {
+
+    static final int THREADS = 8;
+
+    static final int ROUNDS = 20;
+
+    interface Task {
+        Object run(CDFReader reader) throws Throwable;
+    }
+
+    static List<Task> tasks() {
+        final int[] start = {2010, 1, 1, 0, 10};
+        final int[] stop = {2010, 1, 1, 0, 40};
+        final List<Task> tasks = new ArrayList<>();
+        tasks.add(r -> r.get("B"));
+        tasks.add(r -> r.getOneD("B", true));
+        tasks.add(r -> r.getRange("B", 100, 1900));
+        tasks.add(r -> r.getLong("Epoch"));
+        tasks.add(r -> r.get("v1"));
+        tasks.add(r -> r.getBuffer("B", "float", new int[] {10, 2500},
+            true));
+        tasks.add(r -> r.getAvailableTimeRange("v2"));
+        tasks.add(r -> {
+            final TimeSeries ts = r.getTimeSeries("B", start, stop);
+            return new Object[] {ts.getTimes(), ts.getValues()};
+        });
+        tasks.add(r -> r.getScalarTimeSeries("v2"));
+        tasks.add(r -> r.getVectorTimeSeries("B", 1));
+        tasks.add(r -> {
+            final String name = r.startContainerThread("v1", "double",
+                new int[] {0, 2999}, false);
+            while (!r.threadFinished(name)) {
+                Thread.sleep(1);
+            }
+            return r.getOneDArray(name, true);
+        });
+        return tasks;
+    }
+
+    static boolean same(final Object a, final Object b) {
+        if ((a instanceof ByteBuffer) && (b instanceof ByteBuffer)) {
+            return a.equals(b);
+        }
+        return Arrays.deepEquals(new Object[] {a}, new Object[] {b});
+    }
+
+    static void stress(final String fname, final boolean channel)
+        throws Throwable {
+        final List<Task> tasks = tasks();
+        final CDFReader serial = new CDFReader(fname);
+        final Object[] expected = new Object[tasks.size()];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = tasks.get(i).run(serial);
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(
+            THREADS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                final CDFReader reader = channel
+                    ? ReaderFactory.getReader(fname) : new CDFReader(fname);
+                final CountDownLatch ready = new CountDownLatch(THREADS);
+                final List<Future<String>> results = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    final long seed = 31L * round + t;
+                    results.add(executor.submit(new Callable<String>() {
+                        @Override
+                        public String call() throws Exception {
+                            final List<Integer> order = new ArrayList<>();
+                            for (int i = 0; i < tasks.size(); i++) {
+                                order.add(i);
+                            }
+                            Collections.shuffle(order, new Random(seed));
+                            ready.countDown();
+                            ready.await();
+                            for (final int i : order) {
+                                try {
+                                    final Object result =
+                                        tasks.get(i).run(reader);
+                                    if (!same(expected[i], result)) {
+                                        return "task " + i + " differs";
+                                    }
+                                } catch (Throwable th) {
+                                    return "task " + i + ": " + th;
+                                }
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                for (final Future<String> result : results) {
+                    assertNull(result.get(), fname + " round " + round);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSharedReader() throws Throwable {
+        final File file = File.createTempFile("concurrent", ".cdf");
+        try {
+            for (final boolean compressed : new boolean[] {false, true}) {
+                new SyntheticCDF(5).setRecords(3000).setBlockSize(97)
+                    .setCompressed(compressed).setFillDensity(0.1)
+                    .addVariable("B", CDFDataType.FLOAT, new int[] {3})
+                    .addVariables(2, CDFDataType.INT4, new int[0])
+                    .write(file.getPath());
+                stress(file.getPath(), false);
+                stress(file.getPath(), true);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testInterruptedReader() throws Throwable {
+        final File file = File.createTempFile("concurrent", ".cdf");
+        try {
+            new SyntheticCDF(6).setRecords(1000).setBlockSize(50)
+                .addVariable("B", CDFDataType.FLOAT, new int[] {3})
+                .write(file.getPath());
+            final Object expected = new CDFReader(file.getPath()).get("B");
+            final CDFReader reader = ReaderFactory.getReader(file.getPath());
+            final Thread t = new Thread(() -> {
+                Thread.currentThread().interrupt();
+                try {
+                    reader.get("B");
+                } catch (Throwable th) {
+                }
+            });
+            t.start();
+            t.join();
+            assertTrue(same(expected, reader.get("B")));
+        } finally {
+            file.delete();
+        }
+    }
+}
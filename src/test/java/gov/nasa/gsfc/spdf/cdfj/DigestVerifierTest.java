@@ -0,0 +1,97 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class DigestVerifierTest {
+
+    /**
+     * Writes a CDF of about 200 KB, with or without digest, in memory
+     * or through a ChannelWriter.
+     */
+    static void write(final String fname, final boolean md5,
+        final boolean channel, final boolean async) throws Throwable {
+        final File plain = File.createTempFile("plain", ".cdf");
+        try {
+            new SyntheticCDF(33).setRecords(5000).setBlockSize(1000)
+                .addVariable("B", CDFDataType.DOUBLE, new int[] {3})
+                .addVariables(2, CDFDataType.INT2, new int[0])
+                .write(plain.getPath());
+            final CDFWriter writer =
+                new CDFWriter(new GenericReader(plain.getPath()));
+            writer.setMD5Needed(md5);
+            if (channel) writer.channelThreshold = 0;
+            writer.setAsynchronousWrite(async);
+            writer.write(fname, true);
+        } finally {
+            plain.delete();
+        }
+    }
+
+    static void flip(final File file, final long pos) throws Throwable {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(pos);
+            final int b = raf.read();
+            raf.seek(pos);
+            raf.write(b ^ 1);
+        }
+    }
+
+    @Test
+    void testDigest() throws Throwable {
+        final File file = File.createTempFile("digest", ".cdf");
+        try {
+            for (final boolean[] mode : new boolean[][] {{false, false},
+                {true, false}, {true, true}}) {
+                write(file.getPath(), true, mode[0], mode[1]);
+                final byte[] bytes = Files.readAllBytes(file.toPath());
+                final int eof = bytes.length - 16;
+                // the digest is computed while writing the channel path
+                final MessageDigest md = MessageDigest.getInstance("MD5");
+                md.update(bytes, 0, eof);
+                assertArrayEquals(md.digest(),
+                    Arrays.copyOfRange(bytes, eof, bytes.length));
+
+                final GenericReader rdr = new GenericReader(file.getPath());
+                assertTrue(rdr.hasDigest());
+                assertTrue(rdr.verifyDigest().get());
+                // several chunks, the last one partial
+                assertTrue(new DigestVerifier(file.getPath(), 4096).call());
+                assertTrue(new DigestVerifier(file.getPath(), eof).call());
+            }
+
+            flip(file, file.length()/2);
+            assertFalse(new GenericReader(file.getPath()).verifyDigest()
+                .get());
+            assertFalse(new DigestVerifier(file.getPath(), 4096).call());
+            flip(file, file.length()/2);
+            assertTrue(new DigestVerifier(file.getPath(), 4096).call());
+            flip(file, file.length() - 1);
+            assertFalse(new DigestVerifier(file.getPath(), 4096).call());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testNoDigest() throws Throwable {
+        final File file = File.createTempFile("digest", ".cdf");
+        try {
+            write(file.getPath(), false, false, false);
+            final GenericReader rdr = new GenericReader(file.getPath());
+            assertFalse(rdr.hasDigest());
+            assertFalse(DigestVerifier.hasDigest(file.getPath()));
+            assertThrows(CDFException.ReaderError.class,
+                () -> rdr.verifyDigest());
+        } finally {
+            file.delete();
+        }
+    }
+}
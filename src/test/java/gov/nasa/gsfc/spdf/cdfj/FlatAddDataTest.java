@@ -0,0 +1,160 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class FlatAddDataTest {
+
+    static final int RECORDS = 50;
+    static final int[] SHAPE = {2, 3};
+
+    static GenericWriter writer(final boolean rowMajority,
+        final boolean compressed) throws Throwable {
+        final GenericWriter writer = new GenericWriter(rowMajority);
+        for (final String name : new String[] {"D", "F", "G"}) {
+            final CDFDataType type = name.equals("F") ? CDFDataType.FLOAT :
+                CDFDataType.DOUBLE;
+            if (compressed) {
+                writer.defineCompressedVariable(name, type, SHAPE);
+            } else {
+                writer.defineVariable(name, type, SHAPE);
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * Returns the records of values as a flat array in the given order.
+     */
+    static double[] flatten(final double[][][] values,
+        final boolean rowMajority) {
+        final double[] flat = new double[values.length*6];
+        int n = 0;
+        for (final double[][] record : values) {
+            for (int k = 0; k < 6; k++) {
+                flat[n++] = rowMajority ? record[k/3][k%3] :
+                    record[k%2][k/2];
+            }
+        }
+        return flat;
+    }
+
+    static float[] toFloat(final double[] values) {
+        final float[] f = new float[values.length];
+        for (int i = 0; i < f.length; i++) f[i] = (float)values[i];
+        return f;
+    }
+
+    static float[][][] toFloat(final double[][][] values) {
+        final float[][][] f = new float[values.length][2][3];
+        for (int i = 0; i < f.length; i++) {
+            for (int j = 0; j < 2; j++) f[i][j] = toFloat(values[i][j]);
+        }
+        return f;
+    }
+
+    @Test
+    void testFlatMatchesJagged() throws Throwable {
+        final Random random = new Random(31);
+        // float values, so that D, F and G hold the same numbers
+        final double[][][] values = new double[RECORDS][2][3];
+        for (final double[][] record : values) {
+            for (final double[] row : record) {
+                for (int k = 0; k < row.length; k++) {
+                    row[k] = (float)random.nextGaussian();
+                }
+            }
+        }
+        final File jagged = File.createTempFile("jagged", ".cdf");
+        final File flat = File.createTempFile("flat", ".cdf");
+        try {
+            for (final boolean rowMajority : new boolean[] {true, false}) {
+                for (final boolean compressed : new boolean[] {false, true}) {
+                    GenericWriter writer = writer(rowMajority, compressed);
+                    writer.addData("D", values);
+                    writer.addData("F", toFloat(values));
+                    writer.addData("G", values);
+                    writer.write(jagged.getPath());
+                    final byte[] expected =
+                        Files.readAllBytes(jagged.toPath());
+                    for (final boolean inputRow : new boolean[] {true, false}) {
+                        final double[] data = flatten(values, inputRow);
+                        writer = writer(rowMajority, compressed);
+                        writer.addData("D", data, RECORDS, SHAPE, inputRow);
+                        writer.addData("F", toFloat(data), RECORDS, SHAPE,
+                            inputRow);
+                        writer.addData("G", toFloat(data), RECORDS, SHAPE,
+                            inputRow);
+                        writer.write(flat.getPath());
+                        assertArrayEquals(expected,
+                            Files.readAllBytes(flat.toPath()),
+                            "row " + rowMajority + " compressed " +
+                            compressed + " input row " + inputRow);
+                    }
+                    // records added by two calls follow each other
+                    final double[] data = flatten(values, false);
+                    final int half = 6*(RECORDS/2);
+                    writer = writer(rowMajority, compressed);
+                    writer.addData("D", Arrays.copyOf(data, half), RECORDS/2,
+                        SHAPE, false);
+                    writer.addData("D", Arrays.copyOfRange(data, half,
+                        data.length), RECORDS - RECORDS/2, SHAPE, false);
+                    writer.write(flat.getPath());
+                    final GenericReader rdr =
+                        new GenericReader(flat.getPath());
+                    assertEquals(rowMajority, rdr.rowMajority());
+                    assertEquals(compressed, rdr.isCompressed("D"));
+                    assertEquals(RECORDS, rdr.getNumberOfValues("D"));
+                    assertArrayEquals(flatten(values, true),
+                        rdr.getOneD("D", false));
+                    assertArrayEquals(data, rdr.getOneD("D", true));
+                }
+            }
+        } finally {
+            jagged.delete();
+            flat.delete();
+        }
+    }
+
+    @Test
+    void testShapeMismatch() throws Throwable {
+        final GenericWriter writer = writer(true, false);
+        assertThrows(CDFException.WriterError.class,
+            () -> writer.addData("D", new double[18], 3, new int[] {3, 2},
+            true));
+        assertThrows(CDFException.WriterError.class,
+            () -> writer.addData("D", new double[17], 3, SHAPE, true));
+        assertThrows(CDFException.WriterError.class,
+            () -> writer.addData("none", new double[6], 1, SHAPE, true));
+    }
+
+    @Test
+    void testOversize() throws Throwable {
+        // 44739243 records of 6 floats fit in a buffer, but as doubles
+        // they need more than 2^31 - 1 bytes
+        final int nrec = 44739243;
+        final File file = File.createTempFile("oversize", ".bin");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(4L*6*nrec);
+            final FloatBuffer data = raf.getChannel().map(
+                FileChannel.MapMode.READ_ONLY, 0, raf.length())
+                .asFloatBuffer();
+            final GenericWriter writer = writer(true, false);
+            final CDFException.WriterError ex = assertThrows(
+                CDFException.WriterError.class,
+                () -> writer.addData("D", data, nrec, SHAPE, true));
+            assertTrue(ex.getMessage().contains("2147483664 bytes"));
+        } finally {
+            file.delete();
+        }
+    }
+}
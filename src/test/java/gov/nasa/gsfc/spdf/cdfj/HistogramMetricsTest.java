@@ -0,0 +1,99 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+
+class HistogramMetricsTest {
+
+    @Test
+    void testHistogram() {
+        final HistogramMetrics.Histogram h = new HistogramMetrics.Histogram();
+        assertEquals(0, h.getPercentile(0.5));
+        assertEquals(0, h.getMean(), 0);
+        for (final long v : new long[] {0, 1, 2, 3, 1000, -5}) h.record(v);
+        assertEquals(6, h.getCount());
+        assertEquals(1006, h.getTotal());
+        assertEquals(1000, h.getMax());
+        final long[] buckets = h.getBucketCounts();
+        assertEquals(2, buckets[0]);
+        assertEquals(1, buckets[1]);
+        assertEquals(2, buckets[2]);
+        assertEquals(1, buckets[10]);
+        assertEquals(0, h.getPercentile(0.3));
+        assertEquals(2, h.getPercentile(0.5));
+        assertEquals(4, h.getPercentile(0.6));
+        assertEquals(1000, h.getPercentile(1));
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMax());
+        assertEquals(0, h.getBucketCounts()[2]);
+    }
+
+    @Test
+    void testOpen() throws Throwable {
+        final File file = File.createTempFile("metrics", ".cdf");
+        final HistogramMetrics metrics = new HistogramMetrics();
+        try {
+            new SyntheticCDF(39).setRecords(1000).setBlockSize(100)
+                .addVariable("B", CDFDataType.FLOAT, new int[] {3})
+                .write(file.getPath());
+            final long size = file.length();
+            CDFMetrics.setInstance(metrics);
+            assertSame(metrics, CDFMetrics.getInstance());
+
+            new GenericReader(file.getPath());
+            assertEquals(1, metrics.getTotal("opened"));
+            assertEquals(size, metrics.getTotal("openedBytes"));
+
+            ReaderFactory.getReader(file.getPath()).thisCDF.close();
+            ReaderFactory.getReader(file.getPath(), true);
+            CDFFactory.getCDF(Files.readAllBytes(file.toPath()));
+            assertEquals(4, metrics.getTotal("opened"));
+            assertEquals(4*size, metrics.getTotal("openedBytes"));
+            assertEquals(4, metrics.getHistogram("open").getCount());
+            assertTrue(metrics.getHistogram("open").getTotal() > 0);
+        } finally {
+            CDFMetrics.setInstance(null);
+            file.delete();
+        }
+        assertSame(CDFMetrics.NONE, CDFMetrics.getInstance());
+    }
+
+    @Test
+    void testReadWrite() throws Throwable {
+        final File file = File.createTempFile("metrics", ".cdf");
+        final HistogramMetrics metrics = new HistogramMetrics();
+        try {
+            CDFMetrics.setInstance(metrics);
+            new SyntheticCDF(39).setRecords(1000).setBlockSize(100)
+                .setCompressed(true)
+                .addVariable("B", CDFDataType.FLOAT, new int[] {3})
+                .write(file.getPath());
+            assertEquals(1, metrics.getTotal("written"));
+            assertEquals(file.length(), metrics.getTotal("writtenBytes"));
+
+            final GenericReader rdr = new GenericReader(file.getPath());
+            assertEquals(3000, rdr.getOneD("B", true).length);
+            assertEquals(10, metrics.getTotal("blocks"));
+            assertEquals(10, metrics.getHistogram("inflate").getCount());
+            assertEquals(1000*3*4, metrics.getTotal("inflatedBytes"));
+            assertTrue(metrics.getTotal("compressedBytes") > 0);
+            assertEquals(1000, metrics.getTotal("records"));
+
+            metrics.reset();
+            assertEquals(0, metrics.getTotal("blocks"));
+            assertEquals(0, metrics.getHistogram("locator").getCount());
+            assertTrue(metrics.toString().startsWith("open count=0"));
+            assertThrows(IllegalArgumentException.class,
+                () -> metrics.getTotal("none"));
+            assertNull(metrics.getHistogram("none"));
+        } finally {
+            CDFMetrics.setInstance(null);
+            file.delete();
+        }
+    }
+}
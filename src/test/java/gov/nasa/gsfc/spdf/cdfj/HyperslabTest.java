@@ -0,0 +1,139 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Test;
+
+class HyperslabTest {
+
+    static final int RECORDS = 40;
+    static final boolean[] VARYS = {true, true};
+
+    static double value(final int r, final int i, final int j) {
+        return r*100 + i*10 + j;
+    }
+
+    /**
+     * Writes D (DOUBLE 3x4), U (UINT2 5), L (INT8 2x3) with RECORDS
+     * records, and N (NRV DOUBLE 4), in blocks of 16 records.
+     */
+    static void write(final String fname, final boolean rowMajority,
+        final boolean compressed) throws Throwable {
+        final GenericWriter writer = new GenericWriter(rowMajority);
+        writer.defineVariable("D", CDFDataType.DOUBLE, new int[] {3, 4},
+            VARYS, true, compressed, new double[] {-99});
+        if (compressed) {
+            writer.defineCompressedVariable("U", CDFDataType.UINT2,
+                new int[] {5});
+        } else {
+            writer.defineVariable("U", CDFDataType.UINT2, new int[] {5});
+        }
+        writer.defineVariable("L", CDFDataType.INT8, new int[] {2, 3},
+            VARYS, true, compressed, new long[] {-7});
+        writer.addNRVVariable("N", CDFDataType.DOUBLE, new int[] {4},
+            new double[] {1, 2, 3, 4});
+        for (int first = 0; first < RECORDS; first += 16) {
+            final int n = Math.min(16, RECORDS - first);
+            final double[][][] d = new double[n][3][4];
+            final int[][] u = new int[n][5];
+            final long[][][] l = new long[n][2][3];
+            for (int k = 0; k < n; k++) {
+                final int r = first + k;
+                for (int i = 0; i < 3; i++) {
+                    for (int j = 0; j < 4; j++) d[k][i][j] = value(r, i, j);
+                }
+                for (int i = 0; i < 5; i++) u[k][i] = 65535 - r*5 - i;
+                for (int i = 0; i < 2; i++) {
+                    for (int j = 0; j < 3; j++) {
+                        l[k][i][j] = (1L << 40)*r + (i - 1)*3 + j;
+                    }
+                }
+            }
+            writer.addData("D", d);
+            writer.addData("U", u);
+            writer.addData("L", l);
+        }
+        writer.write(fname, true);
+    }
+
+    @Test
+    void testHyperslab() throws Throwable {
+        final File file = File.createTempFile("slab", ".cdf");
+        try {
+            for (final boolean rowMajority : new boolean[] {true, false}) {
+                for (final boolean compressed : new boolean[] {false, true}) {
+                    write(file.getPath(), rowMajority, compressed);
+                    check(new GenericReader(file.getPath()));
+                    check(ReaderFactory.getReader(file.getPath()));
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    static void check(final GenericReader rdr) throws Throwable {
+        // records across block boundaries, rows 0 and 2, columns 1 and 3
+        double[] slab = rdr.getHyperslab("D", 10, 20, new int[] {0, 1},
+            new int[] {2, 2}, new int[] {2, 2});
+        assertEquals(11*4, slab.length);
+        int n = 0;
+        for (int r = 10; r <= 20; r++) {
+            for (final int i : new int[] {0, 2}) {
+                for (final int j : new int[] {1, 3}) {
+                    assertEquals(value(r, i, j), slab[n++], 0);
+                }
+            }
+        }
+
+        // whole records agree with getRangeOneD in row major order
+        slab = rdr.getHyperslab("D", 0, RECORDS - 1, new int[] {0, 0},
+            new int[] {3, 4}, new int[] {1, 1});
+        assertArrayEquals(rdr.getRangeOneD("D", 0, RECORDS - 1, false),
+            slab, 0);
+
+        // records past the last stored record are pad filled
+        slab = rdr.getHyperslab("D", RECORDS - 2, RECORDS + 1,
+            new int[] {1, 0}, new int[] {1, 4}, new int[] {1, 1});
+        for (int k = 0; k < 16; k++) {
+            assertEquals((k < 8) ? value(RECORDS - 2 + k/4, 1, k%4) : -99,
+                slab[k], 0);
+        }
+
+        slab = rdr.getHyperslab("U", 5, 6, new int[] {1}, new int[] {2},
+            new int[] {3});
+        assertArrayEquals(new double[] {65535 - 25 - 1, 65535 - 25 - 4,
+            65535 - 30 - 1, 65535 - 30 - 4}, slab, 0);
+
+        final long[] lslab = rdr.getLongHyperslab("L", RECORDS - 1,
+            RECORDS, new int[] {1, 0}, new int[] {1, 2}, new int[] {1, 2});
+        assertArrayEquals(new long[] {(1L << 40)*(RECORDS - 1),
+            (1L << 40)*(RECORDS - 1) + 2, -7, -7}, lslab);
+
+        // a NRV variable repeats its only record
+        slab = rdr.getHyperslab("N", 0, 2, new int[] {1}, new int[] {2},
+            new int[] {2});
+        assertArrayEquals(new double[] {2, 4, 2, 4, 2, 4}, slab, 0);
+
+        assertThrows(CDFException.ReaderError.class,
+            () -> rdr.getHyperslab("D", 0, 1, new int[] {0, 0},
+            new int[] {2, 2}, new int[] {3, 2}));
+        assertThrows(CDFException.ReaderError.class,
+            () -> rdr.getHyperslab("D", 0, 1, new int[] {0},
+            new int[] {1}, new int[] {1}));
+        assertThrows(CDFException.ReaderError.class,
+            () -> rdr.getHyperslab("D", 2, 1, new int[] {0, 0},
+            new int[] {1, 1}, new int[] {1, 1}));
+        assertThrows(CDFException.ReaderError.class,
+            () -> rdr.getHyperslab("D", 0, Integer.MAX_VALUE - 1,
+            new int[] {0, 0}, new int[] {2, 2}, new int[] {1, 1}));
+        assertThrows(CDFException.ReaderError.class,
+            () -> rdr.getHyperslab("L", 0, 1, new int[] {0, 0},
+            new int[] {1, 1}, new int[] {1, 1}));
+        assertThrows(CDFException.ReaderError.class,
+            () -> rdr.getLongHyperslab("D", 0, 1, new int[] {0, 0},
+            new int[] {1, 1}, new int[] {1, 1}));
+    }
+}
@@ -0,0 +1,127 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.jupiter.api.Test;
+
+class MergeWriterTest {
+
+    /**
+     * Writes three row major files of 8 blocks each, starting on the hour.
+     */
+    static String[] files(final boolean compressed) throws Throwable {
+        final String[] files = new String[3];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = File.createTempFile("part" + i, ".cdf").getPath();
+            new SyntheticCDF(i).setRecords(800).setBlockSize(100)
+                .setStart(new int[] {2010, 1, 1, i})
+                .setCompressed(compressed)
+                .addVariable("B", CDFDataType.FLOAT, new int[] {3})
+                .addVariables(2, CDFDataType.INT2, new int[0])
+                .write(files[i]);
+        }
+        return files;
+    }
+
+    static void delete(final String[] files) {
+        for (final String file : files) new File(file).delete();
+    }
+
+    static void checkMerged(final String[] files, final String merged,
+        final String name) throws Throwable {
+        final GenericReader out = new GenericReader(merged);
+        assertEquals(800*files.length, out.getNumberOfValues(name));
+        int n = 0;
+        for (final String file : files) {
+            final GenericReader in = new GenericReader(file);
+            final int count = in.getNumberOfValues(name);
+            assertArrayEquals(in.getOneD(name, true),
+                out.getRangeOneD(name, n, n + count - 1, true));
+            n += count;
+        }
+    }
+
+    @Test
+    void testMultiBlockMerge() throws Throwable {
+        for (final boolean compressed : new boolean[] {false, true}) {
+            final String[] files = files(compressed);
+            final File merged = File.createTempFile("merged", ".cdf");
+            try {
+                final CDFWriter writer = new CDFWriter(files, true);
+                for (final String name : new String[] {"B", "v1", "v2"}) {
+                    final DataContainer dc = writer.dataContainers.get(name);
+                    assertEquals(8*files.length, dc.blocks.size());
+                    for (int i = 0; i < dc.blocks.size(); i++) {
+                        assertNotNull(dc.blocks.get(i));
+                        assertEquals(100*i, (int)dc.firstRecords.get(i));
+                    }
+                }
+                writer.write(merged.getPath(), true);
+                final GenericReader out = new GenericReader(merged.getPath());
+                assertEquals(compressed, out.isCompressed("B"));
+                final long[] times = (long[])out.getLong("Epoch");
+                assertEquals(800*files.length, times.length);
+                for (int i = 1; i < times.length; i++) {
+                    assertTrue(times[i] > times[i - 1]);
+                }
+                for (final String name : new String[] {"B", "v1", "v2"}) {
+                    checkMerged(files, merged.getPath(), name);
+                }
+            } finally {
+                delete(files);
+                merged.delete();
+            }
+        }
+    }
+
+    @Test
+    void testNonGzipNotCopied() throws Throwable {
+        final String[] files = files(true);
+        final File merged = File.createTempFile("merged", ".cdf");
+        try {
+            // mark B of every file as compressed with RLE; its blocks are
+            // still gzipped, which the reader decodes regardless
+            for (final String file : files) {
+                final CDFImpl.CDFVariable var = (CDFImpl.CDFVariable)
+                    new GenericReader(file).thisCDF.getVariable("B");
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.seek(var.offset + CDFAppender.VDR_OFFSET_CPR);
+                    final long cpr = raf.readLong();
+                    raf.seek(cpr + CDFAppender.CPR_OFFSET_CTYPE);
+                    raf.writeInt(1);
+                }
+            }
+            final CDFWriter writer = new CDFWriter(files, true);
+            for (final FileDataBlock block :
+                writer.dataContainers.get("B").blocks) {
+                assertNull(block);
+            }
+            assertNotNull(writer.dataContainers.get("v1").blocks.get(0));
+            writer.write(merged.getPath(), true);
+            checkMerged(files, merged.getPath(), "B");
+        } finally {
+            delete(files);
+            merged.delete();
+        }
+    }
+
+    @Test
+    void testColumnMajorMerge() throws Throwable {
+        final String[] files = files(false);
+        final File merged = File.createTempFile("merged", ".cdf");
+        try {
+            final CDFWriter writer = new CDFWriter(files);
+            assertFalse(writer.rowMajority);
+            assertNull(writer.dataContainers.get("B").blocks.get(0));
+            writer.write(merged.getPath(), true);
+            assertFalse(new GenericReader(merged.getPath()).rowMajority());
+            checkMerged(files, merged.getPath(), "B");
+        } finally {
+            delete(files);
+            merged.delete();
+        }
+    }
+}
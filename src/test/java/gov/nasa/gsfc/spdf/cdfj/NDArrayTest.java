@@ -0,0 +1,44 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class NDArrayTest {
+
+    @Test
+    void testMajority() throws Throwable {
+        final double[] values = {1, 2, 3, 4, 5, 6};
+        final NDArray row = NDArray.wrap(values, new int[] {2, 3}, true);
+        final NDArray column = NDArray.wrap(values, new int[] {2, 3}, false);
+        assertTrue(row.isContiguous());
+        assertFalse(column.isContiguous());
+        assertSame(values, row.toFlatArray());
+        assertArrayEquals(new double[][] {{1, 2, 3}, {4, 5, 6}},
+            (double[][])row.toArray());
+        assertArrayEquals(new double[][] {{1, 3, 5}, {2, 4, 6}},
+            (double[][])column.toArray());
+        assertArrayEquals(new double[] {1, 3, 5, 2, 4, 6},
+            (double[])column.toFlatArray());
+        assertArrayEquals(values, (double[])column.transpose().toFlatArray());
+    }
+
+    @Test
+    void testViews() throws Throwable {
+        final int[] values = new int[60];
+        for (int i = 0; i < values.length; i++) values[i] = i;
+        final NDArray a = NDArray.wrap(values, new int[] {3, 4, 5}, true);
+        final NDArray v = a.slice(0, 2).range(1, 1, 2, 3);
+        assertArrayEquals(new int[] {4, 2}, v.getShape());
+        assertEquals(40 + 5 + 1, v.getLong(1, 0));
+        assertEquals(40 + 10 + 4, v.getDouble(2, 1));
+        assertArrayEquals(new int[][] {{41, 44}, {46, 49}, {51, 54},
+            {56, 59}}, (int[][])v.toArray());
+        assertEquals(53, ((Integer)a.slice(0, 2).slice(0, 2).slice(0, 3)
+            .toArray()).intValue());
+        assertThrows(IndexOutOfBoundsException.class,
+            () -> a.range(2, 1, 3, 2));
+        assertThrows(Throwable.class,
+            () -> NDArray.wrap(values, new int[] {7, 9}, true));
+    }
+}
@@ -0,0 +1,166 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class RefreshableCDFReaderTest {
+
+    static void append(final String fname, final int first, final int count)
+        throws Throwable {
+        final long[] epoch = new long[count];
+        final double[][] b = new double[count][3];
+        final int[] v = new int[count];
+        final long t0 = TimeUtil.tt2000(new int[] {2010, 1, 1});
+        for (int i = 0; i < count; i++) {
+            epoch[i] = t0 + (first + i) * 1000000000L;
+            b[i][0] = first + i;
+            b[i][2] = -(first + i);
+            v[i] = 3 * (first + i);
+        }
+        final CDFAppender appender = new CDFAppender(fname);
+        appender.addData("Epoch", epoch);
+        appender.addData("B", b, true);
+        appender.addData("v2", v, true);
+        appender.close();
+    }
+
+    static void check(final CDFReader reader, final String fname)
+        throws Throwable {
+        final CDFReader fresh = new CDFReader(fname);
+        for (final String name : new String[] {"Epoch", "B", "v2"}) {
+            final int n = fresh.getNumberOfValues(name);
+            assertEquals(n, reader.getNumberOfValues(name));
+            assertTrue(Arrays.deepEquals(
+                new Object[] {fresh.getRange(name, 0, n - 1)},
+                new Object[] {reader.getRange(name, 0, n - 1)}), name);
+        }
+    }
+
+    @Test
+    void testRefresh() throws Throwable {
+        final File file = File.createTempFile("refresh", ".cdf");
+        try {
+            for (final boolean compressed : new boolean[] {false, true}) {
+                new SyntheticCDF(3).setRecords(200).setBlockSize(64)
+                    .setCompressed(compressed)
+                    .addVariable("B", CDFDataType.DOUBLE, new int[] {3})
+                    .addVariables(2, CDFDataType.INT4, new int[0])
+                    .write(file.getPath());
+                final RefreshableCDFReader reader =
+                    new RefreshableCDFReader(file.getPath());
+                final List<String> events = new ArrayList<>();
+                reader.addListener((r, name, first, last) ->
+                    events.add(name + " " + first + " " + last));
+                reader.get("B");
+                assertEquals(0, reader.refresh().length);
+                int records = 200;
+                for (int round = 0; round < 12; round++) {
+                    append(file.getPath(), records, 25);
+                    events.clear();
+                    final String[] grown = reader.refresh();
+                    assertEquals(3, grown.length);
+                    assertTrue(events.contains("B " + records + " " +
+                        (records + 24)));
+                    final double[][] b =
+                        (double[][])reader.getRecordsSince("B", records);
+                    assertEquals(25, b.length);
+                    assertEquals(records, b[0][0]);
+                    assertEquals(-(records + 24), b[24][2]);
+                    records += 25;
+                    check(reader, file.getPath());
+                }
+                assertNull(reader.getRecordsSince("B", records));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testIndexAfterData() throws Throwable {
+        final File file = File.createTempFile("refresh", ".cdf");
+        final File appended = File.createTempFile("refresh", ".cdf");
+        try {
+            new SyntheticCDF(5).setRecords(100)
+                .addVariable("B", CDFDataType.DOUBLE, new int[] {3})
+                .addVariables(2, CDFDataType.INT4, new int[0])
+                .write(file.getPath());
+            Files.copy(file.toPath(), appended.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+            append(appended.getPath(), 100, 20);
+            final byte[] before = Files.readAllBytes(file.toPath());
+            final byte[] after = Files.readAllBytes(appended.toPath());
+            final RefreshableCDFReader reader =
+                new RefreshableCDFReader(file.getPath());
+            try (RandomAccessFile raf =
+                new RandomAccessFile(file.getPath(), "rw")) {
+                // the data and the new VXRs are written first
+                raf.seek(before.length);
+                raf.write(after, before.length,
+                    after.length - before.length);
+                assertEquals(0, reader.refresh().length);
+                assertEquals(100, reader.getNumberOfValues("B"));
+                // then the index is updated in place
+                raf.seek(0);
+                raf.write(after, 0, before.length);
+            }
+            assertEquals(3, reader.refresh().length);
+            assertEquals(120, reader.getNumberOfValues("B"));
+            check(reader, file.getPath());
+            assertEquals(0, reader.refresh().length);
+        } finally {
+            file.delete();
+            appended.delete();
+        }
+    }
+
+    @Test
+    void testPolling() throws Throwable {
+        final File file = File.createTempFile("refresh", ".cdf");
+        try {
+            new SyntheticCDF(4).setRecords(10)
+                .addVariable("B", CDFDataType.DOUBLE, new int[] {3})
+                .addVariables(2, CDFDataType.INT4, new int[0])
+                .write(file.getPath());
+            final RefreshableCDFReader reader =
+                new RefreshableCDFReader(file.getPath());
+            final int[] seen = {-1};
+            reader.addListener((r, name, first, last) -> {
+                if (name.equals("v2")) {
+                    synchronized (seen) {
+                        seen[0] = last;
+                        seen.notifyAll();
+                    }
+                }
+            });
+            reader.startPolling(10, TimeUnit.MILLISECONDS);
+            try {
+                append(file.getPath(), 10, 5);
+                synchronized (seen) {
+                    final long end = System.currentTimeMillis() + 10000;
+                    while ((seen[0] != 14) &&
+                        (System.currentTimeMillis() < end)) {
+                        seen.wait(100);
+                    }
+                }
+                assertEquals(14, seen[0]);
+                assertArrayEquals(new double[] {30, 33, 36, 39, 42},
+                    (double[])reader.getRecordsSince("v2", 10));
+            } finally {
+                reader.stopPolling();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
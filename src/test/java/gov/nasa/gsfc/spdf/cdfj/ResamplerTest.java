@@ -0,0 +1,238 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class ResamplerTest {
+
+    /**
+     * Resamples the valid points of a masked series one grid point at a
+     * time.
+     */
+    static double[] expected(final MaskedTimeSeries ts, final double start,
+        final double cadence, final int count,
+        final ResamplingMethod method, final double tolerance) {
+        final double[] t = ts.getTimes();
+        final double[] v = (double[])ts.getValues();
+        final double[] result = new double[count];
+        Arrays.fill(result, Double.NaN);
+        for (int k = 0; k < count; k++) {
+            final double g = start + k * cadence;
+            if (method == ResamplingMethod.BIN_AVERAGE) {
+                double sum = 0;
+                int n = 0;
+                for (int i = 0; i < t.length; i++) {
+                    if (Math.floor((t[i] - start) / cadence + 0.5) == k) {
+                        sum += v[i];
+                        n++;
+                    }
+                }
+                if (n > 0) result[k] = sum / n;
+                continue;
+            }
+            int after = 0;
+            while ((after < t.length) && (t[after] < g)) after++;
+            final int before = after - 1;
+            if (method == ResamplingMethod.LINEAR) {
+                if ((after < t.length) && (t[after] == g)) {
+                    result[k] = v[after];
+                } else if ((before >= 0) && (after < t.length) &&
+                    (t[after] - t[before] <= tolerance)) {
+                    result[k] = v[before] + (v[after] - v[before]) *
+                        (g - t[before]) / (t[after] - t[before]);
+                }
+                continue;
+            }
+            int nearest = -1;
+            if (before >= 0) nearest = before;
+            if ((after < t.length) &&
+                ((nearest < 0) || (t[after] - g < g - t[before]))) {
+                nearest = after;
+            }
+            if ((nearest >= 0) && (Math.abs(t[nearest] - g) <= tolerance)) {
+                result[k] = v[nearest];
+            }
+        }
+        return result;
+    }
+
+    static void check(final CDFReader reader, final String name,
+        final int components, final int[] start, final double cadence,
+        final int count, final ResamplingMethod method,
+        final double tolerance) throws Throwable {
+        final double[] values = new double[count * components];
+        final int[] counts = new int[count * components];
+        final int assigned = reader.resample(name, start, cadence, count,
+            method, tolerance, values, counts);
+        final boolean tt2000 = TimeVariableFactory.isTT2000(reader, name);
+        final double t0 = AggregateCDFReader.toMilliSecond(start, tt2000);
+        int n = 0;
+        for (int j = 0; j < components; j++) {
+            final MaskedTimeSeries ts = (components == 1)
+                ? reader.getMaskedTimeSeries(name, null, null, null)
+                : reader.getMaskedTimeSeries(name, j, null, null, null);
+            final double[] e = expected(ts, t0, cadence, count, method,
+                tolerance);
+            for (int k = 0; k < count; k++) {
+                final double actual = values[k * components + j];
+                final String where = name + " " + j + " " + k;
+                if (Double.isNaN(e[k])) {
+                    assertTrue(Double.isNaN(actual), where);
+                    assertEquals(0, counts[k * components + j], where);
+                    continue;
+                }
+                assertEquals(e[k], actual, 1e-9 * Math.abs(e[k]) + 1e-9,
+                    where);
+                assertTrue(counts[k * components + j] > 0, where);
+                n++;
+            }
+        }
+        assertEquals(n, assigned);
+        assertTrue(n > 0);
+    }
+
+    static void checkAll(final String fname) throws Throwable {
+        final CDFReader reader = new CDFReader(fname);
+        final int[][] starts = {{2010, 1, 1, 0, 3, 20, 250},
+            {2009, 12, 31, 23, 59, 50}, {2010, 1, 1, 1, 0}};
+        final ResamplingMethod[] methods = {ResamplingMethod.NEAREST,
+            ResamplingMethod.LINEAR, ResamplingMethod.BIN_AVERAGE};
+        for (final int[] start : starts) {
+            for (final ResamplingMethod method : methods) {
+                check(reader, "B", 3, start, 2500, 1500, method, 1500);
+                check(reader, "v1", 1, start, 700, 900, method, 3000);
+                check(reader, "v1", 1, start, 60000, 20, method,
+                    Double.POSITIVE_INFINITY);
+            }
+        }
+    }
+
+    @Test
+    void testResample() throws Throwable {
+        final File file = File.createTempFile("resample", ".cdf");
+        try {
+            for (final boolean compressed : new boolean[] {false, true}) {
+                new SyntheticCDF(8).setRecords(5000).setBlockSize(300)
+                    .setCompressed(compressed).setFillDensity(0.05)
+                    .setGaps(500, 40)
+                    .addVariable("B", CDFDataType.FLOAT, new int[] {3})
+                    .addVariables(1, CDFDataType.INT4, new int[0])
+                    .write(file.getPath());
+                checkAll(file.getPath());
+            }
+            new SyntheticCDF(9).setRecords(40000).setBlockSize(40000)
+                .setTimeVariable("Epoch", CDFTimeType.EPOCH)
+                .setCadence(100000000L).setFillDensity(0.01)
+                .addVariable("B", CDFDataType.DOUBLE, new int[] {3})
+                .addVariables(1, CDFDataType.INT2, new int[0])
+                .write(file.getPath());
+            checkAll(file.getPath());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Writes one second records of variables whose records 100-149 and
+     * 400-499 are missing: s and p with the PREVIOUS sparse record option,
+     * q with the PADDED one.
+     */
+    static void sparse(final String fname, final boolean compressed)
+        throws Throwable {
+        final GenericWriter gw = new GenericWriter(true);
+        gw.defineTimeVariable("Epoch", CDFTimeType.TT2000);
+        gw.defineVariable("s", CDFDataType.DOUBLE, new int[0],
+            new boolean[0], true, compressed, new double[] {-99},
+            SparseRecordOption.PREVIOUS);
+        gw.defineVariable("p", CDFDataType.DOUBLE, new int[] {2},
+            new boolean[] {true}, true, compressed, new double[] {-99, -99},
+            SparseRecordOption.PREVIOUS);
+        gw.defineVariable("q", CDFDataType.DOUBLE, new int[0],
+            new boolean[0], true, compressed, new double[] {-99},
+            SparseRecordOption.PADDED);
+        final long t0 = TimeUtil.tt2000(new int[] {2010, 1, 1});
+        final long[] times = new long[1000];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = t0 + i*1000000000L;
+        }
+        gw.addData("Epoch", times);
+        final int[][] ranges = {{0, 99}, {150, 399}, {500, 999}};
+        for (final int[] range : ranges) {
+            final int n = range[1] - range[0] + 1;
+            final double[] s = new double[n];
+            final double[][] p = new double[n][];
+            for (int i = 0; i < n; i++) {
+                s[i] = Math.sin((range[0] + i)/10.0);
+                p[i] = new double[] {s[i], range[0] + i};
+            }
+            for (final String name : new String[] {"s", "q"}) {
+                gw.addData(name, s, range);
+            }
+            gw.addData("p", p, range);
+        }
+        gw.write(fname, true);
+    }
+
+    @Test
+    void testSparse() throws Throwable {
+        final File file = File.createTempFile("resample", ".cdf");
+        final int[] start = {2010, 1, 1};
+        try {
+            for (final boolean compressed : new boolean[] {false, true}) {
+                sparse(file.getPath(), compressed);
+                final CDFReader reader = new CDFReader(file.getPath());
+                final ResamplingMethod[] methods = {
+                    ResamplingMethod.NEAREST, ResamplingMethod.LINEAR,
+                    ResamplingMethod.BIN_AVERAGE};
+                for (final ResamplingMethod method : methods) {
+                    check(reader, "s", 1, start, 2500, 400, method, 1500);
+                    check(reader, "p", 2, start, 700, 1430, method, 3000);
+                    check(reader, "q", 1, start, 2500, 400, method, 1500);
+                }
+                final double[] values = new double[1000];
+                reader.resample("s", start, 1000, 1000,
+                    ResamplingMethod.NEAREST, 0, values, null);
+                assertEquals(Math.sin(9.9), values[120]);
+                assertEquals(Math.sin(39.9), values[450]);
+                reader.resample("q", start, 1000, 1000,
+                    ResamplingMethod.NEAREST, 0, values, null);
+                assertTrue(Double.isNaN(values[120]));
+                assertEquals(Math.sin(15.0), values[150]);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testInvalidArguments() throws Throwable {
+        final File file = File.createTempFile("resample", ".cdf");
+        try {
+            new SyntheticCDF(10).setRecords(100)
+                .addVariable("B", CDFDataType.FLOAT, new int[] {3})
+                .write(file.getPath());
+            final CDFReader reader = new CDFReader(file.getPath());
+            final int[] start = {2010, 1, 1};
+            assertThrows(CDFException.ReaderError.class, () ->
+                reader.resample("B", start, 1000, 10,
+                    ResamplingMethod.NEAREST, 500, new double[29], null));
+            assertThrows(CDFException.ReaderError.class, () ->
+                reader.resample("B", start, 0, 10,
+                    ResamplingMethod.LINEAR, 500, new double[30], null));
+            assertThrows(CDFException.ReaderError.class, () ->
+                reader.resample("Epoch", start, 1000, 10,
+                    ResamplingMethod.LINEAR, 500, new double[30], null));
+            final double[] values = new double[30];
+            assertEquals(30, reader.resample("B", start, 1000, 10,
+                ResamplingMethod.BIN_AVERAGE, 0, values, null));
+            assertSame(ResamplingMethod.BIN_AVERAGE,
+                ResamplingMethod.getMethod("Bin_Average"));
+        } finally {
+            file.delete();
+        }
+    }
+}
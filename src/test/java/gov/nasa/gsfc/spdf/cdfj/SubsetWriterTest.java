@@ -0,0 +1,154 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+class SubsetWriterTest {
+
+    static final int[] START = {2010, 1, 1, 0, 10};
+    static final int[] STOP = {2010, 1, 1, 0, 45};
+
+    /**
+     * Writes a synthetic CDF whose vector variable B has a label variable.
+     */
+    static void source(final String fname, final boolean compressed)
+        throws Throwable {
+        final File plain = File.createTempFile("plain", ".cdf");
+        try {
+            new SyntheticCDF(18).setRecords(5000).setBlockSize(400)
+                .setCompressed(compressed).setFillDensity(0.05)
+                .setGaps(1000, 50)
+                .addVariable("B", CDFDataType.FLOAT, new int[] {3})
+                .addVariables(2, CDFDataType.INT4, new int[0])
+                .write(plain.getPath());
+            final CDFWriter writer =
+                new CDFWriter(new GenericReader(plain.getPath()));
+            writer.addNRVVariable("B_label", CDFDataType.CHAR,
+                new int[] {3}, 2, new String[] {"Bx", "By", "Bz"});
+            writer.addVariableAttributeEntry("B", "LABL_PTR_1", "B_label");
+            writer.write(fname, true);
+        } finally {
+            plain.delete();
+        }
+    }
+
+    /**
+     * Returns the values of all records of a variable, record by record.
+     */
+    static double[][] records(final GenericReader reader, final String name)
+        throws Throwable {
+        final Object o = reader.get(name);
+        if (o instanceof double[][]) return (double[][])o;
+        final double[] v = (double[])o;
+        final double[][] r = new double[v.length][];
+        for (int i = 0; i < v.length; i++) {
+            r[i] = new double[] {v[i]};
+        }
+        return r;
+    }
+
+    static void checkRecords(final GenericReader src, final GenericReader out,
+        final String name, final int first, final int count)
+        throws Throwable {
+        assertEquals(count, out.getNumberOfValues(name));
+        final double[][] expected = records(src, name);
+        final double[][] actual = records(out, name);
+        for (int i = 0; i < count; i++) {
+            assertArrayEquals(expected[first + i], actual[i]);
+        }
+    }
+
+    @Test
+    void testSubset() throws Throwable {
+        final File file = File.createTempFile("source", ".cdf");
+        final File subset = File.createTempFile("subset", ".cdf");
+        try {
+            for (final boolean compressed : new boolean[] {false, true}) {
+                source(file.getPath(), compressed);
+                final SelectedVariableCollection col =
+                    CDFWriter.selectorInstance();
+                col.add("B", compressed);
+                col.add("v1", !compressed);
+                final CDFWriter writer = new CDFWriter(file.getPath(), col,
+                    START, STOP);
+
+                final GenericReader src = new GenericReader(file.getPath());
+                final long[][] locations =
+                    src.thisCDF.getVariable("B").getLocator().getLocations();
+                final DataContainer dc = writer.dataContainers.get("B");
+                int n = 0;
+                for (final long[] location : locations) {
+                    if ((location[1] < 600) || (location[0] > 2699)) continue;
+                    final boolean whole = (location[0] >= 600) &&
+                        (location[1] <= 2699);
+                    assertEquals(Math.max(location[0], 600) - 600,
+                        (long)dc.firstRecords.get(n));
+                    assertEquals(!compressed || whole,
+                        dc.blocks.get(n) != null, "block " + location[0]);
+                    n++;
+                }
+                assertEquals(n, dc.blocks.size());
+                for (final FileDataBlock block :
+                    writer.dataContainers.get("v1").blocks) {
+                    assertNull(block);
+                }
+                writer.write(subset.getPath(), true);
+
+                final GenericReader out = new GenericReader(subset.getPath());
+                final String[] names = out.getVariableNames();
+                Arrays.sort(names);
+                assertArrayEquals(new String[] {"B", "B_label", "Epoch", "v1"},
+                    names);
+                assertEquals(compressed, out.isCompressed("B"));
+                assertEquals(!compressed, out.isCompressed("v1"));
+                final long[] times = (long[])src.getLong("Epoch");
+                assertArrayEquals(Arrays.copyOfRange(times, 600, 2700),
+                    (long[])out.getLong("Epoch"));
+                checkRecords(src, out, "B", 600, 2100);
+                checkRecords(src, out, "v1", 600, 2100);
+                assertEquals("B_label",
+                    ((Vector)out.getAttribute("B", "LABL_PTR_1")).get(0));
+                assertEquals("Epoch",
+                    ((Vector)out.getAttribute("B", "DEPEND_0")).get(0));
+                assertArrayEquals((Object[])src.get("B_label"),
+                    (Object[])out.get("B_label"));
+            }
+        } finally {
+            file.delete();
+            subset.delete();
+        }
+    }
+
+    @Test
+    void testOpenRange() throws Throwable {
+        final File file = File.createTempFile("source", ".cdf");
+        final File subset = File.createTempFile("subset", ".cdf");
+        try {
+            source(file.getPath(), true);
+            final GenericReader src = new GenericReader(file.getPath());
+            final SelectedVariableCollection col =
+                CDFWriter.selectorInstance();
+            col.add("v2", true);
+            new CDFWriter(src, col, START, null).write(subset.getPath(),
+                true);
+            GenericReader out = new GenericReader(subset.getPath());
+            assertEquals(4400, out.getNumberOfValues("Epoch"));
+            checkRecords(src, out, "v2", 600, 4350);
+            assertFalse(out.existsVariable("B_label"));
+
+            new CDFWriter(src, col, null, new int[] {2009, 12, 31})
+                .write(subset.getPath(), true);
+            out = new GenericReader(subset.getPath());
+            assertEquals(0, out.getNumberOfValues("Epoch"));
+            assertEquals(0, out.getNumberOfValues("v2"));
+        } finally {
+            file.delete();
+            subset.delete();
+        }
+    }
+}
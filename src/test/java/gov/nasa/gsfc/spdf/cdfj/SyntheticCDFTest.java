@@ -0,0 +1,65 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SyntheticCDFTest {
+
+    static SyntheticCDF spec(boolean compressed) {
+        return new SyntheticCDF(11).setRecords(500).setBlockSize(64)
+            .setCompressed(compressed).setFillDensity(0.2).setGaps(50, 5)
+            .addVariable("B", CDFDataType.FLOAT, new int[] {3})
+            .addVariables(2, CDFDataType.INT2, new int[0]);
+    }
+
+    @Test
+    void testReproducible() throws Throwable {
+        final File file = File.createTempFile("synthetic", ".cdf");
+        try {
+            for (final boolean compressed : new boolean[] {false, true}) {
+                spec(compressed).write(file.getPath());
+                final byte[] first = Files.readAllBytes(file.toPath());
+                spec(compressed).write(file.getPath());
+                assertArrayEquals(first, Files.readAllBytes(file.toPath()));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testContents() throws Throwable {
+        final File file = File.createTempFile("synthetic", ".cdf");
+        try {
+            spec(true).write(file.getPath());
+            final CDFReader reader = new CDFReader(file.getPath());
+            final long[] times = (long[])reader.getLong("Epoch");
+            assertEquals(500, times.length);
+            assertEquals(TimeUtil.tt2000(new int[] {2010, 1, 1}), times[0]);
+            assertEquals(1000000000L, times[1] - times[0]);
+            final double[][] b = (double[][])reader.get("B");
+            assertEquals(495, b.length);
+            int fills = 0;
+            for (int i = 0; i < b.length; i++) {
+                for (int j = 0; j < 3; j++) {
+                    final boolean fill = (b[i][j] == (float)-1e31);
+                    if ((i%50) >= 45) {
+                        assertTrue(fill);
+                    } else if (fill) {
+                        fills++;
+                    }
+                }
+            }
+            assertTrue((fills > 200) && (fills < 340), "" + fills);
+            assertEquals("Epoch", ((List)reader.getAttribute("v1",
+                "DEPEND_0")).get(0));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+class TimeAlignerTest {
+
+    /**
+     * Valid times and values of a column, with times shifted by offset.
+     */
+    static double[][] series(final CDFReader reader, final String name,
+        final int component, final boolean vector, final double offset)
+        throws Throwable {
+        final MaskedTimeSeries ts = vector
+            ? reader.getMaskedTimeSeries(name, component, null, null, null)
+            : reader.getMaskedTimeSeries(name, null, null, null);
+        final double[] t = ts.getTimes().clone();
+        for (int i = 0; i < t.length; i++) {
+            t[i] -= offset;
+        }
+        return new double[][] {t, (double[])ts.getValues()};
+    }
+
+    static double expected(final double[][] s, final double g,
+        final AlignmentPolicy policy, final double tolerance) {
+        final double[] t = s[0];
+        int after = 0;
+        while ((after < t.length) && (t[after] < g)) after++;
+        if ((after < t.length) && (t[after] == g)) return s[1][after];
+        if (policy == AlignmentPolicy.EXACT) return Double.NaN;
+        final int before = after - 1;
+        if (policy == AlignmentPolicy.PREVIOUS) {
+            return ((before >= 0) && (g - t[before] <= tolerance))
+                ? s[1][before] : Double.NaN;
+        }
+        int nearest = before;
+        if ((after < t.length) &&
+            ((nearest < 0) || (t[after] - g < g - t[before]))) {
+            nearest = after;
+        }
+        return ((nearest >= 0) && (Math.abs(t[nearest] - g) <= tolerance))
+            ? s[1][nearest] : Double.NaN;
+    }
+
+    static List<double[]> collect(final TimeAligner aligner,
+        final int chunkSize) throws Throwable {
+        final List<double[]> rows = new ArrayList<>();
+        TimeAligner.Chunk chunk;
+        while ((chunk = aligner.next()) != null) {
+            assertTrue(chunk.size() <= chunkSize);
+            for (int r = 0; r < chunk.size(); r++) {
+                final double[] row =
+                    new double[aligner.getColumnCount() + 1];
+                row[0] = chunk.getTimes()[r];
+                for (int c = 0; c < aligner.getColumnCount(); c++) {
+                    row[c + 1] = chunk.getColumn(c)[r];
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    static void assertSameValue(final double e, final double a,
+        final String where) {
+        if (Double.isNaN(e)) {
+            assertTrue(Double.isNaN(a), where);
+        } else {
+            assertEquals(e, a, where);
+        }
+    }
+
+    @Test
+    void testReferenceTimeLine() throws Throwable {
+        final File mag = File.createTempFile("mag", ".cdf");
+        final File plasma = File.createTempFile("plasma", ".cdf");
+        try {
+            new SyntheticCDF(11).setRecords(20000).setBlockSize(1500)
+                .setCadence(16000000L).setFillDensity(0.05)
+                .addVariable("B", CDFDataType.FLOAT, new int[] {3})
+                .write(mag.getPath());
+            new SyntheticCDF(12).setRecords(100).setBlockSize(16)
+                .setCompressed(true).setCadence(4000000000L)
+                .setTimeVariable("Epoch", CDFTimeType.EPOCH)
+                .setStart(new int[] {2010, 1, 1, 0, 0, 1})
+                .setFillDensity(0.1).setGaps(10, 2)
+                .addVariables(2, CDFDataType.INT4, new int[0])
+                .write(plasma.getPath());
+            final CDFReader magReader = new CDFReader(mag.getPath());
+            final CDFReader plasmaReader = new CDFReader(plasma.getPath());
+            final TimeAligner aligner = new TimeAligner();
+            final int b = aligner.add(magReader, "B", AlignmentPolicy.EXACT,
+                0);
+            final int prev = aligner.add(plasmaReader, "v0",
+                AlignmentPolicy.PREVIOUS, 8000);
+            final int near = aligner.add(plasmaReader, "v1",
+                AlignmentPolicy.NEAREST, 3000);
+            aligner.setReference(b);
+            final int[] start = {2010, 1, 1, 0, 0, 30};
+            final int[] stop = {2010, 1, 1, 0, 4};
+            aligner.setTimeRange(start, stop);
+            aligner.setChunkSize(1000);
+            assertEquals(5, aligner.getColumnCount());
+            assertEquals(3, aligner.getFirstColumn(prev));
+            assertEquals(4, aligner.getFirstColumn(near));
+            assertFalse(aligner.isTT2000());
+            final List<double[]> rows = collect(aligner, 1000);
+
+            final int[] t0 = {2010, 1, 1};
+            final double leap = AggregateCDFReader.toMilliSecond(t0, true) -
+                AggregateCDFReader.toMilliSecond(t0, false);
+            final double begin = AggregateCDFReader.toMilliSecond(start,
+                false);
+            final double end = AggregateCDFReader.toMilliSecond(stop, false);
+            final double[] line = magReader.getTimeSeries("B").getTimes();
+            int r = 0;
+            final double[][][] s = new double[5][][];
+            for (int j = 0; j < 3; j++) {
+                s[j] = series(magReader, "B", j, true, leap);
+            }
+            s[3] = series(plasmaReader, "v0", 0, false, 0);
+            s[4] = series(plasmaReader, "v1", 0, false, 0);
+            final AlignmentPolicy[] policies = {AlignmentPolicy.EXACT,
+                AlignmentPolicy.EXACT, AlignmentPolicy.EXACT,
+                AlignmentPolicy.PREVIOUS, AlignmentPolicy.NEAREST};
+            final double[] tolerances = {0, 0, 0, 8000, 3000};
+            for (final double lt : line) {
+                final double g = lt - leap;
+                if ((g < begin) || (g >= end)) continue;
+                final double[] row = rows.get(r++);
+                assertEquals(g, row[0]);
+                for (int c = 0; c < 5; c++) {
+                    assertSameValue(expected(s[c], g, policies[c],
+                        tolerances[c]), row[c + 1], g + " " + c);
+                }
+            }
+            assertEquals(rows.size(), r);
+            assertEquals(13125, r);
+        } finally {
+            mag.delete();
+            plasma.delete();
+        }
+    }
+
+    @Test
+    void testUnionTimeLine() throws Throwable {
+        final File x = File.createTempFile("union_x", ".cdf");
+        final File y = File.createTempFile("union_y", ".cdf");
+        try {
+            new SyntheticCDF(13).setRecords(500).setBlockSize(64)
+                .setCadence(700000000L).setFillDensity(0.2)
+                .addVariable("X", CDFDataType.DOUBLE, new int[0])
+                .write(x.getPath());
+            new SyntheticCDF(14).setRecords(300).setBlockSize(50)
+                .setCompressed(true).setCadence(1100000000L)
+                .setStart(new int[] {2010, 1, 1, 0, 0, 5})
+                .setFillDensity(0.2)
+                .addVariable("Y", CDFDataType.FLOAT, new int[0])
+                .write(y.getPath());
+            final CDFReader xr = new CDFReader(x.getPath());
+            final CDFReader yr = new CDFReader(y.getPath());
+            final TimeAligner aligner = new TimeAligner();
+            aligner.add(xr, "X", AlignmentPolicy.NEAREST,
+                Double.POSITIVE_INFINITY);
+            aligner.add(yr, "Y", AlignmentPolicy.PREVIOUS,
+                Double.POSITIVE_INFINITY);
+            aligner.add(yr, "Y", AlignmentPolicy.NEAREST, 400);
+            aligner.add(xr, "X", AlignmentPolicy.EXACT, 0);
+            aligner.setChunkSize(97);
+            assertTrue(aligner.isTT2000());
+            final List<double[]> rows = collect(aligner, 97);
+
+            final TreeSet<Double> union = new TreeSet<>();
+            for (final double t : xr.getTimeSeries("X").getTimes()) {
+                union.add(t);
+            }
+            for (final double t : yr.getTimeSeries("Y").getTimes()) {
+                union.add(t);
+            }
+            assertEquals(union.size(), rows.size());
+            final double[][][] s = {series(xr, "X", 0, false, 0),
+                series(yr, "Y", 0, false, 0), series(yr, "Y", 0, false, 0),
+                series(xr, "X", 0, false, 0)};
+            final AlignmentPolicy[] policies = {AlignmentPolicy.NEAREST,
+                AlignmentPolicy.PREVIOUS, AlignmentPolicy.NEAREST,
+                AlignmentPolicy.EXACT};
+            final double[] tolerances = {Double.POSITIVE_INFINITY,
+                Double.POSITIVE_INFINITY, 400, 0};
+            int r = 0;
+            for (final double g : union) {
+                final double[] row = rows.get(r++);
+                assertEquals(g, row[0]);
+                for (int c = 0; c < 4; c++) {
+                    assertSameValue(expected(s[c], g, policies[c],
+                        tolerances[c]), row[c + 1], g + " " + c);
+                }
+            }
+            assertThrows(CDFException.ReaderError.class, () ->
+                aligner.add(xr, "X", AlignmentPolicy.EXACT, 0));
+        } finally {
+            x.delete();
+            y.delete();
+        }
+    }
+}
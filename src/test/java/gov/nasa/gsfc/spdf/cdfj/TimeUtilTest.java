@@ -0,0 +1,232 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TimeUtilTest {
+
+    static long calendarMillis(final int[] t) {
+        final Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+        cal.clear();
+        cal.set(t[0], t[1] - 1, t[2], t[3], t[4], t[5]);
+        cal.set(Calendar.MILLISECOND, t[6]);
+        return cal.getTimeInMillis();
+    }
+
+    static int[] randomTime(final Random random) {
+        return new int[] {1972 + random.nextInt(100), 1 + random.nextInt(12),
+            1 + random.nextInt(31), random.nextInt(24), random.nextInt(60),
+            random.nextInt(60), random.nextInt(1000)};
+    }
+
+    @Test
+    void testDaysSince1970() {
+        assertEquals(0, TimeUtil.daysSince1970(1970, 1, 1));
+        assertEquals(-1, TimeUtil.daysSince1970(1969, 12, 31));
+        assertEquals(10957, TimeUtil.daysSince1970(2000, 1, 1));
+        assertEquals(11016, TimeUtil.daysSince1970(2000, 2, 29));
+        assertEquals(TimeUtil.daysSince1970(2001, 1, 1),
+            TimeUtil.daysSince1970(2000, 13, 1));
+        assertEquals(TimeUtil.daysSince1970(2000, 2, 29),
+            TimeUtil.daysSince1970(2000, 3, 0));
+    }
+
+    @Test
+    void testMilliSecondSince1970MatchesCalendar() throws Throwable {
+        final Random random = new Random(28);
+        for (int i = 0; i < 100000; i++) {
+            final int[] t = randomTime(random);
+            assertEquals(calendarMillis(t), TimeUtil.milliSecondSince1970(t));
+            assertEquals(calendarMillis(t), TSExtractor.getTime(t));
+        }
+    }
+
+    @Test
+    void testBatchConversion() throws Throwable {
+        final Random random = new Random(2028);
+        final int[][] times = new int[1000][];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = randomTime(random);
+        }
+        final long[] msec = TimeUtil.milliSecondSince1970(times, null);
+        final long[] tt = TimeUtil.tt2000(times, new long[times.length]);
+        for (int i = 0; i < times.length; i++) {
+            assertEquals(TimeUtil.milliSecondSince1970(times[i]), msec[i]);
+            assertEquals(TimeUtil.tt2000(times[i]), tt[i]);
+        }
+    }
+
+    @Test
+    void testLeapSecond() throws Throwable {
+        final long leap = TimeUtil.tt2000(new int[] {2016, 12, 31, 23, 59, 60});
+        final long next = TimeUtil.tt2000(new int[] {2017, 1, 1});
+        assertEquals(1000000000L, next - leap);
+        assertThrows(Throwable.class, () -> TimeUtil.milliSecondSince1970(
+            new int[] {2016, 12, 31, 23, 59, 60}));
+        assertThrows(Throwable.class, () -> TimeUtil.tt2000(
+            new int[] {2015, 12, 31, 23, 59, 60}));
+    }
+
+    @Test
+    void testBulkTT2000Conversion() throws Throwable {
+        final Random random = new Random(29);
+        final long start = TimeUtil.JANUARY_1_1972;
+        final long[] msec = new long[10000];
+        for (int i = 0; i < msec.length; i++) {
+            msec[i] = start + (long)(random.nextDouble()*1.6e12);
+        }
+        final long[] jtimes = LeapSecondTable.current().jtimes;
+        msec[0] = jtimes[0];
+        msec[1] = jtimes[0] + 1;
+        msec[2] = jtimes[jtimes.length - 1];
+        msec[3] = jtimes[jtimes.length - 1] + 1;
+        Arrays.sort(msec, 100, 5000);
+        final long[] tt = TimeUtil.tt2000(msec, null);
+        for (int i = 0; i < msec.length; i++) {
+            assertEquals(TimeUtil.tt2000(msec[i]), tt[i]);
+        }
+        assertArrayEquals(msec, TimeUtil.utcMilliSecondSince1970(tt, null));
+        assertArrayEquals(msec,
+            TimeUtil.utcMilliSecondSince1970(LongBuffer.wrap(tt), null));
+        final long[] nsec = TimeUtil.utcNanoSecondSince1970(tt, null);
+        for (int i = 0; i < msec.length; i++) {
+            assertEquals(1000000*msec[i], nsec[i]);
+        }
+        assertArrayEquals(tt, TimeUtil.tt2000FromNanoSecond(nsec, null));
+        final long[] fill = {Long.MIN_VALUE + 1, tt[5]};
+        TimeUtil.utcMilliSecondSince1970(fill, fill);
+        assertEquals(Long.MIN_VALUE + 1, fill[0]);
+        assertEquals(msec[5], fill[1]);
+        assertThrows(Throwable.class, () -> TimeUtil.tt2000(
+            new long[] {start - 1}, null));
+    }
+
+    @Test
+    void testOffsets() throws Throwable {
+        final long[] tt = {0, 1500000, -2500, Long.MIN_VALUE + 1,
+            Long.MIN_VALUE, 407058226199110381L};
+        final double[] ms = TimeUtil.offsets(LongBuffer.wrap(tt), 0, 6,
+            -1000000, 1000000, null);
+        assertEquals(1.0, ms[0], 0);
+        assertEquals(2.5, ms[1], 0);
+        assertEquals(0.9975, ms[2], 1e-12);
+        assertTrue(Double.isNaN(ms[3]));
+        assertTrue(Double.isNaN(ms[4]));
+        // exact whole milliseconds, as the former per-value form gave
+        assertEquals(407058226200.0 + 0.110381, ms[5], 0);
+        final double[] ns = TimeUtil.offsets(LongBuffer.wrap(tt), 1, 2, 0, 1,
+            null);
+        assertEquals(1500000.0, ns[0], 0);
+        assertEquals(-2500.0, ns[1], 0);
+    }
+
+    static LeapSecondTable table(final String text) throws IOException {
+        return LeapSecondTable.read(new ByteArrayInputStream(
+            text.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void testLeapSecondTableFile() throws Throwable {
+        final LeapSecondTable table;
+        try (InputStream in = getClass().getResourceAsStream(
+            "/" + LeapSecondTable.RESOURCE)) {
+            table = LeapSecondTable.read(in);
+        }
+        final LeapSecondTable builtIn = LeapSecondTable.getBuiltIn();
+        assertArrayEquals(table.jtimes, LeapSecondTable.load().jtimes);
+        assertArrayEquals(builtIn.jtimes, table.jtimes);
+        assertArrayEquals(builtIn.ids, table.ids);
+        assertArrayEquals(builtIn.ttTimes, table.ttTimes);
+        assertEquals(20170101, table.getLastLeapSecondId());
+        assertEquals(27, table.size());
+        assertThrows(IOException.class, () -> table("  1972 1 1 10.0\n"));
+        assertThrows(IOException.class,
+            () -> table("  1972 1 1 10.0\n  1972 7 1 12.0\n"));
+        assertThrows(IOException.class,
+            () -> table("  1972 1 1 10.0\n  1972 7 x 11.0\n"));
+    }
+
+    @Test
+    void testSetCurrentLeapSecondTable() throws Throwable {
+        final long msec = TimeUtil.milliSecondSince1970(
+            new int[] {2020, 1, 1});
+        final long tt = TimeUtil.tt2000(msec);
+        final LeapSecondTable old = LeapSecondTable.setCurrent(table(
+            "; through 2012\n  1972 1 1 10.0 0.0 0.0\n" +
+            "  1972 7 1 11.0 0.0 0.0\n  2012 7 1 12.0 0.0 0.0\n"));
+        try {
+            assertEquals(tt - 25000000000L, TimeUtil.tt2000(msec));
+            assertEquals(tt - 25000000000L, TimeUtil.tt2000(
+                new long[] {msec}, null)[0]);
+            assertThrows(Throwable.class, () -> TimeUtil.tt2000(
+                new int[] {2016, 12, 31, 23, 59, 60}));
+        } finally {
+            LeapSecondTable.setCurrent(old);
+        }
+        assertEquals(tt, TimeUtil.tt2000(msec));
+    }
+
+    @Test
+    void testCorrectedIfNecessary() throws Throwable {
+        final long before = TimeUtil.tt2000(new int[] {2015, 1, 1});
+        final long after = TimeUtil.tt2000(new int[] {2018, 1, 1});
+        assertEquals(after, TimeUtil.Validator.correctedIfNecessary(after,
+            20170101));
+        assertEquals(before, TimeUtil.Validator.correctedIfNecessary(before,
+            20120701));
+        assertEquals(after + 2000000000L,
+            TimeUtil.Validator.correctedIfNecessary(after, 20120701));
+        assertEquals(before, TimeUtil.Validator.correctedIfNecessary(before,
+            20200101));
+        assertThrows(Throwable.class, () ->
+            TimeUtil.Validator.correctedIfNecessary(after, 20120101));
+    }
+
+    @Test
+    void testConcurrentConversion() throws Exception {
+        final int nthreads = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(nthreads);
+        try {
+            final List<Future<Integer>> results = new ArrayList<>();
+            for (int n = 0; n < nthreads; n++) {
+                final long seed = n;
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        final Random random = new Random(seed);
+                        int failures = 0;
+                        for (int i = 0; i < 50000; i++) {
+                            final int[] t = randomTime(random);
+                            if (TSExtractor.getTime(t) != calendarMillis(t)) {
+                                failures++;
+                            }
+                        }
+                        return failures;
+                    }
+                }));
+            }
+            for (final Future<Integer> result : results) {
+                assertEquals(0, result.get().intValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
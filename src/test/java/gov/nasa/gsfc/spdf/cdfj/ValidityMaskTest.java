@@ -0,0 +1,207 @@
+package gov.nasa.gsfc.spdf.cdfj;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ValidityMaskTest {
+
+    @Test
+    void testOfFill() {
+        final Random random = new Random(35);
+        final double fill = -1e31;
+        for (final int n : new int[] {0, 1, 63, 64, 65, 200}) {
+            final double[] values = new double[n];
+            final double[] times = new double[n + 5];
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                values[i] = (random.nextInt(3) == 0)? fill : i;
+                if (values[i] != fill) count++;
+            }
+            for (int i = 0; i < times.length; i++) times[i] = 10*i;
+            final ValidityMask mask = ValidityMask.ofFill(values, fill);
+            assertEquals(n, mask.size());
+            assertEquals(count, mask.getValidCount());
+            final double[] dense = mask.compact(values);
+            final double[] dtimes = mask.compact(times, 5);
+            assertEquals(count, dense.length);
+            int k = 0;
+            int next = mask.nextValid(0);
+            for (int i = 0; i < n; i++) {
+                assertEquals(values[i] != fill, mask.isValid(i));
+                if (!mask.isValid(i)) continue;
+                assertEquals(i, next);
+                next = mask.nextValid(i + 1);
+                assertEquals(values[i], dense[k]);
+                assertEquals(times[i + 5], dtimes[k]);
+                k++;
+            }
+            assertEquals(-1, next);
+        }
+    }
+
+    @Test
+    void testAllValid() {
+        final double[] values = new double[130];
+        for (int i = 0; i < values.length; i++) values[i] = i;
+        final ValidityMask mask = ValidityMask.ofFill(values, -1);
+        assertTrue(mask.isAllValid());
+        assertSame(values, mask.compact(values));
+        final long[] bits = mask.toLongArray();
+        assertEquals(3, bits.length);
+        assertEquals(-1L, bits[0]);
+        assertEquals(3L, bits[2]);
+    }
+
+    @Test
+    void testCastToDouble() {
+        final long[] values = {5, Long.MIN_VALUE, 7, Long.MIN_VALUE};
+        final ValidityMask mask = new ValidityMask(values.length);
+        final double[] converted = ValidityMask.castToDouble(values,
+            Long.MIN_VALUE, mask);
+        assertArrayEquals(new double[] {5, 7}, mask.compact(converted));
+        assertEquals(2, mask.getValidCount());
+    }
+
+    static final double FILL = -1e31;
+    static final double PAD = -99;
+
+    static boolean missing(final int i) {
+        return (i >= 300) && (i < 350);
+    }
+
+    static double value(final int i) {
+        if (i == 10) return PAD;
+        return (i%7 == 3)? FILL : i;
+    }
+
+    /**
+     * Writes one second records of q, a PADDED scalar, and p, a PREVIOUS
+     * vector, both with records 300-349 missing. Values whose record
+     * number is 3 modulo 7 are fill, and those of record 10 equal the pad
+     * value.
+     */
+    static void write(final String fname) throws Throwable {
+        final GenericWriter gw = new GenericWriter(true);
+        gw.defineTimeVariable("Epoch", CDFTimeType.TT2000);
+        gw.defineVariable("q", CDFDataType.DOUBLE, new int[0],
+            new boolean[0], true, false, new double[] {PAD},
+            SparseRecordOption.PADDED);
+        gw.defineVariable("p", CDFDataType.DOUBLE, new int[] {2},
+            new boolean[] {true}, true, false, new double[] {PAD, PAD},
+            SparseRecordOption.PREVIOUS);
+        for (final String name : new String[] {"q", "p"}) {
+            gw.addVariableAttributeEntry(name, "DEPEND_0", "Epoch");
+            gw.setVariableAttributeEntry(name, "FILLVAL",
+                new double[] {FILL});
+        }
+        final long t0 = TimeUtil.tt2000(new int[] {2010, 1, 1});
+        final long[] times = new long[500];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = t0 + i*1000000000L;
+        }
+        gw.addData("Epoch", times);
+        final int[][] ranges = {{0, 299}, {350, 499}};
+        for (final int[] range : ranges) {
+            final int n = range[1] - range[0] + 1;
+            final double[] q = new double[n];
+            for (int i = 0; i < n; i++) q[i] = value(range[0] + i);
+            final double[][] p = new double[n][];
+            for (int i = 0; i < n; i++) p[i] = new double[] {0, q[i]};
+            gw.addData("q", q, range);
+            gw.addData("p", p, range);
+        }
+        gw.write(fname, true);
+    }
+
+    /**
+     * Checks a masked series of records first on against the values
+     * written: fill values and pad values of missing records are invalid.
+     */
+    static void check(final MaskedTimeSeries ts, final double[] times,
+        final int first, final boolean previous) {
+        final double[] values = ts.getAllValues();
+        final ValidityMask mask = ts.getMask();
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            final int rec = first + i;
+            double expected = value(rec);
+            if (missing(rec)) expected = previous? value(299) : PAD;
+            assertEquals(expected, values[i], "" + rec);
+            assertEquals(times[rec], ts.getAllTimes()[i], "" + rec);
+            final boolean valid = (expected != FILL) &&
+                !(missing(rec) && (expected == PAD));
+            assertEquals(valid, mask.isValid(i), "" + rec);
+            if (valid) count++;
+        }
+        assertEquals(count, mask.getValidCount());
+        assertEquals(count, ts.getTimes().length);
+        assertArrayEquals(mask.compact(ts.getAllValues()),
+            (double[])ts.getValues());
+        assertSame(ts.getTimes(), ts.getTimes());
+    }
+
+    @Test
+    void testReader() throws Throwable {
+        final File file = File.createTempFile("masked", ".cdf");
+        try {
+            write(file.getPath());
+            final CDFReader reader = new CDFReader(file.getPath());
+            final double[] times = TimeVariableFactory.getTimeVariable(
+                reader, "q").getTimes((TimeInstantModel)null);
+            check(reader.getMaskedTimeSeries("q", null, null, null), times,
+                0, false);
+            check(reader.getMaskedTimeSeries("p", 1, null, null, null),
+                times, 0, true);
+            final int[] start = {2010, 1, 1, 0, 4};
+            final int[] stop = {2010, 1, 1, 0, 6, 40};
+            final MaskedTimeSeries q = reader.getMaskedTimeSeries("q", start,
+                stop, null);
+            assertEquals(160, q.getAllValues().length);
+            check(q, times, 240, false);
+            check(reader.getMaskedTimeSeries("p", 1, start, stop, null),
+                times, 240, true);
+            assertThrows(CDFException.ReaderError.class,
+                () -> reader.getMaskedTimeSeries("p", null, null, null));
+            assertThrows(CDFException.ReaderError.class,
+                () -> reader.getMaskedTimeSeries("p", 2, null, null, null));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testGeneralTimeSeries() throws Throwable {
+        final File file = File.createTempFile("masked", ".cdf");
+        try {
+            write(file.getPath());
+            final CDFReader reader = new CDFReader(file.getPath());
+            final Variable var = reader.thisCDF.getVariable("q");
+            final double[] range = TSExtractor.getOverlap(reader,
+                reader.getAvailableTimeRange("q"), "q",
+                new int[] {2010, 1, 1, 0, 4}, new int[] {2010, 1, 1, 0, 6});
+            final TSExtractor.GeneralTimeSeries ts =
+                (TSExtractor.GeneralTimeSeries)
+                TSExtractor.getTimeSeriesObject0(reader, var, true, range,
+                null);
+            // only fill values are removed, once and when first asked for
+            assertNull(ts.filtered);
+            final MaskedTimeSeries masked = reader.getMaskedTimeSeries("q",
+                new int[] {2010, 1, 1, 0, 4}, new int[] {2010, 1, 1, 0, 6},
+                null);
+            final ValidityMask fill = ValidityMask.ofFill(
+                masked.getAllValues(), FILL);
+            assertArrayEquals(fill.compact(masked.getAllValues()),
+                ts.getValues());
+            assertArrayEquals(fill.compact(masked.getAllTimes()),
+                ts.getTimes());
+            assertNotNull(ts.filtered);
+            assertSame(ts.getTimes(), ts.getTimes());
+        } finally {
+            file.delete();
+        }
+    }
+}